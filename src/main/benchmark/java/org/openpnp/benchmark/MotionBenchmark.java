@@ -0,0 +1,132 @@
+package org.openpnp.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openpnp.model.AbstractMotionPath;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Motion;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfileCache;
+
+/**
+ * Benchmarks Motion planning over the move corpora: Motion construction (limits and initial profiles),
+ * conversion to driver move commands, and the path solver over the corpus as one continuous path.
+ * Scores are per move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MotionBenchmark {
+    private static class CorpusPath extends AbstractMotionPath {
+        private final MotionProfile[][] path;
+
+        CorpusPath(MotionProfile[][] path) {
+            this.path = path;
+        }
+
+        @Override
+        public int size() {
+            return path.length;
+        }
+
+        @Override
+        public MotionProfile[] get(int i) {
+            return path[i];
+        }
+    }
+
+    @Param
+    public MotionCorpus.Kind kind;
+
+    /**
+     * Solve with or without the MotionProfileCache. As the corpus is solved over and over, all lookups but the
+     * first ones are hits.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private MotionCorpus corpus;
+    private List<Motion> motions;
+    private MotionProfile[][] pathTemplates;
+
+    @Setup
+    public void setup() {
+        MotionProfileCache.get().setEnabled(cached);
+        MotionProfileCache.get().clear();
+        corpus = new MotionCorpus(kind);
+        motions = corpus.createMotions();
+        List<MotionProfile[]> list = new ArrayList<>();
+        for (Motion motion : motions) {
+            list.add(motion.getAxesProfiles());
+        }
+        pathTemplates = list.toArray(new MotionProfile[list.size()][]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void construct(Blackhole blackhole) {
+        int options = corpus.getOptions();
+        for (AxesLocation[] move : corpus.getMoves()) {
+            blackhole.consume(new Motion(null, move[0], move[1], 1.0, options));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void interpolatedMoveToCommands(Blackhole blackhole) throws Exception {
+        for (Motion motion : motions) {
+            blackhole.consume(motion.interpolatedMoveToCommands(corpus.getDriver(), false));
+        }
+    }
+
+    /**
+     * Baseline for pathSolve(), that needs fresh copies of the solved Motion profiles, because the path
+     * solver modifies them.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public MotionProfile[][] pathCopy() {
+        return copyPath();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public MotionProfile[][] pathSolve() throws Exception {
+        MotionProfile[][] path = copyPath();
+        new CorpusPath(path).solve();
+        return path;
+    }
+
+    private MotionProfile[][] copyPath() {
+        MotionProfile[][] path = new MotionProfile[pathTemplates.length][];
+        for (int i = 0; i < path.length; i++) {
+            // Only the constraints are copied, the profiles are solved again, like the Motion does.
+            path[i] = MotionCorpus.copyUnsolved(pathTemplates[i]);
+            if (MotionProfile.isCoordinated(pathTemplates[i])) {
+                MotionProfile.coordinateProfiles(path[i]);
+            }
+            else {
+                MotionProfile.synchronizeProfiles(path[i]);
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,194 @@
+package org.openpnp.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.machine.reference.driver.GcodeAsyncDriver;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Motion;
+import org.openpnp.model.Motion.MotionOption;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfile.ProfileOption;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Driver.MotionControlType;
+
+/**
+ * Realistic move corpora for the motion planning benchmarks. The machine is a stand-alone X, Y, Z, C
+ * axis set on a single driver, configured like a typical hobby/prosumer machine. No Configuration
+ * or Machine is needed. The moves are generated from a fixed seed, so the corpora are the same in
+ * every run.
+ */
+public class MotionCorpus {
+    public enum Kind {
+        /**
+         * Short XY hops between feeder pockets, at Safe Z, coordinated.
+         */
+        FeederHops,
+        /**
+         * Long XY traverses between feeders and the board, at Safe Z, coordinated.
+         */
+        BoardTraverses,
+        /**
+         * Z moves with simultaneous nozzle rotation, combined with short XY moves, uncoordinated
+         * within the Safe Zone.
+         */
+        UncoordinatedZC,
+        /**
+         * Jerk controlled board traverses on a controller with simulated 3rd order control, i.e.
+         * the moves are interpolated.
+         */
+        InterpolatedPaths;
+    }
+
+    public static final int MOVES = 64;
+
+    private final Kind kind;
+    private final GcodeAsyncDriver driver;
+    private final ReferenceControllerAxis x;
+    private final ReferenceControllerAxis y;
+    private final ReferenceControllerAxis z;
+    private final ReferenceControllerAxis c;
+    private final List<AxesLocation[]> moves = new ArrayList<>();
+    private final int options;
+
+    public MotionCorpus(Kind kind) {
+        this.kind = kind;
+        driver = new GcodeAsyncDriver();
+        driver.setName("Benchmark");
+        driver.setUnits(LengthUnit.Millimeters);
+        // Axis limits only.
+        driver.setMaxFeedRate(0);
+        driver.setMotionControlType(kind == Kind.InterpolatedPaths ?
+                MotionControlType.Simulated3rdOrderControl
+                : MotionControlType.Full3rdOrderControl);
+        x = createAxis("X", Axis.Type.X, 500, 5000, 50000, 0, 600);
+        y = createAxis("Y", Axis.Type.Y, 500, 5000, 50000, 0, 400);
+        z = createAxis("Z", Axis.Type.Z, 300, 4000, 80000, -30, 0);
+        z.setSafeZoneLow(new Length(-8, LengthUnit.Millimeters));
+        z.setSafeZoneLowEnabled(true);
+        z.setSafeZoneHigh(new Length(0, LengthUnit.Millimeters));
+        z.setSafeZoneHighEnabled(true);
+        c = createAxis("C", Axis.Type.Rotation, 2000, 20000, 200000, -180, 180);
+
+        Random random = new Random(kind.ordinal() + 1);
+        double [] location = new double [] { 300, 200, 0, 0 };
+        for (int i = 0; i < MOVES; i++) {
+            double [] next = location.clone();
+            switch (kind) {
+                case FeederHops:
+                    // Feeder bank along the front edge, pockets a few millimeters apart.
+                    next[0] = clamp(location[0] + signed(random, 4, 40), 0, 600);
+                    next[1] = clamp(10 + random.nextDouble()*20, 0, 400);
+                    break;
+                case BoardTraverses:
+                case InterpolatedPaths:
+                    next[0] = random.nextDouble()*600;
+                    next[1] = (i % 2 == 0) ? 10 + random.nextDouble()*20 : 150 + random.nextDouble()*250;
+                    break;
+                case UncoordinatedZC:
+                    next[0] = clamp(location[0] + signed(random, 1, 10), 0, 600);
+                    next[1] = clamp(location[1] + signed(random, 1, 10), 0, 400);
+                    next[2] = -random.nextDouble()*8;
+                    next[3] = random.nextDouble()*360 - 180;
+                    break;
+            }
+            moves.add(new AxesLocation[] { toAxesLocation(location), toAxesLocation(next) });
+            location = next;
+        }
+        options = (kind == Kind.UncoordinatedZC) ?
+                Motion.optionFlags(MotionOption.UncoordinatedMotion, MotionOption.LimitToSafeZone,
+                        MotionOption.SynchronizeStraighten, MotionOption.SynchronizeEarlyBird,
+                        MotionOption.SynchronizeLastMinute)
+                : 0;
+    }
+
+    private ReferenceControllerAxis createAxis(String letter, Axis.Type type,
+            double feedrate, double acceleration, double jerk, double softLimitLow, double softLimitHigh) {
+        ReferenceControllerAxis axis = new ReferenceControllerAxis();
+        axis.setName(letter);
+        axis.setLetter(letter);
+        axis.setType(type);
+        axis.setDriver(driver);
+        axis.setFeedratePerSecond(new Length(feedrate, LengthUnit.Millimeters));
+        axis.setAccelerationPerSecond2(new Length(acceleration, LengthUnit.Millimeters));
+        axis.setJerkPerSecond3(new Length(jerk, LengthUnit.Millimeters));
+        axis.setSoftLimitLow(new Length(softLimitLow, LengthUnit.Millimeters));
+        axis.setSoftLimitLowEnabled(true);
+        axis.setSoftLimitHigh(new Length(softLimitHigh, LengthUnit.Millimeters));
+        axis.setSoftLimitHighEnabled(true);
+        return axis;
+    }
+
+    private AxesLocation toAxesLocation(double [] location) {
+        return new AxesLocation(x, location[0])
+                .put(new AxesLocation(y, location[1]))
+                .put(new AxesLocation(z, location[2]))
+                .put(new AxesLocation(c, location[3]));
+    }
+
+    private static double signed(Random random, double min, double max) {
+        double d = min + random.nextDouble()*(max - min);
+        return random.nextBoolean() ? d : -d;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public GcodeAsyncDriver getDriver() {
+        return driver;
+    }
+
+    public List<AxesLocation[]> getMoves() {
+        return moves;
+    }
+
+    public int getOptions() {
+        return options;
+    }
+
+    /**
+     * @return The planned Motions of the corpus.
+     */
+    public List<Motion> createMotions() {
+        List<Motion> motions = new ArrayList<>(moves.size());
+        for (AxesLocation[] move : moves) {
+            motions.add(new Motion(null, move[0], move[1], 1.0, options));
+        }
+        return motions;
+    }
+
+    /**
+     * @return The axes profiles of the planned Motions, as unsolved templates.
+     */
+    public List<MotionProfile[]> createProfileTemplates() {
+        List<MotionProfile[]> templates = new ArrayList<>(moves.size());
+        for (Motion motion : createMotions()) {
+            templates.add(copyUnsolved(motion.getAxesProfiles()));
+        }
+        return templates;
+    }
+
+    /**
+     * Copies the profiles with their constraints only, i.e. the copies need to be solved again.
+     *
+     * @param profiles
+     * @return
+     */
+    public static MotionProfile[] copyUnsolved(MotionProfile[] profiles) {
+        MotionProfile[] copy = new MotionProfile[profiles.length];
+        for (int i = 0; i < profiles.length; i++) {
+            copy[i] = new MotionProfile(profiles[i]);
+            copy[i].clearOption(ProfileOption.Solved);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,111 @@
+package org.openpnp.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfileCache;
+
+/**
+ * Benchmarks the MotionProfile solvers over the move corpora. Each invocation solves the whole corpus,
+ * scores are per move. The profiles need to be copied from their templates before they can be solved
+ * again, the copy benchmark gives the baseline of that.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MotionProfileBenchmark {
+    // Same as the MotionProfile.solve() defaults, for the solveForVelocity() benchmark.
+    private static final int ITERATIONS = 80;
+    private static final double VTOL = 2.0;
+    private static final double TTOL = 0.000001;
+
+    @Param
+    public MotionCorpus.Kind kind;
+
+    /**
+     * Solve with or without the MotionProfileCache. As the corpus is solved over and over, all lookups but the
+     * first ones are hits.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private MotionProfile[][] templates;
+    private MotionProfile[] leadTemplates;
+
+    @Setup
+    public void setup() {
+        MotionProfileCache.get().setEnabled(cached);
+        MotionProfileCache.get().clear();
+        List<MotionProfile[]> list = new MotionCorpus(kind).createProfileTemplates();
+        templates = list.toArray(new MotionProfile[list.size()][]);
+        leadTemplates = new MotionProfile[templates.length];
+        for (int i = 0; i < templates.length; i++) {
+            leadTemplates[i] = templates[i][MotionProfile.getLeadAxisIndex(templates[i])];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void copy(Blackhole blackhole) {
+        for (MotionProfile[] profiles : templates) {
+            blackhole.consume(MotionCorpus.copyUnsolved(profiles));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void solve(Blackhole blackhole) {
+        for (MotionProfile template : leadTemplates) {
+            MotionProfile profile = new MotionProfile(template);
+            profile.solve();
+            blackhole.consume(profile.getTime());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void solveForVelocity(Blackhole blackhole) {
+        for (MotionProfile template : leadTemplates) {
+            MotionProfile profile = new MotionProfile(template);
+            blackhole.consume(profile.solveForVelocity(ITERATIONS, VTOL, TTOL));
+            blackhole.consume(profile.getTime());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void coordinateProfiles(Blackhole blackhole) {
+        for (MotionProfile[] template : templates) {
+            MotionProfile[] profiles = MotionCorpus.copyUnsolved(template);
+            MotionProfile.coordinateProfiles(profiles);
+            blackhole.consume(profiles);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MotionCorpus.MOVES)
+    public void synchronizeProfiles(Blackhole blackhole) {
+        for (MotionProfile[] template : templates) {
+            MotionProfile[] profiles = MotionCorpus.copyUnsolved(template);
+            MotionProfile.synchronizeProfiles(profiles);
+            blackhole.consume(profiles);
+        }
+    }
+}
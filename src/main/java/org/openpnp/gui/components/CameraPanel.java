@@ -231,6 +231,24 @@ public class CameraPanel extends JPanel implements WebcamDiscoveryListener {
         return cameraViews.get(camera);
     }
 
+    /**
+     * @param camera
+     * @return True if the CameraView of the given Camera is currently showing, i.e. its images can be seen.
+     */
+    public boolean isCameraViewShowing(Camera camera) {
+        CameraView cameraView = getCameraView(camera);
+        return cameraView != null && cameraView.isShowing();
+    }
+
+    /**
+     * @param camera
+     * @return True if the images of the given Camera can be seen, or will be, when results are shown on its
+     * CameraView, as the Camera is auto visible, see {@link Camera#isAutoVisible()}.
+     */
+    public boolean isCameraViewVisible(Camera camera) {
+        return camera.isAutoVisible() || isCameraViewShowing(camera);
+    }
+
     public void relayoutPanel() {
         selectedCameraView = null;
         camerasPanel.removeAll();
@@ -336,6 +336,9 @@ public abstract class PipelineControls extends JPanel {
                 configurePipeline(pipeline, getPipelineParameterAssignments(), false);
                 Camera camera = (Camera) pipeline.getProperty("camera");
                 CameraView cameraView = MainFrame.get().getCameraViews().getCameraView(camera);
+                if (hasEffectStage) {
+                    pipeline.retainImage(paramStage.getEffectStageName());
+                }
                 pipeline.process();
                 List<BufferedImage> showImages = new ArrayList<>();
                 CvStage effectStage = hasEffectStage ? pipeline.getStage(paramStage.getEffectStageName()) : null;
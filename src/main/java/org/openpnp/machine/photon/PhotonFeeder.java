@@ -43,6 +43,9 @@ public class PhotonFeeder extends ReferenceFeeder {
 
     protected boolean initialized = false;
 
+    private int preFeedTimeToWaitMillis;
+    private long preFeedDoneMillis;
+
     @Element(required = false)
     private Location offset;
 
@@ -250,6 +253,38 @@ public class PhotonFeeder extends ReferenceFeeder {
 
     @Override
     public void feed(Nozzle nozzle) throws Exception {
+        int timeToWaitMillis = moveFeedForward();
+        waitForFeed(timeToWaitMillis, timeToWaitMillis);
+    }
+
+    @Override
+    public boolean isPreFeedSupported() {
+        // The feed command is sent by reading the data actuator. The feed only overlaps with the ongoing motion, if 
+        // that read does not wait for still-stand.
+        Actuator actuator = Configuration.get().getMachine().getActuatorByName(ACTUATOR_DATA_NAME);
+        return actuator != null && !actuator.isCoordinatedBeforeRead();
+    }
+
+    @Override
+    public void preFeed(Nozzle nozzle) throws Exception {
+        preFeedTimeToWaitMillis = moveFeedForward();
+        preFeedDoneMillis = System.currentTimeMillis() + preFeedTimeToWaitMillis;
+    }
+
+    @Override
+    public void completePreFeed(Nozzle nozzle) throws Exception {
+        // Only wait for what is left of the expected time to feed.
+        long remainingMillis = Math.max(0, preFeedDoneMillis - System.currentTimeMillis());
+        waitForFeed(remainingMillis, preFeedTimeToWaitMillis);
+    }
+
+    /**
+     * Sends the feed command, initializing the feeder if needed.
+     *
+     * @return The time in milliseconds the feeder expects to take for the feed.
+     * @throws Exception
+     */
+    private int moveFeedForward() throws Exception {
         for (int i = 0; i <= photonProperties.getFeederCommunicationMaxRetry(); i++) {
             findSlotAddressIfNeeded();
             initializeIfNeeded();
@@ -273,30 +308,39 @@ public class PhotonFeeder extends ReferenceFeeder {
                 continue;  // We'll initialize it on a retry
             }
 
-            int timeToWaitMillis = moveFeedForwardResponse.expectedTimeToFeed;
+            return moveFeedForwardResponse.expectedTimeToFeed;
+        }
 
-            for (int j = 0; j < 3; j++) {
-                //noinspection BusyWait
-                Thread.sleep(timeToWaitMillis);
+        throw new FeedFailureException("Failed to feed for an unknown reason. Is the feeder inserted?");
+    }
 
-                MoveFeedStatus moveFeedStatus = new MoveFeedStatus(slotAddress);
-                MoveFeedStatus.Response moveFeedStatusResponse = moveFeedStatus.send(photonBus);
+    /**
+     * Polls the feed status until the feed is done.
+     *
+     * @param firstWaitMillis The time to wait before the first status request.
+     * @param timeToWaitMillis The time to wait before each further status request.
+     * @throws Exception
+     */
+    private void waitForFeed(long firstWaitMillis, long timeToWaitMillis) throws Exception {
+        for (int j = 0; j < 3; j++) {
+            //noinspection BusyWait
+            Thread.sleep(j == 0 ? firstWaitMillis : timeToWaitMillis);
 
-                if (moveFeedStatusResponse == null) {
-                    continue; // Timeout. retry after delay.
-                }
+            MoveFeedStatus moveFeedStatus = new MoveFeedStatus(slotAddress);
+            MoveFeedStatus.Response moveFeedStatusResponse = moveFeedStatus.send(photonBus);
 
-                if (moveFeedStatusResponse.error == ErrorTypes.NONE) {
-                    return;
-                } else if (moveFeedStatusResponse.error == ErrorTypes.COULD_NOT_REACH) {
-                    throw new FeedFailureException("Feeder could not reach its destination.");
-                }
+            if (moveFeedStatusResponse == null) {
+                continue; // Timeout. retry after delay.
             }
 
-            throw new FeedFailureException("Feeder timed out when we requested a feed status update.");
+            if (moveFeedStatusResponse.error == ErrorTypes.NONE) {
+                return;
+            } else if (moveFeedStatusResponse.error == ErrorTypes.COULD_NOT_REACH) {
+                throw new FeedFailureException("Feeder could not reach its destination.");
+            }
         }
 
-        throw new FeedFailureException("Failed to feed for an unknown reason. Is the feeder inserted?");
+        throw new FeedFailureException("Feeder timed out when we requested a feed status update.");
     }
 
     @Override
@@ -67,6 +67,12 @@ public class RapidFeeder extends ReferenceFeeder {
         }
         actuator.actuate(String.format("%s %d", address, pitch));
     }
+
+    @Override
+    public boolean isPreFeedSupported() {
+        // The feed command only overlaps with the ongoing motion, if the actuator does not wait for still-stand.
+        return isActuatedWithoutStillstand(actuatorName);
+    }
     
 	@Override
     public Wizard getConfigurationWizard() {
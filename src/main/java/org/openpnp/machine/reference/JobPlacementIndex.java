@@ -0,0 +1,256 @@
+package org.openpnp.machine.reference;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openpnp.model.Part;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
+
+/**
+ * Index of the pending JobPlacements of a job, built once when the job starts, and then updated incrementally
+ * as JobPlacements change their status. The JobPlacements are grouped by Part (i.e. by feeder), the groups are
+ * ordered by the feeder X coordinate and Part id. Within a group, the JobPlacements keep the job order. The groups
+ * are also bucketed by compatible NozzleTip, so a planner can get the next JobPlacement for a NozzleTip without
+ * scanning the whole job.
+ * <p>
+ * The feeder X coordinate of each Part is taken once, when the index is built.
+ */
+public class JobPlacementIndex {
+    private static final Comparator<Group> groupOrder = Comparator
+            .comparingDouble((Group group) -> group.feederX)
+            .thenComparing(group -> group.partId);
+
+    private static class Group {
+        final double feederX;
+        final String partId;
+        final Set<NozzleTip> compatibleNozzleTips;
+        final TreeMap<Integer, JobPlacement> pending = new TreeMap<>();
+
+        Group(double feederX, String partId, Set<NozzleTip> compatibleNozzleTips) {
+            this.feederX = feederX;
+            this.partId = partId;
+            this.compatibleNozzleTips = compatibleNozzleTips;
+        }
+    }
+
+    private final Map<JobPlacement, Integer> jobOrder = new HashMap<>();
+    private final Map<Part, Group> partGroups = new LinkedHashMap<>();
+    /**
+     * The groups with pending JobPlacements.
+     */
+    private final TreeSet<Group> groups = new TreeSet<>(groupOrder);
+    /**
+     * The groups with pending JobPlacements, by compatible NozzleTip.
+     */
+    private final Map<NozzleTip, TreeSet<Group>> nozzleTipGroups = new HashMap<>();
+    private int size;
+    private long modificationCount;
+
+    private final PropertyChangeListener statusListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            JobPlacement jobPlacement = (JobPlacement) evt.getSource();
+            if (evt.getOldValue() == Status.Pending && evt.getNewValue() != Status.Pending) {
+                remove(jobPlacement);
+            }
+            else if (evt.getOldValue() != Status.Pending && evt.getNewValue() == Status.Pending) {
+                add(jobPlacement);
+            }
+        }
+    };
+
+    /**
+     * Builds the index over the given JobPlacements. The pending ones are indexed right away, the others as soon
+     * as they become pending.
+     *
+     * @param jobPlacements The JobPlacements in job order.
+     */
+    public JobPlacementIndex(Collection<JobPlacement> jobPlacements) {
+        for (JobPlacement jobPlacement : jobPlacements) {
+            jobOrder.put(jobPlacement, jobOrder.size());
+            Part part = jobPlacement.getPlacement().getPart();
+            if (!partGroups.containsKey(part)) {
+                // The feeder X coordinate is expensive to get, so only take it once per Part.
+                partGroups.put(part, new Group(jobPlacement.getPartFeederX(), jobPlacement.getPartId(),
+                        part.getPackage().getCompatibleNozzleTips()));
+            }
+            if (jobPlacement.getStatus() == Status.Pending) {
+                add(jobPlacement);
+            }
+            jobPlacement.addPropertyChangeListener("status", statusListener);
+        }
+    }
+
+    private void add(JobPlacement jobPlacement) {
+        Group group = partGroups.get(jobPlacement.getPlacement().getPart());
+        if (group.pending.put(jobOrder.get(jobPlacement), jobPlacement) != null) {
+            return;
+        }
+        size++;
+        modificationCount++;
+        if (group.pending.size() == 1) {
+            groups.add(group);
+            for (NozzleTip nozzleTip : group.compatibleNozzleTips) {
+                nozzleTipGroups.computeIfAbsent(nozzleTip, nt -> new TreeSet<>(groupOrder)).add(group);
+            }
+        }
+    }
+
+    private void remove(JobPlacement jobPlacement) {
+        Group group = partGroups.get(jobPlacement.getPlacement().getPart());
+        if (group.pending.remove(jobOrder.get(jobPlacement)) == null) {
+            return;
+        }
+        size--;
+        modificationCount++;
+        if (group.pending.isEmpty()) {
+            groups.remove(group);
+            for (NozzleTip nozzleTip : group.compatibleNozzleTips) {
+                TreeSet<Group> tipGroups = nozzleTipGroups.get(nozzleTip);
+                if (tipGroups != null) {
+                    tipGroups.remove(group);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of pending JobPlacements.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return A count that changes whenever a JobPlacement is added to or removed from the index, so a plan made
+     * from the index can later be checked to still be current.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * @return The pending JobPlacements in planning order.
+     */
+    public List<JobPlacement> getPendingJobPlacements() {
+        List<JobPlacement> list = new ArrayList<>(size);
+        for (Group group : groups) {
+            list.addAll(group.pending.values());
+        }
+        return list;
+    }
+
+    /**
+     * Gets the first pending JobPlacement in planning order, that is compatible with the given NozzleTip.
+     *
+     * @param nozzleTip
+     * @param excluded JobPlacements to skip, typically the ones already planned in this cycle.
+     * @return The JobPlacement or null if there is none.
+     */
+    public JobPlacement getFirst(NozzleTip nozzleTip, Set<JobPlacement> excluded) {
+        TreeSet<Group> tipGroups = nozzleTipGroups.get(nozzleTip);
+        return tipGroups == null ? null : getFirst(tipGroups, excluded);
+    }
+
+    /**
+     * Gets the first pending JobPlacements in planning order, that are compatible with the given NozzleTip, grouped
+     * by Part.
+     *
+     * @param nozzleTip
+     * @param maxGroups The maximum number of groups i.e. Parts.
+     * @param maxPlacements The maximum number of JobPlacements per group.
+     * @return The groups, each a non-empty list of JobPlacements of the same Part, in planning order.
+     */
+    public List<List<JobPlacement>> getFirstGroups(NozzleTip nozzleTip, int maxGroups, int maxPlacements) {
+        List<List<JobPlacement>> list = new ArrayList<>();
+        TreeSet<Group> tipGroups = nozzleTipGroups.get(nozzleTip);
+        if (tipGroups != null) {
+            for (Group group : tipGroups) {
+                if (list.size() >= maxGroups) {
+                    break;
+                }
+                List<JobPlacement> placements = new ArrayList<>();
+                for (JobPlacement jobPlacement : group.pending.values()) {
+                    if (placements.size() >= maxPlacements) {
+                        break;
+                    }
+                    placements.add(jobPlacement);
+                }
+                list.add(placements);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the pending JobPlacement whose feeder X coordinate is nearest to the given X coordinate. On a tie, the
+     * first in planning order is returned.
+     *
+     * @param x
+     * @param excluded JobPlacements to skip, typically the ones already planned in this cycle.
+     * @return The JobPlacement or null if there is none.
+     */
+    public JobPlacement getNearestToFeederX(double x, Set<JobPlacement> excluded) {
+        Group probe = new Group(x, "", null);
+        JobPlacement above = getFirst(groups.tailSet(probe, true), excluded);
+        JobPlacement below = getFirst(groups.headSet(probe, false).descendingSet(), excluded);
+        if (below != null) {
+            // Take the first in planning order among those with the same feeder X.
+            double belowX = partGroups.get(below.getPlacement().getPart()).feederX;
+            below = getFirst(groups.tailSet(new Group(belowX, "", null), true), excluded);
+        }
+        if (below == null) {
+            return above;
+        }
+        if (above == null) {
+            return below;
+        }
+        double belowDistance = Math.abs(partGroups.get(below.getPlacement().getPart()).feederX - x);
+        double aboveDistance = Math.abs(partGroups.get(above.getPlacement().getPart()).feederX - x);
+        return belowDistance <= aboveDistance ? below : above;
+    }
+
+    /**
+     * Compares JobPlacements by planning order.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public int compare(JobPlacement a, JobPlacement b) {
+        int result = groupOrder.compare(partGroups.get(a.getPlacement().getPart()),
+                partGroups.get(b.getPlacement().getPart()));
+        if (result == 0) {
+            result = Integer.compare(jobOrder.get(a), jobOrder.get(b));
+        }
+        return result;
+    }
+
+    private static JobPlacement getFirst(NavigableSet<Group> groups, Set<JobPlacement> excluded) {
+        for (Group group : groups) {
+            for (JobPlacement jobPlacement : group.pending.values()) {
+                if (!excluded.contains(jobPlacement)) {
+                    return jobPlacement;
+                }
+            }
+        }
+        return null;
+    }
+}
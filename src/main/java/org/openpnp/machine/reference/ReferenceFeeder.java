@@ -2,9 +2,12 @@ package org.openpnp.machine.reference;
 
 import java.util.List;
 
+import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Head;
 import org.openpnp.spi.base.AbstractFeeder;
 import org.simpleframework.xml.Element;
 
@@ -32,4 +35,28 @@ public abstract class ReferenceFeeder extends AbstractFeeder {
     public void prepareForJob(boolean visit) throws Exception {
         // the default RefrenceFeeder needs no prep.
     }
+
+    /**
+     * Checks whether the named feed actuator is actuated right away, i.e. it does not wait for the machine 
+     * to come to a still-stand before actuating. Only then can a pre-feed by actuation overlap with the motion 
+     * of the ongoing cycle, see {@link #isPreFeedSupported()}.
+     *
+     * @param actuatorName
+     * @return true if the actuator exists and is not coordinated before actuation.
+     */
+    protected static boolean isActuatedWithoutStillstand(String actuatorName) {
+        if (actuatorName == null || actuatorName.isEmpty()) {
+            return false;
+        }
+        Actuator actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
+        if (actuator == null) {
+            for (Head head : Configuration.get().getMachine().getHeads()) {
+                actuator = head.getActuatorByName(actuatorName);
+                if (actuator != null) {
+                    break;
+                }
+            }
+        }
+        return actuator != null && !actuator.isCoordinatedBeforeActuate();
+    }
 }
@@ -257,6 +257,7 @@ public class ReferenceMachine extends AbstractMachine {
                 }
             }
             this.enabled = false;
+            getMotionPlanner().release();
             if (e != null) {
                 fireMachineDisableFailed(e.getMessage());
                 throw e;
@@ -271,8 +272,11 @@ public class ReferenceMachine extends AbstractMachine {
     }
 
     public void setMotionPlanner(MotionPlanner motionPlanner) {
-        Object oldValue = this.motionPlanner;
+        MotionPlanner oldValue = this.motionPlanner;
         this.motionPlanner = motionPlanner;
+        if (oldValue != null && oldValue != motionPlanner) {
+            oldValue.release();
+        }
         firePropertyChange("motionPlanner", oldValue, motionPlanner);
     }
 
@@ -20,6 +20,7 @@
 package org.openpnp.machine.reference;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -28,13 +29,18 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
+import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.feeder.ReferencePushPullFeeder;
 import org.openpnp.machine.reference.vision.AbstractPartAlignment;
 import org.openpnp.machine.reference.wizards.ReferencePnpJobProcessorConfigurationWizard;
+import org.openpnp.machine.reference.wizards.ReferencePnpJobProcessorCycleTime;
 import org.openpnp.model.*;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.FiducialLocator;
@@ -45,10 +51,15 @@ import org.openpnp.spi.NozzleTip;
 import org.openpnp.spi.PartAlignment;
 import org.openpnp.spi.PnpJobPlanner;
 import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PropertySheetHolder.PropertySheet;
 import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
 import org.openpnp.spi.base.AbstractJobProcessor;
 import org.openpnp.spi.base.AbstractPnpJobProcessor;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.CycleTimeProfiler;
+import org.openpnp.util.CycleTimeProfiler.Category;
+import org.openpnp.util.CycleTimeProfiler.Span;
+import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
@@ -67,6 +78,22 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException;
     }
 
+    /**
+     * A PnpJobPlanner that can plan right on the JobPlacementIndex, instead of on the list of pending
+     * JobPlacements.
+     */
+    public interface IndexedPnpJobPlanner extends PnpJobPlanner {
+        public List<PlannedPlacement> plan(Head head, JobPlacementIndex index);
+
+        /**
+         * @return true if the planner already pairs the nozzles with feeders by their locations, so the job
+         * processor must not re-pair the second nozzle with the feeder nearest to it.
+         */
+        public default boolean isOrderingByFeeder() {
+            return false;
+        }
+    }
+
     public enum JobOrderHint {
         PartHeight,
         Part
@@ -81,6 +108,27 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Attribute(required = false)
     boolean steppingToNextMotion = true;
 
+    /**
+     * Plan the next cycle as soon as the parts of the current cycle are picked, and start feeding the feeders that
+     * support it, while the current cycle is still aligning and placing.
+     */
+    @Attribute(required = false)
+    protected boolean preFeed = false;
+
+    /**
+     * Only capture the alignment images in the Align step, and process them on the vision executor, while the
+     * machine moves on. The results are joined in the Place step.
+     */
+    @Attribute(required = false)
+    protected boolean overlappedAlignment = false;
+
+    /**
+     * Profile the cycle time of each step, and write the report to the configuration directory when the job
+     * finishes.
+     */
+    @Attribute(required = false)
+    protected boolean cycleTimeProfiling = false;
+
     @Element(required = false)
     public PnpJobPlanner planner = new SimplePnpJobPlanner();
 
@@ -92,9 +140,43 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
     protected List<JobPlacement> jobPlacements = new ArrayList<>();
 
+    /**
+     * Index of the pending jobPlacements, built in PreFlight and updated as the jobPlacements change status.
+     */
+    protected JobPlacementIndex jobPlacementIndex;
+
+    /**
+     * The next cycle, if planned ahead for pre-feeding, and the index modification count it was planned at.
+     */
+    protected List<PlannedPlacement> nextPlannedPlacements;
+    protected long nextPlanModificationCount;
+
+    /**
+     * The feeders that were pre-fed, and not yet picked from, with the error, if the pre-feed failed. Cleared in
+     * Cleanup.
+     */
+    protected Map<Feeder, Exception> preFedFeeders = new HashMap<>();
+
+    /**
+     * Processes the alignment images, if overlappedAlignment is enabled. Created on first use, shut down in
+     * Cleanup.
+     */
+    protected ExecutorService visionExecutor;
+
+    /**
+     * The alignments that may still be processing on the vision executor.
+     */
+    protected Map<PlannedPlacement, PartAlignment.PendingOffsets> pendingAlignments = new HashMap<>();
+
+    /**
+     * The cycle time profile of the last job, if cycleTimeProfiling is enabled.
+     */
+    protected final CycleTimeProfiler cycleTimeProfiler = new CycleTimeProfiler();
+
     private Step currentStep = null;
 
     long startTime;
+    long startVirtualTimeOffset;
     int totalPartsPlaced;
 
     public ReferencePnpJobProcessor() {
@@ -105,6 +187,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             throw new Exception("Can't initialize with a null Job.");
         }
         this.job = job;
+        cycleTimeProfiler.reset();
         currentStep = new PreFlight();
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.STOPPED);
     }
@@ -112,11 +195,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Override
     public synchronized boolean next() throws JobProcessorException {
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.RUNNING);
+        if (cycleTimeProfiling) {
+            cycleTimeProfiler.beginStep(currentStep.getClass().getSimpleName());
+        }
         try {
             currentStep = currentStep.step();
         } catch (Exception e) {
             this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.ERROR);
             throw e;
+        } finally {
+            cycleTimeProfiler.endStep();
         }
         if (currentStep == null) {
             this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.FINISHED);
@@ -152,7 +240,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
      */
     protected class PreFlight implements Step {
         public Step step() throws JobProcessorException {
-            startTime = System.currentTimeMillis();
+            startTime = NanosecondTime.getRuntimeMilliseconds();
+            startVirtualTimeOffset = NanosecondTime.getVirtualTimeOffset();
             totalPartsPlaced = 0;
 
             jobPlacements.clear();
@@ -167,6 +256,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             checkSetupErrors();
 
+            jobPlacementIndex = new JobPlacementIndex(jobPlacements);
+
             prepMachine();
 
             prepFeeders();
@@ -426,51 +517,63 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
 
+    /**
+     * Plans the next cycle from the pending placements, without changing their status.
+     *
+     * @return The planned placements.
+     */
+    protected List<PlannedPlacement> planPlacements() {
+        long t = System.currentTimeMillis();
+        List<PlannedPlacement> plannedPlacements;
+        if (planner instanceof IndexedPnpJobPlanner) {
+            // Plan right on the index, without collecting and sorting the pending placements.
+            plannedPlacements = ((IndexedPnpJobPlanner) planner).plan(head, jobPlacementIndex);
+        }
+        else {
+            // The index already has them in planning order.
+            plannedPlacements = planner.plan(head, jobPlacementIndex.getPendingJobPlacements());
+        }
+
+        List<Nozzle> nozzles = new ArrayList<>(head.getNozzles());
+        if (plannedPlacements.size() > 1 && nozzles.size() > 1
+                && !(planner instanceof IndexedPnpJobPlanner
+                        && ((IndexedPnpJobPlanner) planner).isOrderingByFeeder())) {
+            Set<JobPlacement> planned = new HashSet<>();
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                planned.add(plannedPlacement.jobPlacement);
+            }
+            double n1X = plannedPlacements.get(0).jobPlacement.getPartFeederX();
+            double n1Offset = nozzles.get(0).getHeadOffsets().getX();
+            double n2Offset = nozzles.get(1).getHeadOffsets().getX();
+            //获取N1到达飞达上方时N2的X轴坐标
+            double offsetDiff = n2Offset - n1Offset;
+            double n2X = n1X + offsetDiff;
+            JobPlacement nearFeeder = jobPlacementIndex.getNearestToFeederX(n2X, planned);
+            if (nearFeeder != null) {
+                //删除第二个元件的的放置任务，准备用新的进行替换
+                plannedPlacements.remove(1);
+                plannedPlacements.add(new PlannedPlacement(nozzles.get(1), nozzles.get(1).getNozzleTip(), nearFeeder));
+            }
+        }
+        Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+        return plannedPlacements;
+    }
+
     protected class Plan implements Step {
         public Step step() throws JobProcessorException {
             fireTextStatus("Planning placements.");
 
-            List<JobPlacement> jobPlacements;
-
-            if (jobOrder.equals(JobOrderHint.Part)) {
-                // Get the list of unfinished placements and sort them by part.
-                jobPlacements = getPendingJobPlacements().stream()
-                        .sorted(Comparator.comparing(JobPlacement::getPartFeederX)
-                                .thenComparing(JobPlacement::getPartId))
-                        .collect(Collectors.toList());
-            } else {
-                // Get the list of unfinished placements and sort them by part height.
-                jobPlacements = getPendingJobPlacements().stream()
-                        .sorted(Comparator
-                                .comparing(JobPlacement::getPartFeederX)
-                                .thenComparing(JobPlacement::getPartId))
-                        .collect(Collectors.toList());
-            }
-
-            if (jobPlacements.isEmpty()) {
+            if (jobPlacementIndex.isEmpty()) {
                 return new Finish();
             }
 
-            long t = System.currentTimeMillis();
-            List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
-
-            List<Nozzle> nozzles = new ArrayList<>(head.getNozzles());
-            if (plannedPlacements.size() > 1 && nozzles.size() > 1 && jobPlacements.size() > 0) {
-                //删除第二个元件的的放置任务，准备用新的进行替换
-                plannedPlacements.remove(1);
-                double n1X = plannedPlacements.get(0).jobPlacement.getPartFeederX();
-                double n1Offset = nozzles.get(0).getHeadOffsets().getX();
-                double n2Offset = nozzles.get(1).getHeadOffsets().getX();
-                //获取N1到达飞达上方时N2的X轴坐标
-                double offsetDiff = n2Offset - n1Offset;
-                double n2X = n1X + offsetDiff;
-                JobPlacement nearFeeder = jobPlacements
-                        .stream()
-                        .min(Comparator.comparingDouble(a -> Math.abs(a.getPartFeederX() - n2X)))
-                        .orElse(null);
-                plannedPlacements.add(new PlannedPlacement(nozzles.get(1), nozzles.get(1).getNozzleTip(), nearFeeder));
+            List<PlannedPlacement> plannedPlacements = nextPlannedPlacements;
+            nextPlannedPlacements = null;
+            if (plannedPlacements == null
+                    || nextPlanModificationCount != jobPlacementIndex.getModificationCount()) {
+                // No plan made ahead, or the pending placements changed since.
+                plannedPlacements = planPlacements();
             }
-            Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
 
             if (plannedPlacements.isEmpty()) {
                 throw new JobProcessorException(planner, "Planner failed to plan any placements. Please contact support.");
@@ -562,6 +665,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
+                if (preFeed) {
+                    preFeedNextCycle();
+                }
                 return new Align(plannedPlacements);
             }
 
@@ -650,10 +756,60 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             throw lastException;
         }
 
+        /**
+         * Plans the next cycle and pre-feeds its feeders. Each feeder is pre-fed once at most, further parts from
+         * the same feeder are fed as usual. Nothing here is fatal: if a feeder can't be found or pre-fed, the next
+         * Pick step runs into the same problem, and handles it.
+         */
+        private void preFeedNextCycle() {
+            if (jobPlacementIndex.isEmpty()) {
+                return;
+            }
+            nextPlannedPlacements = planPlacements();
+            nextPlanModificationCount = jobPlacementIndex.getModificationCount();
+            for (PlannedPlacement plannedPlacement : nextPlannedPlacements) {
+                Feeder feeder;
+                try {
+                    feeder = findFeeder(machine, plannedPlacement.jobPlacement.getPlacement().getPart());
+                }
+                catch (JobProcessorException e) {
+                    continue;
+                }
+                if (!feeder.isPreFeedSupported() || preFedFeeders.containsKey(feeder)) {
+                    continue;
+                }
+                try (Span span = CycleTimeProfiler.span(Category.Feeder)) {
+                    feeder.preFeed(plannedPlacement.nozzle);
+                    preFedFeeders.put(feeder, null);
+                }
+                catch (Exception e) {
+                    // Counts as the first feed try, see feed().
+                    Logger.warn("Pre-feed {} failed, will retry before pick: {}", feeder.getName(), e.getMessage());
+                    preFedFeeders.put(feeder, e);
+                }
+            }
+        }
+
         private void feed(Feeder feeder, Nozzle nozzle) throws JobProcessorException {
             Exception lastException = null;
-            for (int i = 0; i < 1 + feeder.getFeedRetryCount(); i++) {
-                try {
+            int i = 0;
+            CycleTimeProfiler.setFeeder(feeder.getName());
+            if (preFedFeeders.containsKey(feeder)) {
+                // The pre-feed counts as the first try, whether it failed right away or only on completion.
+                i++;
+                lastException = preFedFeeders.remove(feeder);
+                if (lastException == null) {
+                    try (Span span = CycleTimeProfiler.span(Category.Feeder)) {
+                        fireTextStatus("Complete pre-feed %s on %s.", feeder.getName(), feeder.getPart().getId());
+                        feeder.completePreFeed(nozzle);
+                        return;
+                    } catch (Exception e) {
+                        lastException = e;
+                    }
+                }
+            }
+            for (; i < 1 + feeder.getFeedRetryCount(); i++) {
+                try (Span span = CycleTimeProfiler.span(Category.Feeder)) {
                     fireTextStatus("Feed %s on %s.", feeder.getName(), feeder.getPart().getId());
                     feeder.feed(nozzle);
                     return;
@@ -775,23 +931,58 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 return this;
             }
 
-            align(plannedPlacement, partAlignment);
+            if (overlappedAlignment) {
+                alignOverlapped(plannedPlacement, partAlignment);
+            }
+            else {
+                align(plannedPlacement, partAlignment, null);
+            }
 
             checkPartOn(nozzle);
 
             return this;
         }
 
+        /**
+         * Captures the alignment image, and leaves the processing to the vision executor. The result is joined
+         * in Place.
+         */
+        private void alignOverlapped(PlannedPlacement plannedPlacement, PartAlignment partAlignment) throws JobProcessorException {
+            final Nozzle nozzle = plannedPlacement.nozzle;
+            final JobPlacement jobPlacement = plannedPlacement.jobPlacement;
+            final Placement placement = jobPlacement.getPlacement();
+            final Part part = placement.getPart();
+
+            fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
+            try {
+                pendingAlignments.put(plannedPlacement, VisionUtils.findPartAlignmentOffsetsOverlapped(
+                        partAlignment,
+                        part,
+                        jobPlacement.getBoardLocation(),
+                        placement, nozzle, getVisionExecutor()));
+            } catch (Exception e) {
+                align(plannedPlacement, partAlignment, e);
+            }
+        }
 
-        private void align(PlannedPlacement plannedPlacement, PartAlignment partAlignment) throws JobProcessorException {
+        /**
+         * Aligns the part, retrying up to maxVisionRetries times.
+         *
+         * @param plannedPlacement
+         * @param partAlignment
+         * @param previousException The exception of a previous overlapped try, that counts as the first try, or
+         *        null.
+         * @throws JobProcessorException
+         */
+        private void align(PlannedPlacement plannedPlacement, PartAlignment partAlignment, Exception previousException) throws JobProcessorException {
             final Nozzle nozzle = plannedPlacement.nozzle;
             final JobPlacement jobPlacement = plannedPlacement.jobPlacement;
             final Placement placement = jobPlacement.getPlacement();
             final BoardLocation boardLocation = jobPlacement.getBoardLocation();
             final Part part = placement.getPart();
 
-            Exception lastException = null;
-            for (int i = 0; i < ReferencePnpJobProcessor.this.getMaxVisionRetries(); i++) {
+            Exception lastException = previousException;
+            for (int i = (previousException == null ? 0 : 1); i < ReferencePnpJobProcessor.this.getMaxVisionRetries(); i++) {
                 fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
                 try {
                     plannedPlacement.alignmentOffsets = VisionUtils.findPartAlignmentOffsets(
@@ -843,6 +1034,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             final Part part = placement.getPart();
             final BoardLocation boardLocation = plannedPlacement.jobPlacement.getBoardLocation();
 
+            PartAlignment.PendingOffsets pendingOffsets = pendingAlignments.remove(plannedPlacement);
+            if (pendingOffsets != null) {
+                joinAlignment(plannedPlacement, pendingOffsets);
+            }
+
             Location placementLocation = getPlacementLocation(plannedPlacement);
 
             scriptBeforeAssembly(plannedPlacement, placementLocation);
@@ -868,6 +1064,21 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
 
 
+        /**
+         * Takes the result of the overlapped alignment. If it failed, the alignment is retried the usual way,
+         * which moves the nozzle back to the camera.
+         */
+        private void joinAlignment(PlannedPlacement plannedPlacement, PartAlignment.PendingOffsets pendingOffsets) throws JobProcessorException {
+            final Part part = plannedPlacement.jobPlacement.getPlacement().getPart();
+            try {
+                plannedPlacement.alignmentOffsets = pendingOffsets.get();
+                Logger.debug("Align {} with {}, offsets {}", part, plannedPlacement.nozzle, plannedPlacement.alignmentOffsets);
+            } catch (Exception e) {
+                Logger.warn("Overlapped alignment of {} failed, retrying: {}", part.getId(), e.getMessage());
+                new Align(plannedPlacements).align(plannedPlacement, AbstractPartAlignment.getPartAlignment(part), e);
+            }
+        }
+
         private void place(Nozzle nozzle, Part part, Placement placement, Location placementLocation) throws JobProcessorException {
             fireTextStatus("Placing %s for %s.", part.getId(), placement.getId());
 
@@ -1031,6 +1242,18 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException {
             fireTextStatus("Cleaning up.");
 
+            // Nothing of the pre-feeds is carried over to the next job, the job may change or the feeders may 
+            // be reloaded in between, so they feed as usual.
+            nextPlannedPlacements = null;
+            preFedFeeders.clear();
+
+            // Alignments still processing finish on their own.
+            pendingAlignments.clear();
+            if (visionExecutor != null) {
+                visionExecutor.shutdown();
+                visionExecutor = null;
+            }
+
             try {
                 // Safe Z the machine
                 head.moveToSafeZ();
@@ -1059,8 +1282,14 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException {
             new Cleanup().step();
 
-            double dtSec = (System.currentTimeMillis() - startTime) / 1000.0;
+            // Note, in virtual time, this is the modelled machine time.
+            double dtSec = (NanosecondTime.getRuntimeMilliseconds() - startTime) / 1000.0;
             DecimalFormat df = new DecimalFormat("###,###.0");
+            if (NanosecondTime.isVirtualTime()) {
+                double virtualSec = (NanosecondTime.getVirtualTimeOffset() - startVirtualTimeOffset) * 1e-9;
+                Logger.info("Job ran in virtual time, modelled machine time {} sec, of which {} sec real-time computing, {} sec simulated waiting.",
+                        df.format(dtSec), df.format(dtSec - virtualSec), df.format(virtualSec));
+            }
 
             // Collect the errored placements
             List<JobPlacement> erroredPlacements = jobPlacements
@@ -1072,6 +1301,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             Logger.info("Job finished {} parts in {} sec. This is {} CPH", totalPartsPlaced,
                     df.format(dtSec), df.format(totalPartsPlaced / (dtSec / 3600.0)));
+            Logger.debug("{}", MotionProfileCache.get());
+            if (cycleTimeProfiling) {
+                writeCycleTimeReport();
+            }
 
             try {
                 HashMap<String, Object> params = new HashMap<>();
@@ -1123,7 +1356,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     protected boolean isJobComplete() {
-        return getPendingJobPlacements().isEmpty();
+        return jobPlacementIndex == null ? getPendingJobPlacements().isEmpty() : jobPlacementIndex.isEmpty();
     }
 
     @Override
@@ -1131,6 +1364,14 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         return new ReferencePnpJobProcessorConfigurationWizard(this);
     }
 
+    @Override
+    public PropertySheet[] getPropertySheets() {
+        return new PropertySheet[] {
+                new PropertySheetWizardAdapter(getConfigurationWizard()),
+                new PropertySheetWizardAdapter(new ReferencePnpJobProcessorCycleTime(this), "Cycle Time"),
+        };
+    }
+
     public JobOrderHint getJobOrder() {
         return jobOrder;
     }
@@ -1162,6 +1403,68 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         this.steppingToNextMotion = steppingToNextMotion;
     }
 
+    /**
+     * Logs the cycle time report, and writes the records as CSV and the percentiles as JSON to the configuration
+     * directory.
+     */
+    public void writeCycleTimeReport() {
+        Logger.info("Cycle time profile [ms]:\n{}", cycleTimeProfiler.getReport());
+        try {
+            File csvFile = Configuration.get().createResourceFile(getClass(), "cycle-time", ".csv");
+            cycleTimeProfiler.writeCsv(csvFile);
+            File jsonFile = new File(csvFile.getParentFile(), csvFile.getName().replace(".csv", ".json"));
+            cycleTimeProfiler.writeJson(jsonFile);
+            Logger.info("Cycle time profile written to {} and {}", csvFile, jsonFile);
+        } catch (IOException e) {
+            Logger.warn(e, "Cannot write cycle time profile");
+        }
+    }
+
+    public CycleTimeProfiler getCycleTimeProfiler() {
+        return cycleTimeProfiler;
+    }
+
+    public boolean isCycleTimeProfiling() {
+        return cycleTimeProfiling;
+    }
+
+    public void setCycleTimeProfiling(boolean cycleTimeProfiling) {
+        this.cycleTimeProfiling = cycleTimeProfiling;
+    }
+
+    /**
+     * @return The executor for the overlapped alignment processing, one thread per nozzle at most, and one core
+     * left to the machine thread.
+     */
+    protected ExecutorService getVisionExecutor() {
+        if (visionExecutor == null) {
+            int threads = Math.max(1, Math.min(head.getNozzles().size(),
+                    Runtime.getRuntime().availableProcessors() - 1));
+            visionExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "ReferencePnpJobProcessor vision");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return visionExecutor;
+    }
+
+    public boolean isOverlappedAlignment() {
+        return overlappedAlignment;
+    }
+
+    public void setOverlappedAlignment(boolean overlappedAlignment) {
+        this.overlappedAlignment = overlappedAlignment;
+    }
+
+    public boolean isPreFeed() {
+        return preFeed;
+    }
+
+    public void setPreFeed(boolean preFeed) {
+        this.preFeed = preFeed;
+    }
+
     protected abstract class PlannedPlacementStep implements Step {
         protected final List<PlannedPlacement> plannedPlacements;
         private Set<PlannedPlacement> completed = new HashSet<>();
@@ -1196,6 +1499,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     .filter(p -> !completed.contains(p))
                     .findFirst()
                     .orElse(null);
+            if (plannedPlacement != null) {
+                CycleTimeProfiler.setPlacement(plannedPlacement.jobPlacement,
+                        plannedPlacement.jobPlacement.toString(), plannedPlacement.jobPlacement.getPartId(),
+                        plannedPlacement.nozzle.getName());
+            }
             try {
                 Step result = stepImpl(plannedPlacement);
                 completed.add(plannedPlacement);
@@ -1324,7 +1632,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
      * tips for the cycle.
      */
     @Root
-    public static class SimplePnpJobPlanner implements PnpJobPlanner {
+    public static class SimplePnpJobPlanner implements IndexedPnpJobPlanner {
         @Override
         public List<PlannedPlacement> plan(Head head, List<JobPlacement> jobPlacements) {
             // 创建一个空的 List<PlannedPlacement> 来保存计划的放置操作
@@ -1368,6 +1676,71 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             return plannedPlacements;
         }
 
+        /**
+         * Same as plan(Head, List), but takes the placements from the index, in near constant time per cycle.
+         *
+         * @param head
+         * @param index
+         * @return
+         */
+        @Override
+        public List<PlannedPlacement> plan(Head head, JobPlacementIndex index) {
+            List<PlannedPlacement> plannedPlacements = new ArrayList<>();
+            Set<JobPlacement> planned = new HashSet<>();
+            List<Nozzle> nozzles = new ArrayList<>(head.getNozzles());
+            List<NozzleTip> nozzleTips = new ArrayList<>(head.getMachine().getNozzleTips());
+
+            // 第一轮计划：计划不需要更换吸嘴尖的放置操作
+            for (Nozzle nozzle : new ArrayList<>(nozzles)) {
+                if (nozzle.getNozzleTip() == null) {
+                    continue;
+                }
+                JobPlacement jobPlacement = index.getFirst(nozzle.getNozzleTip(), planned);
+                if (jobPlacement != null) {
+                    plannedPlacements.add(new PlannedPlacement(nozzle, nozzle.getNozzleTip(), jobPlacement));
+                    planned.add(jobPlacement);
+                    nozzles.remove(nozzle);
+                    nozzleTips.remove(nozzle.getNozzleTip());
+                }
+            }
+
+            // 第二轮计划：计划需要更换吸嘴尖的放置操作
+            for (Nozzle nozzle : new ArrayList<>(nozzles)) {
+                // Take the first placement in planning order, that any of the usable nozzle tips can do.
+                JobPlacement jobPlacement = null;
+                for (NozzleTip nozzleTip : nozzleTips) {
+                    if (nozzle.getCompatibleNozzleTips().contains(nozzleTip)) {
+                        JobPlacement candidate = index.getFirst(nozzleTip, planned);
+                        if (candidate != null
+                                && (jobPlacement == null || index.compare(candidate, jobPlacement) < 0)) {
+                            jobPlacement = candidate;
+                        }
+                    }
+                }
+                if (jobPlacement != null) {
+                    Set<NozzleTip> packageNozzleTips = jobPlacement.getPlacement().getPart().getPackage()
+                            .getCompatibleNozzleTips();
+                    for (NozzleTip nozzleTip : nozzleTips) {
+                        if (packageNozzleTips.contains(nozzleTip)
+                                && nozzle.getCompatibleNozzleTips().contains(nozzleTip)) {
+                            plannedPlacements.add(new PlannedPlacement(nozzle, nozzleTip, jobPlacement));
+                            planned.add(jobPlacement);
+                            nozzles.remove(nozzle);
+                            nozzleTips.remove(nozzleTip);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            // 最后，按照吸嘴名称对计划的放置操作进行排序，以按照吸嘴名称的顺序执行操作
+            plannedPlacements.sort(Comparator.comparing(plannedPlacement -> {
+                return plannedPlacement.nozzle.getName();
+            }));
+
+            return plannedPlacements;
+        }
+
         /**
          * 尝试查找不需要更换吸嘴尖的放置操作的计划解决方案。
          *
@@ -114,6 +114,15 @@ public class SimulationModeMachine extends ReferenceMachine {
     @Attribute(required = false)
     private SimulationMode simulationMode = SimulationMode.Off;
 
+    /**
+     * In virtual time, simulated waits for motion completion, dwell, actuation and camera settling do not 
+     * actually block, but advance the clock instantly. Motion durations are still computed from the motion 
+     * profiles, so jobs run at computing speed, yet report the modelled machine time.
+     * See {@link NanosecondTime#sleep(long)}.
+     */
+    @Attribute(required = false)
+    private boolean virtualTime = false;
+
     /**
      * The simulated non-squareness is applied to what the simulated cameras see.
      * Works on the ImageCamera.
@@ -174,6 +183,9 @@ public class SimulationModeMachine extends ReferenceMachine {
     @Override
     public void setEnabled(boolean enabled) throws Exception {
         // TODO: re-wire drivers and cameras. 
+        NanosecondTime.setVirtualTime(enabled 
+                && simulationMode != SimulationMode.Off 
+                && virtualTime);
         super.setEnabled(enabled);
     }
 
@@ -201,6 +213,22 @@ public class SimulationModeMachine extends ReferenceMachine {
         this.simulationMode = simulationMode;
     }
 
+    public boolean isVirtualTime() {
+        return virtualTime;
+    }
+
+    public void setVirtualTime(boolean virtualTime) {
+        if (this.virtualTime != virtualTime) {
+            try {
+                setEnabled(false);
+            }
+            catch (Exception e) {
+                Logger.error(e);
+            }
+        }
+        this.virtualTime = virtualTime;
+    }
+
     public double getSimulatedNonSquarenessFactor() {
         return simulatedNonSquarenessFactor;
     }
@@ -399,7 +427,7 @@ public class SimulationModeMachine extends ReferenceMachine {
         }
         if (realtime) {
             try {
-                Thread.sleep(50);
+                NanosecondTime.sleep(50);
             }
             catch (InterruptedException e) {
             }
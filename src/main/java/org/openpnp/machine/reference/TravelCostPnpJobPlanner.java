@@ -0,0 +1,514 @@
+package org.openpnp.machine.reference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.IndexedPnpJobPlanner;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Location;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Camera;
+import org.openpnp.spi.ControllerAxis;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.base.AbstractPnpJobProcessor;
+import org.openpnp.util.Utils2D;
+import org.openpnp.util.VisionUtils;
+import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Root;
+
+/**
+ * A planner that chooses the nozzle/placement assignment and the order within the cycle, by the estimated cycle
+ * time per placement. The cycle is estimated as the head travel from its current location over the feeder pick
+ * locations, the bottom camera and the placement locations, each offset by the head offsets of the nozzle
+ * visiting it, plus a fixed cost per nozzle tip change. Picks that line up with the nozzle offsets cost no
+ * travel, so the planner favors nozzles picking side by side.
+ * <p>
+ * Travel times are estimated by solving a MotionProfile per axis, with the X and Y axis motion limits.
+ * <p>
+ * The candidates are the first few Parts in planning order per nozzle tip. The assignment is built greedily and
+ * then improved by local search, the order within the cycle is optimized by trying all permutations, for up to
+ * five placements.
+ */
+@Root
+public class TravelCostPnpJobPlanner implements IndexedPnpJobPlanner {
+    private static final int maxPermutedPlacements = 5;
+    private static final int travelTimeCacheSize = 8192;
+    private static final double travelQuantum = 0.1; // mm
+
+    /**
+     * Number of Parts considered per nozzle tip, in planning order.
+     */
+    @Attribute(required = false)
+    private int candidateParts = 3;
+
+    /**
+     * Estimated time of a nozzle tip change, in seconds.
+     */
+    @Attribute(required = false)
+    private double nozzleTipChangeTime = 8.0;
+
+    @Attribute(required = false)
+    private int maxImprovementRounds = 8;
+
+    private double[] travelLimits = new double[0];
+
+    private final Map<Long, Double> travelTimes = new LinkedHashMap<Long, Double>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+            return size() > travelTimeCacheSize;
+        }
+    };
+
+    @Override
+    public List<PlannedPlacement> plan(Head head, JobPlacementIndex index) {
+        Planning planning = new Planning(head);
+        for (NozzleTip nozzleTip : planning.tipParts.keySet()) {
+            for (List<JobPlacement> group : index.getFirstGroups(nozzleTip, candidateParts,
+                    planning.nozzles.size())) {
+                planning.addCandidate(nozzleTip, group);
+            }
+        }
+        return planning.solve();
+    }
+
+    /**
+     * The travel cost already takes the nozzle offsets over the feeders into account.
+     */
+    @Override
+    public boolean isOrderingByFeeder() {
+        return true;
+    }
+
+    @Override
+    public List<PlannedPlacement> plan(Head head, List<JobPlacement> jobPlacements) {
+        Planning planning = new Planning(head);
+        for (JobPlacement jobPlacement : jobPlacements) {
+            Part part = jobPlacement.getPlacement().getPart();
+            List<JobPlacement> group = planning.groups.get(part);
+            if (group != null) {
+                if (group.size() < planning.nozzles.size()) {
+                    group.add(jobPlacement);
+                }
+                continue;
+            }
+            for (NozzleTip nozzleTip : part.getPackage().getCompatibleNozzleTips()) {
+                List<Part> parts = planning.tipParts.get(nozzleTip);
+                if (parts != null && parts.size() < candidateParts) {
+                    if (group == null) {
+                        group = new ArrayList<>();
+                        group.add(jobPlacement);
+                    }
+                    planning.addCandidate(nozzleTip, group);
+                }
+            }
+        }
+        return planning.solve();
+    }
+
+    /**
+     * A candidate for a nozzle: the nozzle tip to use and the Part to place.
+     */
+    private static class Option {
+        final NozzleTip nozzleTip;
+        final Part part;
+
+        Option(NozzleTip nozzleTip, Part part) {
+            this.nozzleTip = nozzleTip;
+            this.part = part;
+        }
+    }
+
+    private static class Evaluation {
+        final PlannedPlacement[] order;
+        final double cost;
+
+        Evaluation(PlannedPlacement[] order, double cost) {
+            this.order = order;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * The state of one plan() call.
+     */
+    private class Planning {
+        final Head head;
+        final List<Nozzle> nozzles;
+        final double[][] nozzleOffsets;
+        final double[] start;
+        final double[] camera;
+        final Map<NozzleTip, List<Part>> tipParts = new LinkedHashMap<>();
+        final Map<Part, List<JobPlacement>> groups = new HashMap<>();
+        final Map<Part, double[]> pickLocations = new HashMap<>();
+        final Map<JobPlacement, double[]> placementLocations = new HashMap<>();
+
+        Planning(Head head) {
+            this.head = head;
+            nozzles = new ArrayList<>(head.getNozzles());
+            nozzleOffsets = new double[nozzles.size()][];
+            for (int i = 0; i < nozzles.size(); i++) {
+                Location headOffsets = nozzles.get(i).getHeadOffsets();
+                nozzleOffsets[i] = headOffsets == null ? new double[2] : toXy(headOffsets);
+            }
+            start = nozzles.isEmpty() ? null : headLocation(getNozzleLocation(nozzles.get(0)), 0);
+            camera = getBottomCameraLocation();
+            for (NozzleTip nozzleTip : head.getMachine().getNozzleTips()) {
+                tipParts.put(nozzleTip, new ArrayList<>());
+            }
+            for (Nozzle nozzle : nozzles) {
+                if (nozzle.getNozzleTip() != null) {
+                    tipParts.putIfAbsent(nozzle.getNozzleTip(), new ArrayList<>());
+                }
+            }
+            updateTravelLimits(head.getMachine());
+        }
+
+        void addCandidate(NozzleTip nozzleTip, List<JobPlacement> group) {
+            Part part = group.get(0).getPlacement().getPart();
+            groups.putIfAbsent(part, group);
+            List<Part> parts = tipParts.get(nozzleTip);
+            if (parts != null && !parts.contains(part)) {
+                parts.add(part);
+            }
+        }
+
+        List<PlannedPlacement> solve() {
+            List<List<Option>> options = new ArrayList<>();
+            for (Nozzle nozzle : nozzles) {
+                List<Option> nozzleOptions = new ArrayList<>();
+                NozzleTip loadedTip = nozzle.getNozzleTip();
+                if (loadedTip != null) {
+                    for (Part part : tipParts.get(loadedTip)) {
+                        nozzleOptions.add(new Option(loadedTip, part));
+                    }
+                }
+                for (Map.Entry<NozzleTip, List<Part>> entry : tipParts.entrySet()) {
+                    if (entry.getKey() != loadedTip && nozzle.getCompatibleNozzleTips().contains(entry.getKey())) {
+                        for (Part part : entry.getValue()) {
+                            nozzleOptions.add(new Option(entry.getKey(), part));
+                        }
+                    }
+                }
+                // Leaving the nozzle empty is also an option.
+                nozzleOptions.add(null);
+                options.add(nozzleOptions);
+            }
+
+            // Greedy start: give each nozzle the best option, given the ones before.
+            Option[] assignment = new Option[nozzles.size()];
+            Evaluation best = null;
+            for (int i = 0; i < nozzles.size(); i++) {
+                Option bestOption = null;
+                for (Option option : options.get(i)) {
+                    assignment[i] = option;
+                    Evaluation evaluation = evaluate(assignment);
+                    if (evaluation != null && (best == null || evaluation.cost < best.cost)) {
+                        best = evaluation;
+                        bestOption = option;
+                    }
+                }
+                assignment[i] = bestOption;
+            }
+            // Local search: change one nozzle at a time, as long as it improves.
+            for (int round = 0; best != null && round < maxImprovementRounds; round++) {
+                boolean improved = false;
+                for (int i = 0; i < nozzles.size(); i++) {
+                    Option current = assignment[i];
+                    for (Option option : options.get(i)) {
+                        if (option == current) {
+                            continue;
+                        }
+                        assignment[i] = option;
+                        Evaluation evaluation = evaluate(assignment);
+                        if (evaluation != null && evaluation.cost < best.cost - 1e-9) {
+                            best = evaluation;
+                            current = option;
+                            improved = true;
+                        }
+                    }
+                    assignment[i] = current;
+                }
+                if (!improved) {
+                    break;
+                }
+            }
+            if (best == null) {
+                return new ArrayList<>();
+            }
+            Logger.trace("Planned cycle with estimated {}s per placement", best.cost);
+            return new ArrayList<>(Arrays.asList(best.order));
+        }
+
+        /**
+         * Evaluates the assignment with its best order within the cycle.
+         *
+         * @param assignment
+         * @return The evaluation or null if the assignment is empty or not feasible.
+         */
+        Evaluation evaluate(Option[] assignment) {
+            List<PlannedPlacement> plannedPlacements = new ArrayList<>();
+            List<Integer> nozzleIndices = new ArrayList<>();
+            Set<NozzleTip> usedTips = new HashSet<>();
+            Map<Part, Integer> usedPlacements = new HashMap<>();
+            double tipChanges = 0;
+            for (int i = 0; i < assignment.length; i++) {
+                Option option = assignment[i];
+                if (option == null) {
+                    continue;
+                }
+                if (!usedTips.add(option.nozzleTip)) {
+                    // A nozzle tip can only be on one nozzle.
+                    return null;
+                }
+                List<JobPlacement> group = groups.get(option.part);
+                int used = usedPlacements.getOrDefault(option.part, 0);
+                if (used >= group.size()) {
+                    return null;
+                }
+                usedPlacements.put(option.part, used + 1);
+                Nozzle nozzle = nozzles.get(i);
+                if (option.nozzleTip != nozzle.getNozzleTip()) {
+                    tipChanges++;
+                }
+                plannedPlacements.add(new PlannedPlacement(nozzle, option.nozzleTip, group.get(used)));
+                nozzleIndices.add(i);
+            }
+            int n = plannedPlacements.size();
+            if (n == 0) {
+                return null;
+            }
+            // Head locations of the pick, bottom camera and place visits.
+            double[][] picks = new double[n][];
+            double[][] cameras = new double[n][];
+            double[][] places = new double[n][];
+            for (int k = 0; k < n; k++) {
+                JobPlacement jobPlacement = plannedPlacements.get(k).jobPlacement;
+                int nozzleIndex = nozzleIndices.get(k);
+                picks[k] = headLocation(getPickLocation(jobPlacement.getPlacement().getPart()), nozzleIndex);
+                cameras[k] = headLocation(camera, nozzleIndex);
+                places[k] = headLocation(getPlacementLocation(jobPlacement), nozzleIndex);
+            }
+            int[] order = new int[n];
+            for (int k = 0; k < n; k++) {
+                order[k] = k;
+            }
+            int[] bestOrder = order.clone();
+            double bestTravel = travelTime(order, picks, cameras, places);
+            if (n <= maxPermutedPlacements) {
+                while (nextPermutation(order)) {
+                    double travel = travelTime(order, picks, cameras, places);
+                    if (travel < bestTravel) {
+                        bestTravel = travel;
+                        bestOrder = order.clone();
+                    }
+                }
+            }
+            PlannedPlacement[] ordered = new PlannedPlacement[n];
+            for (int k = 0; k < n; k++) {
+                ordered[k] = plannedPlacements.get(bestOrder[k]);
+            }
+            return new Evaluation(ordered, (bestTravel + tipChanges*nozzleTipChangeTime)/n);
+        }
+
+        double travelTime(int[] order, double[][] picks, double[][] cameras, double[][] places) {
+            double time = 0;
+            double[] location = start;
+            for (double[][] visits : new double[][][] { picks, cameras, places }) {
+                for (int k : order) {
+                    if (visits[k] != null) {
+                        time += estimateTravelTime(location, visits[k]);
+                        location = visits[k];
+                    }
+                }
+            }
+            return time;
+        }
+
+        double[] headLocation(double[] location, int nozzleIndex) {
+            if (location == null) {
+                return null;
+            }
+            return new double[] {
+                    location[0] - nozzleOffsets[nozzleIndex][0],
+                    location[1] - nozzleOffsets[nozzleIndex][1] };
+        }
+
+        double[] getPickLocation(Part part) {
+            return pickLocations.computeIfAbsent(part, p -> {
+                try {
+                    Feeder feeder = AbstractPnpJobProcessor.findFeeder(head.getMachine(), p);
+                    return toXy(feeder.getPickLocation());
+                }
+                catch (Exception e) {
+                    // Unknown, the travel is then not accounted for.
+                    return null;
+                }
+            });
+        }
+
+        double[] getPlacementLocation(JobPlacement jobPlacement) {
+            return placementLocations.computeIfAbsent(jobPlacement, jp -> toXy(
+                    Utils2D.calculateBoardPlacementLocation(jp.getBoardLocation(), jp.getPlacement().getLocation())));
+        }
+
+        double[] getNozzleLocation(Nozzle nozzle) {
+            try {
+                return toXy(nozzle.getLocation());
+            }
+            catch (Exception e) {
+                return null;
+            }
+        }
+
+        double[] getBottomCameraLocation() {
+            try {
+                Camera camera = VisionUtils.getBottomVisionCamera();
+                return toXy(camera.getLocation());
+            }
+            catch (Exception e) {
+                // No bottom camera.
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Steps the array to the next lexicographic permutation.
+     *
+     * @param order
+     * @return false if there is no next permutation.
+     */
+    private static boolean nextPermutation(int[] order) {
+        int i = order.length - 2;
+        while (i >= 0 && order[i] >= order[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = order.length - 1;
+        while (order[j] <= order[i]) {
+            j--;
+        }
+        swap(order, i, j);
+        for (int a = i + 1, b = order.length - 1; a < b; a++, b--) {
+            swap(order, a, b);
+        }
+        return true;
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+    }
+
+    private static double[] toXy(Location location) {
+        if (location == null) {
+            return null;
+        }
+        location = location.convertToUnits(AxesLocation.getUnits());
+        return new double[] { location.getX(), location.getY() };
+    }
+
+    /**
+     * Takes the motion limits of the first X and Y controller axes. The cached travel times are dropped, when they
+     * have changed.
+     *
+     * @param machine
+     */
+    private synchronized void updateTravelLimits(Machine machine) {
+        double[] limits = new double[6];
+        for (Axis.Type type : new Axis.Type[] { Axis.Type.X, Axis.Type.Y }) {
+            for (Axis axis : machine.getAxes()) {
+                if (axis instanceof ControllerAxis && axis.getType() == type) {
+                    int offset = (type == Axis.Type.X) ? 0 : 3;
+                    for (int order = 1; order <= 3; order++) {
+                        limits[offset + order - 1] = ((ControllerAxis) axis).getMotionLimit(order);
+                    }
+                    break;
+                }
+            }
+        }
+        if (!Arrays.equals(limits, travelLimits)) {
+            travelLimits = limits;
+            travelTimes.clear();
+        }
+    }
+
+    private synchronized double estimateTravelTime(double[] from, double[] to) {
+        if (from == null || to == null) {
+            return 0;
+        }
+        return Math.max(
+                estimateAxisTime(0, Math.abs(to[0] - from[0])),
+                estimateAxisTime(1, Math.abs(to[1] - from[1])));
+    }
+
+    private double estimateAxisTime(int axisIndex, double distance) {
+        long steps = Math.round(distance/travelQuantum);
+        if (steps == 0) {
+            return 0;
+        }
+        double vMax = travelLimits[axisIndex*3];
+        double aMax = travelLimits[axisIndex*3 + 1];
+        double jMax = travelLimits[axisIndex*3 + 2];
+        if (vMax <= 0 || aMax <= 0) {
+            // No motion limits.
+            return 0;
+        }
+        Long key = (steps << 1) | axisIndex;
+        Double time = travelTimes.get(key);
+        if (time == null) {
+            MotionProfile profile = new MotionProfile(
+                    0, steps*travelQuantum,
+                    0, 0, 0, 0,
+                    Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    vMax, aMax, aMax, jMax,
+                    0, Double.POSITIVE_INFINITY,
+                    0);
+            profile.solve();
+            time = profile.getTime();
+            travelTimes.put(key, time);
+        }
+        return time;
+    }
+
+    public int getCandidateParts() {
+        return candidateParts;
+    }
+
+    public void setCandidateParts(int candidateParts) {
+        this.candidateParts = candidateParts;
+    }
+
+    public double getNozzleTipChangeTime() {
+        return nozzleTipChangeTime;
+    }
+
+    public void setNozzleTipChangeTime(double nozzleTipChangeTime) {
+        this.nozzleTipChangeTime = nozzleTipChangeTime;
+    }
+
+    public int getMaxImprovementRounds() {
+        return maxImprovementRounds;
+    }
+
+    public void setMaxImprovementRounds(int maxImprovementRounds) {
+        this.maxImprovementRounds = maxImprovementRounds;
+    }
+}
@@ -43,7 +43,11 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.model.Configuration;
 import org.openpnp.spi.MotionPlanner.CompletionType;
 import org.openpnp.spi.base.AbstractCamera;
+import org.openpnp.util.CycleTimeProfiler;
+import org.openpnp.util.CycleTimeProfiler.Category;
+import org.openpnp.util.CycleTimeProfiler.Span;
 import org.openpnp.util.NanosecondTime;
+import org.openpnp.util.ImageBufferPool;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.SimpleGraph;
 import org.pmw.tinylog.Logger;
@@ -292,9 +296,13 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
                 }
 
                 // Convert to Mat and if not full color, convert to gray.
-                Mat mat = OpenCvUtils.toMat(image);
+                Mat mat = OpenCvUtils.toMat(image,
+                        ImageBufferPool.get().leaseMat(image.getHeight(), image.getWidth(), CvType.CV_8UC3));
                 if (!settleFullColor) {
-                    Imgproc.cvtColor(mat, mat, Imgproc.COLOR_BGR2GRAY);
+                    Mat grayMat = ImageBufferPool.get().leaseMat(mat.rows(), mat.cols(), CvType.CV_8UC1);
+                    Imgproc.cvtColor(mat, grayMat, Imgproc.COLOR_BGR2GRAY);
+                    ImageBufferPool.get().release(mat);
+                    mat = grayMat;
                 }
 
                 // Gaussian blur is the most expensive operation, so if it is large, we rescale the image instead.
@@ -343,9 +351,9 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
                 if (divisor > 1) {
                     // Scale the image down, see the calculations further up.  
                     gaussianBlurEff = ((settleGaussianBlur) / divisor) | 1;
-                    Mat resizeMat = new Mat();
+                    Mat resizeMat = ImageBufferPool.get().leaseMat(mat.rows() / divisor, mat.cols() / divisor, mat.type());
                     Imgproc.resize(mat, resizeMat, new Size(mat.cols() / divisor, mat.rows() / divisor), 1.0 / divisor, 1.0 / divisor);
-                    mat.release();
+                    ImageBufferPool.get().release(mat);
                     mat = resizeMat;
                     maskDiameter /= divisor;
                 }
@@ -391,7 +399,7 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
                 }
 
                 // Release the lastSettleMat and store the new image as the lastSettleMat.
-                lastSettleMat.release();
+                ImageBufferPool.get().release(lastSettleMat);
                 lastSettleMat = mat;
 
                 long t = NanosecondTime.getRuntimeMilliseconds();
@@ -412,7 +420,7 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
                 if (t > timeout || debounceCount > settleDebounce) {
                     // Timeout or debounced settleThreshold reached.
                     // Cleanup.
-                    lastSettleMat.release();
+                    ImageBufferPool.get().release(lastSettleMat);
                     lastSettleMat = null;
                     if (settleGraph != null) {
                         // Record last points in the graph. 
@@ -635,31 +643,33 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
             // Skip settling.
             return capture();
         }
-        Map<String, Object> globals = new HashMap<>();
-        globals.put("camera", this);
-        Configuration.get().getScripting().on("Camera.BeforeSettle", globals);
-        Logger.trace("Camera.BeforeSettle时间:" + System.currentTimeMillis());
-        try {
-            // Make sure the camera (or its subject) stands still.
-            waitForCompletion(CompletionType.WaitForStillstand);
+        try (Span span = CycleTimeProfiler.span(Category.Settle)) {
+            Map<String, Object> globals = new HashMap<>();
+            globals.put("camera", this);
+            Configuration.get().getScripting().on("Camera.BeforeSettle", globals);
+            Logger.trace("Camera.BeforeSettle时间:" + System.currentTimeMillis());
+            try {
+                // Make sure the camera (or its subject) stands still.
+                waitForCompletion(CompletionType.WaitForStillstand);
 
-            if (settleMethod == null) {
-                // Method undetermined, probably created a new camera (no @Commit handler)
-                settleMethod = SettleMethod.FixedTime;
-            }
-            if (settleMethod == SettleMethod.FixedTime) {
-                try {
-                    Thread.sleep(getSettleTimeMs());
-                } catch (Exception e) {
+                if (settleMethod == null) {
+                    // Method undetermined, probably created a new camera (no @Commit handler)
+                    settleMethod = SettleMethod.FixedTime;
+                }
+                if (settleMethod == SettleMethod.FixedTime) {
+                    try {
+                        NanosecondTime.sleep(getSettleTimeMs());
+                    } catch (Exception e) {
 
+                    }
+                    return capture();
+                } else {
+                    return autoSettleAndCapture(settleOption == SettleOption.SettleFullArea ? 0 : settleMaskCircle);
                 }
-                return capture();
-            } else {
-                return autoSettleAndCapture(settleOption == SettleOption.SettleFullArea ? 0 : settleMaskCircle);
+            } finally {
+                Logger.trace("Camera.AfterSettle:" + System.currentTimeMillis());
+                Configuration.get().getScripting().on("Camera.AfterSettle", globals);
             }
-        } finally {
-            Logger.trace("Camera.AfterSettle:" + System.currentTimeMillis());
-            Configuration.get().getScripting().on("Camera.AfterSettle", globals);
         }
     }
 
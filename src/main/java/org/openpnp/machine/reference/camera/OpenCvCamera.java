@@ -30,6 +30,7 @@ import org.opencv.videoio.Videoio;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.camera.wizards.OpenCvCameraConfigurationWizard;
 import org.openpnp.spi.PropertySheetHolder;
+import org.openpnp.util.ImageBufferPool;
 import org.openpnp.util.OpenCvUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -57,6 +58,13 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
     private VideoCapture fg = new VideoCapture();
     private boolean dirty = false;
 
+    /**
+     * Size and type of the last frame, so the next one is read into a pooled Mat that fits.
+     */
+    private volatile int frameRows;
+    private volatile int frameCols;
+    private volatile int frameType;
+
     public OpenCvCamera() {}
 
     @Override
@@ -64,18 +72,23 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
         if (! ensureOpen()) {
             return null;
         }
-        Mat mat = new Mat();
+        Mat mat = frameRows > 0
+                ? ImageBufferPool.get().leaseMat(frameRows, frameCols, frameType)
+                : new Mat();
         try {
             if (!fg.read(mat)) {
                 return null;
             }
+            frameRows = mat.rows();
+            frameCols = mat.cols();
+            frameType = mat.type();
             return OpenCvUtils.toBufferedImage(mat);
         }
         catch (Exception e) {
             return null;
         }
         finally {
-            mat.release();
+            ImageBufferPool.get().release(mat);
         }
     }
 
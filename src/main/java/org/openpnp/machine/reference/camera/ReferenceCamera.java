@@ -25,6 +25,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.AbstractAction;
@@ -68,6 +69,7 @@ import org.openpnp.spi.FocusProvider;
 import org.openpnp.spi.Head;
 import org.openpnp.spi.Machine;
 import org.openpnp.util.Collect;
+import org.openpnp.util.ImageBufferPool;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.SimpleGraph;
 import org.openpnp.util.VisionUtils;
@@ -187,6 +189,14 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
     private Mat undistortionMap2;
     private Mat lut;
 
+    /**
+     * The fixed point maps of the fused transforms, see {@link #fusedRemap(Mat)}, and the size and settings they
+     * were built for.
+     */
+    private Mat fusedMap1;
+    private Mat fusedMap2;
+    private List<Object> fusedMapKey;
+
     private LensCalibration lensCalibration;
 
     private Actuator lightActuator;
@@ -580,13 +590,13 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
                 //Skip all the old style image transforms and distortion corrections except for 
                 //deinterlacing, cropping, and white balancing
                 if (isDeinterlaced() || isCropped() || isWhiteBalanced() || advancedCalibration.isEnabled()) {
-                    Mat mat = OpenCvUtils.toMat(image);
+                    Mat mat = OpenCvUtils.toMat(image, leaseMat(image));
                     mat = deinterlace(mat);
-                    mat = crop(mat);
+                    // Crop and undistort in one pass.
+                    mat = fusedRemap(mat);
                     mat = whiteBalance(mat);
-                    mat = advancedUndistort(mat);
                     image = OpenCvUtils.toBufferedImage(mat);
-                    mat.release();
+                    ImageBufferPool.get().release(mat);
                 }
             }
             // Old style of image transforms and distortion correction
@@ -602,29 +612,39 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
                 || isFlipped()
                 || isWhiteBalanced()) {
 
-                Mat mat = OpenCvUtils.toMat(image);
+                Mat mat = OpenCvUtils.toMat(image, leaseMat(image));
 
                 mat = deinterlace(mat);
 
-                mat = crop(mat);
+                if (isCalibrating()) {
+                    // The lens calibration needs the image as it comes from the camera, so apply the
+                    // transforms one by one, see also transformOneByOne().
+                    mat = crop(mat);
+
+                    mat = whiteBalance(mat);
 
-                mat = whiteBalance(mat);
+                    mat = calibrate(mat);
 
-                mat = calibrate(mat);
+                    mat = undistort(mat);
 
-                mat = undistort(mat);
+                    // apply affine transformations
+                    mat = scale(mat);
 
-                // apply affine transformations
-                mat = scale(mat);
+                    mat = rotate(mat);
 
-                mat = rotate(mat);
+                    mat = offset(mat);
 
-                mat = offset(mat);
+                    mat = flip(mat);
+                }
+                else {
+                    // Crop, undistort, scale, rotate, offset and flip in one pass.
+                    mat = fusedRemap(mat);
 
-                mat = flip(mat);
+                    mat = whiteBalance(mat);
+                }
 
                 image = OpenCvUtils.toBufferedImage(mat);
-                mat.release();
+                ImageBufferPool.get().release(mat);
             }
             if (image != null) {
                 // save the new image dimensions
@@ -653,25 +673,254 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         return super.getUnitsPerPixel(viewingPlaneZ);
     }
 
-    private synchronized Mat advancedUndistort(Mat mat) {
-        if (!advancedCalibration.isEnabled()) {
-            return mat;
+    /**
+     * Leases a Mat for the conversion of the captured image, so the transforms reuse it from frame to frame.
+     *
+     * @param image
+     * @return
+     */
+    private Mat leaseMat(BufferedImage image) {
+        return ImageBufferPool.get().leaseMat(image.getHeight(), image.getWidth(),
+                image.getType() == BufferedImage.TYPE_BYTE_GRAY ? CvType.CV_8UC1 : CvType.CV_8UC3);
+    }
+
+    /**
+     * Applies the crop, undistortion, scale, rotation, offset and flip transforms in a single remap, instead of
+     * one pass per transform. With advanced calibration only crop and undistortion apply. The combined map is
+     * rebuilt when the image size or a setting changes, and when the calibration cache is cleared.
+     *
+     * @param mat
+     * @return
+     */
+    synchronized Mat fusedRemap(Mat mat) {
+        boolean advanced = advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings();
+        boolean undistorted = advanced ? advancedCalibration.isEnabled() : isUndistorted();
+        boolean transformed = !advanced && (isScaled() || isRotated() || isOffset() || isFlipped());
+        if (!undistorted && !transformed) {
+            // Nothing to fuse, the crop alone is a plain copy.
+            return crop(mat);
         }
-        Mat dst = mat.clone();
-        if (undistortionMap1 == null || undistortionMap2 == null) {
-            if (undistortionMap1 == null) {
-                undistortionMap1 = new Mat();
-            }
-            if (undistortionMap2 == null) {
-                undistortionMap2 = new Mat();
+        List<Object> key = Arrays.asList(advanced, undistorted, mat.cols(), mat.rows(), cropWidth, cropHeight,
+                scaleWidth, scaleHeight, rotation, offsetX, offsetY, flipX, flipY);
+        if (fusedMap1 == null || !key.equals(fusedMapKey)) {
+            initFusedMaps(mat.size(), advanced, undistorted);
+            fusedMapKey = key;
+        }
+        Mat dst = ImageBufferPool.get().leaseMat(fusedMap1.rows(), fusedMap1.cols(), mat.type());
+        Imgproc.remap(mat, dst, fusedMap1, fusedMap2, Imgproc.INTER_LINEAR);
+        ImageBufferPool.get().release(mat);
+        return dst;
+    }
+
+    /**
+     * Applies the same transforms as {@link #fusedRemap(Mat)}, but one by one, as when calibrating.
+     *
+     * @param mat
+     * @return
+     */
+    synchronized Mat transformOneByOne(Mat mat) {
+        mat = crop(mat);
+        mat = undistort(mat);
+        mat = scale(mat);
+        mat = rotate(mat);
+        mat = offset(mat);
+        mat = flip(mat);
+        return mat;
+    }
+
+    /**
+     * Builds the fused maps, by tracing each target pixel back through the flip, offset, rotation, scale,
+     * undistortion and crop transforms, i.e. in the reverse order of the one by one transforms.
+     *
+     * @param size
+     * @param advanced
+     * @param undistorted
+     */
+    private void initFusedMaps(Size size, boolean advanced, boolean undistorted) {
+        releaseFusedMaps();
+        // Crop, see crop().
+        int width = (int) size.width;
+        int height = (int) size.height;
+        int cropX = 0;
+        int cropY = 0;
+        if (isCropped()) {
+            int cw = (cropWidth != 0 && cropWidth < width) ? cropWidth : width;
+            int ch = (cropHeight != 0 && cropHeight < height) ? cropHeight : height;
+            cropX = (int) ((size.width / 2) - (cw / 2));
+            cropY = (int) ((size.height / 2) - (ch / 2));
+            width = cw;
+            height = ch;
+        }
+        int croppedWidth = width;
+        int croppedHeight = height;
+        // Undistort, see undistort(). The maps may be stale for another size, so always recompute them.
+        float[] undistortX = null;
+        float[] undistortY = null;
+        if (undistorted) {
+            clearUndistortionMaps();
+            initUndistortionMaps(new Size(width, height), advanced);
+            width = undistortionMap1.cols();
+            height = undistortionMap1.rows();
+            undistortX = new float[width*height];
+            undistortY = new float[width*height];
+            undistortionMap1.get(0, 0, undistortX);
+            undistortionMap2.get(0, 0, undistortY);
+        }
+        int undistortedWidth = width;
+        int undistortedHeight = height;
+        // Scale, see scale().
+        boolean scaled = !advanced && isScaled();
+        if (scaled) {
+            width = scaleWidth;
+            height = scaleHeight;
+        }
+        double scaleX = (double) undistortedWidth/width;
+        double scaleY = (double) undistortedHeight/height;
+        // Rotate, see rotate().
+        double[] rotationInverse = null;
+        if (!advanced && isRotated()) {
+            Point center = new Point(width / 2D, height / 2D);
+            Mat mapMatrix = Imgproc.getRotationMatrix2D(center, rotation, 1.0);
+            Rect bbox = new RotatedRect(center, new Size(width, height), rotation).boundingRect();
+            mapMatrix.put(0, 2, mapMatrix.get(0, 2)[0] + bbox.width / 2D - center.x);
+            mapMatrix.put(1, 2, mapMatrix.get(1, 2)[0] + bbox.height / 2D - center.y);
+            Mat inverseMatrix = new Mat();
+            Imgproc.invertAffineTransform(mapMatrix, inverseMatrix);
+            rotationInverse = new double[6];
+            inverseMatrix.get(0, 0, rotationInverse);
+            inverseMatrix.release();
+            mapMatrix.release();
+            width = bbox.width;
+            height = bbox.height;
+        }
+        // Offset and flip keep the size, see offset() and flip().
+        boolean offset = !advanced && isOffset();
+        boolean flippedX = !advanced && flipX;
+        boolean flippedY = !advanced && flipY;
+
+        // Pixels that trace back to outside the undistorted or the cropped image must get the border color,
+        // rather than pixels from beyond the crop.
+        final float outside = -1000;
+        // Tolerate rounding errors of the transforms, well below the fixed point resolution of the maps.
+        final double eps = 1e-6;
+        float[] mapX = new float[width*height];
+        float[] mapY = new float[width*height];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                double u = x;
+                double v = y;
+                if (flippedY) {
+                    u = width - 1 - u;
+                }
+                if (flippedX) {
+                    v = height - 1 - v;
+                }
+                if (offset) {
+                    u -= offsetX;
+                    v -= offsetY;
+                }
+                if (rotationInverse != null) {
+                    double ru = rotationInverse[0]*u + rotationInverse[1]*v + rotationInverse[2];
+                    double rv = rotationInverse[3]*u + rotationInverse[4]*v + rotationInverse[5];
+                    u = ru;
+                    v = rv;
+                }
+                if (scaled) {
+                    // Like resize(), repeat the edge pixels within the scaled image.
+                    boolean inside = u >= 0 && v >= 0 && u <= scaleWidth - 1 && v <= scaleHeight - 1;
+                    u = (u + 0.5)*scaleX - 0.5;
+                    v = (v + 0.5)*scaleY - 0.5;
+                    if (inside) {
+                        u = Math.max(0, Math.min(u, undistortedWidth - 1));
+                        v = Math.max(0, Math.min(v, undistortedHeight - 1));
+                    }
+                }
+                if (u < -eps || v < -eps || u > undistortedWidth - 1 + eps || v > undistortedHeight - 1 + eps) {
+                    mapX[i] = outside;
+                    mapY[i] = outside;
+                    continue;
+                }
+                if (undistortX != null) {
+                    // Bilinear interpolation of the undistortion maps.
+                    int x0 = (int) u;
+                    int y0 = (int) v;
+                    int x1 = Math.min(x0 + 1, undistortedWidth - 1);
+                    int y1 = Math.min(y0 + 1, undistortedHeight - 1);
+                    double fx = u - x0;
+                    double fy = v - y0;
+                    int i00 = y0*undistortedWidth + x0;
+                    int i01 = y0*undistortedWidth + x1;
+                    int i10 = y1*undistortedWidth + x0;
+                    int i11 = y1*undistortedWidth + x1;
+                    double uu = (undistortX[i00]*(1 - fx) + undistortX[i01]*fx)*(1 - fy)
+                            + (undistortX[i10]*(1 - fx) + undistortX[i11]*fx)*fy;
+                    double vv = (undistortY[i00]*(1 - fx) + undistortY[i01]*fx)*(1 - fy)
+                            + (undistortY[i10]*(1 - fx) + undistortY[i11]*fx)*fy;
+                    u = uu;
+                    v = vv;
+                    if (u < -eps || v < -eps || u > croppedWidth - 1 + eps || v > croppedHeight - 1 + eps) {
+                        mapX[i] = outside;
+                        mapY[i] = outside;
+                        continue;
+                    }
+                }
+                mapX[i] = (float) (u + cropX);
+                mapY[i] = (float) (v + cropY);
             }
-            advancedCalibration.initUndistortRectifyMap(mat.size(),
+        }
+        Mat mapXMat = new Mat(height, width, CvType.CV_32FC1);
+        Mat mapYMat = new Mat(height, width, CvType.CV_32FC1);
+        mapXMat.put(0, 0, mapX);
+        mapYMat.put(0, 0, mapY);
+        fusedMap1 = new Mat();
+        fusedMap2 = new Mat();
+        Imgproc.convertMaps(mapXMat, mapYMat, fusedMap1, fusedMap2, CvType.CV_16SC2);
+        mapXMat.release();
+        mapYMat.release();
+    }
+
+    private void releaseFusedMaps() {
+        if (fusedMap1 != null) {
+            fusedMap1.release();
+            fusedMap1 = null;
+        }
+        if (fusedMap2 != null) {
+            fusedMap2.release();
+            fusedMap2 = null;
+        }
+        fusedMapKey = null;
+    }
+
+    private void initUndistortionMaps(Size size, boolean advanced) {
+        if (undistortionMap1 != null && undistortionMap2 != null) {
+            return;
+        }
+        clearUndistortionMaps();
+        undistortionMap1 = new Mat();
+        undistortionMap2 = new Mat();
+        if (advanced) {
+            advancedCalibration.initUndistortRectifyMap(size,
                     undistortionMap1, undistortionMap2);
         }
-        Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
-        mat.release();
+        else {
+            Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
+            Calib3d.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
+                    calibration.getDistortionCoefficientsMat(), rectification,
+                    calibration.getCameraMatrixMat(), size, CvType.CV_32FC1, undistortionMap1,
+                    undistortionMap2);
+            rectification.release();
+        }
+    }
 
-        return dst;
+    private void clearUndistortionMaps() {
+        if (undistortionMap1 != null) {
+            undistortionMap1.release();
+            undistortionMap1 = null;
+        }
+        if (undistortionMap2 != null) {
+            undistortionMap2.release();
+            undistortionMap2 = null;
+        }
     }
 
     private Mat whiteBalance(Mat mat) {
@@ -1082,16 +1331,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             return mat;
         }
 
-        if (undistortionMap1 == null || undistortionMap2 == null) {
-            undistortionMap1 = new Mat();
-            undistortionMap2 = new Mat();
-            Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
-            Calib3d.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
-                    calibration.getDistortionCoefficientsMat(), rectification,
-                    calibration.getCameraMatrixMat(), mat.size(), CvType.CV_32FC1, undistortionMap1,
-                    undistortionMap2);
-            rectification.release();
-        }
+        initUndistortionMaps(mat.size(), false);
 
         Mat dst = mat.clone();
         Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
@@ -1183,14 +1423,8 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
 
     public synchronized void clearCalibrationCache() {
         // Clear the calibration cache
-        if (undistortionMap1 != null) {
-            undistortionMap1.release();
-            undistortionMap1 = null;
-        }
-        if (undistortionMap2 != null) {
-            undistortionMap2.release();
-            undistortionMap2 = null;
-        }
+        clearUndistortionMaps();
+        releaseFusedMaps();
     }
 
     public void startCalibration(CalibrationCallback callback) {
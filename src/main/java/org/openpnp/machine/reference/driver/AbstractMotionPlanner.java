@@ -22,6 +22,10 @@
 package org.openpnp.machine.reference.driver;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -42,6 +46,7 @@ import org.openpnp.model.Location;
 import org.openpnp.model.Motion;
 import org.openpnp.model.Motion.MotionOption;
 import org.openpnp.model.Motion.MoveToCommand;
+import org.openpnp.model.MotionTimeline;
 import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Axis;
 import org.openpnp.spi.Axis.Type;
@@ -53,6 +58,9 @@ import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.Locatable.LocationOption;
 import org.openpnp.spi.MotionPlanner;
 import org.openpnp.spi.PropertySheetHolder;
+import org.openpnp.util.CycleTimeProfiler;
+import org.openpnp.util.CycleTimeProfiler.Category;
+import org.openpnp.util.CycleTimeProfiler.Span;
 import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.Utils2D;
 import org.pmw.tinylog.Logger;
@@ -77,10 +85,17 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     @Attribute(required = false)
     private double maximumPlanHistory = 60; // s
 
+    @Attribute(required = false)
+    private boolean parallelDriverDispatch = false;
+
+    private ExecutorService driverDispatchExecutor;
+    // Separate from the planner monitor, so releasing does not wait for a motion plan in progress.
+    private final Object driverDispatchLock = new Object();
+
     private ReferenceMachine machine;
 
     protected LinkedList<Motion> motionCommands = new LinkedList<>();
-    protected TreeMap<Double, Motion> motionPlan = new TreeMap<Double, Motion>();
+    protected MotionTimeline motionPlan = new MotionTimeline();
 
     private AxesLocation lastDirectionalBacklashOffset = new AxesLocation();
     private List<Driver> lastPlannedDrivers = new ArrayList<Driver>();
@@ -271,19 +286,12 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
                 currentLocation
                         .put(axesLocation);
 
-        LinkedHashMap<Axis, Double> newLocationLocation = newLocation.getLocation();
-        for (Map.Entry<Axis, Double> entry : newLocationLocation.entrySet()) {
-            Axis axis = entry.getKey(); // 获取Axis对象
-            Double value = entry.getValue(); // 获取对应的Double值
+        for (Axis axis : newLocation.getAxes()) {
             if (axis.getName().equals("B")) {
                 // 执行操作，例如将Double值增加10.0
-                value += rotateB;
+                newLocation = newLocation.put(new AxesLocation(axis, newLocation.getCoordinate(axis) + rotateB));
             }
-
-            // 更新LinkedHashMap中的值
-            newLocationLocation.put(axis, value);
         }
-        newLocation.setLocation(newLocationLocation);
 
 
         // Create the motion commands needed for backlash compensation if enabled.
@@ -500,15 +508,30 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
      * @throws Exception
      */
     protected synchronized void executeMotionPlan(CompletionType completionType) throws Exception {
-        if (motionCommands.isEmpty()) {
+        executeMotionPlan(completionType, 0);
+    }
+
+    /**
+     * Plan and then execute the pending motion commands, except for the latest heldBack ones. These are kept 
+     * pending, to be planned together with the following motion commands. 
+     *
+     * @param completionType
+     * @param heldBack
+     * @throws Exception
+     */
+    protected synchronized void executeMotionPlan(CompletionType completionType, int heldBack) throws Exception {
+        if (motionCommands.size() <= heldBack) {
             return;
         }
 
         // Put the recorded motion commands into an execution plan. 
-        List<Motion> executionPlan = motionCommands;
+        LinkedList<Motion> executionPlan = motionCommands;
 
-        // The motion commands are reset.
+        // The motion commands are reset, except for the held back ones.
         motionCommands = new LinkedList<>();
+        for (int i = 0; i < heldBack; i++) {
+            motionCommands.addFirst(executionPlan.removeLast());
+        }
 
         // Apply any optimization to the execution plan. This is where advanced MotionPlanner sub-classes will shine.
         optimizeExecutionPlan(executionPlan, completionType);
@@ -516,9 +539,10 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         // Now execute the plan against the drivers.
         // We also record it into the real-time motionPlan to enable motion prediction and simulation. 
         double t = NanosecondTime.getRuntimeSeconds();
-        if (motionPlan.isEmpty() == false && motionPlan.lastKey() > t) {
+        Double lastTime = motionPlan.getLastTime();
+        if (lastTime != null && lastTime > t) {
             // Append to a plan that is still running. 
-            t = motionPlan.lastKey();
+            t = lastTime;
         }
         ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
         List<Head> movedHeads = new ArrayList<>();
@@ -527,7 +551,7 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
             if (!plannedMotion.hasOption(MotionOption.Stillstand)) {
                 // Put into timed plan.
                 double dt = plannedMotion.getTime();
-                // Note, all-virtual moves can have dt == 0.0, so we take a nano-second, to make sure a new Map entry is created 
+                // Note, all-virtual moves can have dt == 0.0, so we take a nano-second, to make sure the time is ascending 
                 // in the motionPlan.
                 t += Math.max(dt, 1e-9);
                 plannedMotion.setPlannedTime1(t);
@@ -574,9 +598,13 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     protected boolean executeMoveTo(ReferenceMachine machine, ReferenceHeadMountable hm,
                                     Motion plannedMotion, boolean firstAfterCoordination) throws Exception {
         AxesLocation motionSegment = plannedMotion.getLocation0().motionSegmentTo(plannedMotion.getLocation1());
+        List<Driver> drivers = motionSegment.getAxesDrivers(machine);
+        if (parallelDriverDispatch && drivers.size() > 1) {
+            return executeMoveToInParallel(hm, plannedMotion, drivers, firstAfterCoordination);
+        }
         // Note, this loop will be empty if the motion is empty, i.e. if it only contains VirtualAxis movement.
         boolean firstDriver = true;
-        for (Driver driver : motionSegment.getAxesDrivers(machine)) {
+        for (Driver driver : drivers) {
             for (Motion.MoveToCommand moveToCommand : plannedMotion
                     .interpolatedMoveToCommands(driver, isInterpolationRetiming())) {
                 driver.moveTo(hm, moveToCommand);
@@ -591,6 +619,91 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         return !firstDriver;
     }
 
+    /**
+     * Execute the driver moveTo commands of a motion that involves multiple drivers concurrently, one thread per
+     * driver, so the time spent in communicating with the controllers overlaps. The motion is completely 
+     * dispatched to all the drivers, before this method returns, so the sequence of motions and any interlock
+     * and coordination across drivers are the same as with the sequential execution.
+     * 
+     * @param hm
+     * @param plannedMotion
+     * @param drivers
+     * @param firstAfterCoordination
+     * @return true if a driver move was executed.
+     * @throws Exception
+     */
+    protected boolean executeMoveToInParallel(ReferenceHeadMountable hm, Motion plannedMotion, 
+            List<Driver> drivers, boolean firstAfterCoordination) throws Exception {
+        // Interpolate on the calling thread, the Motion is not thread-safe.
+        List<List<Motion.MoveToCommand>> driverCommands = new ArrayList<>();
+        for (Driver driver : drivers) {
+            driverCommands.add(plannedMotion.interpolatedMoveToCommands(driver, isInterpolationRetiming()));
+        }
+        List<Future<Void>> dispatches = new ArrayList<>();
+        for (int i = 0; i < drivers.size(); i++) {
+            Driver driver = drivers.get(i);
+            List<Motion.MoveToCommand> moveToCommands = driverCommands.get(i);
+            dispatches.add(getDriverDispatchExecutor().submit(() -> {
+                for (Motion.MoveToCommand moveToCommand : moveToCommands) {
+                    driver.moveTo(hm, moveToCommand);
+                }
+                return null;
+            }));
+        }
+        // Join all the drivers, before the next motion can be dispatched. 
+        Exception error = null;
+        for (Future<Void> dispatch : dispatches) {
+            try {
+                dispatch.get();
+            }
+            catch (ExecutionException e) {
+                if (error == null) {
+                    error = (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        // Record the diagnostics in the same order as with sequential execution.
+        boolean firstDriver = true;
+        for (int i = 0; i < drivers.size(); i++) {
+            Driver driver = drivers.get(i);
+            for (Motion.MoveToCommand moveToCommand : driverCommands.get(i)) {
+                try {
+                    recordDiagnostics(plannedMotion, moveToCommand, driver, firstAfterCoordination, firstDriver);
+                } catch (Exception e) {
+                    Logger.error(driver.getName() + " diagnostics failed: {}", e);
+                }
+            }
+            firstDriver = false;
+        }
+        return !firstDriver;
+    }
+
+    protected ExecutorService getDriverDispatchExecutor() {
+        synchronized (driverDispatchLock) {
+            if (driverDispatchExecutor == null) {
+                driverDispatchExecutor = Executors.newCachedThreadPool((runnable) -> {
+                    Thread thread = new Thread(runnable, getClass().getSimpleName()+" driver dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return driverDispatchExecutor;
+        }
+    }
+
+    @Override
+    public void release() {
+        synchronized (driverDispatchLock) {
+            if (driverDispatchExecutor != null) {
+                driverDispatchExecutor.shutdown();
+                driverDispatchExecutor = null;
+            }
+        }
+    }
+
     /**
      * Sub.classes with diagnostics can override this method to record (interpolated) motion.
      *
@@ -789,12 +902,12 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     }
 
     @Override
-    public synchronized Motion getMomentaryMotion(double time) {
-        Map.Entry<Double, Motion> entry1 = motionPlan.higherEntry(time);
-        if (entry1 != null) {
+    public Motion getMomentaryMotion(double time) {
+        // The motionPlan is lock-free for readers, so camera threads never contend with the planner.
+        Motion motion1 = motionPlan.getMotionAfter(time);
+        if (motion1 != null) {
             // Return the motion.
-            Motion motion = entry1.getValue();
-            return motion;
+            return motion1;
         } else {
             // Plan empty or machine stopped before this time, just get the current axes location.
             AxesLocation currentLocation = new AxesLocation(getMachine());
@@ -812,50 +925,46 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     }
 
     @Override
-    public synchronized Motion getLastMotion() {
-        for (Map.Entry<Double, Motion> entry : motionPlan.descendingMap().entrySet()) {
-            Motion motion = entry.getValue();
-            if (!motion.getLocation0().matches(motion.getLocation1())) {
-                // Got a real move.
-                return motion;
-            }
-        }
-        return null;
+    public Motion getLastMotion() {
+        // Get the last real move.
+        return motionPlan.getLastMotion((motion) -> !motion.getLocation0().matches(motion.getLocation1()));
     }
 
     @Override
     public void waitForCompletion(HeadMountable hm, CompletionType completionType)
             throws Exception {
-        // Now is high time to plan and execute the queued motion commands. 
-        executeMotionPlan(completionType);
-
-        if (completionType.isEnforcingStillstand()) {
-            // Wait for the drivers.
-            waitForDriverCompletion(hm, completionType);
-            // The drivers might have reported new coordinates back. Propagate to planned axis coordinates, 
-            // applying the backlash offset in reverse.
-            AxesLocation reportedLocation = new AxesLocation(getMachine().getAxes(),
-                    (axis) -> ((axis instanceof ControllerAxis) ?
-                            ((ControllerAxis) axis).getDriverLengthCoordinate()
-                                    .subtract(lastDirectionalBacklashOffset.getLengthCoordinate(axis)) :
-                            null));
-            AxesLocation currentLocation = new AxesLocation(reportedLocation.getControllerAxes(),
-                    (axis) -> axis.getLengthCoordinate());
-            AxesLocation diff = reportedLocation.motionSegmentTo(currentLocation);
-            if (!diff.matches(AxesLocation.zero)) {
-                Logger.debug("Reported location changes current location from " + currentLocation + " to " + reportedLocation);
-                // Reported position has in deed changed.
-                reportedLocation.setToCoordinates();
-                // Notify heads.
-                for (Head movedHead : getMachine().getHeads()) {
-                    getMachine().fireMachineHeadActivity(movedHead);
+        try (Span span = CycleTimeProfiler.span(Category.Motion)) {
+            // Now is high time to plan and execute the queued motion commands. 
+            executeMotionPlan(completionType);
+
+            if (completionType.isEnforcingStillstand()) {
+                // Wait for the drivers.
+                waitForDriverCompletion(hm, completionType);
+                // The drivers might have reported new coordinates back. Propagate to planned axis coordinates, 
+                // applying the backlash offset in reverse.
+                AxesLocation reportedLocation = new AxesLocation(getMachine().getAxes(),
+                        (axis) -> ((axis instanceof ControllerAxis) ?
+                                ((ControllerAxis) axis).getDriverLengthCoordinate()
+                                        .subtract(lastDirectionalBacklashOffset.getLengthCoordinate(axis)) :
+                                null));
+                AxesLocation currentLocation = new AxesLocation(reportedLocation.getControllerAxes(),
+                        (axis) -> axis.getLengthCoordinate());
+                AxesLocation diff = reportedLocation.motionSegmentTo(currentLocation);
+                if (!diff.matches(AxesLocation.zero)) {
+                    Logger.debug("Reported location changes current location from " + currentLocation + " to " + reportedLocation);
+                    // Reported position has in deed changed.
+                    reportedLocation.setToCoordinates();
+                    // Notify heads.
+                    for (Head movedHead : getMachine().getHeads()) {
+                        getMachine().fireMachineHeadActivity(movedHead);
+                    }
                 }
             }
+            // Apply the rotation axes wrap-around handling.
+            wrapUpCoordinates(hm);
+            // Remove old stuff.
+            clearMotionPlanOlderThan(NanosecondTime.getRuntimeSeconds() - maximumPlanHistory);
         }
-        // Apply the rotation axes wrap-around handling.
-        wrapUpCoordinates(hm);
-        // Remove old stuff.
-        clearMotionPlanOlderThan(NanosecondTime.getRuntimeSeconds() - maximumPlanHistory);
     }
 
     /**
@@ -932,16 +1041,24 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     }
 
     @Override
-    public synchronized void clearMotionPlanOlderThan(double time) {
-        while (motionPlan.isEmpty() == false && motionPlan.firstKey() < time) {
-            motionPlan.remove(motionPlan.firstKey());
-        }
+    public void clearMotionPlanOlderThan(double time) {
+        motionPlan.clearOlderThan(time);
     }
 
     public boolean isInterpolationRetiming() {
         return false;
     }
 
+    public boolean isParallelDriverDispatch() {
+        return parallelDriverDispatch;
+    }
+
+    public void setParallelDriverDispatch(boolean parallelDriverDispatch) {
+        Object oldValue = this.parallelDriverDispatch;
+        this.parallelDriverDispatch = parallelDriverDispatch;
+        firePropertyChange("parallelDriverDispatch", oldValue, parallelDriverDispatch);
+    }
+
     @Override
     public PropertySheetHolder[] getChildPropertySheetHolders() {
         return null;
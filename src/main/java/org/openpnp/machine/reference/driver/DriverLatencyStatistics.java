@@ -0,0 +1,125 @@
+package org.openpnp.machine.reference.driver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.EnumMap;
+
+import org.openpnp.util.LatencyHistogram;
+
+/**
+ * Per-driver latency statistics of the controller link. Each {@link Metric} is recorded into a lock-free
+ * {@link LatencyHistogram}, so recording can stay enabled on the communication hot paths.
+ */
+public class DriverLatencyStatistics {
+    public enum Metric {
+        /**
+         * Time spent in sendCommand(), including any blocking on the command queue.
+         */
+        SendCommand(true),
+        /**
+         * Time from writing a command to the controller, until its confirmation is received.
+         */
+        CommandConfirmation(true),
+        /**
+         * Time from requesting a position report, until it is received.
+         */
+        ReportedLocation(true),
+        /**
+         * Time waiting for the command queue to be drained and confirmed.
+         */
+        DrainCommandQueue(true),
+        /**
+         * Time the writer thread was stalled, waiting for confirmations before it could send the next command.
+         */
+        WriterStall(true),
+        /**
+         * Number of commands already waiting in the command queue, when a new command is queued.
+         */
+        CommandQueueDepth(false);
+
+        private final boolean nanoseconds;
+
+        Metric(boolean nanoseconds) {
+            this.nanoseconds = nanoseconds;
+        }
+
+        /**
+         * @return true if the metric is a time in nanoseconds, false if it is a plain count.
+         */
+        public boolean isNanoseconds() {
+            return nanoseconds;
+        }
+    }
+
+    private final EnumMap<Metric, LatencyHistogram> histograms = new EnumMap<>(Metric.class);
+
+    public DriverLatencyStatistics() {
+        for (Metric metric : Metric.values()) {
+            histograms.put(metric, new LatencyHistogram());
+        }
+    }
+
+    public LatencyHistogram getHistogram(Metric metric) {
+        return histograms.get(metric);
+    }
+
+    public void record(Metric metric, long value) {
+        histograms.get(metric).record(value);
+    }
+
+    /**
+     * Records the nanoseconds elapsed since t0, as obtained from {@link System#nanoTime()}.
+     *
+     * @param metric
+     * @param t0
+     */
+    public void recordSince(Metric metric, long t0) {
+        histograms.get(metric).recordSince(t0);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return A plain text table of the statistics, times in milliseconds.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-20s %10s %10s %10s %10s %10s %10s %10s\n",
+                "Metric", "Count", "Mean", "50%", "90%", "99%", "99.9%", "Max"));
+        for (Metric metric : Metric.values()) {
+            LatencyHistogram histogram = histograms.get(metric);
+            double scale = metric.isNanoseconds() ? 1e-6 : 1;
+            report.append(String.format("%-20s %10d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f\n",
+                    metric,
+                    histogram.getCount(),
+                    histogram.getMean()*scale,
+                    histogram.getValueAtPercentile(50)*scale,
+                    histogram.getValueAtPercentile(90)*scale,
+                    histogram.getValueAtPercentile(99)*scale,
+                    histogram.getValueAtPercentile(99.9)*scale,
+                    histogram.getMax()*scale));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Appends a time-stamped report to the given file.
+     *
+     * @param file
+     * @param title
+     * @throws IOException
+     */
+    public void dump(File file, String title) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            writer.println(title+" "+new Date());
+            writer.println(getReport());
+        }
+    }
+}
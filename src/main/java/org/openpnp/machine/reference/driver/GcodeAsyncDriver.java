@@ -22,10 +22,13 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
+import org.openpnp.machine.reference.driver.DriverLatencyStatistics.Metric;
 import org.openpnp.machine.reference.driver.wizards.GcodeAsyncDriverSettings;
 import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
@@ -94,6 +97,15 @@ public class GcodeAsyncDriver extends GcodeDriver {
     @Attribute(required=false)
     private boolean confirmationFlowControl = true;
 
+    @Attribute(required=false)
+    private int confirmationWindowLines = 1;
+
+    @Attribute(required=false)
+    private int confirmationWindowBytes = 0;
+
+    @Attribute(required=false)
+    private int maxWriteBatchBytes = 1024;
+
     @Attribute(required=false)
     private boolean reportedLocationConfirmation = true;
 
@@ -121,6 +133,7 @@ public class GcodeAsyncDriver extends GcodeDriver {
 
     static public class CommandLine extends Line {
         final long timeout;
+        long writeNanoTime;
 
         public CommandLine(String line, long timeout) {
             super(line);
@@ -146,6 +159,36 @@ public class GcodeAsyncDriver extends GcodeDriver {
         firePropertyChange("confirmationFlowControl", oldValue, confirmationFlowControl);
     }
 
+    public int getConfirmationWindowLines() {
+        return confirmationWindowLines;
+    }
+
+    public void setConfirmationWindowLines(int confirmationWindowLines) {
+        Object oldValue = this.confirmationWindowLines;
+        this.confirmationWindowLines = Math.max(1, confirmationWindowLines);
+        firePropertyChange("confirmationWindowLines", oldValue, this.confirmationWindowLines);
+    }
+
+    public int getConfirmationWindowBytes() {
+        return confirmationWindowBytes;
+    }
+
+    public void setConfirmationWindowBytes(int confirmationWindowBytes) {
+        Object oldValue = this.confirmationWindowBytes;
+        this.confirmationWindowBytes = Math.max(0, confirmationWindowBytes);
+        firePropertyChange("confirmationWindowBytes", oldValue, this.confirmationWindowBytes);
+    }
+
+    public int getMaxWriteBatchBytes() {
+        return maxWriteBatchBytes;
+    }
+
+    public void setMaxWriteBatchBytes(int maxWriteBatchBytes) {
+        Object oldValue = this.maxWriteBatchBytes;
+        this.maxWriteBatchBytes = Math.max(1, maxWriteBatchBytes);
+        firePropertyChange("maxWriteBatchBytes", oldValue, this.maxWriteBatchBytes);
+    }
+
     public boolean isReportedLocationConfirmation() {
         return reportedLocationConfirmation;
     }
@@ -225,13 +268,28 @@ public class GcodeAsyncDriver extends GcodeDriver {
         super.disconnectThreads();
     }
 
+    /**
+     * The WriterThread sends the queued commands to the controller. With confirmation flow control enabled, it keeps 
+     * a window of commands in flight, i.e. sent but not yet confirmed. The window is limited by the number of lines 
+     * and optionally by the number of bytes, the latter to match the receive buffer of the controller (GRBL style 
+     * "character counting"). With the default window of one line, each command waits for the confirmation of the 
+     * previous one. 
+     * 
+     * Confirmations are matched to the in-flight commands in order, i.e. the oldest command is considered confirmed 
+     * by the next confirmation received. 
+     * 
+     * If multiple commands are queued and fit into the window, they are coalesced into one write, up to 
+     * maxWriteBatchBytes.
+     */
     protected class WriterThread extends Thread {
+        private ArrayDeque<CommandLine> commandsInFlight = new ArrayDeque<>();
+        private int bytesInFlight = 0;
+        private ArrayList<String> batch = new ArrayList<>();
 
         @Override
         public void run() {
             // Get the copy that is valid for this thread. 
             LinkedBlockingQueue<CommandLine> commandQueue = GcodeAsyncDriver.this.commandQueue;
-            CommandLine lastCommand = null;
 
             while (!disconnectRequested) {
                 CommandLine command;
@@ -246,22 +304,35 @@ public class GcodeAsyncDriver extends GcodeDriver {
                     continue;
                 }
                 try {
-                    if (confirmationFlowControl && lastCommand != null) {
-                        try {
-                            // Before we can send the new command, make sure the wanted confirmation count of the last command was received.
-                            waitForConfirmation(lastCommand.toString(), lastCommand.getTimeout());
-                        }
-                        finally {
-                            // Whatever happens, never wait for this one again.
-                            lastCommand = null;
-                        }
+                    int commandBytes = getTransmittedBytes(command);
+                    if (confirmationFlowControl) {
+                        // Before we can send the new command, make sure it fits into the window, by waiting for 
+                        // the confirmations of the oldest commands in flight. A null command drains the window.
+                        awaitWindow(commandBytes, command.line == null);
+                    }
+                    else {
+                        clearWindow();
                     }
                     if (command.line != null) {
-                        // Set up the wanted confirmations for next time.
-                        lastCommand = command;
-                        receivedConfirmationsQueue.clear();
-                        getCommunications().writeLine(command.line);
-                        Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
+                        if (!confirmationFlowControl || commandsInFlight.isEmpty()) {
+                            // Set up the wanted confirmations from scratch.
+                            receivedConfirmationsQueue.clear();
+                        }
+                        batch.clear();
+                        int batchBytes = addToBatch(command, commandBytes);
+                        // Gather more queued commands into the same write, as long as they fit into the window 
+                        // without waiting.
+                        CommandLine nextCommand;
+                        while ((nextCommand = commandQueue.peek()) != null && nextCommand.line != null) {
+                            int nextCommandBytes = getTransmittedBytes(nextCommand);
+                            if (!fitsWindow(nextCommandBytes) 
+                                    || batchBytes + nextCommandBytes > maxWriteBatchBytes) {
+                                break;
+                            }
+                            commandQueue.poll();
+                            batchBytes += addToBatch(nextCommand, nextCommandBytes);
+                        }
+                        getCommunications().writeLines(batch);
                     }
                     else {
                         confirmationComplete = true;
@@ -284,6 +355,71 @@ public class GcodeAsyncDriver extends GcodeDriver {
             }
             Logger.trace("[{}] disconnectRequested, bye-bye.", getCommunications().getConnectionName());
         }
+
+        /**
+         * Wait for confirmations, until a command with the given number of bytes fits into the window. 
+         * 
+         * @param commandBytes
+         * @param drain If true, wait for all the commands in flight to be confirmed.
+         * @throws Exception
+         */
+        protected void awaitWindow(int commandBytes, boolean drain) throws Exception {
+            while (!commandsInFlight.isEmpty() 
+                    && (drain
+                    || commandsInFlight.size() >= confirmationWindowLines
+                    || (confirmationWindowBytes > 0 && bytesInFlight + commandBytes > confirmationWindowBytes))) {
+                CommandLine oldestCommand = commandsInFlight.peek();
+                long t0 = System.nanoTime();
+                try {
+                    waitForConfirmation(oldestCommand.toString(), oldestCommand.getTimeout());
+                    latencyStatistics.recordSince(Metric.WriterStall, t0);
+                    latencyStatistics.recordSince(Metric.CommandConfirmation, oldestCommand.writeNanoTime);
+                    commandsInFlight.poll();
+                    bytesInFlight -= getTransmittedBytes(oldestCommand);
+                }
+                catch (Exception e) {
+                    // Whatever happens, never wait for these again, as the confirmations are out of sync.
+                    clearWindow();
+                    throw e;
+                }
+            }
+        }
+
+        private int addToBatch(CommandLine command, int commandBytes) {
+            if (confirmationFlowControl) {
+                command.writeNanoTime = System.nanoTime();
+                commandsInFlight.add(command);
+                bytesInFlight += commandBytes;
+            }
+            batch.add(command.line);
+            Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
+            return commandBytes;
+        }
+
+        /**
+         * @param commandBytes
+         * @return true if a command with the given number of bytes can be sent without waiting for confirmations.
+         */
+        protected boolean fitsWindow(int commandBytes) {
+            if (!confirmationFlowControl) {
+                return true;
+            }
+            return commandsInFlight.size() < confirmationWindowLines
+                    && (confirmationWindowBytes <= 0 || bytesInFlight + commandBytes <= confirmationWindowBytes);
+        }
+
+        protected int getTransmittedBytes(CommandLine command) {
+            if (command.line == null) {
+                return 0;
+            }
+            return command.line.length() 
+                    + getCommunications().getLineEndingType().getLineEnding().length();
+        }
+
+        protected void clearWindow() {
+            commandsInFlight.clear();
+            bytesInFlight = 0;
+        }
     }
 
     @Override
@@ -319,12 +455,15 @@ public class GcodeAsyncDriver extends GcodeDriver {
         if (command.startsWith("$")) {
             waitForEmptyCommandQueue();
         }
+        long t0 = System.nanoTime();
         CommandLine commandLine = new CommandLine(command, timeout);
+        latencyStatistics.record(Metric.CommandQueueDepth, commandQueue.size());
         commandQueue.offer(commandLine, writerQueueTimeout, TimeUnit.MILLISECONDS);
         if (command.startsWith("$")) {
             waitForEmptyCommandQueue();
             Thread.sleep(dollarWaitTimeMilliseconds);
         }
+        latencyStatistics.recordSince(Metric.SendCommand, t0);
     }
 
     /**
@@ -387,6 +526,7 @@ public class GcodeAsyncDriver extends GcodeDriver {
         // Normal confirmation report wanted. We queue a null command to drain the queue and confirm 
         // the last real command. 
         confirmationComplete = false;
+        long t0 = System.nanoTime();
         CommandLine commandLine = new CommandLine(null, 1);
         commandQueue.offer(commandLine, writerQueueTimeout, TimeUnit.MILLISECONDS);
         while (!confirmationComplete) {
@@ -399,6 +539,7 @@ public class GcodeAsyncDriver extends GcodeDriver {
                 Logger.warn(e, getName() +" was interrupted while waiting for completion.");
             }
         }
+        latencyStatistics.recordSince(Metric.DrainCommandQueue, t0);
     }
 
     @Override
@@ -21,14 +21,17 @@ package org.openpnp.machine.reference.driver;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -47,8 +50,10 @@ import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
 import org.openpnp.machine.reference.axis.ReferenceControllerAxis.BacklashCompensationMethod;
 import org.openpnp.machine.reference.axis.ReferenceLinearTransformAxis;
 import org.openpnp.machine.reference.axis.ReferenceMappedAxis;
+import org.openpnp.machine.reference.driver.DriverLatencyStatistics.Metric;
 import org.openpnp.machine.reference.driver.wizards.GcodeDriverConsole;
 import org.openpnp.machine.reference.driver.wizards.GcodeDriverGcodes;
+import org.openpnp.machine.reference.driver.wizards.GcodeDriverLatency;
 import org.openpnp.machine.reference.driver.wizards.GcodeDriverSettings;
 import org.openpnp.machine.reference.solutions.GcodeDriverSolutions;
 import org.openpnp.model.AxesLocation;
@@ -170,6 +175,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         @ElementList(required = false, inline = true, entry = "text", data = true)
         public ArrayList<String> commands = new ArrayList<>();
 
+        /**
+         * The command compiled as a regex Pattern, cached for commands that are regexes. 
+         */
+        private Pattern pattern;
+
         public Command(String headMountableId, CommandType type, String text) {
             this.headMountableId = headMountableId;
             this.type = type;
@@ -177,6 +187,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         public void setCommand(String text) {
+            this.pattern = null;
             this.commands.clear();
             if (text != null) {
                 text = text.trim();
@@ -190,6 +201,18 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             return Joiner.on('\n').join(commands);
         }
 
+        /**
+         * @return The command compiled as a regex Pattern. The Pattern is cached until the command is changed.
+         */
+        public Pattern getPattern() {
+            Pattern pattern = this.pattern;
+            if (pattern == null) {
+                pattern = Pattern.compile(getCommand());
+                this.pattern = pattern;
+            }
+            return pattern;
+        }
+
         private Command() {
 
         }
@@ -253,6 +276,15 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     @Attribute(required = false)
     protected boolean loggingGcode;
 
+    /**
+     * Size in kilobytes (uncompressed), after which the G-code log is rotated to a new file. 0 = never.
+     */
+    @Attribute(required = false)
+    protected int loggingGcodeRotationKilobytes = 10240;
+
+    @Attribute(required = false)
+    protected boolean loggingGcodeCompressed;
+
     @Deprecated
     @Element(required = false)
     protected Location homingFiducialLocation = new Location(LengthUnit.Millimeters);
@@ -266,6 +298,12 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     @Attribute(required = false) 
     int infinityTimeoutMilliseconds = 60000; // 1 Minute is considered an "eternity" for a controller.
 
+    /**
+     * Interval in seconds, in which the latency statistics are dumped to a file, while connected. 0 = never.
+     */
+    @Attribute(required = false)
+    protected int latencyDumpIntervalSeconds = 0;
+
     @Element(required = false, data=true) 
     String detectedFirmware = null; 
 
@@ -319,12 +357,38 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     protected LinkedBlockingQueue<Line> responseQueue = new LinkedBlockingQueue<>();
     protected LinkedBlockingQueue<AxesLocation> reportedLocationsQueue = new LinkedBlockingQueue<>();
+    /**
+     * True while getReportedLocation() waits for a position report. Only then is the report converted to an 
+     * AxesLocation and queued.
+     */
+    private volatile boolean reportedLocationPending;
+    private PositionReportParser positionReportParser;
     protected LinkedBlockingQueue<Line> receivedConfirmationsQueue = new LinkedBlockingQueue<>();
 
     protected Line errorResponse;
     private boolean motionPending;
 
-    private PrintWriter gcodeLogger;
+    private volatile GcodeSessionLogger gcodeLogger;
+
+    protected final DriverLatencyStatistics latencyStatistics = new DriverLatencyStatistics();
+    private Timer latencyDumpTimer;
+
+    /**
+     * Maximum number of cached regex Patterns. Scripts can pass any regex through the driver, so the cache must 
+     * not grow without bounds.
+     */
+    private static final int MAX_CACHED_PATTERNS = 256;
+
+    /**
+     * Compiled regex Patterns used in response processing, cached by regex, least recently used evicted first. 
+     * Invalidated when commands are changed. Guarded by itself.
+     */
+    private final Map<String, Pattern> patternCache = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > MAX_CACHED_PATTERNS;
+        }
+    };
 
     @Commit
     public void commit() {
@@ -388,6 +452,42 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         sendGcode(getCommand(null, CommandType.CONNECT_COMMAND));
 
         connected = true;
+        startLatencyDump();
+    }
+
+    protected synchronized void startLatencyDump() {
+        stopLatencyDump();
+        if (latencyDumpIntervalSeconds > 0) {
+            File file;
+            try {
+                file = Configuration.get().createResourceFile(getClass(), "latency", ".txt");
+            }
+            catch (IOException e) {
+                Logger.warn(e, "Cannot create latency statistics file");
+                return;
+            }
+            long period = latencyDumpIntervalSeconds*1000L;
+            latencyDumpTimer = new Timer(getName()+" latency dump", true);
+            latencyDumpTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        latencyStatistics.dump(file, getName());
+                    }
+                    catch (IOException e) {
+                        Logger.warn(e, "Cannot write latency statistics file");
+                        cancel();
+                    }
+                }
+            }, period, period);
+        }
+    }
+
+    protected synchronized void stopLatencyDump() {
+        if (latencyDumpTimer != null) {
+            latencyDumpTimer.cancel();
+            latencyDumpTimer = null;
+        }
     }
 
     /**
@@ -402,6 +502,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         errorResponse = null;
         receivedConfirmationsQueue = new LinkedBlockingQueue<>();
         reportedLocationsQueue = new LinkedBlockingQueue<>();
+        // Axes might have been reconfigured.
+        positionReportParser = null;
     }
 
     @Override
@@ -624,13 +726,23 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         // TODO: true queued reporting. For now it is sufficient to poll one for one.
-        reportedLocationsQueue.clear();
-        sendGcode(command, -1);
-        if (timeout == -1) {
-            timeout = infinityTimeoutMilliseconds;
+        AxesLocation lastReportedLocation;
+        long t0;
+        reportedLocationPending = true;
+        try {
+            reportedLocationsQueue.clear();
+            t0 = System.nanoTime();
+            sendGcode(command, -1);
+            if (timeout == -1) {
+                timeout = infinityTimeoutMilliseconds;
+            }
+            lastReportedLocation = reportedLocationsQueue.poll(timeout, TimeUnit.MILLISECONDS);
+        }
+        finally {
+            reportedLocationPending = false;
         }
-        AxesLocation lastReportedLocation = reportedLocationsQueue.poll(timeout, TimeUnit.MILLISECONDS);
         if (lastReportedLocation != null) {
+            latencyStatistics.recordSince(Metric.ReportedLocation, t0);
             Logger.trace("{} got lastReportedLocation {}", getName(), lastReportedLocation);
             return lastReportedLocation;
         }
@@ -690,7 +802,46 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return c.getCommand();
     }
 
+    /**
+     * Get the compiled regex Pattern of a command. The Pattern is cached until the command is changed. 
+     * 
+     * @param hm
+     * @param type
+     * @return The Pattern or null if the command is not set.
+     */
+    public Pattern getCommandPattern(HeadMountable hm, CommandType type) {
+        Command c = getCommand(hm, type, true);
+        if (c == null) {
+            return null;
+        }
+        return c.getPattern();
+    }
+
+    /**
+     * Get the compiled Pattern for the given regex, cached for the lifetime of the driver, or until commands 
+     * are changed. 
+     * 
+     * @param regex
+     * @return
+     */
+    protected Pattern getPattern(String regex) {
+        synchronized (patternCache) {
+            return patternCache.computeIfAbsent(regex, (r) -> Pattern.compile(r));
+        }
+    }
+
+    /**
+     * Clears the cached regex Patterns. Must be called when commands are changed other than by 
+     * {@link #setCommand(HeadMountable, CommandType, String)}.
+     */
+    public void clearPatternCache() {
+        synchronized (patternCache) {
+            patternCache.clear();
+        }
+    }
+
     public void setCommand(HeadMountable hm, CommandType type, String text) {
+        clearPatternCache();
         Command c = getCommand(hm, type, false);
         if (text == null || text.trim().length() == 0) {
             if (c != null) {
@@ -908,8 +1059,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     }
 
     private boolean containsMatch(List<Line> responses, String regex) {
+        Pattern pattern = getPattern(regex);
         for (Line response : responses) {
-            if (response.line.matches(regex)) {
+            if (pattern.matcher(response.line).matches()) {
                 return true;
             }
         }
@@ -988,7 +1140,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 throw new Exception(String.format("Actuator \"%s\" read error: No matching responses found.", actuator.getName()));
             });
 
-            Pattern pattern = Pattern.compile(regex);
+            Pattern pattern = getPattern(regex);
             for (Line line : responses) {
                 Matcher matcher = pattern.matcher(line.getLine());
                 if (matcher.matches()) {
@@ -1033,6 +1185,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         disconnectThreads();
 
         closeGcodeLogger();
+        stopLatencyDump();
     }
 
     /**
@@ -1088,6 +1241,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             return;
         }
 
+        long t0 = System.nanoTime();
         Logger.debug("[{}] >> {}, {}", getCommunications().getConnectionName(), command, timeout);
         command = preProcessCommand(command);
         if (command.isEmpty()) {
@@ -1098,6 +1252,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         // After sending this, we want one more confirmation. 
         // TODO: true queued reporting. For now it is sufficient to poll one for one.
         receivedConfirmationsQueue.clear();
+        long tWrite = System.nanoTime();
         try {
             // Send the command.
             getCommunications().writeLine(command);
@@ -1108,9 +1263,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             Configuration.get().getMachine().setEnabled(false);
         }
         waitForConfirmation(command, timeout);
+        latencyStatistics.recordSince(Metric.CommandConfirmation, tWrite);
         if (command.startsWith("$")) {
             Thread.sleep(dollarWaitTimeMilliseconds);
         }
+        latencyStatistics.recordSince(Metric.SendCommand, t0);
     }
 
     protected Line waitForConfirmation(String command, long timeout)
@@ -1187,7 +1344,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         if (responses == null) {
             return null;   
         }
-        Pattern pattern = Pattern.compile(regex);
+        Pattern pattern = getPattern(regex);
         for (Line line : responses) {
             Matcher matcher = pattern.matcher(line.getLine());
             if (matcher.matches()) {
@@ -1296,20 +1453,13 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             command = unescape(command);
         }
         if (isLoggingGcode()) {
-
+            GcodeSessionLogger gcodeLogger = this.gcodeLogger;
             if (gcodeLogger == null) { 
-                File file;
-                try {
-                    file = Configuration.get().createResourceFile(getClass(), "log", ".g");
-                    gcodeLogger = new PrintWriter(file.getAbsolutePath());
-                }
-                catch (IOException e) {
-                    Logger.warn(e, "Cannot open Gcode log");
-                }
-            }
-            if (gcodeLogger != null) {
-                gcodeLogger.println(command);
+                gcodeLogger = new GcodeSessionLogger(getClass(), getName(), 
+                        loggingGcodeRotationKilobytes*1024L, loggingGcodeCompressed);
+                this.gcodeLogger = gcodeLogger;
             }
+            gcodeLogger.logSent(command);
         }
         else {
             closeGcodeLogger();
@@ -1360,6 +1510,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 }
                 Line line = new Line(receivedLine);
                 Logger.trace("[{}] << {}", getCommunications().getConnectionName(), line);
+                GcodeSessionLogger gcodeLogger = GcodeDriver.this.gcodeLogger;
+                if (gcodeLogger != null) {
+                    gcodeLogger.logReceived(receivedLine);
+                }
                 // Process the response.
                 processResponse(line);
                 // Add to the responseQueue for further processing by the caller.
@@ -1378,65 +1532,49 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      * @param line
      */
     protected void processResponse(Line line) {
-        String regex = getCommand(null, CommandType.COMMAND_CONFIRM_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        Pattern pattern = getCommandPattern(null, CommandType.COMMAND_CONFIRM_REGEX);
+        if (pattern != null && pattern.matcher(line.getLine()).matches()) {
             receivedConfirmationsQueue.add(line);
         }
-        regex = getCommand(null, CommandType.COMMAND_ERROR_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        pattern = getCommandPattern(null, CommandType.COMMAND_ERROR_REGEX);
+        if (pattern != null && pattern.matcher(line.getLine()).matches()) {
             errorResponse = line;
         }
         processPositionReport(line);
     }
 
     protected boolean processPositionReport(Line line) {
-        String regex = getCommand(null, CommandType.POSITION_REPORT_REGEX); 
-        if (regex == null) {
+        Pattern pattern = getCommandPattern(null, CommandType.POSITION_REPORT_REGEX); 
+        if (pattern == null) {
             return false;
         }
 
-        if (!line.getLine().matches(regex)) {
+        Matcher matcher = pattern.matcher(line.getLine());
+        if (!matcher.matches()) {
             return false;
         }
 
         Logger.trace("Position report: {}", line);
-        ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
-        Matcher matcher =
-                Pattern.compile(regex).matcher(line.getLine());
-        matcher.matches();
-        AxesLocation position = AxesLocation.zero;
-        for (ControllerAxis axis : new AxesLocation(machine).getAxes(this)) {
-            try {
-                String variable = axis.getLetter(); 
-                String s = matcher.group(variable);
-                Double d = Double.valueOf(s);
-                if (axis.getType() == Type.Rotation) {
-                    // Rotation axis is not converted from driver units.
-                    position = position.put(new AxesLocation(axis, new Length(d, AxesLocation.getUnits())));
-                }
-                else {
-                    position = position.put(new AxesLocation(axis, new Length(d, getUnits())));
-                }
-            }
-            catch (IllegalArgumentException e) {
-                // Axis is not present in pattern. That's a warning, but might not be supported by controller, so we let it go. 
-                Logger.warn("Axis {} letter {} missing in POSITION_REPORT_REGEX groups.", axis.getName(), axis.getLetter());
-            }
-            catch (Exception e) {
-                Logger.warn("Error processing position report for axis {}: {}", axis.getName(), e);
-            }
+        PositionReportParser parser = positionReportParser;
+        if (parser == null || parser.getPattern() != pattern) {
+            // (Re-)build the parser for the driver axes.
+            ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
+            parser = new PositionReportParser(pattern, new AxesLocation(machine).getAxes(this), getUnits());
+            positionReportParser = parser;
+        }
+        parser.parse(matcher, line.getLine());
+        if (reportedLocationPending) {
+            // Store the latest momentary position.
+            reportedLocationsQueue.add(parser.getAxesLocation());
         }
-        // Store the latest momentary position.
-        reportedLocationsQueue.add(position);
 
         if (motionPending) {
-            Logger.warn("Position report cannot be processed when motion might still be pending. Missing Machine Coordination on Actuators?", 
-                    position);
+            Logger.warn("Position report cannot be processed when motion might still be pending. Missing Machine Coordination on Actuators?");
         }
         else {
             // Store the actual driver location. This is used to re-sync OpenPnP to the actual controller 
             // location, when its axes might have moved/homed etc. behind its back. 
-            position.setToDriverCoordinates(this);
+            parser.setToDriverCoordinates();
         }
         return true;
     }
@@ -1452,7 +1590,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         if (command == null) {
             return false;
         }
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(command);
+        Matcher matcher = TextUtils.VARIABLE_PATTERN.matcher(command);
         while (matcher.find()) {
             String n = matcher.group(1);
             if (!n.equals(name)) {
@@ -1473,6 +1611,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                         "GCodeDriver.GCode.title")), //$NON-NLS-1$
                 new PropertySheetWizardAdapter(new GcodeDriverConsole(this), Translations.getString(
                         "GCodeDriver.Console.title")), //$NON-NLS-1$
+                new PropertySheetWizardAdapter(new GcodeDriverLatency(this), Translations.getString(
+                        "GCodeDriver.Latency.title")), //$NON-NLS-1$
         };
     }
 
@@ -1592,6 +1732,28 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
     }
 
+    public int getLoggingGcodeRotationKilobytes() {
+        return loggingGcodeRotationKilobytes;
+    }
+
+    public void setLoggingGcodeRotationKilobytes(int loggingGcodeRotationKilobytes) {
+        Object oldValue = this.loggingGcodeRotationKilobytes;
+        this.loggingGcodeRotationKilobytes = Math.max(0, loggingGcodeRotationKilobytes);
+        firePropertyChange("loggingGcodeRotationKilobytes", oldValue, this.loggingGcodeRotationKilobytes);
+        closeGcodeLogger();
+    }
+
+    public boolean isLoggingGcodeCompressed() {
+        return loggingGcodeCompressed;
+    }
+
+    public void setLoggingGcodeCompressed(boolean loggingGcodeCompressed) {
+        Object oldValue = this.loggingGcodeCompressed;
+        this.loggingGcodeCompressed = loggingGcodeCompressed;
+        firePropertyChange("loggingGcodeCompressed", oldValue, loggingGcodeCompressed);
+        closeGcodeLogger();
+    }
+
     public String getDetectedFirmware() {
         return detectedFirmware;
     }
@@ -1650,10 +1812,31 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     public void setFirmwareConfiguration(String configuredAxes) {
     }
 
+    /**
+     * @return The latency statistics of the controller link.
+     */
+    public DriverLatencyStatistics getLatencyStatistics() {
+        return latencyStatistics;
+    }
+
+    public int getLatencyDumpIntervalSeconds() {
+        return latencyDumpIntervalSeconds;
+    }
+
+    public void setLatencyDumpIntervalSeconds(int latencyDumpIntervalSeconds) {
+        Object oldValue = this.latencyDumpIntervalSeconds;
+        this.latencyDumpIntervalSeconds = Math.max(0, latencyDumpIntervalSeconds);
+        firePropertyChange("latencyDumpIntervalSeconds", oldValue, this.latencyDumpIntervalSeconds);
+        if (connected) {
+            startLatencyDump();
+        }
+    }
+
     protected void closeGcodeLogger() {
+        GcodeSessionLogger gcodeLogger = this.gcodeLogger;
         if (gcodeLogger != null) {
+            this.gcodeLogger = null;
             gcodeLogger.close();
-            gcodeLogger = null;
         }
     }
 
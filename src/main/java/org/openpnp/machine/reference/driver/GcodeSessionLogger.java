@@ -0,0 +1,207 @@
+package org.openpnp.machine.reference.driver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+import org.openpnp.model.Configuration;
+import org.openpnp.util.NanosecondTime;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Asynchronous G-code session logger. The sending and receiving threads just hand the log entries to a
+ * bounded lock-free queue, a background thread formats them and writes them to a buffered channel. The
+ * background thread parks when idle, and is only unparked by a log entry if it is parked. The
+ * log file is rotated when it exceeds a maximum size, and optionally gzip compressed.
+ *
+ * The log files keep the .g format, i.e. sent commands are logged verbatim, one per line, so the file
+ * can still be replayed. Received lines are logged as G-code comments with the runtime in nanoseconds
+ * (see {@link NanosecondTime#getRuntime()}), the driver name and the "<<" direction marker. If the
+ * queue is full, entries are dropped rather than blocking the caller, and the number of dropped entries
+ * is logged as a comment.
+ */
+public class GcodeSessionLogger {
+    private static final int MAX_QUEUED_ENTRIES = 100000;
+    private static final int BUFFER_SIZE = 64*1024;
+    private static final long IDLE_POLL_MILLISECONDS = 10;
+
+    private static class Entry {
+        final long time;
+        final boolean sent;
+        final String line;
+
+        Entry(long time, boolean sent, String line) {
+            this.time = time;
+            this.sent = sent;
+            this.line = line;
+        }
+    }
+
+    private final Class<?> forClass;
+    private final String driverName;
+    private final long maxFileBytes;
+    private final boolean compressed;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of queued entries, as the size of a ConcurrentLinkedQueue is not a constant time operation.
+     */
+    private final AtomicInteger queuedEntries = new AtomicInteger();
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean writerParked;
+    private volatile boolean closeRequested;
+
+    private WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long fileBytes;
+
+    /**
+     * @param forClass The class used to determine the log directory, see
+     * {@link Configuration#createResourceFile(Class, String, String)}.
+     * @param driverName
+     * @param maxFileBytes Size after which the log file is rotated, 0 for no rotation.
+     * @param compressed If true, gzip compress the log files.
+     */
+    public GcodeSessionLogger(Class<?> forClass, String driverName, long maxFileBytes, boolean compressed) {
+        this.forClass = forClass;
+        this.driverName = driverName;
+        this.maxFileBytes = maxFileBytes;
+        this.compressed = compressed;
+        writerThread = new Thread(() -> writeEntries(), driverName+" G-code logger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void logSent(String line) {
+        log(true, line);
+    }
+
+    public void logReceived(String line) {
+        log(false, line);
+    }
+
+    protected void log(boolean sent, String line) {
+        if (closeRequested) {
+            return;
+        }
+        if (queuedEntries.incrementAndGet() > MAX_QUEUED_ENTRIES) {
+            queuedEntries.decrementAndGet();
+            droppedEntries.incrementAndGet();
+            return;
+        }
+        queue.offer(new Entry(NanosecondTime.getRuntime(), sent, line));
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Writes the remaining queued entries and closes the log file. Does not block the caller.
+     */
+    public void close() {
+        closeRequested = true;
+        LockSupport.unpark(writerThread);
+    }
+
+    protected void writeEntries() {
+        try {
+            while (true) {
+                boolean closing = closeRequested;
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    flush();
+                    if (closing) {
+                        break;
+                    }
+                    writerParked = true;
+                    // Check again, an entry may have been queued before the flag was seen. The timeout covers
+                    // any remaining race.
+                    if (queue.isEmpty() && !closeRequested) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLISECONDS));
+                    }
+                    writerParked = false;
+                    continue;
+                }
+                queuedEntries.decrementAndGet();
+                if (entry.sent) {
+                    write(entry.line+"\n");
+                }
+                else {
+                    write("; "+entry.time+" "+driverName+" << "+entry.line+"\n");
+                }
+                long dropped = droppedEntries.getAndSet(0);
+                if (dropped > 0) {
+                    Logger.warn("{} G-code log dropped {} entries", driverName, dropped);
+                    write("; "+NanosecondTime.getRuntime()+" "+driverName+" dropped "+dropped+" entries\n");
+                }
+            }
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot write G-code log");
+        }
+        finally {
+            closeChannel();
+        }
+    }
+
+    protected void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (channel == null
+                || (maxFileBytes > 0 && fileBytes + buffer.position() + bytes.length > maxFileBytes)) {
+            // Open the first or rotate to the next file.
+            flush();
+            closeChannel();
+            File file = Configuration.get().createResourceFile(forClass, "log", compressed ? ".g.gz" : ".g");
+            FileOutputStream fileStream = new FileOutputStream(file);
+            channel = compressed ?
+                    Channels.newChannel(new GZIPOutputStream(fileStream, BUFFER_SIZE))
+                    : fileStream.getChannel();
+            fileBytes = 0;
+        }
+        if (bytes.length > buffer.remaining()) {
+            flush();
+        }
+        if (bytes.length > buffer.remaining()) {
+            // Oversize line, write directly.
+            channel.write(ByteBuffer.wrap(bytes));
+            fileBytes += bytes.length;
+        }
+        else {
+            buffer.put(bytes);
+        }
+    }
+
+    protected void flush() throws IOException {
+        if (channel != null && buffer.position() > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                fileBytes += channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    protected void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                Logger.warn(e, "Cannot close G-code log");
+            }
+            channel = null;
+        }
+    }
+}
@@ -134,10 +134,15 @@ public class NullDriver extends AbstractDriver {
     @Override
     public void waitForCompletion(HeadMountable hm, CompletionType completionType) throws Exception {
         ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
-        while (! machine.getMotionPlanner()
-                .getMomentaryMotion(NanosecondTime.getRuntimeSeconds())
-                .hasOption(Motion.MotionOption.Stillstand)) {
-            Thread.sleep(1);
+        while (true) {
+            double now = NanosecondTime.getRuntimeSeconds();
+            Motion motion = machine.getMotionPlanner()
+                    .getMomentaryMotion(now);
+            if (motion.hasOption(Motion.MotionOption.Stillstand)) {
+                break;
+            }
+            // Wait for the momentary motion to complete (instantly, in virtual time). 
+            NanosecondTime.sleep(Math.max(1, (long)Math.ceil((motion.getPlannedTime1() - now)*1000)));
         }
         motionPending = false;
     }
@@ -172,7 +177,7 @@ public class NullDriver extends AbstractDriver {
         Logger.debug("actuate({}, {})", actuator, value); //$NON-NLS-1$
         checkEnabled();
         if (feedRateMmPerMinute > 0) {
-            Thread.sleep(10);
+            NanosecondTime.sleep(10);
         }
     }
 
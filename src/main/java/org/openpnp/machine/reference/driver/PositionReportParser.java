@@ -0,0 +1,184 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Axis.Type;
+import org.openpnp.spi.ControllerAxis;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Parses position reports of a driver into a reusable snapshot of primitive driver coordinates. The driver axes,
+ * their report regex group names and units are precomputed once for a given POSITION_REPORT_REGEX Pattern,
+ * so parsing a report does not allocate. An {@link AxesLocation} is only created, when a consumer asks for it.
+ * <p>
+ * Not thread-safe. Position reports are parsed on the reader thread only.
+ */
+public class PositionReportParser {
+    private final Pattern pattern;
+    private final LengthUnit driverUnits;
+    private final ControllerAxis[] axes;
+    private final String[] groups;
+    private final boolean[] converted;
+    private final IdentityHashMap<Axis, Integer> axisIndex = new IdentityHashMap<>();
+
+    /**
+     * The snapshot of the last report, in driver units.
+     */
+    private final double[] coordinates;
+    private final boolean[] present;
+
+    public PositionReportParser(Pattern pattern, Iterable<ControllerAxis> driverAxes, LengthUnit driverUnits) {
+        this.pattern = pattern;
+        this.driverUnits = driverUnits;
+        List<ControllerAxis> list = new ArrayList<>();
+        for (ControllerAxis axis : driverAxes) {
+            list.add(axis);
+        }
+        axes = list.toArray(new ControllerAxis[list.size()]);
+        groups = new String[axes.length];
+        converted = new boolean[axes.length];
+        coordinates = new double[axes.length];
+        present = new boolean[axes.length];
+        for (int i = 0; i < axes.length; i++) {
+            groups[i] = axes[i].getLetter();
+            // Rotation axes are never converted from driver units.
+            converted[i] = axes[i].getType() != Type.Rotation;
+            axisIndex.put(axes[i], i);
+        }
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Parse the report matched by the matcher into the snapshot.
+     *
+     * @param matcher A Matcher of the pattern, that has successfully matched the report.
+     * @param report The report. 
+     */
+    public void parse(Matcher matcher, CharSequence report) {
+        for (int i = 0; i < axes.length; i++) {
+            present[i] = false;
+            if (groups[i] == null) {
+                continue;
+            }
+            try {
+                int start = matcher.start(groups[i]);
+                if (start < 0) {
+                    continue;
+                }
+                coordinates[i] = parseDouble(report, start, matcher.end(groups[i]));
+                present[i] = true;
+            }
+            catch (IllegalArgumentException e) {
+                // Axis is not present in pattern. That's a warning, but might not be supported by controller, so we let it go.
+                Logger.warn("Axis {} letter {} missing in POSITION_REPORT_REGEX groups.", axes[i].getName(), axes[i].getLetter());
+                // Don't try again.
+                groups[i] = null;
+            }
+            catch (Exception e) {
+                Logger.warn("Error processing position report for axis {}: {}", axes[i].getName(), e);
+            }
+        }
+    }
+
+    /**
+     * @return The snapshot of the last parsed report as an AxesLocation.
+     */
+    public AxesLocation getAxesLocation() {
+        List<ControllerAxis> presentAxes = new ArrayList<>(axes.length);
+        for (int i = 0; i < axes.length; i++) {
+            if (present[i]) {
+                presentAxes.add(axes[i]);
+            }
+        }
+        return new AxesLocation(presentAxes, (axis) -> {
+            int i = axisIndex.get(axis);
+            return new Length(coordinates[i], converted[i] ? driverUnits : AxesLocation.getUnits());
+        });
+    }
+
+    /**
+     * Set the snapshot of the last parsed report to the axes as the current driver location.
+     */
+    public void setToDriverCoordinates() {
+        for (int i = 0; i < axes.length; i++) {
+            if (present[i]) {
+                if (!converted[i] || axes[i].getUnits() == driverUnits) {
+                    axes[i].setDriverCoordinate(coordinates[i]);
+                }
+                else {
+                    axes[i].setDriverLengthCoordinate(new Length(coordinates[i], driverUnits));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse a decimal number from the given range of characters without allocating. Falls back to
+     * {@link Double#parseDouble(String)} for anything but plain decimals of up to 15 digits, so the result is
+     * always the same.
+     *
+     * @param s
+     * @param start
+     * @param end
+     * @return
+     */
+    protected static double parseDouble(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = (s.charAt(i) == '-');
+            i++;
+        }
+        long mantissa = 0;
+        boolean anyDigits = false;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                mantissa = mantissa*10 + (ch - '0');
+                anyDigits = true;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction) {
+                    fractionDigits++;
+                }
+            }
+            else if (ch == '.' && !fraction) {
+                fraction = true;
+            }
+            else {
+                break;
+            }
+        }
+        if (i < end || !anyDigits || digits > 15 || fractionDigits > 22) {
+            return Double.parseDouble(s.subSequence(start, end).toString());
+        }
+        // Both the mantissa and the power of ten are exact doubles, so the division is correctly rounded,
+        // like parseDouble().
+        double value = fractionDigits == 0 ? mantissa : mantissa/POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+}
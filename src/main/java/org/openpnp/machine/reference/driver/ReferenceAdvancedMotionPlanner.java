@@ -67,6 +67,10 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
     private boolean diagnosticsEnabled = false;
     @Attribute(required = false)
     private boolean interpolationRetiming = true;
+    @Attribute(required = false)
+    private boolean lookAhead = false;
+    @Attribute(required = false)
+    private int lookAheadMaxMoves = 16;
 
     @Attribute(required = false)
     protected double minimumSpeed = 0.05;
@@ -155,6 +159,25 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
         this.minimumSpeed = minimumSpeed;
     }
 
+    public boolean isLookAhead() {
+        return lookAhead;
+    }
+
+    public void setLookAhead(boolean lookAhead) {
+        this.lookAhead = lookAhead;
+    }
+
+    public int getLookAheadMaxMoves() {
+        return lookAheadMaxMoves;
+    }
+
+    public void setLookAheadMaxMoves(int lookAheadMaxMoves) {
+        if (lookAheadMaxMoves < 1) {
+            throw new IllegalArgumentException("Look-ahead Max. Moves must be at least 1.");
+        }
+        this.lookAheadMaxMoves = lookAheadMaxMoves;
+    }
+
     public boolean isDiagnosticsEnabled() {
         return diagnosticsEnabled;
     }
@@ -334,6 +357,12 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
                             CompletionType.CommandJog 
                             : CompletionType.WaitForStillstand);
         }
+        else if (lookAhead) {
+            // Once more moves are pending than the look-ahead window holds, the oldest ones are sent to the drivers, 
+            // so the machine already starts moving, while the latest ones are held back to be planned together with 
+            // the following moves.
+            executeMotionPlan(CompletionType.CommandJog, Math.max(1, lookAheadMaxMoves));
+        }
     }
 
     protected class PlannerPath extends AbstractMotionPath {
@@ -20,10 +20,12 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 import org.jfree.chart.util.ArrayUtils;
-import org.openpnp.util.Collect;
 import org.openpnp.util.GcodeServer;
 import org.simpleframework.xml.Attribute;
 
@@ -53,6 +55,22 @@ public abstract class ReferenceDriverCommunications {
     @Attribute(required=false)
     protected LineEndingType lineEndingType = LineEndingType.LF;
 
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+
+    /**
+     * Block buffer for received bytes. Bytes are read in blocks of whatever is available and then consumed by 
+     * {@link #read()} and {@link #readLine()} from this buffer. Only one thread must read at a time.
+     */
+    private final byte[] receiveBuffer = new byte[RECEIVE_BUFFER_SIZE];
+    private int receivePosition;
+    private int receiveLimit;
+
+    /**
+     * Reused buffer to assemble the bytes of a line that spans multiple received blocks.
+     */
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength;
+
     abstract public void connect() throws Exception;
     abstract public void disconnect() throws Exception;
 
@@ -60,7 +78,62 @@ public abstract class ReferenceDriverCommunications {
 
     abstract protected void writeBytes(byte[] data) throws IOException;
 
-    abstract public int read() throws TimeoutException, IOException;
+    /**
+     * Read the bytes that are available from the input stream, blocking until at least one is available. 
+     * Blocks for the default timeout. If the read times out a TimeoutException is thrown. Any other failure 
+     * to read results in an IOExeption.
+     * 
+     * @param buffer
+     * @param offset
+     * @param length Maximum number of bytes to read.
+     * @return The number of bytes read, or -1 if the end of the stream is reached.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    abstract protected int readAvailable(byte[] buffer, int offset, int length) throws TimeoutException, IOException;
+
+    /**
+     * Read a single byte from the input stream. Blocks for the default timeout. If the read times out a
+     * TimeoutException is thrown. Any other failure to read results in an IOExeption.
+     * 
+     * @return The byte as an unsigned value, or -1 if the end of the stream is reached.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    public int read() throws TimeoutException, IOException {
+        while (receivePosition >= receiveLimit) {
+            if (!fillReceiveBuffer()) {
+                return -1;
+            }
+        }
+        return receiveBuffer[receivePosition++] & 0xFF;
+    }
+
+    /**
+     * Refill the empty receive buffer with whatever bytes are available.
+     * 
+     * @return false if the end of the stream is reached.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    private boolean fillReceiveBuffer() throws TimeoutException, IOException {
+        int n = readAvailable(receiveBuffer, 0, receiveBuffer.length);
+        if (n < 0) {
+            return false;
+        }
+        receivePosition = 0;
+        receiveLimit = n;
+        return true;
+    }
+
+    /**
+     * Discard any bytes received but not yet consumed. To be called when (re-)connecting.
+     */
+    protected void resetReceiveBuffer() {
+        receivePosition = 0;
+        receiveLimit = 0;
+        lineLength = 0;
+    }
 
     /**
      * Read a line from the input stream. Blocks for the default timeout. If the read times out a
@@ -75,13 +148,35 @@ public abstract class ReferenceDriverCommunications {
     }
 
     public void writeLine(String data) throws IOException {
-        byte [] line = Collect.concat(data.getBytes(), getLineEndingType().getLineEnding().getBytes());
-        writeBytes(line);
+        writeBytes((data + getLineEndingType().getLineEnding()).getBytes());
+    }
+
+    /**
+     * Write multiple lines coalesced into one write.
+     * 
+     * @param lines
+     * @throws IOException
+     */
+    public void writeLines(List<String> lines) throws IOException {
+        if (lines.size() == 1) {
+            writeLine(lines.get(0));
+            return;
+        }
+        String lineEnding = getLineEndingType().getLineEnding();
+        StringBuilder data = new StringBuilder();
+        for (String line : lines) {
+            data.append(line);
+            data.append(lineEnding);
+        }
+        writeBytes(data.toString().getBytes());
     }
 
     /**
      * Read the input stream until one of the characters is found. Blocks for the default timeout. If the read times out
      * a TimeoutException is thrown. Any other failure to read results in an IOExeption;
+     * 
+     * The received blocks of bytes are split into lines in place. Bytes are decoded as ISO-8859-1, i.e. one 
+     * character per byte. A partial line is retained when a read times out.
      *
      * @param characters list of ending characters
      * @return
@@ -89,21 +184,49 @@ public abstract class ReferenceDriverCommunications {
      * @throws IOException
      */
     protected String readUntil(String characters) throws TimeoutException, IOException {
-        StringBuffer line = new StringBuffer();
         while (true) {
-            int ch = read();
-            if (ch == -1) {
-                return null;
-            }
-            else if (characters.indexOf((char)ch) >= 0) {
-                if (line.length() > 0) {
-                    return line.toString();
+            if (receivePosition >= receiveLimit) {
+                if (!fillReceiveBuffer()) {
+                    return null;
                 }
             }
-            else {
-                line.append((char) ch);
+            int start = receivePosition;
+            while (receivePosition < receiveLimit) {
+                int ch = receiveBuffer[receivePosition] & 0xFF;
+                if (characters.indexOf(ch) >= 0) {
+                    int end = receivePosition++;
+                    if (lineLength == 0 && end > start) {
+                        // Line is entirely contained in the block, no need to copy.
+                        return new String(receiveBuffer, start, end - start, StandardCharsets.ISO_8859_1);
+                    }
+                    appendToLine(start, end);
+                    if (lineLength > 0) {
+                        String line = new String(lineBuffer, 0, lineLength, StandardCharsets.ISO_8859_1);
+                        lineLength = 0;
+                        return line;
+                    }
+                    // Empty line, skip it.
+                    start = receivePosition;
+                }
+                else {
+                    receivePosition++;
+                }
             }
+            // Block exhausted, retain the partial line.
+            appendToLine(start, receivePosition);
+        }
+    }
+
+    private void appendToLine(int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        if (lineLength + length > lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length*2, lineLength + length));
         }
+        System.arraycopy(receiveBuffer, start, lineBuffer, lineLength, length);
+        lineLength += length;
     }
 
     public void write(int d) throws IOException {
@@ -72,6 +72,39 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         }
     }
 
+    /**
+     * Job control bytes sent by the controller's job buttons. They are not part of the line protocol and are
+     * demultiplexed from the received data.
+     */
+    public enum JobButton {
+        Start(0xFE),
+        Stop(0xFD),
+        Step(0xFC);
+
+        public final int code;
+
+        private JobButton(int code) {
+            this.code = code;
+        }
+
+        /**
+         * @param b The received byte as an unsigned value.
+         * @return The JobButton with that code, or null if the byte is not a job button code.
+         */
+        public static JobButton fromByte(int b) {
+            switch (b) {
+                case 0xFE:
+                    return Start;
+                case 0xFD:
+                    return Stop;
+                case 0xFC:
+                    return Step;
+                default:
+                    return null;
+            }
+        }
+    }
+
     @Attribute(required = false)
     protected String portName = "";
 
@@ -99,6 +132,13 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
     @Attribute(required = false)
     protected String name = "SerialPortCommunications";
 
+    /**
+     * If true, the job button bytes are removed from the received data and handled as job button events.
+     * Disable this for binary protocols that can contain these bytes.
+     */
+    @Attribute(required = false)
+    protected boolean jobButtonsEnabled = true;
+
 
     private SerialPort serialPort;
 
@@ -137,7 +177,7 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         }
         serialPort.setComPortTimeouts(
                 SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
-
+        resetReceiveBuffer();
 
     }
 
@@ -175,70 +215,68 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         return map;
     }
 
-    //这部分是我自己加的->
-    private static String byte2Hex(byte[] bytes) {
-        StringBuffer stringBuffer = new StringBuffer();
-        String temp = null;
-        for (int i = 0; i < bytes.length; i++) {
-            temp = Integer.toHexString(bytes[i] & 0xFF);
-            if (temp.length() == 1) {
-                //1得到一位的进行补0操作
-                stringBuffer.append("0");
+    @Override
+    protected int readAvailable(byte[] buffer, int offset, int length) throws TimeoutException, IOException {
+        while (true) {
+            int l;
+            try {
+                l = serialPort.readBytes(buffer, length, offset);
+            }
+            catch (NullPointerException e) {
+                throw new IOException("Trying to read from a unconnected serial.");
+            }
+            if (l == -1) {
+                throw new IOException("Read error.");
+            }
+            if (l == 0) {
+                throw new TimeoutException("Read timeout.");
+            }
+            if (!jobButtonsEnabled) {
+                return l;
             }
-            stringBuffer.append(temp);
+            // Demultiplex the job button bytes, compacting the remaining data in place.
+            int n = offset;
+            for (int i = offset; i < offset + l; i++) {
+                byte b = buffer[i];
+                JobButton jobButton = JobButton.fromByte(b & 0xFF);
+                if (jobButton != null) {
+                    jobButtonPressed(jobButton);
+                }
+                else {
+                    buffer[n++] = b;
+                }
+            }
+            if (n > offset) {
+                return n - offset;
+            }
+            // Only job button bytes received, read on.
         }
-        return stringBuffer.toString();
     }
-    //<-这部分是我自己加的
 
-    @Override
-    public int read() throws TimeoutException, IOException {
-        byte[] b = new byte[1];
-        int l;
-        try {
-            l = serialPort.readBytes(b, 1);
-
-            switch (byte2Hex(b)) {
-                case "fe":
-                    SwingUtilities.invokeLater(new Runnable() {
-                        public void run() {
-                            JobPanel jobpaneStart = MainFrame.get().getJobTab();
-                            MainFrame.get().getTabs().setSelectedComponent((Component) MainFrame.get().getJobTab());
-                            jobpaneStart.start();
-                        }
-                    });
-                    break;
-                case "fd":
-                    SwingUtilities.invokeLater(new Runnable() {
-                        public void run() {
-                            JobPanel jobpanelStop = MainFrame.get().getJobTab();
-                            MainFrame.get().getTabs().setSelectedComponent((Component) MainFrame.get().getJobTab());
-                            jobpanelStop.stop();
-                        }
-                    });
-                    break;
-                case "fc":
-                    SwingUtilities.invokeLater(new Runnable() {
-                        public void run() {
-                            JobPanel jobpanelStep = MainFrame.get().getJobTab();
-                            MainFrame.get().getTabs().setSelectedComponent((Component) MainFrame.get().getJobTab());
-                            jobpanelStep.step();
-                        }
-                    });
-                    break;
+    /**
+     * Handle a job button pressed on the controller.
+     * 
+     * @param jobButton
+     */
+    protected void jobButtonPressed(JobButton jobButton) {
+        Logger.trace("{} job button {} pressed.", getConnectionName(), jobButton);
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                JobPanel jobPanel = MainFrame.get().getJobTab();
+                MainFrame.get().getTabs().setSelectedComponent((Component) jobPanel);
+                switch (jobButton) {
+                    case Start:
+                        jobPanel.start();
+                        break;
+                    case Stop:
+                        jobPanel.stop();
+                        break;
+                    case Step:
+                        jobPanel.step();
+                        break;
+                }
             }
-
-            //Logger.trace("串口获取到数据{}", byte2Hex(b));
-        } catch (NullPointerException e) {
-            throw new IOException("Trying to read from a unconnected serial.");
-        }
-        if (l == -1) {
-            throw new IOException("Read error.");
-        }
-        if (l == 0) {
-            throw new TimeoutException("Read timeout.");
-        }
-        return b[0];
+        });
     }
 
     @Override
@@ -318,5 +356,13 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
     public void setSetRts(boolean setRts) {
         this.setRts = setRts;
     }
+
+    public boolean isJobButtonsEnabled() {
+        return jobButtonsEnabled;
+    }
+
+    public void setJobButtonsEnabled(boolean jobButtonsEnabled) {
+        this.jobButtonsEnabled = jobButtonsEnabled;
+    }
 }
 
@@ -1,9 +1,8 @@
 package org.openpnp.machine.reference.driver;
 
-import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.TimeoutException;
@@ -18,7 +17,7 @@ import org.pmw.tinylog.Logger;
  */
 public class SimulatedCommunications extends ReferenceDriverCommunications {
     protected Socket clientSocket;
-    protected BufferedReader input;
+    protected InputStream input;
     protected DataOutputStream output;
 
     protected GcodeServer gcodeServer;
@@ -39,7 +38,10 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
             gcodeServer.setDriver(driver);
         }
         clientSocket = new Socket("localhost", getGcodeServer().getListenerPort());
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+        // Commands are coalesced by the driver, send them without delay.
+        clientSocket.setTcpNoDelay(true);
+        input = clientSocket.getInputStream();
+        resetReceiveBuffer();
         output = new DataOutputStream(clientSocket.getOutputStream());
     }
 
@@ -71,15 +73,16 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
     }
 
     @Override
-    public int read() throws TimeoutException, IOException {
+    protected int readAvailable(byte[] buffer, int offset, int length) throws TimeoutException, IOException {
         try {
-            return input.read();
+            return input.read(buffer, offset, length);
         }
         catch (NullPointerException ex) {
             throw new IOException("Trying to read from a unconnected socket.");
         }
         catch (IOException ex) {
-            if (ex.getCause() instanceof SocketTimeoutException) {
+            if (ex instanceof SocketTimeoutException 
+                    || ex.getCause() instanceof SocketTimeoutException) {
                 throw new TimeoutException(ex.getMessage());
             }
             throw ex;
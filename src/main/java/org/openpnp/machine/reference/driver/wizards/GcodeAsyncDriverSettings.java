@@ -33,6 +33,9 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
     private JTextField junctionDeviation;
     private JTextField interpolationJerkSteps;
     private JCheckBox reportedLocationConfirmation;
+    private JTextField confirmationWindowLines;
+    private JTextField confirmationWindowBytes;
+    private JTextField maxWriteBatchBytes;
 
     public GcodeAsyncDriverSettings(GcodeAsyncDriver driver) {
         this.driver = driver;
@@ -50,6 +53,12 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -156,6 +165,30 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
         });
         settingsPanel.add(reportedLocationConfirmation, "4, 4");
 
+        JLabel lblConfirmationWindowLines = new JLabel("Confirmation Window Lines");
+        lblConfirmationWindowLines.setToolTipText("<html>\r\n<p>Maximum number of commands sent to the controller, before the first one is confirmed.</p>\r\n<p>With 1, each command waits for the \"ok\" of the previous one. With larger numbers, multiple <br/>\r\ncommands are kept in flight, avoiding a full communications round-trip per command.</p>\r\n<p>Only effective with Confirmation Flow Control.</p>\r\n</html>");
+        settingsPanel.add(lblConfirmationWindowLines, "2, 6, right, default");
+
+        confirmationWindowLines = new JTextField();
+        settingsPanel.add(confirmationWindowLines, "4, 6, fill, default");
+        confirmationWindowLines.setColumns(10);
+
+        JLabel lblConfirmationWindowBytes = new JLabel("Confirmation Window Bytes");
+        lblConfirmationWindowBytes.setToolTipText("<html>\r\n<p>Maximum number of bytes (including line endings) sent to the controller, before they are <br/>\r\nconfirmed (\"character counting\" flow control). Set this to the controller's receive buffer size <br/>\r\nminus one, e.g. 127 for GRBL.</p>\r\n<p>Use 0 to limit the window by lines only.</p>\r\n</html>");
+        settingsPanel.add(lblConfirmationWindowBytes, "2, 8, right, default");
+
+        confirmationWindowBytes = new JTextField();
+        settingsPanel.add(confirmationWindowBytes, "4, 8, fill, default");
+        confirmationWindowBytes.setColumns(10);
+
+        JLabel lblMaxWriteBatchBytes = new JLabel("Maximum Write Batch Bytes");
+        lblMaxWriteBatchBytes.setToolTipText("<html>\r\n<p>Queued commands that fit into the confirmation window are coalesced into one write <br/>\r\nto the controller, up to this number of bytes (including line endings).</p>\r\n</html>");
+        settingsPanel.add(lblMaxWriteBatchBytes, "2, 10, right, default");
+
+        maxWriteBatchBytes = new JTextField();
+        settingsPanel.add(maxWriteBatchBytes, "4, 10, fill, default");
+        maxWriteBatchBytes.setColumns(10);
+
     }
 
     @Override
@@ -167,12 +200,18 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
 
         addWrappedBinding(driver, "confirmationFlowControl", confirmationFlowControl, "selected");
         addWrappedBinding(driver, "reportedLocationConfirmation", reportedLocationConfirmation, "selected");
+        addWrappedBinding(driver, "confirmationWindowLines", confirmationWindowLines, "text", intConverter);
+        addWrappedBinding(driver, "confirmationWindowBytes", confirmationWindowBytes, "text", intConverter);
+        addWrappedBinding(driver, "maxWriteBatchBytes", maxWriteBatchBytes, "text", intConverter);
         addWrappedBinding(driver, "interpolationMaxSteps", interpolationMaxSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationJerkSteps", interpolationJerkSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationTimeStep", interpolationTimeStep, "text", doubleConverterFine);
         addWrappedBinding(driver, "interpolationMinStep", interpolationMinStep, "text", intConverter);
         addWrappedBinding(driver, "junctionDeviation", junctionDeviation, "text", lengthConverter);
 
+        ComponentDecorators.decorateWithAutoSelect(confirmationWindowLines);
+        ComponentDecorators.decorateWithAutoSelect(confirmationWindowBytes);
+        ComponentDecorators.decorateWithAutoSelect(maxWriteBatchBytes);
         ComponentDecorators.decorateWithAutoSelect(interpolationMaxSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationJerkSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationTimeStep);
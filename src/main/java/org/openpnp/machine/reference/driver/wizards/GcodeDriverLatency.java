@@ -0,0 +1,119 @@
+package org.openpnp.machine.reference.driver.wizards;
+
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.border.TitledBorder;
+import javax.swing.event.AncestorEvent;
+import javax.swing.event.AncestorListener;
+
+import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.machine.reference.driver.GcodeDriver;
+
+import com.jgoodies.forms.layout.ColumnSpec;
+import com.jgoodies.forms.layout.FormLayout;
+import com.jgoodies.forms.layout.FormSpecs;
+import com.jgoodies.forms.layout.RowSpec;
+
+/**
+ * Shows the latency statistics of the controller link. The statistics are refreshed periodically, while
+ * the panel is showing.
+ */
+public class GcodeDriverLatency extends AbstractConfigurationWizard {
+    private final GcodeDriver driver;
+    private JTextArea textAreaStatistics;
+    private JTextField latencyDumpIntervalSeconds;
+    private Timer refreshTimer;
+
+    public GcodeDriverLatency(GcodeDriver driver) {
+        this.driver = driver;
+
+        JPanel panelLatency = new JPanel();
+        panelLatency.setBorder(new TitledBorder(null, "Latency Statistics [ms]",
+                TitledBorder.LEADING, TitledBorder.TOP, null));
+        contentPanel.add(panelLatency);
+
+        panelLatency.setLayout(new FormLayout(new ColumnSpec[] {
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,
+                FormSpecs.RELATED_GAP_COLSPEC,
+                ColumnSpec.decode("max(50dlu;default)"),
+                FormSpecs.RELATED_GAP_COLSPEC,
+                ColumnSpec.decode("default:grow"),
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,},
+            new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                RowSpec.decode("default:grow"),
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,}));
+
+        JScrollPane scrollPane = new JScrollPane();
+        panelLatency.add(scrollPane, "2, 2, 7, 1, fill, fill");
+
+        textAreaStatistics = new JTextArea();
+        textAreaStatistics.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        textAreaStatistics.setEditable(false);
+        textAreaStatistics.setRows(8);
+        scrollPane.setViewportView(textAreaStatistics);
+
+        JLabel lblLatencyDumpInterval = new JLabel("Dump to File Interval [s]");
+        lblLatencyDumpInterval.setToolTipText("<html>Periodically append the statistics to a file in the configuration directory,<br/>\n"
+                + "while the driver is connected. Set to 0 to disable.</html>");
+        panelLatency.add(lblLatencyDumpInterval, "2, 4, right, default");
+
+        latencyDumpIntervalSeconds = new JTextField();
+        panelLatency.add(latencyDumpIntervalSeconds, "4, 4, fill, default");
+        latencyDumpIntervalSeconds.setColumns(10);
+
+        JButton btnReset = new JButton(resetAction);
+        panelLatency.add(btnReset, "8, 4");
+
+        refreshTimer = new Timer(1000, e -> refreshStatistics());
+        addAncestorListener(new AncestorListener() {
+            @Override
+            public void ancestorAdded(AncestorEvent event) {
+                refreshStatistics();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void ancestorRemoved(AncestorEvent event) {
+                refreshTimer.stop();
+            }
+
+            @Override
+            public void ancestorMoved(AncestorEvent event) {
+            }
+        });
+    }
+
+    @Override
+    public void createBindings() {
+        IntegerConverter intConverter = new IntegerConverter();
+
+        addWrappedBinding(driver, "latencyDumpIntervalSeconds", latencyDumpIntervalSeconds, "text", intConverter);
+    }
+
+    protected void refreshStatistics() {
+        textAreaStatistics.setText(driver.getLatencyStatistics().getReport());
+    }
+
+    private Action resetAction = new AbstractAction("Reset") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            driver.getLatencyStatistics().reset();
+            refreshStatistics();
+        }
+    };
+}
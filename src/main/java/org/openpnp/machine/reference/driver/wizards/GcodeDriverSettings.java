@@ -228,6 +228,25 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
 
         loggingGcode = new JCheckBox("");
         settingsPanel.add(loggingGcode, "4, 16");
+
+        JLabel lblLoggingGcodeCompressed = new JLabel(Translations.getString(
+                "GcodeDriverSettings.SettingsPanel.LogGCodeCompressedLabel.text")); //$NON-NLS-1$
+        lblLoggingGcodeCompressed.setToolTipText(Translations.getString(
+                "GcodeDriverSettings.SettingsPanel.LogGCodeCompressedLabel.toolTipText")); //$NON-NLS-1$
+        settingsPanel.add(lblLoggingGcodeCompressed, "6, 16, right, default");
+
+        loggingGcodeCompressed = new JCheckBox("");
+        settingsPanel.add(loggingGcodeCompressed, "8, 16");
+
+        JLabel lblLoggingGcodeRotation = new JLabel(Translations.getString(
+                "GcodeDriverSettings.SettingsPanel.LogGCodeRotationLabel.text")); //$NON-NLS-1$
+        lblLoggingGcodeRotation.setToolTipText(Translations.getString(
+                "GcodeDriverSettings.SettingsPanel.LogGCodeRotationLabel.toolTipText")); //$NON-NLS-1$
+        settingsPanel.add(lblLoggingGcodeRotation, "2, 18, right, default");
+
+        loggingGcodeRotationKilobytes = new JTextField();
+        settingsPanel.add(loggingGcodeRotationKilobytes, "4, 18, fill, default");
+        loggingGcodeRotationKilobytes.setColumns(10);
         
         JLabel label_1 = new JLabel(" ");
         settingsPanel.add(label_1, "10, 18");
@@ -263,12 +282,15 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         addWrappedBinding(driver, "supportingPreMove", supportingPreMove, "selected");
         addWrappedBinding(driver, "usingLetterVariables", letterVariables, "selected");
         addWrappedBinding(driver, "loggingGcode", loggingGcode, "selected");
+        addWrappedBinding(driver, "loggingGcodeCompressed", loggingGcodeCompressed, "selected");
+        addWrappedBinding(driver, "loggingGcodeRotationKilobytes", loggingGcodeRotationKilobytes, "text", intConverter);
         addWrappedBinding(driver, "firmwareConfiguration", firmwareConfiguration, "text");
 
         ComponentDecorators.decorateWithAutoSelect(maxFeedRateTf);
         ComponentDecorators.decorateWithAutoSelect(commandTimeoutTf);
         ComponentDecorators.decorateWithAutoSelect(connectWaitTimeTf);
         ComponentDecorators.decorateWithAutoSelect(compressionExcludes);
+        ComponentDecorators.decorateWithAutoSelect(loggingGcodeRotationKilobytes);
     }
 
     public final Action exportProfileAction = new AbstractAction() {
@@ -418,6 +440,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
     private JCheckBox compressGcode;
 
     private JCheckBox loggingGcode;
+    private JCheckBox loggingGcodeCompressed;
+    private JTextField loggingGcodeRotationKilobytes;
 
     private JTextArea firmwareConfiguration;
     private JTextField dollarWaitTimeMilliseconds;
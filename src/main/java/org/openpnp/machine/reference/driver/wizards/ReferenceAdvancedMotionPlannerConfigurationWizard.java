@@ -38,6 +38,7 @@ import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.components.LocationButtonsPanel;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.DoubleConverter;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MutableLocationProxy;
 import org.openpnp.gui.support.PercentConverter;
@@ -58,6 +59,9 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
     private JPanel panelSettings;
     private JCheckBox allowContinuousMotion;
     private JCheckBox allowUncoordinated;
+    private JCheckBox parallelDriverDispatch;
+    private JCheckBox lookAhead;
+    private JTextField lookAheadMaxMoves;
 
     private JPanel panel;
     private JLabel lblX;
@@ -152,6 +156,12 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblContinuousMotion = new JLabel("Allow continous motion?");
@@ -183,6 +193,28 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         panelSettings.add(minimumSpeed, "4, 8, fill, default");
         minimumSpeed.setColumns(10);
 
+        JLabel lblParallelDriverDispatch = new JLabel("Parallel driver dispatch?");
+        lblParallelDriverDispatch.setToolTipText("<html>\r\n<p>When a motion involves axes on multiple drivers (controllers), send the commands<br/>\r\nto the drivers in parallel, rather than one driver after the other.</p>\r\n<p>This lets the controllers start their part of the motion together, and the time spent<br/>\r\ncommunicating with each controller overlaps.</p>\r\n</html>");
+        panelSettings.add(lblParallelDriverDispatch, "2, 10, right, default");
+
+        parallelDriverDispatch = new JCheckBox("");
+        panelSettings.add(parallelDriverDispatch, "4, 10");
+
+        JLabel lblLookAhead = new JLabel("Look-ahead?");
+        lblLookAhead.setToolTipText("<html>\r\n<p>Send the oldest pending moves to the controllers as soon as more moves are pending<br/>\r\nthan the look-ahead window holds, so the machine already starts moving. The latest<br/>\r\nmoves are held back and planned together with the following ones. All the moves are<br/>\r\nexecuted when something waits for the machine (vision, actuators, etc.) or at the end<br/>\r\nof the machine task.</p>\r\n<p>Requires continuous motion to be allowed.</p>\r\n</html>");
+        panelSettings.add(lblLookAhead, "2, 12, right, default");
+
+        lookAhead = new JCheckBox("");
+        panelSettings.add(lookAhead, "4, 12");
+
+        JLabel lblLookAheadMaxMoves = new JLabel("Look-ahead Max. Moves");
+        lblLookAheadMaxMoves.setToolTipText("Number of the latest pending moves held back by the look-ahead window, at least 1.");
+        panelSettings.add(lblLookAheadMaxMoves, "2, 14, right, default");
+
+        lookAheadMaxMoves = new JTextField();
+        panelSettings.add(lookAheadMaxMoves, "4, 14, fill, default");
+        lookAheadMaxMoves.setColumns(10);
+
         panel = new JPanel();
         panel.setBorder(new TitledBorder(UIManager.getBorder("TitledBorder.border"), "Test Motion", TitledBorder.LEADING, TitledBorder.TOP, null));
         contentPanel.add(panel);
@@ -436,6 +468,18 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         addWrappedBinding(motionPlanner, "allowUncoordinated", allowUncoordinated, "selected");
         addWrappedBinding(motionPlanner, "interpolationRetiming", interpolationRetiming, "selected");
         addWrappedBinding(motionPlanner, "minimumSpeed", minimumSpeed, "text", percentConverter);
+        addWrappedBinding(motionPlanner, "parallelDriverDispatch", parallelDriverDispatch, "selected");
+        addWrappedBinding(motionPlanner, "lookAhead", lookAhead, "selected");
+        addWrappedBinding(motionPlanner, "lookAheadMaxMoves", lookAheadMaxMoves, "text", new IntegerConverter() {
+            @Override
+            public Integer convertReverse(String arg0) {
+                Integer value = super.convertReverse(arg0);
+                if (value < 1) {
+                    throw new IllegalArgumentException("Look-ahead Max. Moves must be at least 1.");
+                }
+                return value;
+            }
+        });
 
         addWrappedBinding(motionPlanner, "startLocationEnabled", startLocationEnabled, "selected");
         addWrappedBinding(motionPlanner, "mid1LocationEnabled", mid1LocationEnabled, "selected");
@@ -105,7 +105,14 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
         // Note by using the Object generic method, the value will be properly interpreted according to actuator.valueType.
         actuator.actuate((Object)actuatorValue);
     }
-    
+
+    @Override
+    public boolean isPreFeedSupported() {
+        // Feeding is just actuating, unless the head must first move to the feeder. The actuation only 
+        // overlaps with the ongoing motion, if the actuator does not wait for still-stand.
+        return !isMoveBeforeFeed() && isActuatedWithoutStillstand(actuatorName);
+    }
+
     @Override
     public void postPick(Nozzle nozzle) throws Exception {
         if (postPickActuatorName == null || postPickActuatorName.equals("")) {
@@ -758,6 +758,7 @@ public class GcodeDriverSolutions implements Solutions.Subject {
                             } else if (state.equals(Solutions.State.Dismissed)) {
                                 gcodeDriver.commands.remove(command);
                             }
+                            gcodeDriver.clearPatternCache();
                         }
                     });
                 }
@@ -1,10 +1,17 @@
 package org.openpnp.machine.reference.vision;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.IdentityHashMap;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.io.IOUtils;
 import org.opencv.core.Point;
@@ -74,6 +81,43 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
     @ElementMap(required = false)
     protected Map<String, PartSettings> partSettingsByPartId = null;
 
+    /**
+     * The pipelines currently processing, by identity, as CvPipeline.equals() compares the stages.
+     */
+    private final Set<CvPipeline> pipelinesInUse = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The copies of a vision settings pipeline, used while the pipeline itself is busy.
+     */
+    private static class PipelineCopies {
+        /**
+         * The pipeline XML, as of the last time the pipeline was acquired.
+         */
+        String xml;
+        final Deque<CvPipeline> idle = new ArrayDeque<>();
+        final Set<CvPipeline> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * The result of processing an alignment shot on the executor, displayed when it is taken on the machine
+     * thread.
+     */
+    private static class ProcessedShot {
+        final Location offsets;
+        final BufferedImage image;
+
+        ProcessedShot(Location offsets, BufferedImage image) {
+            this.offsets = offsets;
+            this.image = image;
+        }
+    }
+
+    /**
+     * Pooled copies by pipeline, and the pipeline of each copy in use. Guarded by pipelinesInUse.
+     */
+    private final Map<CvPipeline, PipelineCopies> pipelineCopies = new IdentityHashMap<>();
+    private final Map<CvPipeline, PipelineCopies> copyOwners = new IdentityHashMap<>();
+
     public ReferenceBottomVision() {
         Configuration.get().addListener(new ConfigurationListener.Adapter() {
             @Override
@@ -103,6 +147,87 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
             return new PartAlignmentOffset(new Location(LengthUnit.Millimeters), false);
         }
 
+        checkPartOnNozzle(part, nozzle);
+
+        // 获取底部视觉相机
+        Camera camera = VisionUtils.getBottomVisionCamera();
+        // 根据预旋转模式开关来判断具体的执行逻辑
+        PartAlignmentOffset offsets;
+        if (isPreRotate(bottomVisionSettings)) {
+            offsets = findOffsetsPreRotate(part, boardLocation, placement, nozzle, camera, bottomVisionSettings);
+        } else {
+            offsets = findOffsetsPostRotate(part, boardLocation, placement, nozzle, camera, bottomVisionSettings);
+        }
+        return applyRotationMode(nozzle, offsets);
+    }
+
+    /**
+     * Captures the image on the calling thread, and processes it on the executor. Only post-rotate alignment
+     * with a single shot is overlapped, pre-rotate needs the result of each pass before it can move on, and
+     * multiple shots share the pipeline.
+     */
+    @Override
+    public PendingOffsets findOffsetsOverlapped(Part part, BoardLocation boardLocation, Placement placement,
+            Nozzle nozzle, Executor executor) throws Exception {
+        BottomVisionSettings bottomVisionSettings = getInheritedVisionSettings(part);
+        if (!isEnabled() || !bottomVisionSettings.isEnabled() || isPreRotate(bottomVisionSettings)) {
+            return super.findOffsetsOverlapped(part, boardLocation, placement, nozzle, executor);
+        }
+        checkPartOnNozzle(part, nozzle);
+
+        Camera camera = VisionUtils.getBottomVisionCamera();
+        Location wantedLocation = getCameraLocationAtPartHeight(part, camera, nozzle, 0.);
+        CvPipeline pipeline = acquirePipeline(bottomVisionSettings);
+        FutureTask<ProcessedShot> task;
+        try {
+            prepareAlignmentPipeline(pipeline, camera, part, nozzle, wantedLocation, wantedLocation,
+                    bottomVisionSettings);
+            if (pipeline.getPipelineShotsCount() != 1) {
+                RotatedRect rect = processPipelineShots(pipeline, camera, part, nozzle);
+                PartAlignmentOffset offsets = getPostRotateOffsets(pipeline, rect, part, nozzle, camera,
+                        bottomVisionSettings);
+                return () -> applyRotationMode(nozzle, offsets);
+            }
+            PipelineShot pipelineShot = pipeline.getPipelineShot(0);
+            captureShot(pipeline, pipelineShot, camera, nozzle);
+            task = new FutureTask<>(() -> {
+                try {
+                    processShot(pipeline, pipelineShot, camera, part, nozzle);
+                    RotatedRect rect = (RotatedRect) pipelineShot.processCompositeResult().getModel();
+                    Location offsets = getPostRotateLocation(rect, part, camera, bottomVisionSettings);
+                    return new ProcessedShot(offsets, OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()));
+                } finally {
+                    releasePipeline(pipeline);
+                }
+            });
+        } catch (Exception e) {
+            releasePipeline(pipeline);
+            throw e;
+        }
+        // From here on, the task owns the pipeline.
+        executor.execute(task);
+        return () -> {
+            try {
+                // Displaying the result selects the nozzle, which must happen on the machine thread.
+                ProcessedShot processedShot = task.get();
+                displayResult(processedShot.image, part, processedShot.offsets, camera, nozzle);
+                offsetsCheck(part, nozzle, processedShot.offsets);
+                return applyRotationMode(nozzle, new PartAlignmentOffset(processedShot.offsets, false));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        };
+    }
+
+    private boolean isPreRotate(BottomVisionSettings bottomVisionSettings) {
+        return (bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.Default && preRotate)
+                || (bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.AlwaysOn);
+    }
+
+    private void checkPartOnNozzle(Part part, Nozzle nozzle) throws Exception {
         // 检查吸嘴上是否都有零件
         if (part == null || nozzle.getPart() == null) {
             throw new Exception("吸嘴上无零件，请点击停止任务后重新开始。");
@@ -111,17 +236,71 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
         if (part != nozzle.getPart()) {
             throw new Exception("Part mismatch with part on nozzle.");
         }
+    }
 
-        // 获取底部视觉相机
-        Camera camera = VisionUtils.getBottomVisionCamera();
-        // 根据预旋转模式开关来判断具体的执行逻辑
-        PartAlignmentOffset offsets;
-        if ((bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.Default && preRotate)
-                || (bottomVisionSettings.getPreRotateUsage() == PreRotateUsage.AlwaysOn)) {
-            offsets = findOffsetsPreRotate(part, boardLocation, placement, nozzle, camera, bottomVisionSettings);
-        } else {
-            offsets = findOffsetsPostRotate(part, boardLocation, placement, nozzle, camera, bottomVisionSettings);
+    /**
+     * Gets the pipeline of the vision settings for exclusive use. If it is still busy processing for another
+     * Nozzle, a pooled copy is returned instead. The copies are made from the XML taken when the pipeline was
+     * last acquired while idle, so the busy pipeline is never touched, and copies of an edited pipeline are
+     * dropped. Serializing is cheap, parsing i.e. instantiating the stages is what the pool saves.
+     */
+    private CvPipeline acquirePipeline(BottomVisionSettings bottomVisionSettings) throws Exception {
+        CvPipeline pipeline = bottomVisionSettings.getPipeline();
+        PipelineCopies copies;
+        boolean idle;
+        synchronized (pipelinesInUse) {
+            copies = pipelineCopies.computeIfAbsent(pipeline, p -> new PipelineCopies());
+            idle = pipelinesInUse.add(pipeline);
+            if (!idle && copies.xml != null) {
+                CvPipeline copy = copies.idle.poll();
+                if (copy != null) {
+                    copies.inUse.add(copy);
+                    copyOwners.put(copy, copies);
+                    return copy;
+                }
+            }
+        }
+        if (idle) {
+            String xml = pipeline.toXmlString();
+            synchronized (pipelinesInUse) {
+                if (!xml.equals(copies.xml)) {
+                    // New or edited pipeline.
+                    copies.xml = xml;
+                    copies.idle.clear();
+                    copies.inUse.clear();
+                }
+            }
+            return pipeline;
+        }
+        String xml;
+        synchronized (pipelinesInUse) {
+            xml = copies.xml;
+        }
+        CvPipeline copy = (xml != null) ? new CvPipeline(xml) : pipeline.clone();
+        synchronized (pipelinesInUse) {
+            if (xml != null && xml.equals(copies.xml)) {
+                copies.inUse.add(copy);
+                copyOwners.put(copy, copies);
+            }
+        }
+        return copy;
+    }
+
+    private void releasePipeline(CvPipeline pipeline) {
+        pipeline.release();
+        synchronized (pipelinesInUse) {
+            if (pipelinesInUse.remove(pipeline)) {
+                return;
+            }
+            PipelineCopies copies = copyOwners.remove(pipeline);
+            if (copies != null && copies.inUse.remove(pipeline)) {
+                // Still current, keep it for the next time the pipeline is busy.
+                copies.idle.push(pipeline);
+            }
         }
+    }
+
+    private PartAlignmentOffset applyRotationMode(Nozzle nozzle, PartAlignmentOffset offsets) throws Exception {
         // 如果吸嘴正在对齐旋转模式，则将旋转偏移量添加到旋转模式中，而不是在放置时调整它。这有利于在DRO、十字准线等处显示与零件旋转对齐的旋转。
         if (nozzle.isAligningRotationMode()) {
             double rotOff = nozzle.getRotationModeOffset() != null ? nozzle.getRotationModeOffset() : 0;
@@ -201,8 +380,8 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
         Location nozzleLocation = wantedLocation;
         final Location center = new Location(maxLinearOffset.getUnits());
 
-        // 使用try-with-resources语句创建一个CvPipeline对象
-        try (CvPipeline pipeline = bottomVisionSettings.getPipeline()) {
+        CvPipeline pipeline = acquirePipeline(bottomVisionSettings);
+        try {
 
             // 初始化偏移量，用于迭代计算
             Location offsets = new Location(nozzleLocation.getUnits());
@@ -283,6 +462,8 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
 
             // 返回零件对齐偏移量对象
             return new PartAlignment.PartAlignmentOffset(offsets, true);
+        } finally {
+            releasePipeline(pipeline);
         }
     }
 
@@ -293,47 +474,63 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
         // 创建一个位置，其X、Y坐标与相机的X、Y坐标相同，Z坐标为零件高度，并且旋转角度为0（除非启用了预旋转）
         Location wantedLocation = getCameraLocationAtPartHeight(part, camera, nozzle, 0.);
 
-        // 使用try-with-resources语句创建一个CvPipeline对象
-        try (CvPipeline pipeline = bottomVisionSettings.getPipeline()) {
+        CvPipeline pipeline = acquirePipeline(bottomVisionSettings);
+        try {
             // 处理管道并获取结果的旋转矩形
             RotatedRect rect = processPipelineAndGetResult(pipeline, camera, part, nozzle, wantedLocation, wantedLocation, bottomVisionSettings);
+            return getPostRotateOffsets(pipeline, rect, part, nozzle, camera, bottomVisionSettings);
+        } finally {
+            releasePipeline(pipeline);
+        }
+    }
 
-            // 记录调试信息，包括底部视觉部件的ID和识别的矩形信息
-            Logger.debug("Bottom vision part {} result rect {}", part.getId(), rect);
+    private PartAlignmentOffset getPostRotateOffsets(CvPipeline pipeline, RotatedRect rect, Part part, Nozzle nozzle,
+                                                     Camera camera, BottomVisionSettings bottomVisionSettings)
+            throws Exception {
+        Location offsets = getPostRotateLocation(rect, part, camera, bottomVisionSettings);
 
-            // 创建偏移量对象。这是从相机中心到定位零件的物理距离。
-            Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
+        // 显示处理结果，包括图像、零件、偏移量、相机和喷嘴信息
+        displayResult(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), part, offsets, camera, nozzle);
 
-            // 获取识别矩形的角度偏移量
-            double angleOffset = VisionUtils.getPixelAngle(camera, rect.angle);
-            // 大多数OpenCV管道只能告诉我们识别到的矩形的角度位于0°到90°的范围内，
-            // 因为它无法区分矩形的哪一边是哪一边。我们可以假设零件的旋转不会超过+/-45º。
-            // 因此，我们将角度范围从0°到90°更改为-45°到+45°。参见angleNorm()：
-            if (bottomVisionSettings.getMaxRotation() == MaxRotation.Adjust) {
-                angleOffset = Utils2D.angleNorm(angleOffset);
-            } else {
-                // 在一个方向上旋转超过180°没有意义
-                angleOffset = Utils2D.angleNorm(angleOffset, 180);
-            }
-
-            // 检查零件的大小是否符合要求
-            partSizeCheck(part, bottomVisionSettings, rect, camera);
+        // 检查偏移量是否符合要求
+        offsetsCheck(part, nozzle, offsets);
 
-            // 在偏移量上设置角度偏移量
-            offsets = offsets.derive(null, null, null, angleOffset);
+        // 返回零件对齐偏移量对象
+        return new PartAlignmentOffset(offsets, false);
+    }
 
-            // 减去视觉中心偏移
-            offsets = offsets.subtract(bottomVisionSettings.getVisionOffset().rotateXy(offsets.getRotation()));
+    /**
+     * Computes the post-rotate offsets of the result rect, without displaying or checking them, so it may be
+     * called from any thread.
+     */
+    private Location getPostRotateLocation(RotatedRect rect, Part part, Camera camera,
+                                           BottomVisionSettings bottomVisionSettings) throws Exception {
+        // 记录调试信息，包括底部视觉部件的ID和识别的矩形信息
+        Logger.debug("Bottom vision part {} result rect {}", part.getId(), rect);
+
+        // 创建偏移量对象。这是从相机中心到定位零件的物理距离。
+        Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
+
+        // 获取识别矩形的角度偏移量
+        double angleOffset = VisionUtils.getPixelAngle(camera, rect.angle);
+        // 大多数OpenCV管道只能告诉我们识别到的矩形的角度位于0°到90°的范围内，
+        // 因为它无法区分矩形的哪一边是哪一边。我们可以假设零件的旋转不会超过+/-45º。
+        // 因此，我们将角度范围从0°到90°更改为-45°到+45°。参见angleNorm()：
+        if (bottomVisionSettings.getMaxRotation() == MaxRotation.Adjust) {
+            angleOffset = Utils2D.angleNorm(angleOffset);
+        } else {
+            // 在一个方向上旋转超过180°没有意义
+            angleOffset = Utils2D.angleNorm(angleOffset, 180);
+        }
 
-            // 显示处理结果，包括图像、零件、偏移量、相机和喷嘴信息
-            displayResult(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), part, offsets, camera, nozzle);
+        // 检查零件的大小是否符合要求
+        partSizeCheck(part, bottomVisionSettings, rect, camera);
 
-            // 检查偏移量是否符合要求
-            offsetsCheck(part, nozzle, offsets);
+        // 在偏移量上设置角度偏移量
+        offsets = offsets.derive(null, null, null, angleOffset);
 
-            // 返回零件对齐偏移量对象
-            return new PartAlignmentOffset(offsets, false);
-        }
+        // 减去视觉中心偏移
+        return offsets.subtract(bottomVisionSettings.getVisionOffset().rotateXy(offsets.getRotation()));
     }
 
 
@@ -613,125 +810,152 @@ public class ReferenceBottomVision extends AbstractPartAlignment {
 
     private RotatedRect processPipelineAndGetResult(CvPipeline pipeline, Camera camera,
                                                     Part part, Nozzle nozzle, Location wantedLocation, Location adjustedNozzleLocation, BottomVisionSettings bottomVisionSettings) throws Exception {
+        prepareAlignmentPipeline(pipeline, camera, part, nozzle, wantedLocation, adjustedNozzleLocation, bottomVisionSettings);
+        return processPipelineShots(pipeline, camera, part, nozzle);
+    }
+
+    private void prepareAlignmentPipeline(CvPipeline pipeline, Camera camera,
+                                          Part part, Nozzle nozzle, Location wantedLocation, Location adjustedNozzleLocation, BottomVisionSettings bottomVisionSettings) throws Exception {
         // 准备并配置视觉管道，以进行零件识别
         preparePipeline(pipeline, bottomVisionSettings.getPipelineParameterAssignments(), camera, part.getPackage(),
                 nozzle, nozzle.getNozzleTip(), wantedLocation, adjustedNozzleLocation, bottomVisionSettings);
+    }
 
+    private RotatedRect processPipelineShots(CvPipeline pipeline, Camera camera, Part part, Nozzle nozzle) throws Exception {
         // 遍历管道中的每个阶段
         for (PipelineShot pipelineShot : pipeline.getPipelineShots()) {
-            // 应用管道阶段操作
-            pipelineShot.apply();
-
-            Nozzle n1 = Configuration.get().getMachine().getHeads().get(0).getNozzles()
-                    .stream()
-                    .findFirst()
-                    .orElse(null);
-            AffineWarp affineWarp = new AffineWarp();
-            List<CvStage> stages = pipeline.getStages();
-            for (int i = 0; i < stages.size(); i++) {
-                if (stages.get(i) instanceof AffineWarp) {
-                    pipeline.remove(stages.get(i));
-                }
+            captureShot(pipeline, pipelineShot, camera, nozzle);
+            processShot(pipeline, pipelineShot, camera, part, nozzle);
+        }
+
+        // 返回最后一个阶段的处理结果，即RotatedRect
+        return (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
+    }
+
+    /**
+     * Moves to the shot and captures the image, i.e. the part of the shot that needs the machine.
+     */
+    private void captureShot(CvPipeline pipeline, PipelineShot pipelineShot, Camera camera, Nozzle nozzle) throws Exception {
+        // 应用管道阶段操作
+        pipelineShot.apply();
+
+        Nozzle n1 = Configuration.get().getMachine().getHeads().get(0).getNozzles()
+                .stream()
+                .findFirst()
+                .orElse(null);
+        AffineWarp affineWarp = new AffineWarp();
+        List<CvStage> stages = pipeline.getStages();
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i) instanceof AffineWarp) {
+                pipeline.remove(stages.get(i));
             }
-            if (camera.getWidth() > 2000) {
-                if (nozzle == n1 && camera.getLooking() == Camera.Looking.Up) {
-                    //左半边
-                    //Location test = VisionUtils.getPixelLocation(camera, -20.250438, 5.852280);
-                    Location unitsPerPixel = camera.getUnitsPerPixel();
-
-                    Location lefUpLocation = unitsPerPixel.multiply(0 - camera.getWidth() / 2, 0 + camera.getHeight() / 2, 0, 0);
-                    Location rightUpLocation = unitsPerPixel.multiply(0, 0 + camera.getHeight() / 2, 0, 0);
-                    Location leftDownLocation = unitsPerPixel.multiply(0 - camera.getWidth() / 2, -camera.getHeight() + camera.getHeight() / 2, 0, 0);
-                    affineWarp.setX0(lefUpLocation.getX());
-                    affineWarp.setY0(lefUpLocation.getY());
-                    affineWarp.setX1(rightUpLocation.getX());
-                    affineWarp.setY1(rightUpLocation.getY());
-                    affineWarp.setX2(leftDownLocation.getX());
-                    affineWarp.setY2(leftDownLocation.getY());
-                } else {
-                    //右半边
-                    Location unitsPerPixel = camera.getUnitsPerPixelAtZ().convertToUnits(LengthUnit.Millimeters);
-                    Location lefUpLocation = unitsPerPixel.multiply(camera.getWidth() / 2 - camera.getWidth() / 2, 0 + camera.getHeight() / 2, 0, 0);
-                    Location rightUpLocation = unitsPerPixel.multiply(camera.getWidth() - camera.getWidth() / 2, 0 + camera.getHeight() / 2, 0, 0);
-                    Location leftDownLocation = unitsPerPixel.multiply(camera.getWidth() / 2 - camera.getWidth() / 2, -camera.getHeight() + camera.getHeight() / 2, 0, 0);
+        }
+        if (camera.getWidth() > 2000) {
+            if (nozzle == n1 && camera.getLooking() == Camera.Looking.Up) {
+                //左半边
+                //Location test = VisionUtils.getPixelLocation(camera, -20.250438, 5.852280);
+                Location unitsPerPixel = camera.getUnitsPerPixel();
+
+                Location lefUpLocation = unitsPerPixel.multiply(0 - camera.getWidth() / 2, 0 + camera.getHeight() / 2, 0, 0);
+                Location rightUpLocation = unitsPerPixel.multiply(0, 0 + camera.getHeight() / 2, 0, 0);
+                Location leftDownLocation = unitsPerPixel.multiply(0 - camera.getWidth() / 2, -camera.getHeight() + camera.getHeight() / 2, 0, 0);
+                affineWarp.setX0(lefUpLocation.getX());
+                affineWarp.setY0(lefUpLocation.getY());
+                affineWarp.setX1(rightUpLocation.getX());
+                affineWarp.setY1(rightUpLocation.getY());
+                affineWarp.setX2(leftDownLocation.getX());
+                affineWarp.setY2(leftDownLocation.getY());
+            } else {
+                //右半边
+                Location unitsPerPixel = camera.getUnitsPerPixelAtZ().convertToUnits(LengthUnit.Millimeters);
+                Location lefUpLocation = unitsPerPixel.multiply(camera.getWidth() / 2 - camera.getWidth() / 2, 0 + camera.getHeight() / 2, 0, 0);
+                Location rightUpLocation = unitsPerPixel.multiply(camera.getWidth() - camera.getWidth() / 2, 0 + camera.getHeight() / 2, 0, 0);
+                Location leftDownLocation = unitsPerPixel.multiply(camera.getWidth() / 2 - camera.getWidth() / 2, -camera.getHeight() + camera.getHeight() / 2, 0, 0);
 
-                    Location n1Offset = n1.getHeadOffsets();
-                    Location n2Offset = Configuration.get().getMachine().getHeads().get(0).getNozzles().get(1).getHeadOffsets();
-                    double n2N1OffsetX = n2Offset.getX() - n1Offset.getX();
-                    double n2N1OffsetY = n2Offset.getY() - n1Offset.getY();
+                Location n1Offset = n1.getHeadOffsets();
+                Location n2Offset = Configuration.get().getMachine().getHeads().get(0).getNozzles().get(1).getHeadOffsets();
+                double n2N1OffsetX = n2Offset.getX() - n1Offset.getX();
+                double n2N1OffsetY = n2Offset.getY() - n1Offset.getY();
 
 
-                    Location leftCenteLocation = unitsPerPixel.convertToUnits(LengthUnit.Millimeters).multiply(camera.getWidth() / 4 - camera.getWidth() / 2, -camera.getHeight() / 2 + camera.getHeight(), 0, 0);
-                    Location rightCenteLocation = unitsPerPixel.convertToUnits(LengthUnit.Millimeters).multiply(camera.getWidth() * 3 / 4 - camera.getWidth() / 2, -camera.getHeight() / 2 + camera.getHeight(), 0, 0);
-                    double leftRightOffsetX = rightCenteLocation.getX() - leftCenteLocation.getX();
-                    double leftRightOffsetY = rightCenteLocation.getY() - leftCenteLocation.getY();
+                Location leftCenteLocation = unitsPerPixel.convertToUnits(LengthUnit.Millimeters).multiply(camera.getWidth() / 4 - camera.getWidth() / 2, -camera.getHeight() / 2 + camera.getHeight(), 0, 0);
+                Location rightCenteLocation = unitsPerPixel.convertToUnits(LengthUnit.Millimeters).multiply(camera.getWidth() * 3 / 4 - camera.getWidth() / 2, -camera.getHeight() / 2 + camera.getHeight(), 0, 0);
+                double leftRightOffsetX = rightCenteLocation.getX() - leftCenteLocation.getX();
+                double leftRightOffsetY = rightCenteLocation.getY() - leftCenteLocation.getY();
 
 
-                    double cameraNozzelOffsetX, cameraNozzelOffsetY;
-                    leftRightOffsetX = 29.75;
+                double cameraNozzelOffsetX, cameraNozzelOffsetY;
+                leftRightOffsetX = 29.75;
 /*
-                    if (n2N1OffsetX > leftRightOffsetX) {
-                        cameraNozzelOffsetX = (n2N1OffsetX - leftRightOffsetX);
-                    } else {
-                        cameraNozzelOffsetX = (leftRightOffsetX - n2N1OffsetX);
-                    }
+                if (n2N1OffsetX > leftRightOffsetX) {
+                    cameraNozzelOffsetX = (n2N1OffsetX - leftRightOffsetX);
+                } else {
+                    cameraNozzelOffsetX = (leftRightOffsetX - n2N1OffsetX);
+                }
 */
-                    cameraNozzelOffsetX = n2N1OffsetX - leftRightOffsetX;
-                    cameraNozzelOffsetY = n2N1OffsetY * 2;
+                cameraNozzelOffsetX = n2N1OffsetX - leftRightOffsetX;
+                cameraNozzelOffsetY = n2N1OffsetY * 2;
 
 
-                    affineWarp.setX0(lefUpLocation.getX() + cameraNozzelOffsetX);
-                    affineWarp.setY0(lefUpLocation.getY() + cameraNozzelOffsetY);
-                    affineWarp.setX1(rightUpLocation.getX() + cameraNozzelOffsetX);
-                    affineWarp.setY1(rightUpLocation.getY() + cameraNozzelOffsetY);
-                    affineWarp.setX2(leftDownLocation.getX() + cameraNozzelOffsetX);
-                    affineWarp.setY2(leftDownLocation.getY() + cameraNozzelOffsetY);
-                    pipeline.setProperty("needSettle", false);
-                }
-                pipeline.insert(affineWarp, 3);
-                pipeline.insert(affineWarp, pipeline.getStages().size() - 2);
+                affineWarp.setX0(lefUpLocation.getX() + cameraNozzelOffsetX);
+                affineWarp.setY0(lefUpLocation.getY() + cameraNozzelOffsetY);
+                affineWarp.setX1(rightUpLocation.getX() + cameraNozzelOffsetX);
+                affineWarp.setY1(rightUpLocation.getY() + cameraNozzelOffsetY);
+                affineWarp.setX2(leftDownLocation.getX() + cameraNozzelOffsetX);
+                affineWarp.setY2(leftDownLocation.getY() + cameraNozzelOffsetY);
+                pipeline.setProperty("needSettle", false);
             }
-            // 处理管道，执行图像处理操作
-            pipeline.process();
-
-            // 获取管道处理的结果
-            Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
+            pipeline.insert(affineWarp, 3);
+            pipeline.insert(affineWarp, pipeline.getStages().size() - 2);
+        }
+        // Skip the diagnostic stages, if nobody can see the result.
+        MainFrame mainFrame = MainFrame.get();
+        pipeline.setHeadless(mainFrame == null || !mainFrame.getCameraViews().isCameraViewVisible(camera));
+        // 执行管道的图像采集阶段
+        pipeline.processCapture();
+    }
 
-            // 如果找不到名为"results"的结果，则回退到旧名称"result"
-            if (result == null) {
-                result = pipeline.getResult("result");
-            }
+    /**
+     * Processes the captured image of the shot, this does not need the machine.
+     */
+    private void processShot(CvPipeline pipeline, PipelineShot pipelineShot, Camera camera, Part part, Nozzle nozzle) throws Exception {
+        // 处理管道，执行图像处理操作
+        pipeline.processRemaining();
 
-            // 如果结果仍然为null，则抛出异常
-            if (result == null) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Pipeline error. Pipeline must contain a result named '%s'.",
-                        part.getId(), VisionUtils.PIPELINE_RESULTS_NAME));
-            }
+        // 获取管道处理的结果
+        Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
 
-            // 如果结果模型为null，则抛出异常
-            if (result.model == null) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): No result found.",
-                        part.getId()));
-            }
+        // 如果找不到名为"results"的结果，则回退到旧名称"result"
+        if (result == null) {
+            result = pipeline.getResult("result");
+        }
 
-            // 检查结果模型是否为正确的类型（RotatedRect）
-            if (!(result.model instanceof RotatedRect)) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Incorrect pipeline result type (%s). Expected RotatedRect.",
-                        part.getId(), result.model.getClass().getSimpleName()));
-            }
+        // 如果结果仍然为null，则抛出异常
+        if (result == null) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Pipeline error. Pipeline must contain a result named '%s'.",
+                    part.getId(), VisionUtils.PIPELINE_RESULTS_NAME));
+        }
 
-            // 处理管道阶段的结果
-            pipelineShot.processResult(result);
+        // 如果结果模型为null，则抛出异常
+        if (result.model == null) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): No result found.",
+                    part.getId()));
+        }
 
-            // 显示管道阶段的处理结果
-            displayResult(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), part, null, camera, nozzle);
+        // 检查结果模型是否为正确的类型（RotatedRect）
+        if (!(result.model instanceof RotatedRect)) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Incorrect pipeline result type (%s). Expected RotatedRect.",
+                    part.getId(), result.model.getClass().getSimpleName()));
         }
 
-        // 返回最后一个阶段的处理结果，即RotatedRect
-        return (RotatedRect) pipeline.getCurrentPipelineShot().processCompositeResult().getModel();
+        // 处理管道阶段的结果
+        pipelineShot.processResult(result);
+
+        // 显示管道阶段的处理结果
+        displayResult(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), part, null, camera, nozzle);
     }
 
 
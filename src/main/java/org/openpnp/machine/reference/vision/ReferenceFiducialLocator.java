@@ -450,8 +450,12 @@ public class ReferenceFiducialLocator extends AbstractPartSettingsHolder impleme
         List<Location> matchedLocations = new ArrayList<Location>();
 
         try(CvPipeline pipeline = getFiducialPipeline(camera, partSettingsHolder, nominalLocation)) {
+            // Drawing the fiducial diagnostics is wasted, if the camera view is not visible.
+            MainFrame mainFrame = MainFrame.get();
+            boolean headless = mainFrame == null || !mainFrame.getCameraViews().isCameraViewVisible(camera);
             for (int i = 0; i < repeatFiducialRecognition; i++) {
                 // Perform vision operation
+                pipeline.setHeadless(headless);
                 pipeline.process();
 
                 // Get the results
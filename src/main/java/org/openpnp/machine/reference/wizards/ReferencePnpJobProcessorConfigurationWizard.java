@@ -45,6 +45,9 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
     private JComboBox comboBoxJobOrder;
     private JTextField maxVisionRetriesTextField;
     private JCheckBox steppingToNextMotion;
+    private JCheckBox preFeed;
+    private JCheckBox overlappedAlignment;
+    private JCheckBox cycleTimeProfiling;
 
     public ReferencePnpJobProcessorConfigurationWizard(ReferencePnpJobProcessor jobProcessor) {
         this.jobProcessor = jobProcessor;
@@ -67,6 +70,10 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
                         FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblJobOrder = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.JobOrder")); //$NON-NLS-1$
@@ -88,6 +95,27 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
 
         steppingToNextMotion = new JCheckBox(); 
         panelGeneral.add(steppingToNextMotion, "4, 6");
+
+        JLabel lblPreFeed = new JLabel(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblPreFeed.text")); //$NON-NLS-1$
+        lblPreFeed.setToolTipText(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblPreFeed.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblPreFeed, "2, 8, right, default");
+
+        preFeed = new JCheckBox();
+        panelGeneral.add(preFeed, "4, 8");
+
+        JLabel lblOverlappedAlignment = new JLabel(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblOverlappedAlignment.text")); //$NON-NLS-1$
+        lblOverlappedAlignment.setToolTipText(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblOverlappedAlignment.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblOverlappedAlignment, "2, 10, right, default");
+
+        overlappedAlignment = new JCheckBox();
+        panelGeneral.add(overlappedAlignment, "4, 10");
+
+        JLabel lblCycleTimeProfiling = new JLabel(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblCycleTimeProfiling.text")); //$NON-NLS-1$
+        lblCycleTimeProfiling.setToolTipText(Translations.getString("ReferencePnpJobProcessorConfigurationWizard.lblCycleTimeProfiling.toolTipText")); //$NON-NLS-1$
+        panelGeneral.add(lblCycleTimeProfiling, "2, 12, right, default");
+
+        cycleTimeProfiling = new JCheckBox();
+        panelGeneral.add(cycleTimeProfiling, "4, 12");
     }
 
     @Override
@@ -97,6 +125,9 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
         addWrappedBinding(jobProcessor, "jobOrder", comboBoxJobOrder, "selectedItem");
         addWrappedBinding(jobProcessor, "maxVisionRetries", maxVisionRetriesTextField, "text", intConverter);
         addWrappedBinding(jobProcessor, "steppingToNextMotion", steppingToNextMotion, "selected");
+        addWrappedBinding(jobProcessor, "preFeed", preFeed, "selected");
+        addWrappedBinding(jobProcessor, "overlappedAlignment", overlappedAlignment, "selected");
+        addWrappedBinding(jobProcessor, "cycleTimeProfiling", cycleTimeProfiling, "selected");
         
         ComponentDecorators.decorateWithAutoSelect(maxVisionRetriesTextField);
     }
@@ -0,0 +1,113 @@
+package org.openpnp.machine.reference.wizards;
+
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.border.TitledBorder;
+import javax.swing.event.AncestorEvent;
+import javax.swing.event.AncestorListener;
+
+import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+
+import com.jgoodies.forms.layout.ColumnSpec;
+import com.jgoodies.forms.layout.FormLayout;
+import com.jgoodies.forms.layout.FormSpecs;
+import com.jgoodies.forms.layout.RowSpec;
+
+/**
+ * Shows the cycle time profile of the job. The profile is refreshed periodically, while the panel is
+ * showing.
+ */
+public class ReferencePnpJobProcessorCycleTime extends AbstractConfigurationWizard {
+    private final ReferencePnpJobProcessor jobProcessor;
+    private JTextArea textAreaProfile;
+    private Timer refreshTimer;
+
+    public ReferencePnpJobProcessorCycleTime(ReferencePnpJobProcessor jobProcessor) {
+        this.jobProcessor = jobProcessor;
+
+        JPanel panelCycleTime = new JPanel();
+        panelCycleTime.setBorder(new TitledBorder(null, "Cycle Time Profile [ms]",
+                TitledBorder.LEADING, TitledBorder.TOP, null));
+        contentPanel.add(panelCycleTime);
+
+        panelCycleTime.setLayout(new FormLayout(new ColumnSpec[] {
+                FormSpecs.RELATED_GAP_COLSPEC,
+                ColumnSpec.decode("default:grow"),
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,},
+            new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                RowSpec.decode("default:grow"),
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,}));
+
+        JScrollPane scrollPane = new JScrollPane();
+        panelCycleTime.add(scrollPane, "2, 2, 5, 1, fill, fill");
+
+        textAreaProfile = new JTextArea();
+        textAreaProfile.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        textAreaProfile.setEditable(false);
+        textAreaProfile.setRows(16);
+        scrollPane.setViewportView(textAreaProfile);
+
+        JButton btnExport = new JButton(exportAction);
+        btnExport.setToolTipText("<html>Write the records as CSV and the percentiles as JSON<br/>\n"
+                + "to the configuration directory.</html>");
+        panelCycleTime.add(btnExport, "4, 4");
+
+        JButton btnReset = new JButton(resetAction);
+        panelCycleTime.add(btnReset, "6, 4");
+
+        refreshTimer = new Timer(1000, e -> refreshProfile());
+        addAncestorListener(new AncestorListener() {
+            @Override
+            public void ancestorAdded(AncestorEvent event) {
+                refreshProfile();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void ancestorRemoved(AncestorEvent event) {
+                refreshTimer.stop();
+            }
+
+            @Override
+            public void ancestorMoved(AncestorEvent event) {
+            }
+        });
+    }
+
+    @Override
+    public void createBindings() {
+    }
+
+    protected void refreshProfile() {
+        textAreaProfile.setText(jobProcessor.getCycleTimeProfiler().getReport());
+    }
+
+    private Action exportAction = new AbstractAction("Export") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            jobProcessor.writeCycleTimeReport();
+        }
+    };
+
+    private Action resetAction = new AbstractAction("Reset") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            jobProcessor.getCycleTimeProfiler().reset();
+            refreshProfile();
+        }
+    };
+}
@@ -60,6 +60,7 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
     private JTextField simulatedCameraNoise;
     private JTextField simulatedVibrationAmplitude;
     private JComboBox simulationMode;
+    private JCheckBox virtualTime;
     private JTextField simulatedRunoutPhase;
     private JCheckBox pickAndPlaceChecking;
     private JTextField simulatedCameraLag;
@@ -79,6 +80,8 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
                 FormSpecs.RELATED_GAP_COLSPEC,
                 ColumnSpec.decode("max(50dlu;default)"),},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
 
@@ -88,6 +91,14 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
         simulationMode = new JComboBox(SimulationMode.values());
         panelGeneral.add(simulationMode, "4, 2, fill, default");
 
+        JLabel lblVirtualTime = new JLabel("Virtual Time?");
+        lblVirtualTime.setToolTipText("<html>Simulated waits for motion, dwell, actuation and camera settling advance<br/>\n"
+                + "the clock instantly. Jobs run at computing speed but report the modelled machine time.</html>");
+        panelGeneral.add(lblVirtualTime, "2, 4, right, default");
+
+        virtualTime = new JCheckBox("");
+        panelGeneral.add(virtualTime, "4, 4");
+
         JPanel panelLocations = new JPanel();
         panelLocations.setBorder(new TitledBorder(null, "Simulated Imperfections", TitledBorder.LEADING,
                 TitledBorder.TOP, null, null));
@@ -263,6 +274,7 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
         LengthConverter lengthConverter = new LengthConverter();
 
         addWrappedBinding(machine, "simulationMode", simulationMode, "selectedItem");
+        addWrappedBinding(machine, "virtualTime", virtualTime, "selected");
 
         addWrappedBinding(machine, "simulatedNonSquarenessFactor", simulatedNonSquarenessFactor, "text", doubleConverter);
 
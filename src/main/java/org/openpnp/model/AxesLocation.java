@@ -21,13 +21,17 @@
 
 package org.openpnp.model;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -60,7 +64,18 @@ import org.openpnp.util.Triplet;
  * sometimes used to treat axes in their "natural" order, where it may matter.
  */
 public class AxesLocation {
-    private LinkedHashMap<Axis, Double> location;
+    private static final Axis[] noAxes = new Axis[0];
+    private static final double[] noCoordinates = new double[0];
+
+    /**
+     * The axes and their coordinates are stored in insertion order, in two parallel arrays. Axis sets are 
+     * small, so a linear identity search is faster than hashing, and no boxing is needed. The arrays are 
+     * never modified after construction, so they can be shared between instances.   
+     */
+    private Axis[] axes;
+    private double[] coordinates;
+    private int size;
+
     final public static AxesLocation zero = new AxesLocation();
 
     /**
@@ -81,15 +96,35 @@ public class AxesLocation {
      */
     public AxesLocation() {
         // Empty.
-        location = new LinkedHashMap<>(0);
+        axes = noAxes;
+        coordinates = noCoordinates;
     }
 
+    /**
+     * @return A copy of the axes and coordinates as a map.
+     */
     public LinkedHashMap<Axis, Double> getLocation() {
+        LinkedHashMap<Axis, Double> location = new LinkedHashMap<>(size*2);
+        for (int i = 0; i < size; i++) {
+            location.put(axes[i], coordinates[i]);
+        }
         return location;
     }
 
+    /**
+     * Replaces the axes and coordinates. Note, this breaks the value semantics of AxesLocation, as instances
+     * may be shared. Use {@link #put(AxesLocation)} instead.
+     * 
+     * @param l
+     */
+    @Deprecated
     public void setLocation(LinkedHashMap<Axis, Double> l) {
-        location = l;
+        axes = new Axis[l.size()];
+        coordinates = new double[l.size()];
+        size = 0;
+        for (Entry<Axis, Double> entry : l.entrySet()) {
+            putCoordinate(entry.getKey(), entry.getValue() != null ? entry.getValue() : 0.0);
+        }
     }
 
     /**
@@ -99,9 +134,14 @@ public class AxesLocation {
      * @param coordinate
      */
     public AxesLocation(Axis axis, double coordinate) {
-        location = new LinkedHashMap<>(1);
         if (axis != null) {
-            location.put(axis, coordinate);
+            axes = new Axis[] { axis };
+            coordinates = new double[] { coordinate };
+            size = 1;
+        }
+        else {
+            axes = noAxes;
+            coordinates = noCoordinates;
         }
     }
 
@@ -123,9 +163,9 @@ public class AxesLocation {
      * @param axes
      */
     public AxesLocation(CoordinateAxis... axis) {
-        location = new LinkedHashMap<>(axis.length);
+        allocate(axis.length);
         for (CoordinateAxis oneAxis : axis) {
-            location.put(oneAxis, oneAxis.getLengthCoordinate().convertToUnits(getUnits()).getValue());
+            putCoordinate(oneAxis, oneAxis.getLengthCoordinate().convertToUnits(getUnits()).getValue());
         }
     }
 
@@ -147,11 +187,11 @@ public class AxesLocation {
      * @param initializer
      */
     public <T extends Axis> AxesLocation(Iterable<T> axes, Function<T, Length> initializer) {
-        location = new LinkedHashMap<>();
+        allocate(axes instanceof Collection ? ((Collection<T>) axes).size() : 8);
         for (T axis : axes) {
             Length coordinate = initializer.apply(axis);
             if (coordinate != null) {
-                location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                putCoordinate(axis, coordinate.convertToUnits(getUnits()).getValue());
             }
         }
     }
@@ -174,12 +214,12 @@ public class AxesLocation {
      * @param initializer
      */
     public AxesLocation(Machine machine, Function<CoordinateAxis, Length> initializer) {
-        location = new LinkedHashMap<>();
+        allocate(machine.getAxes().size());
         for (Axis axis : machine.getAxes()) {
             if (axis instanceof CoordinateAxis) {
                 Length coordinate = initializer.apply((CoordinateAxis) axis);
                 if (coordinate != null) {
-                    location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                    putCoordinate(axis, coordinate.convertToUnits(getUnits()).getValue());
                 }
             }
         }
@@ -194,13 +234,13 @@ public class AxesLocation {
      * @param initializer
      */
     public AxesLocation(Machine machine, Driver driver, Function<ControllerAxis, Length> initializer) {
-        location = new LinkedHashMap<>();
+        allocate(machine.getAxes().size());
         for (Axis axis : machine.getAxes()) {
             if (axis instanceof ControllerAxis) {
                 if (((ControllerAxis) axis).getDriver() == driver) {
                     Length coordinate = initializer.apply((ControllerAxis) axis);
                     if (coordinate != null) {
-                        location.put(axis, coordinate.convertToUnits(getUnits()).getValue());
+                        putCoordinate(axis, coordinate.convertToUnits(getUnits()).getValue());
                     }
                 }
             }
@@ -208,17 +248,38 @@ public class AxesLocation {
     }
 
     /**
-     * Using the given binary function, aggregate the given axesLocation argument list.
+     * Using the given binary function, aggregate the given axesLocation argument list. Coordinates of axes
+     * that are not yet present, are taken as is. If the function returns null, the axis is removed.
      *
      * @param function
      * @param axesLocation
      */
     public AxesLocation(BiFunction<Double, Double, Double> function, AxesLocation... axesLocation) {
-        location = new LinkedHashMap<>();
+        int capacity = 0;
         for (AxesLocation oneAxesLocation : axesLocation) {
             if (oneAxesLocation != null) {
-                for (Axis axis : oneAxesLocation.getAxes()) {
-                    location.merge(axis, oneAxesLocation.getCoordinate(axis), function);
+                capacity += oneAxesLocation.size;
+            }
+        }
+        allocate(capacity);
+        for (AxesLocation oneAxesLocation : axesLocation) {
+            if (oneAxesLocation != null) {
+                for (int j = 0; j < oneAxesLocation.size; j++) {
+                    Axis axis = oneAxesLocation.axes[j];
+                    double coordinate = oneAxesLocation.coordinates[j];
+                    int i = indexOf(axis);
+                    if (i < 0) {
+                        putCoordinate(axis, coordinate);
+                    }
+                    else {
+                        Double merged = function.apply(coordinates[i], coordinate);
+                        if (merged != null) {
+                            coordinates[i] = merged;
+                        }
+                        else {
+                            remove(i);
+                        }
+                    }
                 }
             }
         }
@@ -231,26 +292,149 @@ public class AxesLocation {
      * @param axesLocation
      */
     public AxesLocation(Function<Double, Double> function, AxesLocation axesLocation) {
-        location = new LinkedHashMap<>();
-        for (Axis axis : axesLocation.getAxes()) {
-            location.put(axis, function.apply(axesLocation.getCoordinate(axis)));
+        allocate(axesLocation.size);
+        for (int i = 0; i < axesLocation.size; i++) {
+            Double coordinate = function.apply(axesLocation.coordinates[i]);
+            putCoordinate(axesLocation.axes[i], coordinate != null ? coordinate : 0.0);
         }
     }
 
+    private static final int PUT = 0;
+    private static final int ADD = 1;
+    private static final int SUBTRACT = 2;
+
+    /**
+     * Unboxed equivalent of the aggregating constructor, for the most common operations.  
+     *  
+     * @param operation
+     * @param other
+     * @return
+     */
+    private AxesLocation combine(int operation, AxesLocation other) {
+        if (other == null || other.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return other;
+        }
+        AxesLocation result = new AxesLocation();
+        if (sameAxes(other)) {
+            // Fast path, share the axes.
+            result.axes = axes;
+            result.size = size;
+            result.coordinates = new double[size];
+            for (int i = 0; i < size; i++) {
+                result.coordinates[i] = combine(operation, coordinates[i], other.coordinates[i]);
+            }
+            return result;
+        }
+        result.allocate(size + other.size);
+        System.arraycopy(axes, 0, result.axes, 0, size);
+        System.arraycopy(coordinates, 0, result.coordinates, 0, size);
+        result.size = size;
+        for (int j = 0; j < other.size; j++) {
+            int i = result.indexOf(other.axes[j]);
+            if (i < 0) {
+                result.putCoordinate(other.axes[j], other.coordinates[j]);
+            }
+            else {
+                result.coordinates[i] = combine(operation, result.coordinates[i], other.coordinates[j]);
+            }
+        }
+        return result;
+    }
+
+    private static double combine(int operation, double a, double b) {
+        switch (operation) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            default:
+                return b;
+        }
+    }
+
+    private boolean sameAxes(AxesLocation other) {
+        if (size != other.size) {
+            return false;
+        }
+        if (axes == other.axes) {
+            return true;
+        }
+        for (int i = 0; i < size; i++) {
+            if (axes[i] != other.axes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void allocate(int capacity) {
+        axes = capacity == 0 ? noAxes : new Axis[capacity];
+        coordinates = capacity == 0 ? noCoordinates : new double[capacity];
+        size = 0;
+    }
+
+    /**
+     * Puts a coordinate during construction. Must not be called once the AxesLocation has been constructed.
+     * 
+     * @param axis
+     * @param coordinate
+     */
+    private void putCoordinate(Axis axis, double coordinate) {
+        int i = indexOf(axis);
+        if (i >= 0) {
+            coordinates[i] = coordinate;
+            return;
+        }
+        if (size == axes.length) {
+            int capacity = Math.max(4, size*2);
+            axes = Arrays.copyOf(axes, capacity);
+            coordinates = Arrays.copyOf(coordinates, capacity);
+        }
+        axes[size] = axis;
+        coordinates[size] = coordinate;
+        size++;
+    }
+
+    private void remove(int i) {
+        System.arraycopy(axes, i + 1, axes, i, size - i - 1);
+        System.arraycopy(coordinates, i + 1, coordinates, i, size - i - 1);
+        size--;
+        axes[size] = null;
+    }
+
+    private int indexOf(Axis axis) {
+        for (int i = 0; i < size; i++) {
+            if (axes[i] == axis) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public AxesLocation add(AxesLocation other) {
-        return new AxesLocation((a, b) -> (a + b), this, other);
+        return combine(ADD, other);
     }
 
     public AxesLocation subtract(AxesLocation other) {
-        return new AxesLocation((a, b) -> (a - b), this, other);
+        return combine(SUBTRACT, other);
     }
 
     public AxesLocation multiply(double factor) {
-        return new AxesLocation((a) -> (a * factor), this);
+        AxesLocation result = new AxesLocation();
+        result.axes = axes;
+        result.size = size;
+        result.coordinates = new double[size];
+        for (int i = 0; i < size; i++) {
+            result.coordinates[i] = coordinates[i] * factor;
+        }
+        return result;
     }
 
     public AxesLocation put(AxesLocation other) {
-        return new AxesLocation((a, b) -> (b), this, other);
+        return combine(PUT, other);
     }
 
     /**
@@ -261,8 +445,8 @@ public class AxesLocation {
      */
     public double dotProduct(AxesLocation other) {
         double dot = 0;
-        for (Entry<Axis, Double> entry : this.location.entrySet()) {
-            dot += entry.getValue() * other.getCoordinate(entry.getKey());
+        for (int i = 0; i < size; i++) {
+            dot += coordinates[i] * other.getCoordinate(axes[i]);
         }
         return dot;
     }
@@ -317,7 +501,37 @@ public class AxesLocation {
      * @return
      */
     public Set<Axis> getAxes() {
-        return location.keySet();
+        return new AbstractSet<Axis>() {
+            @Override
+            public Iterator<Axis> iterator() {
+                return new Iterator<Axis>() {
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < size;
+                    }
+
+                    @Override
+                    public Axis next() {
+                        if (i >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return axes[i++];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Axis && indexOf((Axis) o) >= 0;
+            }
+        };
     }
 
     /**
@@ -328,9 +542,10 @@ public class AxesLocation {
      */
     public LinkedHashSet<ControllerAxis> getAxes(Driver driver) {
         LinkedHashSet<ControllerAxis> axes = new LinkedHashSet<>();
-        for (ControllerAxis axis : getAxes(ControllerAxis.class)) {
-            if (driver == null || ((ControllerAxis) axis).getDriver() == driver) {
-                axes.add((ControllerAxis) axis);
+        for (int i = 0; i < size; i++) {
+            if (this.axes[i] instanceof ControllerAxis 
+                    && (driver == null || ((ControllerAxis) this.axes[i]).getDriver() == driver)) {
+                axes.add((ControllerAxis) this.axes[i]);
             }
         }
         return axes;
@@ -345,9 +560,9 @@ public class AxesLocation {
     @SuppressWarnings("unchecked")
     public <T extends Axis> LinkedHashSet<T> getAxes(Class<T> axisClass) {
         LinkedHashSet<T> axes = new LinkedHashSet<>();
-        for (Axis axis : getAxes()) {
-            if (axisClass.isInstance(axis)) {
-                axes.add((T) axis);
+        for (int i = 0; i < size; i++) {
+            if (axisClass.isInstance(this.axes[i])) {
+                axes.add((T) this.axes[i]);
             }
         }
         return axes;
@@ -367,7 +582,7 @@ public class AxesLocation {
         if (axis == null) {
             return true;
         }
-        return (location.containsKey(axis));
+        return indexOf(axis) >= 0;
     }
 
     /**
@@ -395,11 +610,11 @@ public class AxesLocation {
     }
 
     public int size() {
-        return getAxes().size();
+        return size;
     }
 
     public boolean isEmpty() {
-        return getAxes().isEmpty();
+        return size == 0;
     }
 
     /**
@@ -430,9 +645,9 @@ public class AxesLocation {
      */
     public double getCoordinate(Axis axis) {
         if (axis != null) {
-            Double coordinate = location.get(axis);
-            if (coordinate != null) {
-                return coordinate;
+            int i = indexOf(axis);
+            if (i >= 0) {
+                return coordinates[i];
             }
         }
         return 0.0;
@@ -468,14 +683,13 @@ public class AxesLocation {
     public String toString() {
         StringBuilder str = new StringBuilder();
         str.append("(");
-        int i = 0;
-        for (Entry<Axis, Double> entry : location.entrySet()) {
-            if (i++ > 0) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
                 str.append(", ");
             }
-            str.append(entry.getKey().getName());
+            str.append(axes[i].getName());
             str.append(":");
-            str.append(String.format(Locale.US, "%f", entry.getValue()));
+            str.append(String.format(Locale.US, "%f", coordinates[i]));
         }
         str.append(")");
         return str.toString();
@@ -626,9 +840,9 @@ public class AxesLocation {
      */
     public double getEuclideanMetric() {
         double sumSq = 0;
-        for (Entry<Axis, Double> entry : location.entrySet()) {
-            if (entry.getKey() instanceof ControllerAxis) {
-                sumSq += Math.pow(entry.getValue(), 2);
+        for (int i = 0; i < size; i++) {
+            if (axes[i] instanceof ControllerAxis) {
+                sumSq += Math.pow(coordinates[i], 2);
             }
         }
         return Math.sqrt(sumSq);
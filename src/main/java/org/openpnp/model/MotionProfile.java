@@ -574,7 +574,8 @@ public class MotionProfile {
     }
     public void solve(final int iterations, final double vtol, final double ttol) {
         double tStart = NanosecondTime.getRuntimeSeconds();
-        solveForVelocity(iterations, vtol, ttol);
+        // Recurring moves are taken from the cache, if possible.
+        MotionProfileCache.get().solve(this, iterations, vtol, ttol);
         // Result is now stored in the profile i.e. you can get v[4], a[2], a[6] to get the (signed) solution.
         solvingTime = NanosecondTime.getRuntimeSeconds() - tStart;
         setOption(ProfileOption.Solved);
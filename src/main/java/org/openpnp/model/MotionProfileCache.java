@@ -0,0 +1,247 @@
+package org.openpnp.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of solved {@link MotionProfile}s. In a job, the same moves repeat many times (feeder to
+ * camera to placement, nozzle tip changer moves, Safe Z up/down), so the iterative solver would compute the same
+ * solution over and over.
+ * <p>
+ * The cache is keyed on the quantized constraint tuple of the profile, relative to its start location, i.e. a
+ * cached solution is translated to the start location of the profile that hits it. The quantum is far below
+ * any axis resolution, so a hit is as good as solving. The boundary conditions of the profile (start and end
+ * location, velocity and acceleration) are kept exactly, only the inner segments are taken from the cache.
+ * <p>
+ * When the capacity is exceeded, the least recently used entries are evicted first. Lookups only hold the
+ * lock of the cache for the map access, solving is done outside of it.
+ */
+public class MotionProfileCache {
+    /**
+     * Quantum of locations, velocities, accelerations and jerks, in millimeters (or degrees) and seconds.
+     */
+    static final double quantum = 1e-7;
+    /**
+     * Quantum of times, in seconds.
+     */
+    static final double timeQuantum = 1e-9;
+
+    private static final MotionProfileCache instance = new MotionProfileCache();
+
+    private static class Key {
+        private final long[] values;
+        private final int hash;
+
+        Key(MotionProfile profile, int iterations, double vtol, double ttol) {
+            double s0 = profile.s[0];
+            values = new long[] {
+                    quantize(profile.s[MotionProfile.segments] - s0, quantum),
+                    quantize(profile.v[0], quantum),
+                    quantize(profile.v[MotionProfile.segments], quantum),
+                    quantize(profile.a[0], quantum),
+                    quantize(profile.a[MotionProfile.segments], quantum),
+                    quantize(profile.sMin - s0, quantum),
+                    quantize(profile.sMax - s0, quantum),
+                    quantize(profile.vMax, quantum),
+                    quantize(profile.aMaxEntry, quantum),
+                    quantize(profile.aMaxExit, quantum),
+                    quantize(profile.jMax, quantum),
+                    quantize(profile.tMin, timeQuantum),
+                    quantize(profile.tMax, timeQuantum),
+                    profile.profileOptions & ~MotionProfile.ProfileOption.Solved.flag(),
+                    iterations,
+                    quantize(vtol, quantum),
+                    quantize(ttol, timeQuantum),
+            };
+            hash = Arrays.hashCode(values);
+        }
+
+        private static long quantize(double value, double quantum) {
+            if (value == Double.POSITIVE_INFINITY) {
+                return Long.MAX_VALUE;
+            }
+            else if (value == Double.NEGATIVE_INFINITY) {
+                return Long.MIN_VALUE;
+            }
+            return Math.round(value/quantum);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key
+                    && hash == ((Key) obj).hash
+                    && Arrays.equals(values, ((Key) obj).values);
+        }
+    }
+
+    /**
+     * The solution of a profile, relative to its start location.
+     */
+    private static class Solution {
+        final double [] s;
+        final double [] v;
+        final double [] a;
+        final double [] j;
+        final double [] t;
+        final double time;
+        final int eval;
+
+        Solution(MotionProfile profile) {
+            s = profile.s.clone();
+            double s0 = s[0];
+            for (int i = 0; i < s.length; i++) {
+                s[i] -= s0;
+            }
+            v = profile.v.clone();
+            a = profile.a.clone();
+            j = profile.j.clone();
+            t = profile.t.clone();
+            time = profile.time;
+            eval = profile.eval;
+        }
+
+        void applyTo(MotionProfile profile) {
+            // The boundary conditions at 0 and segments are kept as given, the key only matches them
+            // within the quantum.
+            final int end = MotionProfile.segments;
+            double s0 = profile.s[0];
+            for (int i = 1; i < end; i++) {
+                profile.s[i] = s[i] + s0;
+            }
+            System.arraycopy(v, 1, profile.v, 1, end - 1);
+            System.arraycopy(a, 1, profile.a, 1, end - 1);
+            System.arraycopy(j, 0, profile.j, 0, j.length);
+            System.arraycopy(t, 0, profile.t, 0, t.length);
+            profile.time = time;
+            profile.eval = eval;
+            profile.computeBounds();
+        }
+    }
+
+    private volatile boolean enabled = true;
+    private volatile int capacity = 4096;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Entries in access order, the eldest is the least recently used. Guarded by synchronizing on itself.
+     */
+    private final LinkedHashMap<Key, Solution> cache = new LinkedHashMap<Key, Solution>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Solution> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    public static MotionProfileCache get() {
+        return instance;
+    }
+
+    /**
+     * Solves the profile, either by taking a cached solution, or by solving it and caching the solution.
+     *
+     * @param profile
+     * @param iterations
+     * @param vtol
+     * @param ttol
+     */
+    void solve(MotionProfile profile, int iterations, double vtol, double ttol) {
+        if (!enabled) {
+            profile.solveForVelocity(iterations, vtol, ttol);
+            return;
+        }
+        if (profile.solveIfNullMove()) {
+            // Null moves are faster to solve than to look up.
+            return;
+        }
+        Key key = new Key(profile, iterations, vtol, ttol);
+        Solution solution;
+        synchronized (cache) {
+            solution = cache.get(key);
+        }
+        if (solution != null) {
+            hits.increment();
+            solution.applyTo(profile);
+            return;
+        }
+        misses.increment();
+        profile.solveForVelocity(iterations, vtol, ttol);
+        Solution newSolution = new Solution(profile);
+        synchronized (cache) {
+            // Another thread may have solved it in the meantime, the solutions are the same.
+            cache.putIfAbsent(key, newSolution);
+        }
+    }
+
+    private void evict() {
+        synchronized (cache) {
+            Iterator<Key> iterator = cache.keySet().iterator();
+            while (cache.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The ratio of hits to lookups, 0 if there were none.
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits/lookups;
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MotionProfileCache {size = %d/%d, hits = %d, misses = %d, hit ratio = %.1f%%}",
+                getSize(), capacity, getHits(), getMisses(), getHitRatio()*100);
+    }
+}
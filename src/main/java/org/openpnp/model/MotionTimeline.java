@@ -0,0 +1,210 @@
+package org.openpnp.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+import org.pmw.tinylog.Logger;
+
+/**
+ * Fixed capacity, real-time indexed ring buffer of planned {@link Motion}s. Each Motion is stored with the time
+ * it completes. Times are strictly ascending, i.e. the timeline is only ever appended to. A Motion put with the
+ * same time as the last one replaces it.
+ * <p>
+ * There is a single writer (the motion planner), writes are synchronized among themselves. Readers, like camera
+ * settling, simulated cameras or the GcodeServer, never lock. Each entry carries its sequence number, so a reader
+ * can tell, whether the entry it has just read was overwritten by the writer in the meantime, and retry.
+ * <p>
+ * Memory is bounded by the capacity. When full, the oldest Motions are overwritten. Use {@link #clearOlderThan(double)}
+ * to trim by time.
+ */
+public class MotionTimeline {
+    public static final int defaultCapacity = 4096;
+
+    private static class Entry {
+        final long sequence;
+        final double time;
+        final Motion motion;
+
+        Entry(long sequence, double time, Motion motion) {
+            this.sequence = sequence;
+            this.time = time;
+            this.motion = motion;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    /**
+     * Sequence number of the next entry to be written.
+     */
+    private volatile long head;
+    /**
+     * Sequence number of the oldest entry that has not been cleared. Entries older than head - capacity are
+     * overwritten, regardless.
+     */
+    private volatile long tail;
+
+    public MotionTimeline() {
+        this(defaultCapacity);
+    }
+
+    /**
+     * @param capacity The maximum number of Motions kept, rounded up to the next power of two.
+     */
+    public MotionTimeline(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got "+capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        entries = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Appends the Motion to the timeline.
+     *
+     * @param time The real-time when the Motion is completed. If it is the same as the last time on the timeline, 
+     * e.g. rounded to it at large run-times, the last Motion is replaced. If it is earlier, it is taken as just after 
+     * the last time.
+     * @param motion
+     */
+    public synchronized void put(double time, Motion motion) {
+        long sequence = head;
+        if (sequence > tail) {
+            Entry last = entries.get((int) ((sequence - 1) & mask));
+            if (time == last.time) {
+                // Same sequence number, so readers that have just read the last entry, will still take it as valid.
+                entries.set((int) ((sequence - 1) & mask), new Entry(sequence - 1, time, motion));
+                return;
+            }
+            else if (!(time > last.time)) {
+                Logger.warn("Motion time "+time+" is before last time "+last.time+", appended just after it.");
+                time = Math.nextUp(last.time);
+            }
+        }
+        entries.set((int) (sequence & mask), new Entry(sequence, time, motion));
+        head = sequence + 1;
+    }
+
+    /**
+     * Removes the Motions completed before the given time.
+     *
+     * @param time
+     */
+    public synchronized void clearOlderThan(double time) {
+        long sequence = Math.max(tail, head - entries.length());
+        while (sequence < head && entries.get((int) (sequence & mask)).time < time) {
+            sequence++;
+        }
+        tail = sequence;
+    }
+
+    /**
+     * Removes all the Motions.
+     */
+    public synchronized void clear() {
+        tail = head;
+    }
+
+    /**
+     * @return The number of Motions on the timeline.
+     */
+    public int size() {
+        long head = this.head;
+        return (int) (head - oldest(head));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return The completion time of the last Motion, or null if the timeline is empty.
+     */
+    public Double getLastTime() {
+        while (true) {
+            long head = this.head;
+            if (head == oldest(head)) {
+                return null;
+            }
+            Entry entry = entries.get((int) ((head - 1) & mask));
+            if (entry.sequence == head - 1) {
+                return entry.time;
+            }
+        }
+    }
+
+    /**
+     * Gets the Motion that is ongoing at the given time, i.e. the first Motion that completes after it.
+     *
+     * @param time
+     * @return The Motion or null if the timeline is empty or all its Motions completed before the time.
+     */
+    public Motion getMotionAfter(double time) {
+        retry:
+        while (true) {
+            long head = this.head;
+            long low = oldest(head);
+            long high = head;
+            // Binary search the first entry with entry.time > time.
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                Entry entry = entries.get((int) (mid & mask));
+                if (entry.sequence != mid) {
+                    // Overwritten by the writer, while we were searching.
+                    continue retry;
+                }
+                if (entry.time > time) {
+                    high = mid;
+                }
+                else {
+                    low = mid + 1;
+                }
+            }
+            if (low == head) {
+                return null;
+            }
+            Entry entry = entries.get((int) (low & mask));
+            if (entry.sequence != low) {
+                continue retry;
+            }
+            return entry.motion;
+        }
+    }
+
+    /**
+     * Gets the last Motion that satisfies the filter, searching backwards from the end of the timeline.
+     *
+     * @param filter
+     * @return The Motion or null if none satisfies the filter.
+     */
+    public Motion getLastMotion(Predicate<Motion> filter) {
+        retry:
+        while (true) {
+            long head = this.head;
+            long oldest = oldest(head);
+            for (long sequence = head - 1; sequence >= oldest; sequence--) {
+                Entry entry = entries.get((int) (sequence & mask));
+                if (entry.sequence != sequence) {
+                    // We fell behind the writer, start over.
+                    continue retry;
+                }
+                if (filter.test(entry.motion)) {
+                    return entry.motion;
+                }
+            }
+            return null;
+        }
+    }
+
+    private long oldest(long head) {
+        return Math.min(head, Math.max(tail, head - entries.length()));
+    }
+}
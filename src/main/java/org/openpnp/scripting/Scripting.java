@@ -21,6 +21,9 @@ import org.apache.commons.pool2.impl.DefaultPooledObjectInfo;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.model.Configuration;
+import org.openpnp.util.CycleTimeProfiler;
+import org.openpnp.util.CycleTimeProfiler.Category;
+import org.openpnp.util.CycleTimeProfiler.Span;
 import org.pmw.tinylog.Logger;
 
 import com.google.common.io.Files;
@@ -199,14 +202,16 @@ public class Scripting {
         if (eventsDirectory == null) {
             return;
         }
-        for (File script : FileUtils.listFiles(eventsDirectory, getExtensions(), false)) {
-            if (!script.isFile()) {
-                continue;
-            }
-            if (FilenameUtils.getBaseName(script.getName())
-                             .equals(event)) {
-                Logger.trace("Scripting.on found " + script.getName());
-                execute(script, globals);
+        try (Span span = CycleTimeProfiler.span(Category.Script)) {
+            for (File script : FileUtils.listFiles(eventsDirectory, getExtensions(), false)) {
+                if (!script.isFile()) {
+                    continue;
+                }
+                if (FilenameUtils.getBaseName(script.getName())
+                                 .equals(event)) {
+                    Logger.trace("Scripting.on found " + script.getName());
+                    execute(script, globals);
+                }
             }
         }
     }
@@ -107,6 +107,36 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
      */
     public void feed(Nozzle nozzle) throws Exception;
 
+    /**
+     * @return True if the Feeder can be fed ahead of time, using {@link #preFeed(Nozzle)}, while the
+     * machine is still busy with the previous cycle. Such a feed must not require Head interaction, nor wait
+     * for the machine to come to a still-stand, otherwise nothing is gained.
+     */
+    default boolean isPreFeedSupported() {
+        return false;
+    }
+
+    /**
+     * Starts a feed ahead of time, without waiting for it to finish. Only called if
+     * {@link #isPreFeedSupported()}. The JobProcessor calls {@link #completePreFeed(Nozzle)} before
+     * picking the part.
+     *
+     * @param nozzle The Nozzle that is planned to pick the part.
+     * @throws Exception
+     */
+    default void preFeed(Nozzle nozzle) throws Exception {
+        feed(nozzle);
+    }
+
+    /**
+     * Waits for a feed started by {@link #preFeed(Nozzle)} to finish, so the part can be picked.
+     *
+     * @param nozzle The Nozzle to be used for picking.
+     * @throws Exception
+     */
+    default void completePreFeed(Nozzle nozzle) throws Exception {
+    }
+
     public void postPick(Nozzle nozzle) throws Exception;
 
     /*
@@ -92,6 +92,14 @@ public interface MotionPlanner extends PropertySheetHolder, Solutions.Subject {
      */
     public void unhome();
 
+    /**
+     * Release any resources held by the motion planner, such as worker threads. Called when the machine
+     * is disabled or when the motion planner is replaced. The motion planner must remain usable afterwards,
+     * i.e. resources are re-acquired on demand.
+     */
+    default void release() {
+    }
+
     /**
      * @return true when the motion planner has homed all drivers.
      */
@@ -11,6 +11,7 @@ import org.openpnp.model.Solutions;
 
 import java.awt.image.BufferedImage;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A method to allow after-pick, pre-place alignment of parts on the nozzle. Bottom vision
@@ -55,6 +56,41 @@ public interface PartAlignment extends PartSettingsHolder, Named, Solutions.Subj
      */
     PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation, Placement placement, Nozzle nozzle) throws Exception;
 
+    /**
+     * The offsets of a part alignment operation that may still be processing.
+     */
+    public interface PendingOffsets {
+        /**
+         * Waits for the processing to finish. Must be called on the machine thread, before the Nozzle
+         * is used for anything else than alignment.
+         *
+         * @return The offsets, as returned by {@link PartAlignment#findOffsets(Part, BoardLocation, Placement, Nozzle)}.
+         * @throws Exception if the alignment failed. The caller may retry using findOffsets().
+         */
+        PartAlignmentOffset get() throws Exception;
+    }
+
+    /**
+     * Like {@link #findOffsets(Part, BoardLocation, Placement, Nozzle)}, but only the part of the operation that
+     * needs the machine is done right away, such as moving the Nozzle to the camera and capturing the image. The
+     * rest, such as the image processing, may be left to the executor, so the machine can move on in the meantime.
+     * <p>
+     * The default implementation does the whole operation right away.
+     *
+     * @param part
+     * @param boardLocation
+     * @param placement
+     * @param nozzle
+     * @param executor
+     * @return The pending offsets.
+     * @throws Exception if the machine part of the alignment fails. The caller may retry.
+     */
+    default PendingOffsets findOffsetsOverlapped(Part part, BoardLocation boardLocation, Placement placement,
+            Nozzle nozzle, Executor executor) throws Exception {
+        PartAlignmentOffset offsets = findOffsets(part, boardLocation, placement, nozzle);
+        return () -> offsets;
+    }
+
     /**
      * Get a Wizard for configuring the PartAlignment instance properties for a specific
      * PartSettingsHolder (Part or Package).
@@ -0,0 +1,400 @@
+package org.openpnp.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * Records the wall time of job steps, split into {@link Category}s. A step is profiled on the thread that
+ * executes it, between {@link #beginStep(String)} and {@link #endStep()}. Code that waits for the machine,
+ * processes vision, feeds or runs scripts marks its time with a {@link Span}, see {@link #span(Category)}.
+ * Spans nest, each time is counted in the innermost Category only, so the Categories of a step add up to its
+ * wall time. Spans outside of a profiled step, e.g. on other threads, cost next to nothing and are not
+ * recorded.
+ * <p>
+ * The records are kept for the whole job, and aggregated into percentiles per step, part and feeder.
+ */
+public class CycleTimeProfiler {
+    public enum Category {
+        /**
+         * Time not spent in any of the other categories, i.e. computing.
+         */
+        Other,
+        /**
+         * Time waiting for the motion planner to complete motion.
+         */
+        Motion,
+        /**
+         * Time waiting for cameras to settle.
+         */
+        Settle,
+        /**
+         * Time capturing and processing vision pipelines.
+         */
+        Vision,
+        /**
+         * Time feeding.
+         */
+        Feeder,
+        /**
+         * Time running scripts.
+         */
+        Script
+    }
+
+    /**
+     * The profile of one step execution.
+     */
+    public static class Record {
+        private final String step;
+        private Object placement;
+        private String placementId;
+        private String partId;
+        private String nozzleName;
+        private String feederName;
+        private long wallNanos;
+        private final long[] categoryNanos = new long[Category.values().length];
+
+        Record(String step) {
+            this.step = step;
+        }
+
+        public String getStep() {
+            return step;
+        }
+
+        public String getPlacementId() {
+            return placementId;
+        }
+
+        public String getPartId() {
+            return partId;
+        }
+
+        public String getNozzleName() {
+            return nozzleName;
+        }
+
+        public String getFeederName() {
+            return feederName;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getNanos(Category category) {
+            return categoryNanos[category.ordinal()];
+        }
+    }
+
+    /**
+     * Marks the time of a Category, until closed. Spans must be closed in reverse order.
+     */
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Span noSpan = () -> {
+    };
+
+    private static final int MAX_DEPTH = 16;
+
+    private static class Context {
+        final Record record;
+        final Category[] stack = new Category[MAX_DEPTH];
+        int depth;
+        final long startNanos;
+        long lastNanos;
+        final Span exit = this::exit;
+
+        Context(Record record) {
+            this.record = record;
+            stack[0] = Category.Other;
+            startNanos = lastNanos = System.nanoTime();
+        }
+
+        Span enter(Category category) {
+            if (depth + 1 >= MAX_DEPTH) {
+                return noSpan;
+            }
+            flush();
+            stack[++depth] = category;
+            return exit;
+        }
+
+        void exit() {
+            if (depth > 0) {
+                flush();
+                depth--;
+            }
+        }
+
+        void flush() {
+            long now = System.nanoTime();
+            record.categoryNanos[stack[depth].ordinal()] += now - lastNanos;
+            lastNanos = now;
+        }
+    }
+
+    private static final ThreadLocal<Context> contexts = new ThreadLocal<>();
+
+    private final List<Record> records = new ArrayList<>();
+
+    /**
+     * Starts marking time of the given Category on the calling thread.
+     *
+     * @param category
+     * @return The Span to close, when done. Use it in a try-with-resources statement.
+     */
+    public static Span span(Category category) {
+        Context context = contexts.get();
+        if (context == null) {
+            return noSpan;
+        }
+        return context.enter(category);
+    }
+
+    /**
+     * Sets the placement of the step profiled on the calling thread, if any.
+     *
+     * @param placement The placement the steps are aggregated by. Placement ids are only unique per board, so
+     *        this is e.g. the JobPlacement, which is compared by identity.
+     * @param placementId
+     * @param partId
+     * @param nozzleName
+     */
+    public static void setPlacement(Object placement, String placementId, String partId, String nozzleName) {
+        Context context = contexts.get();
+        if (context != null) {
+            context.record.placement = placement;
+            context.record.placementId = placementId;
+            context.record.partId = partId;
+            context.record.nozzleName = nozzleName;
+        }
+    }
+
+    /**
+     * Sets the feeder of the step profiled on the calling thread, if any.
+     *
+     * @param feederName
+     */
+    public static void setFeeder(String feederName) {
+        Context context = contexts.get();
+        if (context != null) {
+            context.record.feederName = feederName;
+        }
+    }
+
+    /**
+     * Starts profiling a step on the calling thread.
+     *
+     * @param step
+     */
+    public void beginStep(String step) {
+        contexts.set(new Context(new Record(step)));
+    }
+
+    /**
+     * Ends profiling the step on the calling thread, and keeps its record.
+     */
+    public void endStep() {
+        Context context = contexts.get();
+        if (context == null) {
+            return;
+        }
+        contexts.remove();
+        context.flush();
+        context.record.wallNanos = context.lastNanos - context.startNanos;
+        synchronized (records) {
+            records.add(context.record);
+        }
+    }
+
+    public List<Record> getRecords() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    public void reset() {
+        synchronized (records) {
+            records.clear();
+        }
+    }
+
+    /**
+     * @return Wall time histograms of the steps, by step.
+     */
+    public Map<String, LatencyHistogram> getStepHistograms() {
+        return getHistograms(getRecords(), Record::getStep, Record::getWallNanos);
+    }
+
+    /**
+     * @return Histograms of the total wall time of all the steps of a placement, by part.
+     */
+    public Map<String, LatencyHistogram> getPartHistograms() {
+        Map<Object, Record> placements = new LinkedHashMap<>();
+        for (Record record : getRecords()) {
+            if (record.placement != null) {
+                Record total = placements.computeIfAbsent(record.placement, p -> {
+                    Record placement = new Record(null);
+                    placement.partId = record.partId;
+                    return placement;
+                });
+                total.wallNanos += record.wallNanos;
+            }
+        }
+        return getHistograms(new ArrayList<>(placements.values()), Record::getPartId, Record::getWallNanos);
+    }
+
+    /**
+     * @return Histograms of the feeding time of the picks, by feeder.
+     */
+    public Map<String, LatencyHistogram> getFeederHistograms() {
+        return getHistograms(getRecords(), Record::getFeederName, record -> record.getNanos(Category.Feeder));
+    }
+
+    private static Map<String, LatencyHistogram> getHistograms(List<Record> records, Function<Record, String> key,
+            Function<Record, Long> value) {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        for (Record record : records) {
+            String name = key.apply(record);
+            if (name != null) {
+                histograms.computeIfAbsent(name, k -> new LatencyHistogram()).record(value.apply(record));
+            }
+        }
+        return histograms;
+    }
+
+    /**
+     * @return A plain text report of the steps, by Category, and the percentiles per step, part and feeder,
+     * times in milliseconds.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-28s %10s %10s", "Step", "Count", "Total"));
+        for (Category category : Category.values()) {
+            report.append(String.format(" %10s", category));
+        }
+        report.append("\n");
+        Map<String, Record> totals = new LinkedHashMap<>();
+        for (Record record : getRecords()) {
+            Record total = totals.computeIfAbsent(record.step, Record::new);
+            total.wallNanos += record.wallNanos;
+            for (int i = 0; i < total.categoryNanos.length; i++) {
+                total.categoryNanos[i] += record.categoryNanos[i];
+            }
+        }
+        Map<String, LatencyHistogram> stepHistograms = getStepHistograms();
+        for (Record total : totals.values()) {
+            report.append(String.format("%-28s %10d %10.1f", total.step, stepHistograms.get(total.step).getCount(),
+                    total.wallNanos*1e-6));
+            for (Category category : Category.values()) {
+                report.append(String.format(" %10.1f", total.getNanos(category)*1e-6));
+            }
+            report.append("\n");
+        }
+        appendPercentiles(report, "Step", stepHistograms);
+        appendPercentiles(report, "Part", getPartHistograms());
+        appendPercentiles(report, "Feeder", getFeederHistograms());
+        return report.toString();
+    }
+
+    private static void appendPercentiles(StringBuilder report, String title, Map<String, LatencyHistogram> histograms) {
+        report.append(String.format("\n%-28s %10s %10s %10s %10s %10s %10s\n",
+                title, "Count", "Mean", "50%", "90%", "99%", "Max"));
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            report.append(String.format("%-28s %10d %10.1f %10.1f %10.1f %10.1f %10.1f\n",
+                    entry.getKey(),
+                    histogram.getCount(),
+                    histogram.getMean()*1e-6,
+                    histogram.getValueAtPercentile(50)*1e-6,
+                    histogram.getValueAtPercentile(90)*1e-6,
+                    histogram.getValueAtPercentile(99)*1e-6,
+                    histogram.getMax()*1e-6));
+        }
+    }
+
+    /**
+     * Writes the records as CSV, one line per step execution, times in milliseconds.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeCsv(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            StringBuilder line = new StringBuilder("step,placement,part,nozzle,feeder,wall");
+            for (Category category : Category.values()) {
+                line.append(",").append(category.name().toLowerCase());
+            }
+            writer.println(line);
+            for (Record record : getRecords()) {
+                line.setLength(0);
+                line.append(csv(record.step)).append(",")
+                    .append(csv(record.placementId)).append(",")
+                    .append(csv(record.partId)).append(",")
+                    .append(csv(record.nozzleName)).append(",")
+                    .append(csv(record.feederName)).append(",")
+                    .append(String.format("%.3f", record.wallNanos*1e-6));
+                for (Category category : Category.values()) {
+                    line.append(String.format(",%.3f", record.getNanos(category)*1e-6));
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Writes the percentiles per step, part and feeder as JSON, times in milliseconds.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeJson(File file) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("steps", toJson(getStepHistograms()));
+        json.put("parts", toJson(getPartHistograms()));
+        json.put("feeders", toJson(getFeederHistograms()));
+        try (Writer writer = new FileWriter(file)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+        }
+    }
+
+    private static Map<String, Object> toJson(Map<String, LatencyHistogram> histograms) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("count", histogram.getCount());
+            statistics.put("mean", histogram.getMean()*1e-6);
+            statistics.put("p50", histogram.getValueAtPercentile(50)*1e-6);
+            statistics.put("p90", histogram.getValueAtPercentile(90)*1e-6);
+            statistics.put("p99", histogram.getValueAtPercentile(99)*1e-6);
+            statistics.put("max", histogram.getMax()*1e-6);
+            json.put(entry.getKey(), statistics);
+        }
+        return json;
+    }
+}
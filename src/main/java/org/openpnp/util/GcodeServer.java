@@ -9,7 +9,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.openpnp.Main;
 import org.openpnp.machine.reference.ReferenceMachine;
@@ -20,6 +19,7 @@ import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Motion;
 import org.openpnp.model.Motion.MotionOption;
+import org.openpnp.model.MotionTimeline;
 import org.openpnp.spi.Axis;
 import org.openpnp.spi.ControllerAxis;
 import org.openpnp.spi.Driver;
@@ -36,7 +36,7 @@ public class GcodeServer extends Thread {
      */
     private AxesLocation homingOffsets = new AxesLocation();
 
-    protected TreeMap<Double, Motion> motionPlan = new TreeMap<Double, Motion>();
+    protected MotionTimeline motionPlan = new MotionTimeline();
     private AxesLocation machineLocation;
 
     private long maxDwellTimeMilliseconds = 20000;
@@ -597,9 +597,10 @@ public class GcodeServer extends Thread {
                 }
 
                 // Compute the wait or dwell time. Start with the motion plan completion time. 
-                long dwellMilliseconds = (motionPlan.isEmpty() ? 
-                        0 : (int)Math.max(0, (motionPlan.lastKey() - NanosecondTime.getRuntimeSeconds())*1000));
-                //Logger.debug("Motion ongoing for +"+dwellMilliseconds+" ms, lastKey = "+(motionPlan.isEmpty() ? 0 : motionPlan.lastKey())+", now="+NanosecondTime.getRuntimeSeconds());
+                Double lastTime = motionPlan.getLastTime();
+                long dwellMilliseconds = (lastTime == null ? 
+                        0 : (int)Math.max(0, (lastTime - NanosecondTime.getRuntimeSeconds())*1000));
+                //Logger.debug("Motion ongoing for +"+dwellMilliseconds+" ms, lastTime = "+lastTime+", now="+NanosecondTime.getRuntimeSeconds());
                 boolean doDwell = false;
                 GcodeWord g4Word = getCodeWord(Gcode.G4, commandWords);
                 GcodeWord m400Word = getCodeWord(Gcode.M400, commandWords);
@@ -633,13 +634,11 @@ public class GcodeServer extends Thread {
                         dwellMilliseconds = maxDwellTimeMilliseconds;
                     }
                     Logger.trace("Waiting "+dwellMilliseconds+"ms");
-                    Thread.sleep(dwellMilliseconds);
+                    NanosecondTime.sleep(dwellMilliseconds);
 
                     // Remove old stuff.
                     double time = NanosecondTime.getRuntimeSeconds() - 30;
-                    while (motionPlan.isEmpty() == false && motionPlan.firstKey() < time) {
-                        motionPlan.remove(motionPlan.firstKey());
-                    }
+                    motionPlan.clearOlderThan(time);
                 }
 
                 // Set global offsets. 
@@ -712,17 +711,16 @@ public class GcodeServer extends Thread {
                     Motion motion = new Motion(null, machineLocation, axesLocation, speed, 
                             feedRate, acceleration, jerk,
                             (g0Word != null ? MotionOption.UncoordinatedMotion.flag() : 0));
-                    synchronized (motionPlan) {
-                        double t = NanosecondTime.getRuntimeSeconds();
-                        if (motionPlan.isEmpty() == false && motionPlan.lastKey() > t) {
-                            // Append to a plan that is still running. 
-                            t = motionPlan.lastKey();
-                        }
-                        // Put into timed plan.
-                        t += motion.getTime();
-                        motionPlan.put(t, motion);
-                        motion.setPlannedTime1(t);
+                    double t = NanosecondTime.getRuntimeSeconds();
+                    Double lastTime = motionPlan.getLastTime();
+                    if (lastTime != null && lastTime > t) {
+                        // Append to a plan that is still running. 
+                        t = lastTime;
                     }
+                    // Put into timed plan. Null moves take a nano-second, to keep the time ascending.
+                    t += Math.max(motion.getTime(), 1e-9);
+                    motion.setPlannedTime1(t);
+                    motionPlan.put(t, motion);
                     // Store new location.
                     Logger.trace("Move takes "+(motion.getTime()*1000)+" ms");
                     machineLocation = machineLocation.put(axesLocation);
@@ -737,14 +735,10 @@ public class GcodeServer extends Thread {
     }
 
     public Motion getMomentaryMotion(double time) {
-        Map.Entry<Double, Motion> entry1; 
-        synchronized (motionPlan) {
-            entry1 = motionPlan.higherEntry(time);
-        }
-        if (entry1 != null) {
+        Motion motion1 = motionPlan.getMotionAfter(time);
+        if (motion1 != null) {
             // Return the current motion.
-            Motion motion = entry1.getValue();
-            return motion;
+            return motion1;
         }
         else {
             // Nothing in the plan or machine stopped before this time, just get the current axes location.
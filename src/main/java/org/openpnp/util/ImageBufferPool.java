@@ -0,0 +1,174 @@
+package org.openpnp.util;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.opencv.core.Mat;
+
+/**
+ * A pool of image buffers, keyed by size and type, so that code converting camera frames at frame rate can
+ * reuse memory instead of allocating native Mats and heap BufferedImages for every frame.
+ * <p>
+ * Buffers are leased with {@link #leaseMat(int, int, int)} or {@link #leaseImage(int, int, int)}, and returned
+ * with {@link #release(Mat)} or {@link #release(BufferedImage)}, once the caller and anyone it passed the buffer
+ * to no longer use it. A leased buffer has the requested size and type, but its content is undefined. Buffers
+ * that are never returned are simply garbage collected.
+ */
+public class ImageBufferPool {
+    static {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    /**
+     * The maximum number of idle buffers kept per size and type.
+     */
+    private static final int MAX_IDLE_PER_KEY = 4;
+
+    private static final ImageBufferPool instance = new ImageBufferPool();
+
+    private static class Key {
+        final boolean mat;
+        final int width;
+        final int height;
+        final int type;
+
+        Key(boolean mat, int width, int height, int type) {
+            this.mat = mat;
+            this.width = width;
+            this.height = height;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return mat == other.mat && width == other.width && height == other.height && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mat, width, height, type);
+        }
+    }
+
+    private final Map<Key, Deque<Object>> idle = new HashMap<>();
+
+    private long leaseCount;
+    private long reuseCount;
+
+    public static ImageBufferPool get() {
+        return instance;
+    }
+
+    /**
+     * Leases a Mat.
+     *
+     * @param rows
+     * @param cols
+     * @param type The OpenCV type, e.g. CvType.CV_8UC3.
+     * @return A continuous Mat of the given size and type.
+     */
+    public Mat leaseMat(int rows, int cols, int type) {
+        Mat mat = (Mat) poll(new Key(true, cols, rows, type));
+        if (mat == null) {
+            mat = new Mat(rows, cols, type);
+        }
+        return mat;
+    }
+
+    /**
+     * Returns a Mat to the pool. Mats that are empty or that are a view into another Mat are released instead.
+     *
+     * @param mat
+     */
+    public void release(Mat mat) {
+        if (mat == null) {
+            return;
+        }
+        if (mat.empty() || mat.isSubmatrix() || !mat.isContinuous()
+                || !offer(new Key(true, mat.cols(), mat.rows(), mat.type()), mat)) {
+            mat.release();
+        }
+    }
+
+    /**
+     * Leases a BufferedImage.
+     *
+     * @param width
+     * @param height
+     * @param type The BufferedImage type, e.g. BufferedImage.TYPE_3BYTE_BGR.
+     * @return A BufferedImage of the given size and type.
+     */
+    public BufferedImage leaseImage(int width, int height, int type) {
+        BufferedImage image = (BufferedImage) poll(new Key(false, width, height, type));
+        if (image == null) {
+            image = new BufferedImage(width, height, type);
+        }
+        return image;
+    }
+
+    /**
+     * Returns a BufferedImage to the pool.
+     *
+     * @param image
+     */
+    public void release(BufferedImage image) {
+        if (image == null || image.getType() == BufferedImage.TYPE_CUSTOM) {
+            return;
+        }
+        offer(new Key(false, image.getWidth(), image.getHeight(), image.getType()), image);
+    }
+
+    /**
+     * Releases all the idle buffers.
+     */
+    public synchronized void clear() {
+        for (Deque<Object> buffers : idle.values()) {
+            for (Object buffer : buffers) {
+                if (buffer instanceof Mat) {
+                    ((Mat) buffer).release();
+                }
+            }
+        }
+        idle.clear();
+    }
+
+    /**
+     * @return The fraction of leases that were served by reusing a buffer.
+     */
+    public synchronized double getReuseRatio() {
+        return leaseCount == 0 ? 0.0 : (double) reuseCount / leaseCount;
+    }
+
+    private synchronized Object poll(Key key) {
+        leaseCount++;
+        Deque<Object> buffers = idle.get(key);
+        Object buffer = (buffers == null ? null : buffers.pollFirst());
+        if (buffer != null) {
+            reuseCount++;
+        }
+        return buffer;
+    }
+
+    private synchronized boolean offer(Key key, Object buffer) {
+        Deque<Object> buffers = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (buffers.size() >= MAX_IDLE_PER_KEY) {
+            return false;
+        }
+        for (Object idleBuffer : buffers) {
+            if (idleBuffer == buffer) {
+                // Released twice.
+                return true;
+            }
+        }
+        buffers.addFirst(buffer);
+        return true;
+    }
+}
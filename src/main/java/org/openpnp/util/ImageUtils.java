@@ -1,5 +1,6 @@
 package org.openpnp.util;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
@@ -41,6 +42,22 @@ public class ImageUtils {
         return img;
     }
 
+    /**
+     * Convert an image into the given image of the same size, but possibly of a different type.
+     *
+     * @param src
+     * @param dst
+     * @return dst
+     */
+    public static BufferedImage convertBufferedImage(BufferedImage src, BufferedImage dst) {
+        Graphics2D g2d = dst.createGraphics();
+        // Replace rather than blend, as dst may have been used before.
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(src, 0, 0, null);
+        g2d.dispose();
+        return dst;
+    }
+
     /**
      * Clone an image for independent manipulation.  
      * 
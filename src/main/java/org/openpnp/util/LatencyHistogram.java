@@ -0,0 +1,117 @@
+package org.openpnp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, typically latencies in nanoseconds.
+ *
+ * Like an HDR histogram, the buckets are log-linear: each power of two is divided into a fixed number of
+ * linear sub-buckets, so the relative resolution is constant (~3%) over the whole value range, while the
+ * memory footprint is fixed. Recording is a handful of atomic operations and never blocks, so it can be
+ * used on communication hot paths. Reading is not atomic across buckets, i.e. statistics taken while
+ * values are recorded concurrently may be off by the values in flight.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS)*SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(getBucketIndex(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+        long max;
+        while ((max = maxValue.get()) < value) {
+            if (maxValue.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records the nanoseconds elapsed since t0, as obtained from {@link System#nanoTime()}.
+     *
+     * @param t0
+     */
+    public void recordSince(long t0) {
+        record(System.nanoTime() - t0);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double)totalSum.get()/count;
+    }
+
+    /**
+     * @param percentile Percentile in the range 0 ... 100.
+     * @return The value at the given percentile, within the resolution of the buckets.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        if (percentile >= 100) {
+            return getMax();
+        }
+        long rank = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile))/100*count));
+        long sum = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            sum += counts.get(index);
+            if (sum >= rank) {
+                return Math.min(getBucketMedian(index), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int index = 0; index < BUCKETS; index++) {
+            counts.set(index, 0);
+        }
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    protected static int getBucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift);
+        return (shift + 1)*SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    protected static long getBucketMedian(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index/SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + index%SUB_BUCKETS;
+        long lowest = mantissa << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+}
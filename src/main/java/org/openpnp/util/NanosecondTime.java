@@ -32,8 +32,17 @@ import java.math.BigInteger;
 public class NanosecondTime implements Comparable<NanosecondTime> {
 
     private static long nanosecondsLast = Long.MIN_VALUE;
+
+    /**
+     * When virtual time is enabled, simulated waits (see {@link #sleep(long)}) do not block, but advance 
+     * the runtime clock instantly by the waited time. The clock otherwise still follows real-time, so the 
+     * runtime is the sum of the real computing time and the modelled waiting time. 
+     */
+    private static volatile boolean virtualTime = false;
+    private static volatile long virtualTimeOffset = 0;
+
     public static long getRuntime() {
-        long nanoTime = System.nanoTime();
+        long nanoTime = System.nanoTime() + virtualTimeOffset;
         if (nanoTime <= nanosecondsLast) {
             // Make it unique even if the calls are more frequent than the underlying nanoTime timer resolution. 
             nanoTime = ++nanosecondsLast;
@@ -50,6 +59,54 @@ public class NanosecondTime implements Comparable<NanosecondTime> {
         return getRuntime()/1000000;
     }
 
+    public static boolean isVirtualTime() {
+        return virtualTime;
+    }
+
+    public static void setVirtualTime(boolean virtualTime) {
+        NanosecondTime.virtualTime = virtualTime;
+    }
+
+    /**
+     * @return The total time in nanoseconds, by which the virtual clock was advanced, i.e. the modelled waiting 
+     * time that did not actually elapse in real-time. 
+     */
+    public static long getVirtualTimeOffset() {
+        return virtualTimeOffset;
+    }
+
+    /**
+     * Advances the virtual clock up to the given runtime, unless it is already past it. Concurrent
+     * simulated waits therefore overlap, like they would in real-time.  
+     * 
+     * @param runtime Target runtime in nanoseconds, as obtained from {@link #getRuntime()}. 
+     */
+    public static synchronized void advanceVirtualTimeTo(long runtime) {
+        long nanoTime = System.nanoTime() + virtualTimeOffset;
+        if (runtime > nanoTime) {
+            virtualTimeOffset += runtime - nanoTime;
+        }
+    }
+
+    /**
+     * Simulated wait. In virtual time, the runtime clock is advanced instantly, otherwise this 
+     * is the same as {@link Thread#sleep(long)}. Must only be used for waits that model machine time.
+     * 
+     * @param milliseconds
+     * @throws InterruptedException
+     */
+    public static void sleep(long milliseconds) throws InterruptedException {
+        if (virtualTime) {
+            advanceVirtualTimeTo(getRuntime() + milliseconds*1000000);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        else {
+            Thread.sleep(milliseconds);
+        }
+    }
+
     private static NanosecondTime systemStartTime = null;
     public static NanosecondTime get() {
         if (systemStartTime == null) {
@@ -41,6 +41,18 @@ public class OpenCvUtils {
     }
 
     public static BufferedImage toBufferedImage(Mat m) {
+        return toBufferedImage(m, null);
+    }
+
+    /**
+     * Convert the Mat into the given BufferedImage, if it has the same size and the matching type, otherwise into
+     * a new one. Like {@link #toBufferedImage(Mat)}, float Mats are converted in place.
+     *
+     * @param m
+     * @param image The BufferedImage to reuse, or null.
+     * @return The BufferedImage.
+     */
+    public static BufferedImage toBufferedImage(Mat m, BufferedImage image) {
         Integer type = null;
         if (m.type() == CvType.CV_8UC1) {
             type = BufferedImage.TYPE_BYTE_GRAY;
@@ -50,34 +62,50 @@ public class OpenCvUtils {
         }
         else if (m.type() == CvType.CV_32F) {
             type = BufferedImage.TYPE_BYTE_GRAY;
-            Mat tmp = new Mat();
+            Mat tmp = ImageBufferPool.get().leaseMat(m.rows(), m.cols(), CvType.CV_8UC1);
             m.convertTo(tmp, CvType.CV_8UC1, 255);
-            // Copy the results into the original Mat and release our temp copy so that when
+            // Copy the results into the original Mat and return our temp copy so that when
             // the caller releases the original Mat there is no memory leak.
             tmp.copyTo(m);
-            tmp.release();
+            ImageBufferPool.get().release(tmp);
         } 
         else if (m.type() == CvType.CV_32FC3) {
             // TemplateMatch creates a CV_32FC3 
             type = BufferedImage.TYPE_3BYTE_BGR;
-            Mat tmp = new Mat();
+            Mat tmp = ImageBufferPool.get().leaseMat(m.rows(), m.cols(), CvType.CV_8UC3);
             m.convertTo(tmp, CvType.CV_8UC3, 255);
-            // Copy the results into the original Mat and release our temp copy so that when
+            // Copy the results into the original Mat and return our temp copy so that when
             // the caller releases the original Mat there is no memory leak.
             tmp.copyTo(m);
-            tmp.release();
+            ImageBufferPool.get().release(tmp);
         }
         if (type == null) {
             throw new Error(String.format("Unsupported Mat: type %d, channels %d, depth %d",
                     m.type(), m.channels(), m.depth()));
         }
-        BufferedImage image = new BufferedImage(m.cols(), m.rows(), type);
+        if (image == null || image.getWidth() != m.cols() || image.getHeight() != m.rows()
+                || image.getType() != type) {
+            image = new BufferedImage(m.cols(), m.rows(), type);
+        }
         m.get(0, 0, ((DataBufferByte) image.getRaster().getDataBuffer()).getData());
         return image;
     }
 
     public static Mat toMat(BufferedImage img) {
+        return toMat(img, null);
+    }
+
+    /**
+     * Convert the BufferedImage into the given Mat, which is reallocated only if it does not have the same size
+     * and the matching type. Images that are neither gray nor BGR are converted to BGR through a pooled buffer.
+     *
+     * @param img
+     * @param mat The Mat to reuse, or null.
+     * @return The Mat.
+     */
+    public static Mat toMat(BufferedImage img, Mat mat) {
         Integer type = null;
+        BufferedImage converted = null;
         if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
             type = CvType.CV_8UC1;
         }
@@ -85,11 +113,19 @@ public class OpenCvUtils {
             type = CvType.CV_8UC3;
         }
         else {
-            img = ImageUtils.convertBufferedImage(img, BufferedImage.TYPE_3BYTE_BGR);
+            converted = ImageBufferPool.get().leaseImage(img.getWidth(), img.getHeight(),
+                    BufferedImage.TYPE_3BYTE_BGR);
+            img = ImageUtils.convertBufferedImage(img, converted);
             type = CvType.CV_8UC3;
         }
-        Mat mat = new Mat(img.getHeight(), img.getWidth(), type);
+        if (mat == null) {
+            mat = new Mat(img.getHeight(), img.getWidth(), type);
+        }
+        else {
+            mat.create(img.getHeight(), img.getWidth(), type);
+        }
         mat.put(0, 0, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
+        ImageBufferPool.get().release(converted);
         return mat;
     }
 
@@ -22,9 +22,17 @@ package org.openpnp.util;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.pmw.tinylog.Logger;
 
 /**
  * A simple solver for the Travelling Salesman Problem. 
@@ -43,6 +51,17 @@ import org.openpnp.model.Location;
  * solutions a lot, because it allows the solver to quickly "untwist" routes at (or near) crossing points. These crossing 
  * points appear frequently for the rectangularly arrayed Location patterns assumed to be typically found on a PNP machine. 
  * 
+ * solve() runs several such chains in parallel, each from a different start order and with a different seed: the 
+ * given order, a nearest neighbor route and random shuffles. Each annealed route is then polished with 2-opt and 
+ * Or-opt local search, and the best route of all chains is kept. By default the solver is deterministic: a fixed number
+ * of chains run to completion, so the solution only depends on the problem, never on the machine or thread timing. 
+ * Completion is bounded by the iterations of the annealing and by the number of local search passes. 
+ * Optionally, the deterministic mode can be switched off, then the number of chains follows the available processors 
+ * and the chains stop at the time budget. 
+ * 
+ * The chains run on a dedicated, shared pool of daemon threads, not on the ForkJoinPool.commonPool(), so long running 
+ * chains do not starve other parallel work. The pool threads time out when idle. 
+ * 
  * @param <T> The class of the objects to be travelled to. Use a Locator<T> to query the Location from these objects.  
  */
 public class TravellingSalesman<T> {
@@ -60,15 +79,17 @@ public class TravellingSalesman<T> {
         // register the problem
         this.travelInput = travelInput;
         this.locator = locator;
-        // convert to the working List
-        this.travel = new ArrayList<>();
+        // convert to the working array
         this.travelSize = travelInput.size();
+        this.locations = new TravelLocation[this.travelSize];
         for (int i = 0; i < this.travelSize; i++) {
-            this.travel.add(new TravelLocation(i, this.locator.getLocation(travelInput.get(i))));
+            this.locations[i] = new TravelLocation(i, this.locator.getLocation(travelInput.get(i)));
         }
         // register start/end Locations
         this.startLocation = startLocation != null ? new TravelLocation(-1, startLocation) : null;
         this.endLocation = endLocation != null ? new TravelLocation(this.travelSize, endLocation) : null;
+        // start with the given order
+        this.travel = new Route(null);
     }
     
     public interface Locator<T> {
@@ -78,18 +99,34 @@ public class TravellingSalesman<T> {
     /**
      * Sets the debugLevel > 0 
      * level 0: no debugging 
-     * level 1: console messages showing the solving progress
+     * level 1: log messages showing the solving progress
      * level 2: additional consistency checks
      */
     private static final int debugLevel = 0;
 
+    /**
+     * Default number of chains, when not in deterministic mode.
+     */
+    private static final int maxDefaultChains = 8;
+    /**
+     * Number of chains in deterministic mode, independent of the machine the solver runs on. 
+     */
+    private static final int deterministicChains = 4;
+    /**
+     * Maximum number of 2-opt/Or-opt passes polishing a route. Each pass is bounded by the size of the problem, but the 
+     * number of passes until no more improvement is found, is not. 
+     */
+    private static final int maxPolishPasses = 50;
+
+    private static ExecutorService solverPool;
+
     /**
      * Plain old data TravelLocation for faster processing. Improved solving by a factor of 6 from using
      * OpenPNP Locations directly. These are always in Millimeters, no conversions needed.  
      */
     private static class TravelLocation {
-        private  double x, y, z;
-        private  int index;
+        private final double x, y, z;
+        private final int index;
 
         private  TravelLocation(int index, Location l) {
             super();
@@ -109,192 +146,443 @@ public class TravellingSalesman<T> {
     private final Locator<? super T> locator;
     private final TravelLocation startLocation;
     private final TravelLocation endLocation;
-    private final List<TravelLocation> travel;
-    
+    private final TravelLocation[] locations;
+    /**
+     * The best route so far.
+     */
+    private Route travel;
+
+    private int chains = 0;
+    private long timeBudget = 2000;
+    private boolean deterministic = true;
+    private long baseSeed = 0;
+
     private long solverDuration = 0; 
 
-    private TravelLocation getLocation(int i) {
-        if (i < 0) {
-            return this.startLocation;
+    /**
+     * One chain's route, i.e. the order of the locations array indices. The virtual indices -1 and travelSize 
+     * stand for the start and end Location.  
+     */
+    private class Route {
+        private final int[] order;
+        private long deadline = Long.MAX_VALUE;
+        private int swaps, twists;
+
+        /**
+         * @param order The start order or null for the given order. 
+         */
+        private Route(int[] order) {
+            if (order == null) {
+                order = new int[travelSize];
+                for (int i = 0; i < travelSize; i++) {
+                    order[i] = i;
+                }
+            }
+            this.order = order;
         }
-        else if (i >= this.travelSize) {
-            return this.endLocation;
+
+        private TravelLocation getLocation(int i) {
+            if (i < 0) {
+                return startLocation;
+            }
+            else if (i >= travelSize) {
+                return endLocation;
+            }
+            return locations[order[i]];
         }
-        return this.travel.get(i);
-    }
 
-    private double getDistance(int a, int b) {
-        TravelLocation la = this.getLocation(a);
-        TravelLocation lb = this.getLocation(b);
-        if (la == null || lb == null) {
-            // no start and/or end location, so the distance is just 0.0
-            return 0.0;
+        private double getDistance(int a, int b) {
+            TravelLocation la = this.getLocation(a);
+            TravelLocation lb = this.getLocation(b);
+            if (la == null || lb == null) {
+                // no start and/or end location, so the distance is just 0.0
+                return 0.0;
+            }
+            return la.getLinearDistanceTo(lb);
         }
-        return la.getLinearDistanceTo(lb);
-    }
 
-    private double getTravellingDistance() {
-        double distance = 0.0;
-        for (int i = 0; i <= this.travelSize; i++) {
-            distance += this.getDistance(i-1,  i);
+        private double getTravellingDistance() {
+            double distance = 0.0;
+            for (int i = 0; i <= travelSize; i++) {
+                distance += this.getDistance(i-1,  i);
+            }
+            return distance;
         }
-        return distance;
-    }
 
-    private double getSwapDistance(int a, int b, boolean twist) {
-        if (a > b) {
-            // a must come before b
-            int s = a;
-            a = b;
-            b = s;
-        }
-        if (twist) {
-            // twist the loop around
-            double oldSegmentDistance = 
-                    this.getDistance(a-1, a) + this.getDistance(b, b+1);
-            double newSegmentDistance = 
-                    this.getDistance(a-1, b) + this.getDistance(a, b+1);
-            return newSegmentDistance - oldSegmentDistance;
-        }
-        else {
-            // swap out the locations
-            if (a + 1 == b ) {
-                // consecutive
+        private double getSwapDistance(int a, int b, boolean twist) {
+            if (a > b) {
+                // a must come before b
+                int s = a;
+                a = b;
+                b = s;
+            }
+            if (twist) {
+                // twist the loop around
                 double oldSegmentDistance = 
-                        this.getDistance(a-1, a) + this.getDistance(a, b) + this.getDistance(b, b+1);
+                        this.getDistance(a-1, a) + this.getDistance(b, b+1);
                 double newSegmentDistance = 
-                        this.getDistance(a-1, b) + this.getDistance(b, a) + this.getDistance(a, b+1);
+                        this.getDistance(a-1, b) + this.getDistance(a, b+1);
                 return newSegmentDistance - oldSegmentDistance;
             }
             else {
-                // apart
-                double oldSegmentDistance = 
-                        this.getDistance(a-1, a) + this.getDistance(a, a+1) 
-                        +  this.getDistance(b-1, b) + this.getDistance(b, b+1);
-                double newSegmentDistance = 
-                        this.getDistance(a-1, b) + this.getDistance(b, a+1) 
-                        +  this.getDistance(b-1, a) + this.getDistance(a, b+1);
-                return newSegmentDistance - oldSegmentDistance;
+                // swap out the locations
+                if (a + 1 == b ) {
+                    // consecutive
+                    double oldSegmentDistance = 
+                            this.getDistance(a-1, a) + this.getDistance(a, b) + this.getDistance(b, b+1);
+                    double newSegmentDistance = 
+                            this.getDistance(a-1, b) + this.getDistance(b, a) + this.getDistance(a, b+1);
+                    return newSegmentDistance - oldSegmentDistance;
+                }
+                else {
+                    // apart
+                    double oldSegmentDistance = 
+                            this.getDistance(a-1, a) + this.getDistance(a, a+1) 
+                            +  this.getDistance(b-1, b) + this.getDistance(b, b+1);
+                    double newSegmentDistance = 
+                            this.getDistance(a-1, b) + this.getDistance(b, a+1) 
+                            +  this.getDistance(b-1, a) + this.getDistance(a, b+1);
+                    return newSegmentDistance - oldSegmentDistance;
+                }
             }
         }
-    }
 
-    private void swap(int a, int b) {
-        TravelLocation la = this.travel.get(a);
-        TravelLocation lb = this.travel.get(b);
-        this.travel.set(a, lb);
-        this.travel.set(b, la);
-    }
+        private void swap(int a, int b) {
+            int la = this.order[a];
+            this.order[a] = this.order[b];
+            this.order[b] = la;
+        }
 
-    private void swapLocations(int a, int b, boolean twist) {
-        if (twist) {
-            if (a > b) {
-                // a must come before b
-                int s = a;
-                a = b;
-                b = s;
+        private void swapLocations(int a, int b, boolean twist) {
+            if (twist) {
+                if (a > b) {
+                    // a must come before b
+                    int s = a;
+                    a = b;
+                    b = s;
+                }
+                // twist the loop around
+                for (int i = 0; i < (b - a + 1)/2; i++) {
+                    this.swap(a+i, b-i);
+                }
             }
-            // twist the loop around
-            for (int i = 0; i < (b - a + 1)/2; i++) {
-                this.swap(a+i, b-i);
+            else {
+                // swap out the two locations
+                this.swap(a, b);
             }
         }
-        else {
-            // swap out the two locations
-            this.swap(a, b);
-        }
-    }
 
-    @SuppressWarnings("unused")
-    public double simulateAnnealing(double startingTemperature, double coolingRate, int maxIterations) {
-        long startTime = System.currentTimeMillis();
-        if (debugLevel > 0) {
-            System.out.println("Simulated Annealing, size: "+this.travelSize+" temperature: " + startingTemperature + ", max iterations: " + maxIterations + ", cooling rate: " + coolingRate);
+        private boolean isOverdue(int i) {
+            // Only look at the clock every so often. 
+            return (i & 0x3FF) == 0 && System.nanoTime() > deadline;
         }
-        int i = maxIterations;
-        int swaps = 0, twists = 0;
-        double bestDistance = getTravellingDistance();
-        double t = startingTemperature;
-        if (debugLevel > 0) {
-            System.out.println("Initial distance of travel: " + bestDistance);
-        }
-        if (this.travelSize > 1) {
-            // make this repeatable by seeding the random generator
-            Random rnd = new java.util.Random(0);
-            for (; i > 0; i--) {
-                if (t > 0.1) {
-                    int a = (int) (rnd.nextDouble() * this.travelSize);
-                    int b;
-                    do {
-                        b = (int) (rnd.nextDouble() * this.travelSize);
-                    }
-                    while (b == a);
-                    /* creates a locale emphasis when swapping
-                    do {
 
-                        b = (int) (Math.pow(rnd.nextDouble()*2.0-1.0, 3.0) * this.travelSize);
+        private double simulateAnnealing(Random rnd, double startingTemperature, double coolingRate, int maxIterations) {
+            if (debugLevel > 0) {
+                Logger.trace("Simulated Annealing, size: "+travelSize+" temperature: " + startingTemperature + ", max iterations: " + maxIterations + ", cooling rate: " + coolingRate);
+            }
+            int i = maxIterations;
+            double bestDistance = getTravellingDistance();
+            double t = startingTemperature;
+            if (debugLevel > 0) {
+                Logger.trace("Initial distance of travel: " + bestDistance);
+            }
+            if (travelSize > 1) {
+                for (; i > 0; i--) {
+                    if (t > 0.1 && !isOverdue(i)) {
+                        int a = (int) (rnd.nextDouble() * travelSize);
+                        int b;
+                        do {
+                            b = (int) (rnd.nextDouble() * travelSize);
+                        }
+                        while (b == a);
+                        boolean twist = false;
+                        double swapDistance = getSwapDistance(a, b, false);
+                        double twistDistance = getSwapDistance(a, b, true);
+                        // choose the better option
+                        if (twistDistance < swapDistance) {
+                            twist = true;
+                            swapDistance = twistDistance;
+                        }
+
+                        if (debugLevel > 1) {
+                            // validate the differential swapDistance
+                            bestDistance = getTravellingDistance();
+                            this.swapLocations(a, b, twist);
+                            double newDistance = getTravellingDistance();
+                            this.swapLocations(a, b, twist);
+                            if (Math.abs((newDistance - bestDistance) - swapDistance) > 0.1) {
+                                Logger.warn("** Swap distance wrong - newDistance:" + newDistance + ", bestDistance:" + bestDistance +", swapDistance: "+swapDistance + " != "+(newDistance - bestDistance)+", twist: "+twist);
+                            }
+                        }
+
+                        if (swapDistance < 0.0 || (Math.exp(-swapDistance / t) >= rnd.nextDouble())) {
+                            // better or within annealing probability
+                            this.swapLocations(a, b, twist);
+                            swaps++;
+                            twists += twist ? 1 : 0;
+                        }
+                        t *= coolingRate;
+                    } else {
+                        break;
                     }
-                    while(b < 0 || a == b || b > this.travelSize );
-                     */
-                    boolean twist = false;//(i % 2 == 0);
-                    double swapDistance = getSwapDistance(a, b, false);
-                    double twistDistance = getSwapDistance(a, b, true);
-                    // choose the better option
-                    if (twistDistance < swapDistance) {
-                        twist = true;
-                        swapDistance = twistDistance;
+                    if (debugLevel > 0) {
+                        if (i % 100000 == 0) {
+                            bestDistance = getTravellingDistance();
+                            Logger.trace("Iterations #" + i +", temperature: "+t+", distance of travel:" + bestDistance+", swaps: "+swaps+", twists: "+twists);
+                        }
                     }
+                }
+            }
+            bestDistance = getTravellingDistance();
+            if (debugLevel > 0) {
+                Logger.trace("Iterations #" + i +", temperature: "+t+",  distance of travel:" + bestDistance+", swaps: "+swaps+", twists: "+twists);
+            }
+            return bestDistance;
+        }
 
-                    if (debugLevel > 1) {
-                        // validate the differential swapDistance
-                        bestDistance = getTravellingDistance();
-                        this.swapLocations(a, b, twist);
-                        double newDistance = getTravellingDistance();
-                        this.swapLocations(a, b, twist);
-                        if (Math.abs((newDistance - bestDistance) - swapDistance) > 0.1) {
-                            System.err.println("** Swap distance wrong - newDistance:" + newDistance + ", bestDistance:" + bestDistance +", swapDistance: "+swapDistance + " != "+(newDistance - bestDistance)+", twist: "+twist);
-                        }
+        /**
+         * 2-opt: reverse the segments between two edges, if that makes the route shorter.
+         * 
+         * @return true if improved.
+         */
+        private boolean improveTwoOpt() {
+            boolean improved = false;
+            for (int a = 0; a < travelSize - 1; a++) {
+                if (isOverdue(a)) {
+                    break;
+                }
+                for (int b = a + 1; b < travelSize; b++) {
+                    if (getSwapDistance(a, b, true) < -1e-9) {
+                        swapLocations(a, b, true);
+                        improved = true;
                     }
+                }
+            }
+            return improved;
+        }
 
-                    if (swapDistance < 0.0 || (Math.exp(-swapDistance / t) >= rnd.nextDouble())) {
-                        // better or within annealing probability
-                        this.swapLocations(a, b, twist);
-                        swaps++;
-                        twists += twist ? 1 : 0;
+        /**
+         * Or-opt: move segments of one to three locations elsewhere in the route, optionally reversed, if that makes 
+         * the route shorter.
+         * 
+         * @return true if improved.
+         */
+        private boolean improveOrOpt() {
+            boolean improved = false;
+            for (int length = 1; length <= 3; length++) {
+                for (int a = 0; a + length <= travelSize; a++) {
+                    if (isOverdue(a)) {
+                        return improved;
+                    }
+                    int e = a + length - 1;
+                    double removeGain = getDistance(a-1, a) + getDistance(e, e+1) - getDistance(a-1, e+1);
+                    for (int b = -1; b < travelSize; b++) {
+                        if (b >= a - 1 && b <= e) {
+                            // insertion edge (b, b+1) must be outside the segment and not its neighbors 
+                            continue;
+                        }
+                        double edge = getDistance(b, b+1);
+                        double forward = getDistance(b, a) + getDistance(e, b+1) - edge;
+                        double reversed = getDistance(b, e) + getDistance(a, b+1) - edge;
+                        double insertCost = Math.min(forward, reversed);
+                        if (insertCost - removeGain < -1e-9) {
+                            moveSegment(a, length, b, reversed < forward);
+                            improved = true;
+                            break;
+                        }
                     }
-                    t *= coolingRate;
-                } else {
-                    break;
                 }
-                if (debugLevel > 0) {
-                    if (i % 100000 == 0) {
-                        bestDistance = getTravellingDistance();
-                        System.out.println("Iterations #" + i +", temperature: "+t+", distance of travel:" + bestDistance+", swaps: "+swaps+", twists: "+twists);
-                        //System.out.println(this.asSvg());
+            }
+            return improved;
+        }
+
+        /**
+         * Moves the segment starting at a with the given length between b and b+1.
+         */
+        private void moveSegment(int a, int length, int b, boolean reversed) {
+            int[] segment = new int[length];
+            System.arraycopy(order, a, segment, 0, length);
+            if (reversed) {
+                for (int i = 0; i < length/2; i++) {
+                    int s = segment[i];
+                    segment[i] = segment[length - 1 - i];
+                    segment[length - 1 - i] = s;
+                }
+            }
+            if (b < a) {
+                // shift the locations between b+1 and a-1 up
+                System.arraycopy(order, b + 1, order, b + 1 + length, a - b - 1);
+                System.arraycopy(segment, 0, order, b + 1, length);
+            }
+            else {
+                // shift the locations between a+length and b down
+                System.arraycopy(order, a + length, order, a, b - a - length + 1);
+                System.arraycopy(segment, 0, order, b - length + 1, length);
+            }
+        }
+
+        private double solve(Random rnd) {
+            int size = Math.max(1, travelSize);
+            // heuristic for the simulated annealing params
+            simulateAnnealing(rnd, getTravellingDistance()/size*2.0, 1.0-0.001/size, size*1000+10000000);
+            // polish with local search
+            boolean improved = true;
+            for (int pass = 0; improved && pass < maxPolishPasses && System.nanoTime() <= deadline; pass++) {
+                improved = improveTwoOpt();
+                improved = improveOrOpt() || improved;
+            }
+            return getTravellingDistance();
+        }
+    }
+
+    /**
+     * @return A nearest neighbor route from the start Location, or from the first Location if open.
+     */
+    private int[] nearestNeighborOrder() {
+        int[] order = new int[travelSize];
+        boolean[] visited = new boolean[travelSize];
+        TravelLocation current = startLocation;
+        for (int i = 0; i < travelSize; i++) {
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < travelSize; j++) {
+                if (!visited[j]) {
+                    double distance = current == null ? 0.0 : current.getLinearDistanceTo(locations[j]);
+                    if (distance < bestDistance) {
+                        best = j;
+                        bestDistance = distance;
                     }
                 }
             }
+            visited[best] = true;
+            order[i] = best;
+            current = locations[best];
         }
-        bestDistance = getTravellingDistance();
-        if (debugLevel > 0) {
-            System.out.println("Iterations #" + i +", temperature: "+t+",  distance of travel:" + bestDistance+", swaps: "+swaps+", twists: "+twists);
+        return order;
+    }
+
+    private int[] shuffledOrder(Random rnd) {
+        int[] order = new int[travelSize];
+        for (int i = 0; i < travelSize; i++) {
+            order[i] = i;
         }
+        for (int i = travelSize - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int s = order[i];
+            order[i] = order[j];
+            order[j] = s;
+        }
+        return order;
+    }
+
+    private double getTravellingDistance() {
+        return this.travel.getTravellingDistance();
+    }
+
+    private TravelLocation getLocation(int i) {
+        return this.travel.getLocation(i);
+    }
+
+    /**
+     * Runs one chain of Simulated Annealing from the current best route, single threaded. 
+     * 
+     * @param startingTemperature
+     * @param coolingRate
+     * @param maxIterations
+     * @return The travelling distance.
+     */
+    public double simulateAnnealing(double startingTemperature, double coolingRate, int maxIterations) {
+        long startTime = System.currentTimeMillis();
+        // make this repeatable by seeding the random generator
+        double bestDistance = this.travel.simulateAnnealing(new Random(baseSeed), startingTemperature, coolingRate, maxIterations);
         long endTime = System.currentTimeMillis();
         this.solverDuration = endTime - startTime;
         return bestDistance;
     }
 
+    /**
+     * Runs the chains in parallel and keeps the best route.
+     * 
+     * @return The travelling distance.
+     */
     public double solve() {
-        // heuristic for the simulated annealing params
-        int size = Math.max(1, this.travelSize);
-        return simulateAnnealing(getTravellingDistance()/size*2.0, 1.0-0.001/size, size*1000+10000000);
+        long startTime = System.currentTimeMillis();
+        int chainCount = getEffectiveChains();
+        long deadline = deterministic ? Long.MAX_VALUE : System.nanoTime() + timeBudget*1000000L;
+        List<Callable<Route>> tasks = new ArrayList<>();
+        for (int c = 0; c < chainCount; c++) {
+            final int chain = c;
+            tasks.add(() -> {
+                Random rnd = new Random(baseSeed + chain);
+                Route route;
+                if (chain == 0) {
+                    route = new Route(null);
+                }
+                else if (chain == 1) {
+                    route = new Route(nearestNeighborOrder());
+                }
+                else {
+                    route = new Route(shuffledOrder(rnd));
+                }
+                route.deadline = deadline;
+                route.solve(rnd);
+                return route;
+            });
+        }
+        Route best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        try {
+            List<Future<Route>> results = (chainCount == 1) ? null : getSolverPool().invokeAll(tasks);
+            for (int c = 0; c < chainCount; c++) {
+                Route route = (results == null) ? tasks.get(c).call() : results.get(c).get();
+                double distance = route.getTravellingDistance();
+                // On a tie, the lower chain wins, so the outcome does not depend on thread timing.
+                if (distance < bestDistance) {
+                    best = route;
+                    bestDistance = distance;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            Logger.warn(e.getCause(), "Travelling salesman chain failed");
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Travelling salesman chain failed");
+        }
+        if (best != null) {
+            this.travel = best;
+        }
+        long endTime = System.currentTimeMillis();
+        this.solverDuration = endTime - startTime;
+        if (debugLevel > 0) {
+            Logger.trace("Solved "+travelSize+" locations with "+chainCount+" chains, distance: "+getTravellingDistance()+", time: "+solverDuration+"ms");
+        }
+        return getTravellingDistance();
+    }
+
+    private static synchronized ExecutorService getSolverPool() {
+        if (solverPool == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxDefaultChains, maxDefaultChains, 
+                    10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (runnable) -> {
+                        Thread thread = new Thread(runnable, "TravellingSalesman solver");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            solverPool = pool;
+        }
+        return solverPool;
     }
 
     public List<T> getTravel() {
-        // convert the working list back to a list of the input objects using the now rearranged t.index order. 
+        // convert the working order back to a list of the input objects using the now rearranged index order. 
         List<T> travelOutput = new ArrayList<>();
-        for (TravelLocation t : this.travel) {
-            travelOutput.add(this.travelInput.get(t.index));
+        for (int i : this.travel.order) {
+            travelOutput.add(this.travelInput.get(this.locations[i].index));
         }
         return travelOutput;
     }
@@ -311,6 +599,65 @@ public class TravellingSalesman<T> {
         return solverDuration;
     }
 
+    /**
+     * @return The number of chains set, or 0 to choose automatically.
+     */
+    public int getChains() {
+        return chains;
+    }
+
+    /**
+     * @param chains The number of chains solved in parallel, or 0 to choose automatically. 
+     */
+    public void setChains(int chains) {
+        this.chains = chains;
+    }
+
+    private int getEffectiveChains() {
+        if (travelSize < 4) {
+            // Nothing to explore.
+            return 1;
+        }
+        if (chains > 0) {
+            return chains;
+        }
+        if (deterministic) {
+            return deterministicChains;
+        }
+        return Math.max(1, Math.min(maxDefaultChains, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return The time budget of solve() in milliseconds.
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * @param deterministic If true (the default), a fixed number of chains run to completion without time budget, so 
+     * the solution is reproducible. Completion is bounded by a fixed number of iterations and local search passes. If false, the chains follow the available processors and stop at the time budget.
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    public long getSeed() {
+        return baseSeed;
+    }
+
+    public void setSeed(long seed) {
+        this.baseSeed = seed;
+    }
+
     public String asSvg() {
         double minX = Double.NaN, minY = Double.NaN;
         double maxX = Double.NaN, maxY = Double.NaN;
@@ -8,6 +8,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.io.IOUtils;
 import org.openpnp.machine.reference.camera.OpenPnpCaptureCamera;
@@ -325,6 +326,39 @@ public class VisionUtils {
         }
     }
 
+    /**
+     * Like {@link #findPartAlignmentOffsets(PartAlignment, Part, BoardLocation, Placement, Nozzle)}, but the
+     * alignment may still be processing on the executor, see
+     * {@link PartAlignment#findOffsetsOverlapped(Part, BoardLocation, Placement, Nozzle, Executor)}. The
+     * "Vision.PartAlignment.After" script runs when the pending offsets are taken.
+     */
+    public static PartAlignment.PendingOffsets findPartAlignmentOffsetsOverlapped(PartAlignment p, Part part,
+            BoardLocation boardLocation, Placement placement, Nozzle nozzle, Executor executor) throws Exception {
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("part", part);
+        globals.put("nozzle", nozzle);
+        Configuration.get().getScripting().on("Vision.PartAlignment.Before", globals);
+
+        PartAlignment.PendingOffsets pendingOffsets;
+        try {
+            pendingOffsets = p.findOffsetsOverlapped(part, boardLocation, placement, nozzle, executor);
+        } catch (Exception e) {
+            globals.put("offsets", null);
+            Configuration.get().getScripting().on("Vision.PartAlignment.After", globals);
+            throw e;
+        }
+        return () -> {
+            PartAlignmentOffset offsets = null;
+            try {
+                offsets = pendingOffsets.get();
+                return offsets;
+            } finally {
+                globals.put("offsets", offsets);
+                Configuration.get().getScripting().on("Vision.PartAlignment.After", globals);
+            }
+        };
+    }
+
 
     /**
      * Compute an RGB histogram over the provided image.
@@ -7,8 +7,10 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.opencv.core.CvType;
@@ -16,6 +18,10 @@ import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.CycleTimeProfiler;
+import org.openpnp.util.CycleTimeProfiler.Category;
+import org.openpnp.util.CycleTimeProfiler.Span;
+import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.FluentCv.ColorSpace;
 import org.openpnp.vision.pipeline.CvStage.Result;
 import org.pmw.tinylog.Logger;
@@ -53,6 +59,22 @@ public class CvPipeline implements AutoCloseable {
         nu.pattern.OpenCV.loadLocally();
     }
 
+    /**
+     * Determines which stage result images are retained when the pipeline is processed. Each retained image is
+     * a copy of the working image, so retaining all of them costs a full frame per stage.
+     */
+    public enum ImageRetention {
+        /**
+         * Retain the image of every stage, as needed to inspect the results in the pipeline editor.
+         */
+        All,
+        /**
+         * Only retain the images of stages referenced by other stages, see
+         * {@link CvStage#referencedImageStageNames()}, or requested by the caller, see {@link #retainImage(String)}.
+         */
+        Referenced
+    }
+
     @ElementList
     private ArrayList<CvStage> stages = new ArrayList<>();
 
@@ -73,6 +95,25 @@ public class CvPipeline implements AutoCloseable {
 
     private int currentShot;
 
+    /**
+     * The number of stages processed so far, see {@link #processCapture()}.
+     */
+    private int processedStages;
+
+    private Set<String> retainedImageStageNames = new HashSet<>();
+
+    /**
+     * The stages whose images are retained in the current processing, null to retain all.
+     */
+    private Set<CvStage> retainedImageStages;
+
+    private boolean headless;
+
+    /**
+     * The stages skipped in the current processing, see {@link #setHeadless(boolean)}.
+     */
+    private Set<CvStage> skippedStages = Collections.emptySet();
+
     public CvPipeline() {
 
     }
@@ -255,7 +296,57 @@ public class CvPipeline implements AutoCloseable {
         this.totalProcessingTimeNs = totalProcessingTimeNs;
     }
 
+    /**
+     * Requests the result image of the given stage to be retained, when processing with
+     * {@link ImageRetention#Referenced}.
+     *
+     * @param stageName
+     */
+    public void retainImage(String stageName) {
+        retainedImageStageNames.add(stageName);
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Sets headless processing, for when no human looks at the resulting images. Diagnostic stages, see
+     * {@link CvStage#diagnosticOnly()}, are then skipped, unless their image is consumed, see
+     * {@link #getHeadlessSkippedStages()}. Ignored when processing with {@link ImageRetention#All}, as in the
+     * pipeline editor.
+     * <p>
+     * Only applies to the next processing, it is reset by {@link #processCapture(ImageRetention)}, so it does
+     * not stick on a pipeline that is used again, e.g. by a preview.
+     *
+     * @param headless
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
     public void process() throws Exception {
+        process(ImageRetention.Referenced);
+    }
+
+    public void process(ImageRetention imageRetention) throws Exception {
+        processCapture(imageRetention);
+        processRemaining();
+    }
+
+    public void processCapture() {
+        processCapture(ImageRetention.Referenced);
+    }
+
+    /**
+     * Processes the stages up to and including the last capturing stage, see {@link CvStage#isCapturing()}. These
+     * need the machine, so they must be processed on the machine thread. The remaining stages only work on the
+     * captured image, and can be processed by {@link #processRemaining()} on another thread, while the machine
+     * moves on. The pipeline must not be used otherwise in between.
+     *
+     * @param imageRetention
+     */
+    public void processCapture(ImageRetention imageRetention) {
         // 初始化终止异常和总处理时间
         terminalException = null;
         totalProcessingTimeNs = 0;
@@ -264,13 +355,54 @@ public class CvPipeline implements AutoCloseable {
         release();
 
         // 遍历处理阶段
-        for (CvStage stage : stages) {
-            // 准备处理阶段
-            stage.processPrepare(this);
+        int captureEnd = 0;
+        try {
+            for (int i = 0; i < stages.size(); i++) {
+                // 准备处理阶段
+                stages.get(i).processPrepare(this);
+                if (stages.get(i).isCapturing()) {
+                    captureEnd = i + 1;
+                }
+            }
+            retainedImageStages = getRetainedImageStages(imageRetention);
+            skippedStages = (headless && imageRetention != ImageRetention.All) ? 
+                    getHeadlessSkippedStages() : Collections.emptySet();
+        }
+        finally {
+            // Headless only applies to this processing.
+            headless = false;
+        }
+
+        processedStages = 0;
+        try (Span span = CycleTimeProfiler.span(Category.Vision)) {
+            processStages(captureEnd);
+        }
+    }
+
+    /**
+     * Processes the stages not yet processed by {@link #processCapture()}.
+     *
+     * @throws Exception The terminal exception of the pipeline, if any.
+     */
+    public void processRemaining() throws Exception {
+        try (Span span = CycleTimeProfiler.span(Category.Vision)) {
+            processStages(stages.size());
+        }
+
+        // 如果存在终止异常，则抛出终止异常
+        if (terminalException != null) {
+            throw (terminalException);
         }
+    }
 
+    private void processStages(int end) {
         // 再次遍历处理阶段，执行图像处理和计时
-        for (CvStage stage : stages) {
+        for (; processedStages < end; processedStages++) {
+            CvStage stage = stages.get(processedStages);
+            if (skippedStages.contains(stage)) {
+                results.put(stage, new Result(null, workingColorSpace, null, 0, stage));
+                continue;
+            }
             // 记录处理开始时间
             long processingTimeNs = System.nanoTime();
             Result result = null;
@@ -321,8 +453,9 @@ public class CvPipeline implements AutoCloseable {
             }
 
             // 如果结果图像为空，并且有工作图像，用工作图像的克隆替换结果图像
+            boolean retainImage = retainedImageStages == null || retainedImageStages.contains(stage);
             if (image == null) {
-                if (workingImage != null) {
+                if (workingImage != null && retainImage) {
                     image = workingImage.clone();
                 }
             } else { // 如果结果图像不为空
@@ -333,7 +466,7 @@ public class CvPipeline implements AutoCloseable {
 
                 // 将工作图像替换为结果图像，并为存储克隆结果图像
                 workingImage = image;
-                image = image.clone();
+                image = retainImage ? image.clone() : null;
             }
 
             // 如果结果颜色空间为空，并且有工作颜色空间，将结果颜色空间替换为工作颜色空间
@@ -346,13 +479,76 @@ public class CvPipeline implements AutoCloseable {
             // 将阶段处理结果存储到结果映射中
             results.put(stage, new Result(image, colorSpace, model, processingTimeNs, stage));
         }
+    }
 
-        // 如果存在终止异常，则抛出终止异常
-        if (terminalException != null) {
-            throw (terminalException);
+
+    /**
+     * Determines the diagnostic stages that can be skipped in headless processing. A diagnostic stage is only 
+     * skipped if its image is not consumed, i.e. if no later stage is processed, as it could read the working 
+     * image, and if the stage is neither the results stage nor referenced by name, by another stage or by 
+     * {@link #retainImage(String)}.
+     *
+     * @return The stages to be skipped.
+     */
+    public Set<CvStage> getHeadlessSkippedStages() {
+        Set<CvStage> skipped = new HashSet<>();
+        Set<String> referencedStageNames = new HashSet<>(retainedImageStageNames);
+        referencedStageNames.add(VisionUtils.PIPELINE_RESULTS_NAME);
+        // Legacy results name.
+        referencedStageNames.add("result");
+        for (CvStage stage : stages) {
+            if (stage.isEnabled()) {
+                List<String> stageNames = stage.referencedImageStageNames();
+                if (stageNames == null) {
+                    // The stage may reference any stage.
+                    return skipped;
+                }
+                referencedStageNames.addAll(stageNames);
+            }
         }
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            CvStage stage = stages.get(i);
+            if (!stage.isEnabled()) {
+                // Does not touch the working image.
+                continue;
+            }
+            if (!stage.diagnosticOnly() || referencedStageNames.contains(stage.getName())) {
+                break;
+            }
+            skipped.add(stage);
+        }
+        return skipped;
     }
 
+    private Set<CvStage> getRetainedImageStages(ImageRetention imageRetention) {
+        if (imageRetention == ImageRetention.All) {
+            return null;
+        }
+        Set<CvStage> retainedStages = new HashSet<>();
+        for (String stageName : retainedImageStageNames) {
+            CvStage stage = getStage(stageName);
+            if (stage != null) {
+                retainedStages.add(stage);
+            }
+        }
+        for (CvStage stage : stages) {
+            if (!stage.isEnabled()) {
+                continue;
+            }
+            List<String> stageNames = stage.referencedImageStageNames();
+            if (stageNames == null) {
+                // The stage may reference any image.
+                return null;
+            }
+            for (String stageName : stageNames) {
+                CvStage referencedStage = getStage(stageName);
+                if (referencedStage != null) {
+                    retainedStages.add(referencedStage);
+                }
+            }
+        }
+        return retainedStages;
+    }
 
     /**
      * Reset all the modified parameters to default values
@@ -10,6 +10,7 @@ import java.beans.MethodDescriptor;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -62,6 +63,30 @@ public abstract class CvStage {
         propertyOverrides = null;
     }
 
+    /**
+     * @return The names of the stages whose result images this stage reads, so they are retained, see
+     * {@link CvPipeline.ImageRetention#Referenced}. Null if the stage may read any of them.
+     */
+    public List<String> referencedImageStageNames() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return True if the stage needs the machine when it is processed, e.g. to capture a camera image. See
+     * {@link CvPipeline#processCapture()}.
+     */
+    public boolean isCapturing() {
+        return false;
+    }
+
+    /**
+     * @return True if the stage only draws diagnostics onto the working image, i.e. it is only needed if a human
+     * looks at the image. See {@link CvPipeline#setHeadless(boolean)}.
+     */
+    public boolean diagnosticOnly() {
+        return false;
+    }
+
     public String getName() {
         return name;
     }
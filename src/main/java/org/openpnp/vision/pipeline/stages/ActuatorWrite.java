@@ -49,6 +49,12 @@ public class ActuatorWrite extends CvStage {
         this.actuatorWriteValue = actuatorWriteValue;
     }
 
+    @Override
+    public boolean isCapturing() {
+        // Actuating must happen on the machine, in order with the capture.
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (actuatorName == null || actuatorName.equals("")) {
@@ -19,6 +19,9 @@
 
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.opencv.core.Mat;
 import org.openpnp.vision.FluentCv.ColorSpace;
 import org.openpnp.vision.pipeline.CvPipeline;
@@ -58,6 +61,11 @@ public class ComposeResult extends CvStage {
         this.modelStageName = modelStageName;
     }
 
+    @Override
+    public List<String> referencedImageStageNames() {
+        return Collections.singletonList(imageStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
@@ -24,6 +24,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 import org.opencv.core.Mat;
 import org.openpnp.model.Length;
@@ -487,175 +492,70 @@ public class DetectCircularSymmetry extends CvStage {
             scoreRange.finalScore = 0;
         }
         
-        final int xDim = maxDiameter/subSamplingEff+1;
-        final int yDim = maxDiameter/subSamplingEff+1;
-        final int maxPixelDataDim = xDim*yDim*channels;
         final int rDim = (r - r0 + 1)/subSamplingEff;
         final int angleDim = symmetryScore.getAngularBins(); 
-        final int angleMask = angleDim-1; 
-        final double fa = angleDim/(Math.PI*2);
-        final int histogramDim = angleDim*rDim*channels;
-        int [] idxPixelData = new int[maxPixelDataDim]; // Index into the pixel data, relative from the left upper corner.
-        int [] idxHistogram = new int[maxPixelDataDim]; // Index into the result histogram.
         int [] rRing = new int [rDim];
-        double [] segmentValues = new double[angleDim]; 
         for (int ri = 0; ri < rDim; ri++) {
             rRing[ri] = r0 + ri*subSamplingEff;
         }
-        int [] histogramN = new int[histogramDim];
-        double [] histogramFactor = new double[histogramDim];
-        long [] histogramSum = new long[histogramDim]; 
-        long [] histogramSumSq = new long[histogramDim]; 
+
+        // Score all the candidate centers in parallel. With a single sampling offset, the search range is split 
+        // into row bands, otherwise each super-sampling offset pair is a task of its own. The results are then 
+        // reduced in the serial order below, so they do not depend on thread timing.
+        final int offsetCount = superSamplingOffsets.length;
+        final int samplingCount = offsetCount*offsetCount;
+        final RingSampling [] samplings = new RingSampling[samplingCount];
+        final double [][] scores = new double[samplingCount][wSearchRangeMap*hSearchRangeMap];
+        final int [][] radii = new int[samplingCount][wSearchRangeMap*hSearchRangeMap];
+        final int minDiameterEff = minDiameter;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        if (samplingCount == 1) {
+            samplings[0] = new RingSampling(width, channels, r, r0, subSamplingEff, rDim, angleDim, 0.0, 0.0);
+            int bandCount = Math.max(1, Math.min(hSearchRangeMap, getPool().getParallelism()*4));
+            for (int band = 0; band < bandCount; band++) {
+                final int yis0 = band*hSearchRangeMap/bandCount;
+                final int yis1 = (band + 1)*hSearchRangeMap/bandCount;
+                tasks.add(() -> {
+                    scoreCandidates(samplings[0], pixelSamples, width, channels, 
+                            x0SearchRange, wSearchRange, xSearch, ySearch, rSearchSq, subSamplingEff, wSearchRangeMap,
+                            yis0, yis1, minDiameterEff, rRing, angleDim, symmetryScore, scores[0], radii[0]);
+                    return null;
+                });
+            }
+        }
+        else {
+            for (int s = 0; s < samplingCount; s++) {
+                final int sampling = s;
+                tasks.add(() -> {
+                    samplings[sampling] = new RingSampling(width, channels, r, r0, subSamplingEff, rDim, angleDim, 
+                            superSamplingOffsets[sampling/offsetCount], superSamplingOffsets[sampling%offsetCount]);
+                    scoreCandidates(samplings[sampling], pixelSamples, width, channels, 
+                            x0SearchRange, wSearchRange, xSearch, ySearch, rSearchSq, subSamplingEff, wSearchRangeMap,
+                            0, hSearchRangeMap, minDiameterEff, rRing, angleDim, symmetryScore, scores[sampling], radii[sampling]);
+                    return null;
+                });
+            }
+        }
+        invokeTasks(tasks);
 
         // Outer super-sampling loop. 
-        for (double xOffset : superSamplingOffsets) {
-            for (double yOffset : superSamplingOffsets) {
+        for (int xs = 0; xs < offsetCount; xs++) {
+            double xOffset = superSamplingOffsets[xs];
+            for (int ys = 0; ys < offsetCount; ys++) {
+                double yOffset = superSamplingOffsets[ys];
+                int sampling = xs*offsetCount + ys;
                 double scoreBestSampling = Double.NEGATIVE_INFINITY;
                 double xBestSampling = 0;
                 double yBestSampling = 0;
 
-                // Map the concentric rings of circular symmetry from the flat array of pixel channels to the 
-                // radial x angular histogram.
-                // The pixel indices are relative to the origin but they can be offset to any x, y (within
-                // range) and still remain valid, thanks to modulo behavior.
-                int samples = 0;
-                Arrays.fill(histogramN, 0);
-                for (int y = -r, yi = 0; y <= r; y += subSamplingEff, yi += subSamplingEff) {
-                    for (int x = -r, idx = yi*width*channels; 
-                            x <= r; 
-                            x += subSamplingEff, idx += channels*subSamplingEff) {
-                        double dx = x - xOffset;
-                        double dy = y - yOffset;
-                        double d = Math.hypot(dx, dy);
-                        int idxR = (-r0 + (int) Math.round(d))/subSamplingEff;
-                        if (idxR >= 0 && idxR < rDim) {
-                            double angle = angleMask == 0 ? 0 : Math.atan2(dy, dx);
-                            int idxAngle = angleMask & (int) Math.round(angle*fa);
-                            int idxHisto = (idxR*angleDim + idxAngle)*channels;
-                            for (int ch = 0; ch < channels; ch++) {
-                                idxPixelData[samples] = idx+ch;
-                                idxHistogram[samples] = idxHisto+ch;
-                                histogramN[idxHisto+ch]++;
-                                samples++;
-                            }
-                        }
-                    }
-                }
-                for (int i = 0; i < histogramDim; i++) {
-                    histogramFactor[i] = histogramN[i] > 0 ? 1.0/histogramN[i] : 0;
-                }
-
                 // Now iterate through all the pixel offsets and find the maximum circular symmetry.
                 for (int yi = 0, yis = 0; yi < hSearchRange; yi += subSamplingEff, yis++) {
-                    for (int xi = 0, xis = 0, idxOffset = (yi*width + x0SearchRange) * channels; 
-                            xi < wSearchRange; 
-                            xi += subSamplingEff, xis++, idxOffset += channels*subSamplingEff) {
+                    for (int xi = 0, xis = 0; xi < wSearchRange; xi += subSamplingEff, xis++) {
                         int distSq = (xi - xSearch)*(xi - xSearch) + (yi - ySearch)*(yi - ySearch);
                         if (distSq <= rSearchSq) {
-                            Arrays.fill(histogramSum, 0);
-                            Arrays.fill(histogramSumSq, 0);
-                            for (int i = 0; i < samples; i++) {
-                                int idxPixel = idxPixelData[i];
-                                int idxHisto = idxHistogram[i];
-                                int pixel = Byte.toUnsignedInt(pixelSamples[idxOffset + idxPixel]);
-                                histogramSum[idxHisto] += pixel;
-                                histogramSumSq[idxHisto] += pixel*pixel;
-                            }
-
-                            // Analyze the ring sums to find the circular symmetry score, which is ratio between radial 
-                            // and circular variance.
-                            // We use the naive formula
-                            //    Var = (SumSq − (Sum × Sum) / n) / (n − 1), 
-                            // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Na%C3%AFve_algorithm
-                            // But we weigh all our variances by the pixel count, so we do not divide by (n - 1).
-                            final double div0Guard = 0.1;
-                            double score;
-                            double contrastBest = Double.NEGATIVE_INFINITY;
-                            int riContrastBest = 0;
-                            double varianceRing = 0;
-                            double [] sumAcross = new double[channels];
-                            double [] sumSqAcross = new double[channels];
-                            double [] lastAvg = new double[channels];
-                            int [] nAcross = new int[channels];
-                            for (int idxR = 0; idxR < rDim; idxR++) {
-                                double contrast = 0;
-                                for (int ch = 0; ch < channels; ch++) {
-                                    double sumRing = 0;
-                                    double sumSqRing = 0;
-
-                                    int nRing = 0;
-                                    switch (symmetryScore) { 
-                                        case OverallVarianceVsRingVarianceSum:
-                                        {
-                                            int idxHisto = (idxR*angleDim + 0)*channels + ch;
-                                            sumRing += histogramSum[idxHisto];
-                                            sumSqRing += histogramSumSq[idxHisto];
-                                            nRing += histogramN[idxHisto];
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                            sumAcross[ch] += sumRing;
-                                            sumSqAcross[ch] += sumSqRing;
-                                        }
-                                        break;
-                                        case RingAvgeragesVarianceVsRingVarianceSum:
-                                        {
-                                            for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
-                                                int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
-                                                int n = histogramN[idxHisto];
-                                                double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
-                                                double segmentAvgSq = Math.pow(segmentAvg, 2);
-                                                sumRing += histogramSum[idxHisto];
-                                                sumSqRing += histogramSumSq[idxHisto];
-                                                sumSqAcross[ch] += segmentAvgSq*n;
-                                                nRing += n;
-                                            }
-                                            sumAcross[ch] += sumRing;
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                        }
-                                        break;
-                                        case RingMedianVarianceVsRingVarianceSum: 
-                                        {
-                                            int slotAngle = 0; 
-                                            for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
-                                                int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
-                                                int n = histogramN[idxHisto];
-                                                if (n > 0) {
-                                                    double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
-                                                    //double segmentAvgSq = Math.pow(segmentAvg, 2);
-                                                    segmentValues[slotAngle++] = segmentAvg;
-                                                    sumRing += histogramSum[idxHisto];
-                                                    sumSqRing += /*segmentAvgSq*n;*/histogramSumSq[idxHisto];
-                                                    nRing += n;
-                                                }
-                                            }
-                                            Arrays.sort(segmentValues, 0, slotAngle);
-                                            double median = (segmentValues[Math.max(0, slotAngle/2 - 1)] + segmentValues[slotAngle/2])*0.5;
-                                            double medianSq = Math.pow(median, 2);
-                                            sumAcross[ch] += median*nRing;
-                                            sumSqAcross[ch] += medianSq*nRing;
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                        }
-                                        break;
-                                    }
-                                    nAcross[ch] += nRing;
-                                    double avg1 = sumRing/nRing;
-                                    contrast += Math.pow(lastAvg[ch] - avg1, 2);
-                                    lastAvg[ch] = avg1;
-                                }
-                                if (rRing[idxR]*2 >= minDiameter) {
-                                    if (contrastBest < contrast) {
-                                        contrastBest = contrast;
-                                        riContrastBest = rRing[idxR];
-                                    }
-                                }
-                            }
-                            double varianceAcross = 0;
-                            for (int ch = 0; ch < channels; ch++) {
-                                varianceAcross += (sumSqAcross[ch] - Math.pow(sumAcross[ch], 2) / nAcross[ch]);
-                            }
-                            score = (varianceAcross + div0Guard)/(varianceRing + div0Guard);
+                            int idx = yis*wSearchRangeMap + xis;
+                            double score = scores[sampling][idx];
+                            int riContrastBest = radii[sampling][idx];
                             scoreRange.add(score);
                             if (scoreBestSampling < score) {
                                 scoreBestSampling = score;
@@ -669,7 +569,6 @@ public class DetectCircularSymmetry extends CvStage {
                                 }
                             }
                             if (scoreMap != null) {
-                                int idx = yis*wSearchRangeMap + xis;
                                 if (scoreMap[idx] < score) {
                                     scoreMap[idx] = score;
                                     radiusMap[idx] = riContrastBest;
@@ -684,7 +583,7 @@ public class DetectCircularSymmetry extends CvStage {
                     Logger.trace("best circular symmetry at subSampling "+subSamplingEff+", range W"+wSearchRange+" H"+hSearchRange
                             +(finalSamplingPass ? ", superSampling "+superSampling+" offsets Y"+xOffset+" Y"+yOffset : "")
                             +" X"+xBestSampling+" Y"+yBestSampling+" R"+rContrastBest
-                            + " ring samples "+samples+": "+scoreBestSampling);
+                            + " ring samples "+samplings[sampling].samples+": "+scoreBestSampling);
                 }
             }
         }
@@ -912,6 +811,236 @@ public class DetectCircularSymmetry extends CvStage {
         return ret;
     }
 
+    /**
+     * Maps the concentric rings of circular symmetry from the flat array of pixel channels to the 
+     * radial x angular histogram, for one super-sampling offset.
+     * The pixel indices are relative to the origin but they can be offset to any x, y (within
+     * range) and still remain valid, thanks to modulo behavior.
+     */
+    private static class RingSampling {
+        final int samples;
+        final int [] idxPixelData; // Index into the pixel data, relative from the left upper corner.
+        final int [] idxHistogram; // Index into the result histogram.
+        final int [] histogramN;
+        final double [] histogramFactor;
+
+        RingSampling(int width, int channels, int r, int r0, int subSamplingEff, int rDim, int angleDim, 
+                double xOffset, double yOffset) {
+            final int xDim = (2*r + 1)/subSamplingEff+1;
+            final int yDim = (2*r + 1)/subSamplingEff+1;
+            final int maxPixelDataDim = xDim*yDim*channels;
+            final int angleMask = angleDim-1; 
+            final double fa = angleDim/(Math.PI*2);
+            final int histogramDim = angleDim*rDim*channels;
+            idxPixelData = new int[maxPixelDataDim];
+            idxHistogram = new int[maxPixelDataDim];
+            histogramN = new int[histogramDim];
+            histogramFactor = new double[histogramDim];
+            int samples = 0;
+            for (int y = -r, yi = 0; y <= r; y += subSamplingEff, yi += subSamplingEff) {
+                for (int x = -r, idx = yi*width*channels; 
+                        x <= r; 
+                        x += subSamplingEff, idx += channels*subSamplingEff) {
+                    double dx = x - xOffset;
+                    double dy = y - yOffset;
+                    double d = Math.hypot(dx, dy);
+                    int idxR = (-r0 + (int) Math.round(d))/subSamplingEff;
+                    if (idxR >= 0 && idxR < rDim) {
+                        double angle = angleMask == 0 ? 0 : Math.atan2(dy, dx);
+                        int idxAngle = angleMask & (int) Math.round(angle*fa);
+                        int idxHisto = (idxR*angleDim + idxAngle)*channels;
+                        for (int ch = 0; ch < channels; ch++) {
+                            idxPixelData[samples] = idx+ch;
+                            idxHistogram[samples] = idxHisto+ch;
+                            histogramN[idxHisto+ch]++;
+                            samples++;
+                        }
+                    }
+                }
+            }
+            this.samples = samples;
+            for (int i = 0; i < histogramDim; i++) {
+                histogramFactor[i] = histogramN[i] > 0 ? 1.0/histogramN[i] : 0;
+            }
+        }
+    }
+
+    /**
+     * Scores the candidate centers of the search range rows [yis0, yis1), in subSampling units. Stores the score and
+     * the radius of best contrast per candidate inside the search radius. Uses its own histogram scratch buffers, 
+     * so bands can be scored concurrently.
+     */
+    private static void scoreCandidates(RingSampling sampling, byte[] pixelSamples, int width, int channels, 
+            int x0SearchRange, int wSearchRange, int xSearch, int ySearch, int rSearchSq, int subSamplingEff, int wSearchRangeMap,
+            int yis0, int yis1, int minDiameter, int [] rRing, int angleDim, SymmetryScore symmetryScore, 
+            double [] scores, int [] radii) {
+        final int rDim = rRing.length;
+        final int histogramDim = angleDim*rDim*channels;
+        final int samples = sampling.samples;
+        final int [] idxPixelData = sampling.idxPixelData;
+        final int [] idxHistogram = sampling.idxHistogram;
+        final int [] histogramN = sampling.histogramN;
+        final double [] histogramFactor = sampling.histogramFactor;
+        double [] segmentValues = new double[angleDim]; 
+        long [] histogramSum = new long[histogramDim]; 
+        long [] histogramSumSq = new long[histogramDim]; 
+        double [] sumAcross = new double[channels];
+        double [] sumSqAcross = new double[channels];
+        double [] lastAvg = new double[channels];
+        int [] nAcross = new int[channels];
+        for (int yis = yis0, yi = yis0*subSamplingEff; yis < yis1; yi += subSamplingEff, yis++) {
+            for (int xi = 0, xis = 0, idxOffset = (yi*width + x0SearchRange) * channels; 
+                    xi < wSearchRange; 
+                    xi += subSamplingEff, xis++, idxOffset += channels*subSamplingEff) {
+                int distSq = (xi - xSearch)*(xi - xSearch) + (yi - ySearch)*(yi - ySearch);
+                if (distSq <= rSearchSq) {
+                    Arrays.fill(histogramSum, 0);
+                    Arrays.fill(histogramSumSq, 0);
+                    for (int i = 0; i < samples; i++) {
+                        int idxPixel = idxPixelData[i];
+                        int idxHisto = idxHistogram[i];
+                        int pixel = Byte.toUnsignedInt(pixelSamples[idxOffset + idxPixel]);
+                        histogramSum[idxHisto] += pixel;
+                        histogramSumSq[idxHisto] += pixel*pixel;
+                    }
+
+                    // Analyze the ring sums to find the circular symmetry score, which is ratio between radial 
+                    // and circular variance.
+                    // We use the naive formula
+                    //    Var = (SumSq − (Sum × Sum) / n) / (n − 1), 
+                    // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Na%C3%AFve_algorithm
+                    // But we weigh all our variances by the pixel count, so we do not divide by (n - 1).
+                    final double div0Guard = 0.1;
+                    double contrastBest = Double.NEGATIVE_INFINITY;
+                    int riContrastBest = 0;
+                    double varianceRing = 0;
+                    Arrays.fill(sumAcross, 0);
+                    Arrays.fill(sumSqAcross, 0);
+                    Arrays.fill(lastAvg, 0);
+                    Arrays.fill(nAcross, 0);
+                    for (int idxR = 0; idxR < rDim; idxR++) {
+                        double contrast = 0;
+                        for (int ch = 0; ch < channels; ch++) {
+                            double sumRing = 0;
+                            double sumSqRing = 0;
+
+                            int nRing = 0;
+                            switch (symmetryScore) { 
+                                case OverallVarianceVsRingVarianceSum:
+                                {
+                                    int idxHisto = (idxR*angleDim + 0)*channels + ch;
+                                    sumRing += histogramSum[idxHisto];
+                                    sumSqRing += histogramSumSq[idxHisto];
+                                    nRing += histogramN[idxHisto];
+                                    double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                    varianceRing += variance;
+                                    sumAcross[ch] += sumRing;
+                                    sumSqAcross[ch] += sumSqRing;
+                                }
+                                break;
+                                case RingAvgeragesVarianceVsRingVarianceSum:
+                                {
+                                    for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
+                                        int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
+                                        int n = histogramN[idxHisto];
+                                        double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
+                                        double segmentAvgSq = Math.pow(segmentAvg, 2);
+                                        sumRing += histogramSum[idxHisto];
+                                        sumSqRing += histogramSumSq[idxHisto];
+                                        sumSqAcross[ch] += segmentAvgSq*n;
+                                        nRing += n;
+                                    }
+                                    sumAcross[ch] += sumRing;
+                                    double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                    varianceRing += variance;
+                                }
+                                break;
+                                case RingMedianVarianceVsRingVarianceSum: 
+                                {
+                                    int slotAngle = 0; 
+                                    for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
+                                        int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
+                                        int n = histogramN[idxHisto];
+                                        if (n > 0) {
+                                            double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
+                                            //double segmentAvgSq = Math.pow(segmentAvg, 2);
+                                            segmentValues[slotAngle++] = segmentAvg;
+                                            sumRing += histogramSum[idxHisto];
+                                            sumSqRing += /*segmentAvgSq*n;*/histogramSumSq[idxHisto];
+                                            nRing += n;
+                                        }
+                                    }
+                                    Arrays.sort(segmentValues, 0, slotAngle);
+                                    double median = (segmentValues[Math.max(0, slotAngle/2 - 1)] + segmentValues[slotAngle/2])*0.5;
+                                    double medianSq = Math.pow(median, 2);
+                                    sumAcross[ch] += median*nRing;
+                                    sumSqAcross[ch] += medianSq*nRing;
+                                    double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                    varianceRing += variance;
+                                }
+                                break;
+                            }
+                            nAcross[ch] += nRing;
+                            double avg1 = sumRing/nRing;
+                            contrast += Math.pow(lastAvg[ch] - avg1, 2);
+                            lastAvg[ch] = avg1;
+                        }
+                        if (rRing[idxR]*2 >= minDiameter) {
+                            if (contrastBest < contrast) {
+                                contrastBest = contrast;
+                                riContrastBest = rRing[idxR];
+                            }
+                        }
+                    }
+                    double varianceAcross = 0;
+                    for (int ch = 0; ch < channels; ch++) {
+                        varianceAcross += (sumSqAcross[ch] - Math.pow(sumAcross[ch], 2) / nAcross[ch]);
+                    }
+                    int idx = yis*wSearchRangeMap + xis;
+                    scores[idx] = (varianceAcross + div0Guard)/(varianceRing + div0Guard);
+                    radii[idx] = riContrastBest;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The fork-join pool the parallel tasks run on, i.e. the pool of the calling task, if any, so callers 
+     * can control the parallelism, otherwise the common pool.
+     */
+    static ForkJoinPool getPool() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        if (pool == null) {
+            pool = ForkJoinPool.commonPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Runs the tasks on the pool, see {@link #getPool()}, or directly if there is only one, and waits for all 
+     * of them. 
+     * 
+     * @param tasks
+     * @throws Exception The first exception thrown by a task.
+     */
+    static void invokeTasks(List<Callable<Void>> tasks) throws Exception {
+        if (tasks.size() == 1) {
+            tasks.get(0).call();
+            return;
+        }
+        for (Future<Void> future : getPool().invokeAll(tasks)) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
     protected static List<SymmetryCircle> sortAndLimit(List<SymmetryCircle> circles,
             int maxTargetCount, double corrSymmetry) {
         // Sort best results first.
@@ -19,10 +19,13 @@
 
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import org.opencv.core.Mat;
 import org.opencv.core.RotatedRect;
@@ -487,6 +490,17 @@ public class DetectRectlinearSymmetry extends CvStage {
      */
     static final int DEBUG = 0;
 
+    /**
+     * The best angle cross-sections found in a band of angles.
+     */
+    private static class AngleBand {
+        double score = Double.NEGATIVE_INFINITY;
+        double [] xCrossSection;
+        double [] yCrossSection;
+        double [] xCrossSectionMasked;
+        double [] yCrossSectionMasked;
+    }
+
     /**
      * Find the angle, location and bounds of the subject with largest rectlinear symmetry. 
      * 
@@ -566,14 +580,6 @@ public class DetectRectlinearSymmetry extends CvStage {
         // Running best results.
         double scoreBest = Double.NEGATIVE_INFINITY;
         double angleBest = Double.NaN;
-        double [] xCrossSection = new double[wCross*channels];
-        double [] yCrossSection = new double[hCross*channels];
-        double [] xCrossSectionN = new double[wCross];
-        double [] yCrossSectionN = new double[hCross];
-        double [] xCrossSectionMasked = new double[wCross];
-        double [] yCrossSectionMasked = new double[hCross];
-        double [] xCrossSectionFiltered = new double[wCross*channels];
-        double [] yCrossSectionFiltered = new double[hCross*channels];
         double [] xBestCrossSection = new double[wCross*channels];
         double [] yBestCrossSection = new double[hCross*channels];
         double [] xBestCrossSectionMasked = new double[wCross];
@@ -589,121 +595,172 @@ public class DetectRectlinearSymmetry extends CvStage {
         double[] kernel = KernelUtils.getGaussianKernel(superSamplingEff, 0, (gaussianSmoothing*superSamplingEff)|1);
         double thresholdLuminance = Math.pow(threshold, gamma)*channels;
 
-        // Determine the angle with the largest rectlinear cross-section contrast.
+        // The angles are stepped up front, so they are exactly the same as in a serial search.
+        int angleCount = 0;
         for (double angle = a0; angle <= a1; angle += angleStep) {
-            // Note, this is the reverse rotation, i.e. angle is negative.
-            double s = superSamplingEff*Math.sin(-angle)/subSamplingEff;
-            double c = superSamplingEff*Math.cos(-angle)/subSamplingEff;
-            // Reset cross-sections. 
-            Arrays.fill(xCrossSection, 0);
-            Arrays.fill(yCrossSection, 0);
-            Arrays.fill(xCrossSectionN, 0);
-            Arrays.fill(yCrossSectionN, 0);
-            Arrays.fill(xCrossSectionMasked, 0);
-            Arrays.fill(yCrossSectionMasked, 0);
-            // Calculate the cross-sections from the pixels.
-            for (int y = 0, dy = -cyPixels, iy = 0; y < hPixels; y += subSamplingEff, dy += subSamplingEff, iy += width*channels*subSamplingEff) {
-                double sy = s*dy;
-                double cy = c*dy;
-                for (int x = 0, dx = -cxPixels, idx = iy + x0Pixels*channels; x < wPixels; x += subSamplingEff, dx += subSamplingEff, idx += channels*subSamplingEff) {
-                    double sx = s*dx;
-                    double cx = c*dx;
-                    // Note: this is a left-handed coordinate system, i.e. y pointing down.
-                    double xCross = cx + sy + cxCross;
-                    double yCross = -sx + cy + cyCross;
-                    int ixCross = (int) Math.round(xCross);
-                    int iyCross = (int) Math.round(yCross);
-                    double xWeight1 = xCross + 0.5 - ixCross;
-                    double xWeight0 = 1 - xWeight1;
-                    double yWeight1 = yCross + 0.5 - iyCross;
-                    double yWeight0 = 1 - yWeight1;
-                    if (iyCross > 1 && iyCross < hCross) {
-                        if (ixCross > 1 && ixCross < wCross) {
-                            /*int dSq = dx*dx + dy*dy;
-                            if (dSq < rSq)*/ {
-                                double luminance = 0;
-                                for (int ch = 0; ch < channels; ch++) {
-                                    int xai = ixCross*channels + ch;
-                                    int yai = iyCross*channels + ch;
-                                    double pixel = Math.pow(Byte.toUnsignedInt(pixelSamples[idx + ch]), gamma);
-                                    luminance += pixel;
-                                    xCrossSection[xai] += pixel*xWeight1;
-                                    xCrossSection[xai - channels] += pixel*xWeight0;
-                                    yCrossSection[yai] += pixel*yWeight1;
-                                    yCrossSection[yai - channels] += pixel*yWeight0;
-                                    if (DEBUG >= 2) {
-                                        if (Math.abs(angle - (a0+a1)/2) < angleStep) {
-                                            byte [] pixelData = new byte[channels];
-                                            image.get(y0Pixels + y, x0Pixels + x, pixelData);
-                                            if (ch == 2) {
-                                                pixelData[ch] = (byte)(127.0*ixCross/wCross + pixelData[ch]/2);
-                                            }
-                                            else if (ch == 1) {
-                                                pixelData[ch] = (byte)(127.0*iyCross/hCross + pixelData[ch]/2);
+            angleCount++;
+        }
+        final double [] angles = new double[angleCount];
+        for (int ai = 0; ai < angleCount; ai++) {
+            angles[ai] = (ai == 0 ? a0 : angles[ai - 1] + angleStep);
+        }
+        final double [] contrasts = new double[angleCount];
+        // Evaluate the angles in parallel bands. Each band has its own cross-section scratch buffers and keeps
+        // the first of its best angles, so the reduction in band order below takes the same angle as a serial search.
+        final int bandCount = Math.max(1, Math.min(angleCount, DetectCircularSymmetry.getPool().getParallelism()*4));
+        final AngleBand [] bands = new AngleBand[bandCount];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int band = 0; band < bandCount; band++) {
+            final AngleBand angleBand = new AngleBand();
+            final int ai0 = band*angleCount/bandCount;
+            final int ai1 = (band + 1)*angleCount/bandCount;
+            bands[band] = angleBand;
+            tasks.add(() -> {
+                double [] xCrossSection = new double[wCross*channels];
+                double [] yCrossSection = new double[hCross*channels];
+                double [] xCrossSectionN = new double[wCross];
+                double [] yCrossSectionN = new double[hCross];
+                double [] xCrossSectionMasked = new double[wCross];
+                double [] yCrossSectionMasked = new double[hCross];
+                double [] xCrossSectionFiltered = new double[wCross*channels];
+                double [] yCrossSectionFiltered = new double[hCross*channels];
+                // Determine the angle with the largest rectlinear cross-section contrast.
+                for (int ai = ai0; ai < ai1; ai++) {
+                    double angle = angles[ai];
+                    // Note, this is the reverse rotation, i.e. angle is negative.
+                    double s = superSamplingEff*Math.sin(-angle)/subSamplingEff;
+                    double c = superSamplingEff*Math.cos(-angle)/subSamplingEff;
+                    // Reset cross-sections. 
+                    Arrays.fill(xCrossSection, 0);
+                    Arrays.fill(yCrossSection, 0);
+                    Arrays.fill(xCrossSectionN, 0);
+                    Arrays.fill(yCrossSectionN, 0);
+                    Arrays.fill(xCrossSectionMasked, 0);
+                    Arrays.fill(yCrossSectionMasked, 0);
+                    // Calculate the cross-sections from the pixels.
+                    for (int y = 0, dy = -cyPixels, iy = 0; y < hPixels; y += subSamplingEff, dy += subSamplingEff, iy += width*channels*subSamplingEff) {
+                        double sy = s*dy;
+                        double cy = c*dy;
+                        for (int x = 0, dx = -cxPixels, idx = iy + x0Pixels*channels; x < wPixels; x += subSamplingEff, dx += subSamplingEff, idx += channels*subSamplingEff) {
+                            double sx = s*dx;
+                            double cx = c*dx;
+                            // Note: this is a left-handed coordinate system, i.e. y pointing down.
+                            double xCross = cx + sy + cxCross;
+                            double yCross = -sx + cy + cyCross;
+                            int ixCross = (int) Math.round(xCross);
+                            int iyCross = (int) Math.round(yCross);
+                            double xWeight1 = xCross + 0.5 - ixCross;
+                            double xWeight0 = 1 - xWeight1;
+                            double yWeight1 = yCross + 0.5 - iyCross;
+                            double yWeight0 = 1 - yWeight1;
+                            if (iyCross > 1 && iyCross < hCross) {
+                                if (ixCross > 1 && ixCross < wCross) {
+                                    /*int dSq = dx*dx + dy*dy;
+                                    if (dSq < rSq)*/ {
+                                        double luminance = 0;
+                                        for (int ch = 0; ch < channels; ch++) {
+                                            int xai = ixCross*channels + ch;
+                                            int yai = iyCross*channels + ch;
+                                            double pixel = Math.pow(Byte.toUnsignedInt(pixelSamples[idx + ch]), gamma);
+                                            luminance += pixel;
+                                            xCrossSection[xai] += pixel*xWeight1;
+                                            xCrossSection[xai - channels] += pixel*xWeight0;
+                                            yCrossSection[yai] += pixel*yWeight1;
+                                            yCrossSection[yai - channels] += pixel*yWeight0;
+                                            if (DEBUG >= 2) {
+                                                if (Math.abs(angle - (a0+a1)/2) < angleStep) {
+                                                    byte [] pixelData = new byte[channels];
+                                                    image.get(y0Pixels + y, x0Pixels + x, pixelData);
+                                                    if (ch == 2) {
+                                                        pixelData[ch] = (byte)(127.0*ixCross/wCross + pixelData[ch]/2);
+                                                    }
+                                                    else if (ch == 1) {
+                                                        pixelData[ch] = (byte)(127.0*iyCross/hCross + pixelData[ch]/2);
+                                                    }
+                                                    image.put(y0Pixels + y, x0Pixels + x, pixelData);
+                                                }
                                             }
-                                            image.put(y0Pixels + y, x0Pixels + x, pixelData);
+                                        }
+                                        xCrossSectionN[ixCross] += xWeight1;
+                                        xCrossSectionN[ixCross - 1] += xWeight0;
+                                        yCrossSectionN[iyCross] += yWeight1;
+                                        yCrossSectionN[iyCross - 1] += yWeight0;
+                                        if (luminance > thresholdLuminance) {
+                                            xCrossSectionMasked[ixCross] += xWeight1;
+                                            xCrossSectionMasked[ixCross - 1] += xWeight0;
+                                            yCrossSectionMasked[iyCross] += yWeight1;
+                                            yCrossSectionMasked[iyCross - 1] += yWeight0;
                                         }
                                     }
                                 }
-                                xCrossSectionN[ixCross] += xWeight1;
-                                xCrossSectionN[ixCross - 1] += xWeight0;
-                                yCrossSectionN[iyCross] += yWeight1;
-                                yCrossSectionN[iyCross - 1] += yWeight0;
-                                if (luminance > thresholdLuminance) {
-                                    xCrossSectionMasked[ixCross] += xWeight1;
-                                    xCrossSectionMasked[ixCross - 1] += xWeight0;
-                                    yCrossSectionMasked[iyCross] += yWeight1;
-                                    yCrossSectionMasked[iyCross - 1] += yWeight0;
-                                }
                             }
                         }
                     }
-                }
-            }
-            // Normalize
-            for (int x = 0; x < wCross; x++) {
-                if (xCrossSectionN[x] > 0) {
-                    for (int ch = 0; ch < channels; ch++) {
-                        xCrossSection[x*channels + ch] /= xCrossSectionN[x];
+                    // Normalize
+                    for (int x = 0; x < wCross; x++) {
+                        if (xCrossSectionN[x] > 0) {
+                            for (int ch = 0; ch < channels; ch++) {
+                                xCrossSection[x*channels + ch] /= xCrossSectionN[x];
+                            }
+                        }
                     }
-                }
-            }
-            for (int y = 0; y < hCross; y++) {
-                if (yCrossSectionN[y] > 0) {
-                    for (int ch = 0; ch < channels; ch++) {
-                        yCrossSection[y*channels + ch] /= yCrossSectionN[y];
+                    for (int y = 0; y < hCross; y++) {
+                        if (yCrossSectionN[y] > 0) {
+                            for (int ch = 0; ch < channels; ch++) {
+                                yCrossSection[y*channels + ch] /= yCrossSectionN[y];
+                            }
+                        }
+                    }
+                    // We're using a gaussian kernel to get rid of sampling interferences especially at the 45° step angles.
+                    KernelUtils.applyKernel(channels, wCross, xCrossSection, kernel, xCrossSectionFiltered); 
+                    KernelUtils.applyKernel(channels, hCross, yCrossSection, kernel, yCrossSectionFiltered); 
+                    // Analyze cross-sections contrast.
+                    double sumContrast = 
+                            sumContrast(channels, wCross, xCrossSectionFiltered, xCrossSectionN)
+                            + sumContrast(channels, hCross, yCrossSectionFiltered, yCrossSectionN);
+                    contrasts[ai] = sumContrast;
+                    // Take the best of the band:
+                    if (angleBand.score < sumContrast) {
+                        angleBand.score = sumContrast;
+                        angleBand.xCrossSection = xCrossSectionFiltered.clone();
+                        angleBand.yCrossSection = yCrossSectionFiltered.clone();
+                        angleBand.xCrossSectionMasked = xCrossSectionMasked.clone();
+                        angleBand.yCrossSectionMasked = yCrossSectionMasked.clone();
                     }
                 }
-            }
-            // We're using a gaussian kernel to get rid of sampling interferences especially at the 45° step angles.
-            KernelUtils.applyKernel(channels, wCross, xCrossSection, kernel, xCrossSectionFiltered); 
-            KernelUtils.applyKernel(channels, hCross, yCrossSection, kernel, yCrossSectionFiltered); 
-            // Analyze cross-sections contrast.
-            double sumContrast = 
-                    sumContrast(channels, wCross, xCrossSectionFiltered, xCrossSectionN)
-                    + sumContrast(channels, hCross, yCrossSectionFiltered, yCrossSectionN);
-            if (DEBUG >= 1) {
-                System.out.print("subSampling "+subSamplingEff+(superSamplingEff > 1 ? " superSampling "+superSamplingEff : "")
-                        +" angle "+Math.toDegrees(angle)+"° contrast "+sumContrast);
-            }
-            if (angleScore != null) {
-                angleScore.put(angle, sumContrast);
-            }
-            // Take the best:
-            if (scoreBest < sumContrast) {
-                scoreBest = sumContrast;
-                angleBest = angle;
-                xBestCrossSection = xCrossSectionFiltered.clone();
-                yBestCrossSection = yCrossSectionFiltered.clone();
-                xBestCrossSectionMasked = xCrossSectionMasked.clone();
-                yBestCrossSectionMasked = yCrossSectionMasked.clone();
+                return null;
+            });
+        }
+        DetectCircularSymmetry.invokeTasks(tasks);
+
+        for (int band = 0, ai = 0; band < bandCount; band++) {
+            for (; ai < (band + 1)*angleCount/bandCount; ai++) {
+                double angle = angles[ai];
+                double sumContrast = contrasts[ai];
                 if (DEBUG >= 1) {
-                    System.out.println(" * ");
+                    System.out.print("subSampling "+subSamplingEff+(superSamplingEff > 1 ? " superSampling "+superSamplingEff : "")
+                            +" angle "+Math.toDegrees(angle)+"° contrast "+sumContrast);
                 }
-            }
-            else {
-                if (DEBUG >= 1) {
-                    System.out.println("");
+                if (angleScore != null) {
+                    angleScore.put(angle, sumContrast);
+                }
+                // Take the best:
+                if (scoreBest < sumContrast) {
+                    // This is also the best of its band, as the band kept its first best too.
+                    scoreBest = sumContrast;
+                    angleBest = angle;
+                    xBestCrossSection = bands[band].xCrossSection;
+                    yBestCrossSection = bands[band].yCrossSection;
+                    xBestCrossSectionMasked = bands[band].xCrossSectionMasked;
+                    yBestCrossSectionMasked = bands[band].yCrossSectionMasked;
+                    if (DEBUG >= 1) {
+                        System.out.println(" * ");
+                    }
+                }
+                else {
+                    if (DEBUG >= 1) {
+                        System.out.println("");
+                    }
                 }
             }
         }
@@ -65,6 +65,11 @@ public class DrawCircles extends CvStage {
         this.circlesStageName = modelStageName;
     }
 
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (circlesStageName == null || circlesStageName.trim().isEmpty()) {
@@ -63,6 +63,11 @@ public class DrawContours extends CvStage {
         this.index = index;
     }
 
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (contoursStageName == null || contoursStageName.trim().isEmpty()) {
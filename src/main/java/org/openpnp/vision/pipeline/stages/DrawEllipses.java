@@ -58,6 +58,11 @@ public class DrawEllipses extends CvStage {
         this.thickness = thickness;
     }
 
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (ellipsesStageName == null || ellipsesStageName.trim().isEmpty()) {
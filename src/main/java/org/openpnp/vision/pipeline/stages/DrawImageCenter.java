@@ -71,6 +71,11 @@ public class DrawImageCenter extends CvStage {
     }
 
     
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
@@ -42,6 +42,11 @@ public class DrawKeyPoints extends CvStage {
         this.keyPointsStageName = keyPointsStageName;
     }
 
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (keyPointsStageName == null || keyPointsStageName.trim().isEmpty()) {
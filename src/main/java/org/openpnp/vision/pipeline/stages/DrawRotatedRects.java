@@ -103,6 +103,11 @@ public class DrawRotatedRects extends CvStage {
                 color, Math.abs(thickness), Imgproc.LINE_AA);
     }
 
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (rotatedRectsStageName == null || rotatedRectsStageName.trim().isEmpty()) {
@@ -43,6 +43,11 @@ public class DrawTemplateMatches extends CvStage {
         this.templateMatchesStageName = templateMatchesStageName;
     }
 
+    @Override
+    public boolean diagnosticOnly() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (templateMatchesStageName == null || templateMatchesStageName.trim().isEmpty()) {
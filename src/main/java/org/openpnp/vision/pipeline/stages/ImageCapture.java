@@ -6,6 +6,7 @@ import org.opencv.core.Mat;
 import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Camera;
 import org.openpnp.spi.Camera.SettleOption;
+import org.openpnp.util.ImageBufferPool;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.FluentCv.ColorSpace;
 import org.openpnp.vision.pipeline.*;
@@ -87,6 +88,11 @@ public class ImageCapture extends CvStage {
         }
     }
 
+    @Override
+    public boolean isCapturing() {
+        return true;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         // 获取管道中设置的相机对象
@@ -131,14 +137,17 @@ public class ImageCapture extends CvStage {
                     double beta = 1.0 / count;
                     Core.addWeighted(avgImage, 0, image, beta, 0, avgImage); // avgImage = image/count
 
-                    // 循环进行图像平均处理
+                    // 循环进行图像平均处理，帧缓冲区在各帧之间复用
+                    Mat frame = ImageBufferPool.get().leaseMat(avgImage.rows(), avgImage.cols(), CvType.CV_8UC3);
+                    Mat frame64 = ImageBufferPool.get().leaseMat(avgImage.rows(), avgImage.cols(), avgImage.type());
                     for (int i = 1; i < count; i++) {
-                        image = OpenCvUtils.toMat(camera.capture());
-                        image.convertTo(image, CvType.CV_64F);
-                        Core.addWeighted(avgImage, 1, image, beta, 0, avgImage); // avgImage = avgImag + image/count
-                        // 释放额外的图像资源
-                        image.release();
+                        OpenCvUtils.toMat(camera.capture(), frame);
+                        frame.convertTo(frame64, CvType.CV_64F);
+                        Core.addWeighted(avgImage, 1, frame64, beta, 0, avgImage); // avgImage = avgImag + image/count
                     }
+                    // 释放额外的图像资源
+                    ImageBufferPool.get().release(frame);
+                    ImageBufferPool.get().release(frame64);
 
                     // 将平均图像转换回CV_8U类型
                     avgImage.convertTo(avgImage, CvType.CV_8U);
@@ -1,5 +1,8 @@
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -16,6 +19,11 @@ public class ImageRecall extends CvStage {
         this.imageStageName = imageStageName;
     }
 
+    @Override
+    public List<String> referencedImageStageNames() {
+        return Collections.singletonList(imageStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (imageStageName == null || imageStageName.trim().isEmpty()) {
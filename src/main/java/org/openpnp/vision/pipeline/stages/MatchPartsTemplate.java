@@ -109,6 +109,11 @@ public class MatchPartsTemplate extends CvStage {
         this.threshold = threshold;
     }
 
+    @Override
+    public List<String> referencedImageStageNames() {
+        return Collections.singletonList(templateStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
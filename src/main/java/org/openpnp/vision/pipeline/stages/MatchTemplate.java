@@ -87,6 +87,11 @@ public class MatchTemplate extends CvStage {
         this.normalize = normalize;
     }
 
+    @Override
+    public List<String> referencedImageStageNames() {
+        return Collections.singletonList(templateStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (templateStageName == null || templateStageName.trim().isEmpty()) {
@@ -2,6 +2,7 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.io.File;
 import java.io.FileReader;
+import java.util.List;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -39,6 +40,12 @@ public class ScriptRun extends CvStage {
         this.args = args;
     }
 
+    @Override
+    public List<String> referencedImageStageNames() {
+        // The script may read any result.
+        return null;
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (!file.exists()) {
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Axis;
+
+public class AxesLocationTest {
+    private ReferenceControllerAxis x;
+    private ReferenceControllerAxis y;
+    private ReferenceControllerAxis z;
+    private ReferenceControllerAxis c;
+
+    private static ReferenceControllerAxis createAxis(String name, Axis.Type type) {
+        ReferenceControllerAxis axis = new ReferenceControllerAxis();
+        axis.setName(name);
+        axis.setType(type);
+        return axis;
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Configuration.initialize();
+        x = createAxis("X", Axis.Type.X);
+        y = createAxis("Y", Axis.Type.Y);
+        z = createAxis("Z", Axis.Type.Z);
+        c = createAxis("C", Axis.Type.Rotation);
+    }
+
+    private static List<Axis> axes(AxesLocation location) {
+        return new ArrayList<>(location.getAxes());
+    }
+
+    @Test
+    public void testAxisOrder() throws Exception {
+        AxesLocation location = new AxesLocation(x, 1)
+                .put(new AxesLocation(y, 2))
+                .put(new AxesLocation(z, 3));
+        Assertions.assertEquals(Arrays.asList(x, y, z), axes(location));
+        Assertions.assertEquals("(X:1.000000, Y:2.000000, Z:3.000000)", location.toString());
+        Assertions.assertEquals(Arrays.asList(x, y, z), new ArrayList<>(location.getLocation().keySet()));
+
+        // Axes of this come first, in their order, then the new axes of the other, in theirs.
+        AxesLocation other = new AxesLocation(c, 4).put(new AxesLocation(x, 5));
+        Assertions.assertEquals(Arrays.asList(x, y, z, c), axes(location.add(other)));
+        Assertions.assertEquals(Arrays.asList(c, x, y, z), axes(other.add(location)));
+        Assertions.assertEquals(6.0, location.add(other).getCoordinate(x));
+        Assertions.assertEquals(4.0, location.add(other).getCoordinate(c));
+
+        // Filtering keeps the order.
+        Assertions.assertEquals(Arrays.asList(x, z), axes(location.byType(Axis.Type.Z, Axis.Type.X)));
+        Assertions.assertTrue(location.byType(Axis.Type.Rotation).isEmpty());
+    }
+
+    @Test
+    public void testMissingAxes() throws Exception {
+        AxesLocation location = new AxesLocation(x, 1).put(new AxesLocation(y, 2));
+        // Missing axes are taken as 0.0.
+        Assertions.assertEquals(0.0, location.getCoordinate(z));
+        Assertions.assertEquals(0.0, location.getCoordinate(null));
+        Assertions.assertFalse(location.contains(z));
+        Assertions.assertTrue(location.contains(null));
+        Assertions.assertEquals(2, location.size());
+        Assertions.assertEquals(2, location.getAxes().size());
+        Assertions.assertTrue(location.getAxes().contains(y));
+        Assertions.assertFalse(location.getAxes().contains(z));
+
+        // As with the former map merge, coordinates of axes missing in this are taken as is, also when
+        // subtracting.
+        AxesLocation other = new AxesLocation(z, 3);
+        AxesLocation difference = location.subtract(other);
+        Assertions.assertEquals(Arrays.asList(x, y, z), axes(difference));
+        Assertions.assertEquals(1.0, difference.getCoordinate(x));
+        Assertions.assertEquals(3.0, difference.getCoordinate(z));
+        Assertions.assertEquals(1.0, location.subtract(new AxesLocation(x, 0)).getCoordinate(x));
+
+        // Empty operands.
+        Assertions.assertEquals(Arrays.asList(x, y), axes(location.add(AxesLocation.zero)));
+        Assertions.assertEquals(Arrays.asList(x, y), axes(AxesLocation.zero.add(location)));
+        Assertions.assertEquals(Arrays.asList(x, y), axes(location.put(null)));
+        Assertions.assertTrue(AxesLocation.zero.isEmpty());
+        Assertions.assertEquals(0.0, location.dotProduct(AxesLocation.zero));
+        Assertions.assertEquals(0, new AxesLocation((Axis) null, 1.0).size());
+    }
+
+    @Test
+    public void testPutExistingAxis() throws Exception {
+        AxesLocation location = new AxesLocation(x, 1).put(new AxesLocation(y, 2));
+        AxesLocation put = location.put(new AxesLocation(y, 5).put(new AxesLocation(z, 3)));
+        Assertions.assertEquals(Arrays.asList(x, y, z), axes(put));
+        Assertions.assertEquals(1.0, put.getCoordinate(x));
+        Assertions.assertEquals(5.0, put.getCoordinate(y));
+        Assertions.assertEquals(3.0, put.getCoordinate(z));
+        // Putting the same axes, e.g. a new location of the same axes, replaces all the coordinates.
+        AxesLocation same = location.put(new AxesLocation(x, 7).put(new AxesLocation(y, 8)));
+        Assertions.assertEquals(Arrays.asList(x, y), axes(same));
+        Assertions.assertEquals(7.0, same.getCoordinate(x));
+        Assertions.assertEquals(8.0, same.getCoordinate(y));
+        // The operands are not modified.
+        Assertions.assertEquals(1.0, location.getCoordinate(x));
+        Assertions.assertEquals(2.0, location.getCoordinate(y));
+        Assertions.assertEquals(2, location.size());
+
+        // The aggregating function can remove an axis, like a map merge.
+        AxesLocation removed = new AxesLocation((a, b) -> (b == 5 ? null : b),
+                location, new AxesLocation(y, 5), new AxesLocation(z, 3));
+        Assertions.assertEquals(Arrays.asList(x, z), axes(removed));
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        AxesLocation a = new AxesLocation(x, 3).put(new AxesLocation(y, 4));
+        AxesLocation b = new AxesLocation(x, 1).put(new AxesLocation(y, 2));
+        Assertions.assertEquals(4.0, a.add(b).getCoordinate(x));
+        Assertions.assertEquals(2.0, a.subtract(b).getCoordinate(y));
+        Assertions.assertEquals(8.0, a.multiply(2).getCoordinate(y));
+        Assertions.assertEquals(Arrays.asList(x, y), axes(a.multiply(2)));
+        Assertions.assertEquals(11.0, a.dotProduct(b));
+        Assertions.assertEquals(5.0, a.getEuclideanMetric(), 1e-12);
+        Assertions.assertEquals(-3.0, new AxesLocation((v) -> -v, a).getCoordinate(x));
+    }
+
+    @Test
+    public void testEquality() throws Exception {
+        // Like the former map based AxesLocation, equality is identity. Coordinates are compared with matches().
+        AxesLocation a = new AxesLocation(x, 1).put(new AxesLocation(y, 2));
+        AxesLocation b = new AxesLocation(x, 1).put(new AxesLocation(y, 2));
+        Assertions.assertEquals(a, a);
+        Assertions.assertNotEquals(a, b);
+        Assertions.assertNotEquals(a, a.multiply(1));
+        Assertions.assertEquals(System.identityHashCode(a), a.hashCode());
+        Assertions.assertTrue(a.matches(b));
+        Assertions.assertTrue(b.matches(a));
+        Assertions.assertFalse(a.matches(b.put(new AxesLocation(y, 3))));
+        // Asymmetric, only the axes of this are matched.
+        Assertions.assertTrue(a.matches(b.put(new AxesLocation(z, 3))));
+        Assertions.assertFalse(b.put(new AxesLocation(z, 3)).matches(a));
+    }
+}
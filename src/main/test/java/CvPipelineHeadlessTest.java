@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ImageRetention;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.DrawImageCenter;
+import org.openpnp.vision.pipeline.stages.ImageWriteDebug;
+
+public class CvPipelineHeadlessTest {
+    static class CreateImage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(new Mat(48, 64, CvType.CV_8UC3, new Scalar(0, 0, 0)));
+        }
+    }
+
+    private static CvPipeline createPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("created", new CreateImage());
+        pipeline.add("debug", new ImageWriteDebug());
+        pipeline.add("results", new CreateImage());
+        pipeline.add("center", new DrawImageCenter());
+        pipeline.add("center2", new DrawImageCenter());
+        return pipeline;
+    }
+
+    private static boolean isCenterDrawn(CvPipeline pipeline) {
+        Mat image = pipeline.getWorkingImage();
+        double[] pixel = image.get(image.rows()/2, image.cols()/2);
+        return pixel[0] + pixel[1] + pixel[2] != 0;
+    }
+
+    @Test
+    public void testSkippedStages() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            Set<CvStage> skipped = pipeline.getHeadlessSkippedStages();
+            // Only the trailing diagnostic stages are skipped.
+            assertEquals(2, skipped.size());
+            assertTrue(skipped.contains(pipeline.getStage("center")));
+            assertTrue(skipped.contains(pipeline.getStage("center2")));
+            // A referenced image is consumed.
+            pipeline.retainImage("center");
+            skipped = pipeline.getHeadlessSkippedStages();
+            assertEquals(1, skipped.size());
+            assertTrue(skipped.contains(pipeline.getStage("center2")));
+        }
+    }
+
+    @Test
+    public void testDebugImageNotSkipped() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            // Writing the debug image is not a diagnostic for the camera view, it also ends the skippable stages.
+            pipeline.add("debug2", new ImageWriteDebug());
+            assertTrue(pipeline.getHeadlessSkippedStages().isEmpty());
+        }
+    }
+
+    @Test
+    public void testHeadless() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.process();
+            assertTrue(isCenterDrawn(pipeline));
+            pipeline.setHeadless(true);
+            pipeline.process();
+            assertFalse(isCenterDrawn(pipeline));
+            assertEquals(0, pipeline.getResult("center").processingTimeNs);
+            // Headless does not stick for the next processing.
+            pipeline.process();
+            assertTrue(isCenterDrawn(pipeline));
+            // The editor shows everything.
+            pipeline.setHeadless(true);
+            pipeline.process(ImageRetention.All);
+            assertTrue(isCenterDrawn(pipeline));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ImageRetention;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.ImageRecall;
+
+public class CvPipelineImageRetentionTest {
+    static class CreateImage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(new Mat(48, 64, CvType.CV_8UC3, new Scalar(0, 0, 255)));
+        }
+    }
+
+    private static CvPipeline createPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("created", new CreateImage());
+        pipeline.add("modified", new CreateImage());
+        ImageRecall recall = new ImageRecall();
+        recall.setImageStageName("created");
+        pipeline.add("recalled", recall);
+        return pipeline;
+    }
+
+    @Test
+    public void testAll() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.process(ImageRetention.All);
+            assertNotNull(pipeline.getResult("created").image);
+            assertNotNull(pipeline.getResult("modified").image);
+            assertNotNull(pipeline.getResult("recalled").image);
+        }
+    }
+
+    @Test
+    public void testReferenced() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.process();
+            assertNotNull(pipeline.getResult("created").image);
+            assertNull(pipeline.getResult("modified").image);
+            assertNull(pipeline.getResult("recalled").image);
+            // The recalled image is still the working image.
+            assertNotNull(pipeline.getWorkingImage());
+        }
+    }
+
+    @Test
+    public void testRequested() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.retainImage("modified");
+            pipeline.process();
+            assertNotNull(pipeline.getResult("modified").image);
+            assertNull(pipeline.getResult("recalled").image);
+        }
+    }
+}
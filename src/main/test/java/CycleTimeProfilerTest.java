@@ -0,0 +1,157 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.util.CycleTimeProfiler;
+import org.openpnp.util.LatencyHistogram;
+import org.openpnp.util.CycleTimeProfiler.Category;
+import org.openpnp.util.CycleTimeProfiler.Record;
+import org.openpnp.util.CycleTimeProfiler.Span;
+
+public class CycleTimeProfilerTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static long sum(Record record) {
+        long sum = 0;
+        for (Category category : Category.values()) {
+            sum += record.getNanos(category);
+        }
+        return sum;
+    }
+
+    @Test
+    public void testNestedSpans() throws Exception {
+        CycleTimeProfiler profiler = new CycleTimeProfiler();
+        profiler.beginStep("Align");
+        CycleTimeProfiler.setPlacement(new Object(), "R1", "R0805-1K", "N1");
+        Thread.sleep(10);
+        try (Span motion = CycleTimeProfiler.span(Category.Motion)) {
+            Thread.sleep(20);
+            try (Span vision = CycleTimeProfiler.span(Category.Vision)) {
+                Thread.sleep(40);
+            }
+            Thread.sleep(20);
+        }
+        profiler.endStep();
+
+        List<Record> records = profiler.getRecords();
+        Assertions.assertEquals(1, records.size());
+        Record record = records.get(0);
+        Assertions.assertEquals("Align", record.getStep());
+        Assertions.assertEquals("R1", record.getPlacementId());
+        Assertions.assertEquals("R0805-1K", record.getPartId());
+        Assertions.assertEquals("N1", record.getNozzleName());
+        // The inner span is only counted for its own Category, the outer one gets the time around it.
+        Assertions.assertTrue(record.getNanos(Category.Other) >= 10*MILLIS);
+        Assertions.assertTrue(record.getNanos(Category.Motion) >= 40*MILLIS);
+        Assertions.assertTrue(record.getNanos(Category.Vision) >= 40*MILLIS);
+        Assertions.assertTrue(record.getNanos(Category.Motion) < record.getWallNanos() - record.getNanos(Category.Vision));
+        Assertions.assertEquals(0, record.getNanos(Category.Settle));
+        // The Categories add up to the wall time exactly.
+        Assertions.assertEquals(record.getWallNanos(), sum(record));
+    }
+
+    @Test
+    public void testSameCategoryNested() throws Exception {
+        CycleTimeProfiler profiler = new CycleTimeProfiler();
+        profiler.beginStep("Feed");
+        try (Span outer = CycleTimeProfiler.span(Category.Feeder)) {
+            try (Span inner = CycleTimeProfiler.span(Category.Feeder)) {
+                Thread.sleep(20);
+            }
+            try (Span script = CycleTimeProfiler.span(Category.Script)) {
+                Thread.sleep(20);
+            }
+        }
+        profiler.endStep();
+
+        Record record = profiler.getRecords().get(0);
+        // Nesting the same Category does not count the time twice.
+        Assertions.assertTrue(record.getNanos(Category.Feeder) >= 20*MILLIS);
+        Assertions.assertTrue(record.getNanos(Category.Feeder) < record.getWallNanos() - record.getNanos(Category.Script));
+        Assertions.assertTrue(record.getNanos(Category.Script) >= 20*MILLIS);
+        Assertions.assertEquals(record.getWallNanos(), sum(record));
+    }
+
+    @Test
+    public void testOutsideOfStep() throws Exception {
+        CycleTimeProfiler profiler = new CycleTimeProfiler();
+        // Not profiled, not recorded.
+        try (Span motion = CycleTimeProfiler.span(Category.Motion)) {
+            CycleTimeProfiler.setFeeder("F1");
+        }
+        profiler.endStep();
+        Assertions.assertTrue(profiler.getRecords().isEmpty());
+
+        // Spans of other threads are not attributed to the step.
+        profiler.beginStep("Pick");
+        Thread other = new Thread(() -> {
+            try (Span motion = CycleTimeProfiler.span(Category.Motion)) {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e) {
+            }
+        });
+        other.start();
+        other.join();
+        CycleTimeProfiler.setFeeder("F1");
+        profiler.endStep();
+        Record record = profiler.getRecords().get(0);
+        Assertions.assertEquals("F1", record.getFeederName());
+        Assertions.assertEquals(0, record.getNanos(Category.Motion));
+        Assertions.assertEquals(record.getWallNanos(), record.getNanos(Category.Other));
+
+        profiler.reset();
+        Assertions.assertTrue(profiler.getRecords().isEmpty());
+    }
+
+    private static JobPlacement createJobPlacement(Board board, String placementId, Part part) {
+        Placement placement = new Placement(placementId);
+        placement.setPart(part);
+        return new JobPlacement(new BoardLocation(board), placement);
+    }
+
+    private static void profileStep(CycleTimeProfiler profiler, String step, JobPlacement jobPlacement)
+            throws Exception {
+        profiler.beginStep(step);
+        CycleTimeProfiler.setPlacement(jobPlacement, jobPlacement.toString(), jobPlacement.getPartId(), "N1");
+        Thread.sleep(5);
+        profiler.endStep();
+    }
+
+    @Test
+    public void testPartHistogramsOfBoardsWithSamePlacementIds() throws Exception {
+        Configuration.initialize();
+        Part resistor = new Part("R0805-1K");
+        Part capacitor = new Part("C0805-100N");
+        // Two boards with the same placement ids.
+        Board board = new Board();
+        Board otherBoard = new Board();
+        JobPlacement r1 = createJobPlacement(board, "R1", resistor);
+        JobPlacement c1 = createJobPlacement(board, "C1", capacitor);
+        JobPlacement r1OtherBoard = createJobPlacement(otherBoard, "R1", resistor);
+        JobPlacement c1OtherBoard = createJobPlacement(otherBoard, "C1", capacitor);
+
+        CycleTimeProfiler profiler = new CycleTimeProfiler();
+        for (JobPlacement jobPlacement : new JobPlacement[] { r1, c1, r1OtherBoard, c1OtherBoard }) {
+            profileStep(profiler, "Pick", jobPlacement);
+            profileStep(profiler, "Place", jobPlacement);
+        }
+
+        // Each placement of each board is one sample, of the total of its steps.
+        Map<String, LatencyHistogram> histograms = profiler.getPartHistograms();
+        Assertions.assertEquals(2, histograms.size());
+        Assertions.assertEquals(2, histograms.get("R0805-1K").getCount());
+        Assertions.assertEquals(2, histograms.get("C0805-100N").getCount());
+        // The records still name the placement by its id.
+        Assertions.assertEquals("R1", profiler.getRecords().get(4).getPlacementId());
+    }
+}
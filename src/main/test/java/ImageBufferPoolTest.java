@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openpnp.util.ImageBufferPool;
+import org.openpnp.util.OpenCvUtils;
+
+public class ImageBufferPoolTest {
+    @Test
+    public void testLeaseAndRelease() {
+        ImageBufferPool pool = new ImageBufferPool();
+        Mat mat = pool.leaseMat(12, 16, CvType.CV_8UC3);
+        assertEquals(12, mat.rows());
+        assertEquals(16, mat.cols());
+        assertEquals(CvType.CV_8UC3, mat.type());
+        pool.release(mat);
+        assertSame(mat, pool.leaseMat(12, 16, CvType.CV_8UC3));
+        // Not the same key.
+        pool.release(mat);
+        assertNotSame(mat, pool.leaseMat(12, 16, CvType.CV_8UC1));
+        // Submats are not pooled.
+        Mat submat = mat.submat(0, 4, 0, 4);
+        pool.release(submat);
+        assertNotSame(submat, pool.leaseMat(4, 4, CvType.CV_8UC3));
+
+        BufferedImage image = pool.leaseImage(16, 12, BufferedImage.TYPE_3BYTE_BGR);
+        pool.release(image);
+        assertSame(image, pool.leaseImage(16, 12, BufferedImage.TYPE_3BYTE_BGR));
+        pool.clear();
+    }
+
+    @Test
+    public void testConversionReuse() {
+        BufferedImage rgb = new BufferedImage(16, 12, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < rgb.getHeight(); y++) {
+            for (int x = 0; x < rgb.getWidth(); x++) {
+                rgb.setRGB(x, y, (x * 16) << 16 | (y * 16) << 8 | (x + y));
+            }
+        }
+        Mat mat = new Mat(12, 16, CvType.CV_8UC3);
+        assertSame(mat, OpenCvUtils.toMat(rgb, mat));
+        // Convert twice to reuse the pooled conversion buffer.
+        OpenCvUtils.toMat(rgb, mat);
+        BufferedImage bgr = OpenCvUtils.toBufferedImage(mat);
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, bgr.getType());
+        BufferedImage reused = OpenCvUtils.toBufferedImage(mat, bgr);
+        assertSame(bgr, reused);
+        int[] expected = rgb.getRGB(0, 0, 16, 12, null, 0, 16);
+        int[] actual = reused.getRGB(0, 0, 16, 12, null, 0, 16);
+        assertArrayEquals(expected, actual);
+        mat.release();
+    }
+}
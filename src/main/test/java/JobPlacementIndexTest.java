@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.JobPlacementIndex;
+import org.openpnp.machine.reference.ReferenceNozzleTip;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Package;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
+
+public class JobPlacementIndexTest {
+    /**
+     * JobPlacement with a fixed feeder X coordinate, so no machine is needed.
+     */
+    static class TestJobPlacement extends JobPlacement {
+        final double feederX;
+
+        TestJobPlacement(String id, Part part, double feederX) {
+            super(null, createPlacement(id, part));
+            this.feederX = feederX;
+        }
+
+        static Placement createPlacement(String id, Part part) {
+            Placement placement = new Placement(id);
+            placement.setPart(part);
+            return placement;
+        }
+
+        @Override
+        public double getPartFeederX() {
+            return feederX;
+        }
+    }
+
+    private NozzleTip nt1;
+    private NozzleTip nt2;
+    private Part partA;
+    private Part partB;
+    private Part partC;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Configuration.initialize();
+        nt1 = new ReferenceNozzleTip();
+        nt2 = new ReferenceNozzleTip();
+        Package pkg1 = new Package("P1");
+        pkg1.addCompatibleNozzleTip(nt1);
+        Package pkg12 = new Package("P12");
+        pkg12.addCompatibleNozzleTip(nt1);
+        pkg12.addCompatibleNozzleTip(nt2);
+        partA = createPart("A", pkg1);
+        partB = createPart("B", pkg12);
+        partC = createPart("C", pkg12);
+    }
+
+    private static Part createPart(String id, Package pkg) {
+        Part part = new Part(id);
+        part.setPackage(pkg);
+        return part;
+    }
+
+    /**
+     * Job order deliberately differs from the planning order (feeder X, then Part id).
+     */
+    private List<JobPlacement> createJobPlacements() {
+        return new ArrayList<>(Arrays.asList(
+                new TestJobPlacement("C1", partC, 30),
+                new TestJobPlacement("B1", partB, 10),
+                new TestJobPlacement("A1", partA, 10),
+                new TestJobPlacement("C2", partC, 30),
+                new TestJobPlacement("A2", partA, 10)));
+    }
+
+    private static List<String> ids(List<JobPlacement> jobPlacements) {
+        List<String> ids = new ArrayList<>();
+        for (JobPlacement jobPlacement : jobPlacements) {
+            ids.add(jobPlacement.toString());
+        }
+        return ids;
+    }
+
+    private static JobPlacement get(List<JobPlacement> jobPlacements, String id) {
+        for (JobPlacement jobPlacement : jobPlacements) {
+            if (jobPlacement.toString().equals(id)) {
+                return jobPlacement;
+            }
+        }
+        throw new IllegalArgumentException(id);
+    }
+
+    @Test
+    public void testPlanningOrder() throws Exception {
+        List<JobPlacement> jobPlacements = createJobPlacements();
+        JobPlacementIndex index = new JobPlacementIndex(jobPlacements);
+        Assertions.assertEquals(5, index.size());
+        Assertions.assertEquals(Arrays.asList("A1", "A2", "B1", "C1", "C2"),
+                ids(index.getPendingJobPlacements()));
+        Assertions.assertTrue(index.compare(get(jobPlacements, "A2"), get(jobPlacements, "B1")) < 0);
+        Assertions.assertTrue(index.compare(get(jobPlacements, "C2"), get(jobPlacements, "C1")) > 0);
+    }
+
+    @Test
+    public void testStatusListener() throws Exception {
+        List<JobPlacement> jobPlacements = createJobPlacements();
+        JobPlacement a1 = get(jobPlacements, "A1");
+        JobPlacement a2 = get(jobPlacements, "A2");
+        a2.setStatus(Status.Complete);
+        JobPlacementIndex index = new JobPlacementIndex(jobPlacements);
+        // Not pending when built.
+        Assertions.assertEquals(4, index.size());
+
+        long modificationCount = index.getModificationCount();
+        a1.setStatus(Status.Processing);
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertNotEquals(modificationCount, index.getModificationCount());
+        // The group of A is gone, also for the nozzle tip.
+        Assertions.assertEquals("B1", index.getFirst(nt1, Collections.emptySet()).toString());
+
+        // Transitions among non-pending states do not change the index.
+        modificationCount = index.getModificationCount();
+        a1.setError(new Exception("test"));
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(modificationCount, index.getModificationCount());
+
+        // Back to pending, e.g. on a retry, in the original job order.
+        a2.setStatus(Status.Pending);
+        a1.setStatus(Status.Pending);
+        Assertions.assertEquals(5, index.size());
+        Assertions.assertEquals(Arrays.asList("A1", "A2", "B1", "C1", "C2"),
+                ids(index.getPendingJobPlacements()));
+
+        for (JobPlacement jobPlacement : jobPlacements) {
+            jobPlacement.setStatus(Status.Complete);
+        }
+        Assertions.assertTrue(index.isEmpty());
+        Assertions.assertNull(index.getFirst(nt1, Collections.emptySet()));
+        Assertions.assertTrue(index.getFirstGroups(nt2, 10, 10).isEmpty());
+    }
+
+    @Test
+    public void testNearestToFeederX() throws Exception {
+        List<JobPlacement> jobPlacements = createJobPlacements();
+        JobPlacementIndex index = new JobPlacementIndex(jobPlacements);
+        Set<JobPlacement> excluded = new HashSet<>();
+        Assertions.assertEquals("A1", index.getNearestToFeederX(0, excluded).toString());
+        Assertions.assertEquals("A1", index.getNearestToFeederX(10, excluded).toString());
+        Assertions.assertEquals("C1", index.getNearestToFeederX(25, excluded).toString());
+        Assertions.assertEquals("C1", index.getNearestToFeederX(100, excluded).toString());
+        // A tie in distance goes to the first in planning order, i.e. the lower feeder X and then the Part id.
+        Assertions.assertEquals("A1", index.getNearestToFeederX(20, excluded).toString());
+        excluded.add(get(jobPlacements, "A1"));
+        excluded.add(get(jobPlacements, "A2"));
+        Assertions.assertEquals("B1", index.getNearestToFeederX(20, excluded).toString());
+        Assertions.assertEquals("B1", index.getNearestToFeederX(12, excluded).toString());
+        excluded.add(get(jobPlacements, "B1"));
+        Assertions.assertEquals("C1", index.getNearestToFeederX(0, excluded).toString());
+        excluded.addAll(jobPlacements);
+        Assertions.assertNull(index.getNearestToFeederX(20, excluded));
+    }
+
+    @Test
+    public void testFirstGroups() throws Exception {
+        List<JobPlacement> jobPlacements = createJobPlacements();
+        JobPlacementIndex index = new JobPlacementIndex(jobPlacements);
+
+        List<List<JobPlacement>> groups = index.getFirstGroups(nt1, 10, 10);
+        Assertions.assertEquals(3, groups.size());
+        Assertions.assertEquals(Arrays.asList("A1", "A2"), ids(groups.get(0)));
+        Assertions.assertEquals(Arrays.asList("B1"), ids(groups.get(1)));
+        Assertions.assertEquals(Arrays.asList("C1", "C2"), ids(groups.get(2)));
+
+        // Only the Parts compatible with the nozzle tip.
+        groups = index.getFirstGroups(nt2, 10, 10);
+        Assertions.assertEquals(2, groups.size());
+        Assertions.assertEquals(Arrays.asList("B1"), ids(groups.get(0)));
+
+        // Limited groups and placements per group.
+        groups = index.getFirstGroups(nt1, 2, 1);
+        Assertions.assertEquals(2, groups.size());
+        Assertions.assertEquals(Arrays.asList("A1"), ids(groups.get(0)));
+        Assertions.assertEquals(Arrays.asList("B1"), ids(groups.get(1)));
+
+        Assertions.assertTrue(index.getFirstGroups(new ReferenceNozzleTip(), 10, 10).isEmpty());
+    }
+}
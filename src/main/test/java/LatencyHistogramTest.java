@@ -0,0 +1,36 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openpnp.util.LatencyHistogram;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value*1000);
+        }
+        Assertions.assertEquals(100000, histogram.getCount());
+        Assertions.assertEquals(100000000, histogram.getMax());
+        Assertions.assertEquals(50000500, histogram.getMean(), 1);
+        for (double percentile : new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+            double expected = percentile*1000000;
+            double value = histogram.getValueAtPercentile(percentile);
+            Assertions.assertEquals(expected, value, expected*0.04, "percentile "+percentile);
+        }
+        Assertions.assertEquals(100000000, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        Assertions.assertEquals(0, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testSmallValuesExact() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 32; value++) {
+            histogram.record(value);
+        }
+        Assertions.assertEquals(15, histogram.getValueAtPercentile(50));
+        Assertions.assertEquals(31, histogram.getMax());
+    }
+}
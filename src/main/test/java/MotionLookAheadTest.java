@@ -0,0 +1,144 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.driver.ReferenceAdvancedMotionPlanner;
+import org.openpnp.machine.reference.driver.test.TestDriver;
+import org.openpnp.machine.reference.driver.test.TestDriver.TestDriverDelegate;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Motion;
+import org.openpnp.model.Motion.MoveToCommand;
+import org.openpnp.spi.HeadMountable;
+import org.openpnp.spi.MotionPlanner.CompletionType;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.util.MovableUtils;
+
+import com.google.common.io.Files;
+
+public class MotionLookAheadTest {
+    /**
+     * Records how many motion commands are planned and how many are still pending.
+     */
+    public static class RecordingMotionPlanner extends ReferenceAdvancedMotionPlanner {
+        private int planned;
+
+        @Override
+        protected void optimizeExecutionPlan(List<Motion> executionPlan,
+                CompletionType completionType) throws Exception {
+            planned += executionPlan.size();
+            super.optimizeExecutionPlan(executionPlan, completionType);
+        }
+
+        public int getPlanned() {
+            return planned;
+        }
+
+        public synchronized int getPending() {
+            return motionCommands.size();
+        }
+    }
+
+    public static class RecordingDriverDelegate extends TestDriverDelegate {
+        private final List<String> moves = new ArrayList<>();
+
+        @Override
+        public void moveTo(HeadMountable hm, MoveToCommand move) throws Exception {
+            moves.add(hm.getName()+" "+move.getLocation1());
+        }
+    }
+
+    private static class Outcome {
+        List<String> moves;
+        int plannedBeforePick;
+        int pendingBeforePick;
+        int plannedBeforePlace;
+        int pendingBeforePlace;
+        int pendingAtEnd;
+    }
+
+    private static Outcome pickAndPlace(boolean lookAhead) throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/machine.xml"),
+                new File(workingDirectory, "machine.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/packages.xml"),
+                new File(workingDirectory, "packages.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/parts.xml"),
+                new File(workingDirectory, "parts.xml"));
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
+        RecordingDriverDelegate delegate = new RecordingDriverDelegate();
+        ((TestDriver) machine.getDefaultDriver()).setDelegate(delegate);
+        RecordingMotionPlanner planner = new RecordingMotionPlanner();
+        planner.setAllowContinuousMotion(true);
+        planner.setLookAhead(lookAhead);
+        planner.setLookAheadMaxMoves(1);
+        machine.setMotionPlanner(planner);
+        Nozzle nozzle = machine.getDefaultHead().getNozzle("N1");
+
+        machine.setEnabled(true);
+        machine.home();
+        Outcome outcome = new Outcome();
+        delegate.moves.clear();
+        // Like in a job, the whole sequence runs as one machine task.
+        machine.execute(() -> {
+            int plannedAtStart = planner.getPlanned();
+            MovableUtils.moveToLocationAtSafeZ(nozzle, new Location(LengthUnit.Millimeters, -10, 0, -10, 0));
+            outcome.plannedBeforePick = planner.getPlanned() - plannedAtStart;
+            outcome.pendingBeforePick = planner.getPending();
+            // Pick, i.e. the vacuum actuator coordinates with the machine.
+            nozzle.waitForCompletion(CompletionType.WaitForStillstand);
+            MovableUtils.moveToLocationAtSafeZ(nozzle, new Location(LengthUnit.Millimeters, 0, 10, -9, 45));
+            outcome.plannedBeforePlace = planner.getPlanned() - plannedAtStart;
+            outcome.pendingBeforePlace = planner.getPending();
+            // Place.
+            nozzle.waitForCompletion(CompletionType.WaitForStillstand);
+            nozzle.moveToSafeZ();
+            return true;
+        });
+        outcome.pendingAtEnd = planner.getPending();
+        outcome.moves = delegate.moves;
+        machine.setEnabled(false);
+        return outcome;
+    }
+
+    @Test
+    public void testPickAndPlace() throws Exception {
+        Outcome continuous = pickAndPlace(false);
+        // Without look-ahead, the moves are only planned once the pick/place waits for the machine.
+        Assertions.assertEquals(0, continuous.plannedBeforePick);
+        Assertions.assertTrue(continuous.pendingBeforePick > 1);
+        Assertions.assertTrue(continuous.pendingBeforePlace > 1);
+        Assertions.assertEquals(0, continuous.pendingAtEnd);
+
+        Outcome lookAhead = pickAndPlace(true);
+        // With look-ahead, only the window of the latest move is held back, the others are already on their way.
+        Assertions.assertEquals(continuous.pendingBeforePick - 1, lookAhead.plannedBeforePick);
+        Assertions.assertEquals(1, lookAhead.pendingBeforePick);
+        Assertions.assertEquals(1, lookAhead.pendingBeforePlace);
+        Assertions.assertTrue(lookAhead.plannedBeforePlace > lookAhead.plannedBeforePick + 1);
+        // The end of the machine task executes all of it.
+        Assertions.assertEquals(0, lookAhead.pendingAtEnd);
+        // The machine does the very same moves, in the same order.
+        Assertions.assertFalse(continuous.moves.isEmpty());
+        Assertions.assertEquals(continuous.moves, lookAhead.moves);
+    }
+
+    @Test
+    public void testLookAheadMaxMoves() throws Exception {
+        ReferenceAdvancedMotionPlanner planner = new ReferenceAdvancedMotionPlanner();
+        planner.setLookAheadMaxMoves(1);
+        Assertions.assertEquals(1, planner.getLookAheadMaxMoves());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> planner.setLookAheadMaxMoves(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> planner.setLookAheadMaxMoves(-1));
+        Assertions.assertEquals(1, planner.getLookAheadMaxMoves());
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfileCache;
+
+public class MotionProfileCacheTest {
+    @Test
+    public void testTranslatedHit() throws Exception {
+        MotionProfileCache cache = MotionProfileCache.get();
+        cache.setEnabled(true);
+        cache.clear();
+
+        MotionProfile first = new MotionProfile(
+                10, 60, 0, 0, 0, 0,
+                -1000, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        first.solve();
+        Assertions.assertEquals(0, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        // Same move, translated.
+        MotionProfile translated = new MotionProfile(
+                110, 160, 0, 0, 0, 0,
+                -900, 1100, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        translated.solve();
+        Assertions.assertEquals(1, cache.getHits());
+
+        // Reference solved without the cache.
+        MotionProfile reference = new MotionProfile(translated);
+        cache.setEnabled(false);
+        try {
+            reference.solve();
+        }
+        finally {
+            cache.setEnabled(true);
+        }
+        Assertions.assertEquals(reference.getTime(), translated.getTime(), 1e-12);
+        for (int i = 0; i <= MotionProfile.segments; i++) {
+            Assertions.assertEquals(reference.getLocation(i), translated.getLocation(i), 1e-9);
+            Assertions.assertEquals(reference.getVelocity(i), translated.getVelocity(i), 1e-9);
+            Assertions.assertEquals(reference.getAcceleration(i), translated.getAcceleration(i), 1e-9);
+            Assertions.assertEquals(reference.getJerk(i), translated.getJerk(i), 1e-9);
+            Assertions.assertEquals(reference.getSegmentBeginTime(i), translated.getSegmentBeginTime(i), 1e-12);
+        }
+        Assertions.assertNull(translated.checkValidity());
+
+        // Different constraints must miss.
+        MotionProfile slower = new MotionProfile(
+                10, 60, 0, 0, 0, 0,
+                -1000, 1000, 500, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        slower.solve();
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testExactBoundaries() throws Exception {
+        MotionProfileCache cache = MotionProfileCache.get();
+        cache.setEnabled(true);
+        cache.clear();
+
+        MotionProfile first = new MotionProfile(
+                10, 60, 0, 0, 0, 0,
+                -1000, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        first.solve();
+
+        // Within the quantum, so it hits, but the end location must still be the exact one.
+        double end = 160.00000003;
+        MotionProfile nearby = new MotionProfile(
+                110, end, 0, 0, 0, 0,
+                -900, 1100, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        nearby.solve();
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(110, nearby.getLocation(0));
+        Assertions.assertEquals(end, nearby.getLocation(MotionProfile.segments));
+        Assertions.assertEquals(0, nearby.getVelocity(0));
+        Assertions.assertEquals(0, nearby.getVelocity(MotionProfile.segments));
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        MotionProfileCache cache = MotionProfileCache.get();
+        cache.setEnabled(true);
+        cache.clear();
+        int capacity = cache.getCapacity();
+        try {
+            cache.setCapacity(2);
+            for (int i = 1; i <= 4; i++) {
+                MotionProfile profile = new MotionProfile(
+                        0, 10*i, 0, 0, 0, 0,
+                        -1000, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+                profile.solve();
+            }
+            Assertions.assertEquals(2, cache.getSize());
+            Assertions.assertEquals(4, cache.getMisses());
+        }
+        finally {
+            cache.setCapacity(capacity);
+        }
+    }
+
+    private static MotionProfile solveMove(double distance) {
+        MotionProfile profile = new MotionProfile(
+                0, distance, 0, 0, 0, 0,
+                -1000, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        profile.solve();
+        return profile;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        MotionProfileCache cache = MotionProfileCache.get();
+        cache.setEnabled(true);
+        cache.clear();
+        int capacity = cache.getCapacity();
+        try {
+            cache.setCapacity(2);
+            solveMove(10);
+            solveMove(20);
+            // Hit the older one, so the other one is now the least recently used.
+            solveMove(10);
+            Assertions.assertEquals(1, cache.getHits());
+            // Evicts the move of 20.
+            solveMove(30);
+            Assertions.assertEquals(2, cache.getSize());
+            Assertions.assertEquals(3, cache.getMisses());
+            solveMove(10);
+            Assertions.assertEquals(2, cache.getHits());
+            solveMove(30);
+            Assertions.assertEquals(3, cache.getHits());
+            solveMove(20);
+            Assertions.assertEquals(3, cache.getHits());
+            Assertions.assertEquals(4, cache.getMisses());
+
+            // Shrinking the capacity also evicts the least recently used first, i.e. the move of 20.
+            solveMove(30);
+            cache.setCapacity(1);
+            Assertions.assertEquals(1, cache.getSize());
+            solveMove(30);
+            Assertions.assertEquals(5, cache.getHits());
+        }
+        finally {
+            cache.setCapacity(capacity);
+        }
+    }
+}
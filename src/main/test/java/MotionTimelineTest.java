@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Motion;
+import org.openpnp.model.MotionTimeline;
+
+public class MotionTimelineTest {
+    private static List<Motion> createMotions(int count) {
+        List<Motion> motions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            motions.add(new Motion(null, AxesLocation.zero, AxesLocation.zero, 1.0));
+        }
+        return motions;
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        Assertions.assertEquals(1, new MotionTimeline(1).getCapacity());
+        Assertions.assertEquals(8, new MotionTimeline(8).getCapacity());
+        Assertions.assertEquals(16, new MotionTimeline(9).getCapacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MotionTimeline(0));
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        MotionTimeline timeline = new MotionTimeline(8);
+        Assertions.assertTrue(timeline.isEmpty());
+        Assertions.assertNull(timeline.getLastTime());
+        Assertions.assertNull(timeline.getMotionAfter(0));
+
+        List<Motion> motions = createMotions(4);
+        for (int i = 0; i < motions.size(); i++) {
+            timeline.put(i + 1, motions.get(i));
+        }
+        Assertions.assertEquals(4, timeline.size());
+        Assertions.assertEquals(4.0, timeline.getLastTime());
+        // The ongoing Motion is the first one completing after the time.
+        Assertions.assertSame(motions.get(0), timeline.getMotionAfter(-1));
+        Assertions.assertSame(motions.get(0), timeline.getMotionAfter(0.5));
+        Assertions.assertSame(motions.get(1), timeline.getMotionAfter(1.0));
+        Assertions.assertSame(motions.get(3), timeline.getMotionAfter(3.9));
+        Assertions.assertNull(timeline.getMotionAfter(4.0));
+
+        Assertions.assertSame(motions.get(3), timeline.getLastMotion((motion) -> true));
+        Assertions.assertSame(motions.get(1), timeline.getLastMotion((motion) -> motion == motions.get(1)));
+        Assertions.assertNull(timeline.getLastMotion((motion) -> false));
+    }
+
+    @Test
+    public void testAscendingTimes() throws Exception {
+        MotionTimeline timeline = new MotionTimeline(8);
+        List<Motion> motions = createMotions(4);
+        timeline.put(1, motions.get(0));
+        // The same time replaces the last Motion.
+        timeline.put(1, motions.get(1));
+        Assertions.assertEquals(1, timeline.size());
+        Assertions.assertEquals(1.0, timeline.getLastTime());
+        Assertions.assertSame(motions.get(1), timeline.getMotionAfter(0));
+        Assertions.assertSame(motions.get(1), timeline.getLastMotion((motion) -> true));
+        Assertions.assertNull(timeline.getLastMotion((motion) -> motion == motions.get(0)));
+        // An earlier time is appended just after the last time.
+        timeline.put(0.5, motions.get(2));
+        Assertions.assertEquals(2, timeline.size());
+        Assertions.assertEquals(Math.nextUp(1.0), timeline.getLastTime());
+        Assertions.assertSame(motions.get(1), timeline.getMotionAfter(0.5));
+        Assertions.assertSame(motions.get(2), timeline.getMotionAfter(1.0));
+        // After clearing, any time is accepted again.
+        timeline.clear();
+        timeline.put(0.5, motions.get(3));
+        Assertions.assertEquals(1, timeline.size());
+        Assertions.assertSame(motions.get(3), timeline.getMotionAfter(0));
+    }
+
+    @Test
+    public void testEqualTimesAtLargeRuntime() throws Exception {
+        MotionTimeline timeline = new MotionTimeline(8);
+        List<Motion> motions = createMotions(2);
+        // After a long runtime, adding a tiny duration may round to the same time.
+        double t = 1e9;
+        double t1 = t + 1e-9;
+        Assertions.assertEquals(t, t1);
+        timeline.put(t, motions.get(0));
+        timeline.put(t1, motions.get(1));
+        Assertions.assertEquals(1, timeline.size());
+        Assertions.assertSame(motions.get(1), timeline.getMotionAfter(t - 1));
+    }
+
+    @Test
+    public void testOverwrite() throws Exception {
+        MotionTimeline timeline = new MotionTimeline(4);
+        List<Motion> motions = createMotions(10);
+        for (int i = 0; i < motions.size(); i++) {
+            timeline.put(i + 1, motions.get(i));
+        }
+        // Only the last 4 are kept.
+        Assertions.assertEquals(4, timeline.size());
+        Assertions.assertSame(motions.get(6), timeline.getMotionAfter(0));
+        Assertions.assertSame(motions.get(9), timeline.getMotionAfter(9.5));
+        Assertions.assertNull(timeline.getLastMotion((motion) -> motion == motions.get(5)));
+    }
+
+    @Test
+    public void testClearOlderThan() throws Exception {
+        MotionTimeline timeline = new MotionTimeline(8);
+        List<Motion> motions = createMotions(6);
+        for (int i = 0; i < motions.size(); i++) {
+            timeline.put(i + 1, motions.get(i));
+        }
+        timeline.clearOlderThan(3);
+        Assertions.assertEquals(4, timeline.size());
+        Assertions.assertSame(motions.get(2), timeline.getMotionAfter(0));
+        timeline.clearOlderThan(100);
+        Assertions.assertTrue(timeline.isEmpty());
+        Assertions.assertNull(timeline.getLastTime());
+        Assertions.assertNull(timeline.getMotionAfter(0));
+    }
+
+    @Test
+    public void testConcurrentReader() throws Exception {
+        MotionTimeline timeline = new MotionTimeline(16);
+        List<Motion> motions = createMotions(100000);
+        Map<Motion, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < motions.size(); i++) {
+            indices.put(motions.get(i), i);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Double last = timeline.getLastTime();
+                    if (last == null) {
+                        continue;
+                    }
+                    // The Motion completing after a time must have been put with a later time.
+                    Motion motion = timeline.getMotionAfter(last - 4);
+                    if (motion != null) {
+                        int index = indices.get(motion);
+                        Assertions.assertTrue(index + 1 > last - 4);
+                    }
+                }
+            }
+            catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < motions.size(); i++) {
+                timeline.put(i + 1, motions.get(i));
+            }
+        }
+        finally {
+            reader.interrupt();
+            reader.join();
+        }
+        Assertions.assertNull(failure.get());
+    }
+}
@@ -0,0 +1,222 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PartAlignment;
+
+public class ReferenceJobProcessorOverlappedAlignmentTests {
+    public static class AlignmentMachine extends ReferenceMachine {
+        public void addPartAlignment(PartAlignment partAlignment) {
+            partAlignments.add(partAlignment);
+        }
+    }
+
+    /**
+     * Records the alignment events by placement id, and whether they happen on the machine thread, i.e. the
+     * thread running the job, or on the vision executor.
+     */
+    public static class TestAlignment extends ReferenceBottomVision {
+        final Thread machineThread = Thread.currentThread();
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final Set<String> failingCaptures = new HashSet<>();
+        final Set<String> failingProcessing = new HashSet<>();
+        CountDownLatch captures = new CountDownLatch(0);
+
+        private void record(String event, Placement placement) {
+            events.add(event+" "+placement.getId()+" "
+                    +(Thread.currentThread() == machineThread ? "machine" : "vision"));
+        }
+
+        @Override
+        public PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation, Placement placement,
+                Nozzle nozzle) throws Exception {
+            record("align", placement);
+            return new PartAlignmentOffset(new Location(LengthUnit.Millimeters), false);
+        }
+
+        @Override
+        public PendingOffsets findOffsetsOverlapped(Part part, BoardLocation boardLocation,
+                Placement placement, Nozzle nozzle, Executor executor) throws Exception {
+            record("capture", placement);
+            if (failingCaptures.contains(placement.getId())) {
+                throw new Exception("Capture failed.");
+            }
+            captures.countDown();
+            FutureTask<PartAlignmentOffset> task = new FutureTask<>(() -> {
+                // Only finishes once the other nozzles are captured too, i.e. the machine did not wait for it.
+                if (!captures.await(10, TimeUnit.SECONDS)) {
+                    record("timeout", placement);
+                }
+                record("process", placement);
+                if (failingProcessing.contains(placement.getId())) {
+                    throw new Exception("Processing failed.");
+                }
+                return new PartAlignmentOffset(new Location(LengthUnit.Millimeters), false);
+            });
+            executor.execute(task);
+            return () -> {
+                record("join", placement);
+                try {
+                    return task.get();
+                } catch (ExecutionException e) {
+                    throw (Exception) e.getCause();
+                }
+            };
+        }
+    }
+
+    private TestAlignment alignment;
+    private ReferencePnpJobProcessor jobProcessor;
+    private Job job;
+
+    private Machine createMachine() throws Exception {
+        Configuration.initialize();
+        AlignmentMachine machine = new AlignmentMachine();
+        new ReferenceJobProcessorRetryTests.MachineBuilder(machine)
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .nozzle("N2", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+        alignment = new TestAlignment();
+        alignment.setEnabled(true);
+        machine.addPartAlignment(alignment);
+        jobProcessor = (ReferencePnpJobProcessor) machine.getPnpJobProcessor();
+        jobProcessor.setOverlappedAlignment(true);
+        job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .feeder("F1", "R0402-1k", 100, 20, -5, 0)
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .build();
+        ((ReferenceJobProcessorRetryTests.TestFeeder) machine.getFeederByName("F1")).setPartCount(100);
+        return machine;
+    }
+
+    private boolean isPlaced(String placementId) {
+        return job.retrievePlacedStatus(job.getBoardLocations().get(0), placementId);
+    }
+
+    private List<String> events(String event) {
+        List<String> placementIds = new ArrayList<>();
+        for (String e : alignment.events) {
+            if (e.startsWith(event+" ")) {
+                placementIds.add(e.split(" ")[1]);
+            }
+        }
+        return placementIds;
+    }
+
+    /**
+     * Both nozzles are captured before the first result is joined, the results are processed on the
+     * vision executor, and joined on the machine thread in the order of the captures.
+     */
+    @Test
+    public void testOrdering() throws Exception {
+        Machine machine = createMachine();
+        alignment.captures = new CountDownLatch(2);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        List<String> events = alignment.events;
+        assertEquals(6, events.size(), events.toString());
+        for (String event : events) {
+            assertTrue(event.endsWith(event.startsWith("process") ? " vision" : " machine"), event);
+        }
+        assertEquals(2, events("capture").size());
+        assertTrue(events.get(0).startsWith("capture") && events.get(1).startsWith("capture"), events.toString());
+        assertEquals(events("capture"), events("join"));
+        for (String placementId : events("capture")) {
+            assertTrue(events.indexOf("process "+placementId+" vision")
+                    < events.indexOf("join "+placementId+" machine"), events.toString());
+        }
+        assertTrue(events("align").isEmpty());
+        assertTrue(isPlaced("R1"));
+        assertTrue(isPlaced("R2"));
+    }
+
+    /**
+     * A failed processing is thrown when joined, and then retried the usual way on the machine thread. It counts
+     * as the first try.
+     */
+    @Test
+    public void testProcessingFailure() throws Exception {
+        Machine machine = createMachine();
+        alignment.failingProcessing.add("R1");
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        List<String> events = alignment.events;
+        assertEquals(Collections.singletonList("R1"), events("align"));
+        assertTrue(events.indexOf("join R1 machine") < events.indexOf("align R1 machine"), events.toString());
+        assertTrue(isPlaced("R1"));
+        assertTrue(isPlaced("R2"));
+
+        // Without retries, the failed processing was the only try.
+        machine = createMachine();
+        alignment.failingProcessing.add("R1");
+        jobProcessor.setMaxVisionRetries(1);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        assertTrue(events("join").contains("R1"));
+        assertTrue(events("align").isEmpty());
+        assertFalse(isPlaced("R1"), "The part must not be placed without alignment.");
+    }
+
+    /**
+     * A failed capture is thrown right away, and then retried the usual way. It counts as the first try.
+     */
+    @Test
+    public void testCaptureFailure() throws Exception {
+        Machine machine = createMachine();
+        alignment.failingCaptures.add("R1");
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        List<String> events = alignment.events;
+        assertEquals(Collections.singletonList("R1"), events("align"));
+        assertEquals(events.indexOf("capture R1 machine") + 1, events.indexOf("align R1 machine"),
+                events.toString());
+        assertFalse(events("join").contains("R1"));
+        assertTrue(isPlaced("R1"));
+        assertTrue(isPlaced("R2"));
+
+        machine = createMachine();
+        alignment.failingCaptures.add("R1");
+        jobProcessor.setMaxVisionRetries(1);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        assertTrue(events("align").isEmpty());
+        assertFalse(isPlaced("R1"), "The part must not be placed without alignment.");
+    }
+}
@@ -0,0 +1,170 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+
+public class ReferenceJobProcessorPreFeedTests {
+    public static class PreFeedingFeeder extends ReferenceJobProcessorRetryTests.TestFeeder {
+        int preFeedCount = 0;
+        int completePreFeedCount = 0;
+        boolean preFeedFailing = false;
+
+        @Override
+        public boolean isPreFeedSupported() {
+            return true;
+        }
+
+        @Override
+        public void preFeed(Nozzle nozzle) throws Exception {
+            preFeedCount++;
+            if (preFeedFailing) {
+                throw new Exception("Pre-feed failed.");
+            }
+        }
+
+        @Override
+        public void completePreFeed(Nozzle nozzle) throws Exception {
+            completePreFeedCount++;
+        }
+    }
+
+    private static Machine createMachine() throws Exception {
+        Configuration.initialize();
+        Machine machine = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+        ((ReferencePnpJobProcessor) machine.getPnpJobProcessor()).setPreFeed(true);
+        return machine;
+    }
+
+    private static PreFeedingFeeder addFeeder(Machine machine, String name, String partId) throws Exception {
+        PreFeedingFeeder feeder = new PreFeedingFeeder();
+        feeder.setName(name);
+        feeder.setPart(Configuration.get().getPart(partId));
+        feeder.setLocation(new Location(LengthUnit.Millimeters, 100, 20, -5, 0));
+        feeder.setEnabled(true);
+        feeder.setPartCount(100);
+        machine.addFeeder(feeder);
+        return feeder;
+    }
+
+    /**
+     * The second cycle's part is pre-fed during the first cycle, and its pre-feed is completed instead of
+     * feeding it again.
+     */
+    @Test
+    public void testPreFeed() throws Exception {
+        Machine machine = createMachine();
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .build();
+        PreFeedingFeeder f1 = addFeeder(machine, "F1", "R0402-1k");
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        assertEquals(1, f1.feedCount, "Only the first cycle should feed.");
+        assertEquals(1, f1.preFeedCount, "The second cycle should be pre-fed.");
+        assertEquals(1, f1.completePreFeedCount, "The pre-feed should be completed.");
+        ReferenceJobProcessorRetryTests.TestNozzle n1 = (ReferenceJobProcessorRetryTests.TestNozzle)
+                machine.getHeadByName("H1").getNozzleByName("N1");
+        assertEquals(2, n1.getPickCount(), "Both parts should be picked.");
+    }
+
+    /**
+     * A failed pre-feed is not completed, the part is fed again, and the pre-feed counts as the first try.
+     */
+    @Test
+    public void testPreFeedFailure() throws Exception {
+        Machine machine = createMachine();
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .build();
+        PreFeedingFeeder f1 = addFeeder(machine, "F1", "R0402-1k");
+        f1.preFeedFailing = true;
+        f1.setFeedRetryCount(1);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        assertEquals(1, f1.preFeedCount);
+        assertEquals(0, f1.completePreFeedCount, "A failed pre-feed must not be completed.");
+        assertEquals(2, f1.feedCount, "The second cycle should feed again.");
+        ReferenceJobProcessorRetryTests.TestNozzle n1 = (ReferenceJobProcessorRetryTests.TestNozzle)
+                machine.getHeadByName("H1").getNozzleByName("N1");
+        assertEquals(2, n1.getPickCount(), "Both parts should be picked.");
+
+        // Without retries, the failed pre-feed was the only try, so the feeder is disabled without feeding again.
+        machine = createMachine();
+        job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .build();
+        PreFeedingFeeder f2 = addFeeder(machine, "F2", "R0402-1k");
+        f2.preFeedFailing = true;
+        f2.setFeedRetryCount(0);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        assertEquals(1, f2.preFeedCount);
+        assertEquals(1, f2.feedCount, "Only the first cycle should feed.");
+        assertFalse(f2.isEnabled(), "The feeder should be disabled.");
+    }
+
+    /**
+     * Pre-feeds of an aborted job are not carried over to the next job.
+     */
+    @Test
+    public void testPreFeedNotCarriedOver() throws Exception {
+        Machine machine = createMachine();
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .build();
+        PreFeedingFeeder f1 = addFeeder(machine, "F1", "R0402-1k");
+
+        // Run the job until the second cycle is pre-fed, then abort it.
+        machine.setEnabled(true);
+        machine.home();
+        ReferencePnpJobProcessor jobProcessor = (ReferencePnpJobProcessor) machine.getPnpJobProcessor();
+        jobProcessor.initialize(job);
+        while (f1.preFeedCount == 0 && jobProcessor.next()) {
+            //spin
+        }
+        assertEquals(1, f1.preFeedCount);
+        jobProcessor.abort();
+        assertEquals(1, f1.feedCount);
+
+        Job nextJob = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B2", 10, 10, 10, -10)
+                .placement("R3", "R0402-1k", 30, 30, 0)
+                .build();
+        ReferenceJobProcessorRetryTests.runJob(machine, nextJob);
+
+        assertEquals(0, f1.completePreFeedCount, "The pre-feed of the aborted job must not be completed.");
+        assertEquals(2, f1.feedCount, "The next job should feed as usual.");
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry.SymmetryScore;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry.SymmetryFunction;
+
+/**
+ * The symmetry stages search in parallel. Their results, and the score and angle maps drawn into the image,
+ * must not depend on the number of threads.
+ */
+public class SymmetryParallelismTest {
+    static {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private static Mat createBackground() {
+        Mat image = new Mat(240, 240, CvType.CV_8UC3);
+        byte[] data = new byte[image.rows()*image.cols()*3];
+        for (int y = 0, i = 0; y < image.rows(); y++) {
+            for (int x = 0; x < image.cols(); x++) {
+                // Some texture, so the scores vary.
+                data[i++] = (byte) (40 + 20*Math.sin(x*0.3)*Math.cos(y*0.2));
+                data[i++] = (byte) (40 + (x*7 + y*13) % 17);
+                data[i++] = (byte) (30 + y/8);
+            }
+        }
+        image.put(0, 0, data);
+        return image;
+    }
+
+    private static Mat createCircles() {
+        Mat image = createBackground();
+        Imgproc.circle(image, new Point(83, 91), 18, new Scalar(220, 220, 220), -1);
+        Imgproc.circle(image, new Point(157, 148), 17, new Scalar(200, 230, 210), -1);
+        return image;
+    }
+
+    private static Mat createRectangle() {
+        Mat image = createBackground();
+        Point[] corners = new Point[4];
+        new RotatedRect(new Point(122, 117), new Size(80, 50), 12).points(corners);
+        Imgproc.fillConvexPoly(image, new MatOfPoint(corners), new Scalar(210, 220, 200));
+        return image;
+    }
+
+    /**
+     * The result as text, and the image with the diagnostics drawn into it.
+     */
+    private static class Outcome {
+        final String result;
+        final byte[] image;
+
+        Outcome(String result, Mat image) {
+            this.result = result;
+            this.image = new byte[(int) (image.total()*image.channels())];
+            image.get(0, 0, this.image);
+            image.release();
+        }
+    }
+
+    private static Outcome detectCircles() throws Exception {
+        Mat image = createCircles();
+        DetectCircularSymmetry.ScoreRange scoreRange = new DetectCircularSymmetry.ScoreRange();
+        List<Result.Circle> circles = DetectCircularSymmetry.findCircularSymmetry(image, 120, 120,
+                20, 50, 200, 200, 200, 2, 1.2, 0.0, 4, 4,
+                SymmetryScore.OverallVarianceVsRingVarianceSum, true, true, scoreRange);
+        List<String> result = new ArrayList<>();
+        for (Result.Circle circle : circles) {
+            result.add(circle.toString());
+        }
+        result.add(scoreRange.minScore+" "+scoreRange.maxScore+" "+scoreRange.finalScore);
+        return new Outcome(result.toString(), image);
+    }
+
+    private static Outcome detectRectangle() throws Exception {
+        Mat image = createRectangle();
+        DetectRectlinearSymmetry.ScoreRange scoreRange = new DetectRectlinearSymmetry.ScoreRange();
+        RotatedRect rect = DetectRectlinearSymmetry.findReclinearSymmetry(image, 120, 120, 0,
+                100, 100, 40, 45, 1.0, SymmetryFunction.FullSymmetry, SymmetryFunction.FullSymmetry, 40,
+                8, 1, 5, 2.5, 128, true, true, scoreRange);
+        return new Outcome(rect+" "+scoreRange.minScore+" "+scoreRange.maxScore+" "+scoreRange.finalScore,
+                image);
+    }
+
+    private static Outcome runIn(int parallelism, Callable<Outcome> detection) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(detection).get();
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSameForAnyParallelism(Callable<Outcome> detection) throws Exception {
+        Outcome serial = runIn(1, detection);
+        for (int parallelism : new int[] { 2, 3, 8 }) {
+            Outcome parallel = runIn(parallelism, detection);
+            Assertions.assertEquals(serial.result, parallel.result, "parallelism "+parallelism);
+            Assertions.assertArrayEquals(serial.image, parallel.image, "parallelism "+parallelism);
+        }
+        // And on the common pool.
+        Outcome common = detection.call();
+        Assertions.assertEquals(serial.result, common.result);
+        Assertions.assertArrayEquals(serial.image, common.image);
+    }
+
+    @Test
+    public void testCircularSymmetry() throws Exception {
+        assertSameForAnyParallelism(SymmetryParallelismTest::detectCircles);
+    }
+
+    @Test
+    public void testRectlinearSymmetry() throws Exception {
+        assertSameForAnyParallelism(SymmetryParallelismTest::detectRectangle);
+    }
+}
@@ -91,4 +91,41 @@ public class TavellingSalesmanTest {
             }
         }
     }
+
+    /**
+     * In deterministic mode, the parallel chains must give the same solution on every run.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testDeterministic() throws Exception {
+        Random rnd = new java.util.Random(7);
+        List<Location> list = new ArrayList<Location>();
+        for (int i = 0; i < 100; i++) {
+            list.add(new Location(LengthUnit.Millimeters, rnd.nextDouble()*500.0, rnd.nextDouble()*300.0, 0.0, 0.0));
+        }
+        List<Location> firstTravel = null;
+        double firstDistance = 0;
+        for (int run = 0; run < 2; run++) {
+            TravellingSalesman<Location> tsm = new TravellingSalesman<>(
+                    list, 
+                    new TravellingSalesman.Locator<Location>() { 
+                        @Override
+                        public Location getLocation(Location locatable) {
+                            return locatable;
+                        }
+                    }, 
+                    new Location(LengthUnit.Millimeters), 
+                    null);
+            tsm.setDeterministic(true);
+            double distance = tsm.solve();
+            if (firstTravel == null) {
+                firstTravel = tsm.getTravel();
+                firstDistance = distance;
+            }
+            else if (distance != firstDistance || !firstTravel.equals(tsm.getTravel())) {
+                throw new Exception("org.openpnp.util.TravellingSalesman.solve() is not deterministic, distance "+distance+" != "+firstDistance);
+            }
+        }
+    }
 }
@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.Action;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.gui.support.Wizard;
+import org.openpnp.machine.reference.JobPlacementIndex;
+import org.openpnp.machine.reference.ReferenceFeeder;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.ReferenceNozzle;
+import org.openpnp.machine.reference.ReferenceNozzleTip;
+import org.openpnp.machine.reference.TravelCostPnpJobPlanner;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Package;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PropertySheetHolder;
+
+public class TravelCostPnpJobPlannerTest {
+    /**
+     * Feeder that picks at its location.
+     */
+    public static class LocatedFeeder extends ReferenceFeeder {
+        @Override
+        public Location getPickLocation() throws Exception {
+            return getLocation();
+        }
+
+        @Override
+        public void feed(Nozzle nozzle) throws Exception {
+        }
+
+        @Override
+        public Wizard getConfigurationWizard() {
+            return null;
+        }
+
+        @Override
+        public String getPropertySheetHolderTitle() {
+            return null;
+        }
+
+        @Override
+        public PropertySheetHolder[] getChildPropertySheetHolders() {
+            return null;
+        }
+
+        @Override
+        public Action[] getPropertySheetHolderActions() {
+            return null;
+        }
+    }
+
+    private ReferenceMachine machine;
+    private Head head;
+    private ReferenceNozzle n1;
+    private ReferenceNozzle n2;
+    private ReferenceNozzleTip nt1;
+    private ReferenceNozzleTip nt2;
+    private ReferenceNozzleTip nt3;
+    private BoardLocation boardLocation;
+    private TravelCostPnpJobPlanner planner;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Configuration.initialize();
+        ReferenceJobProcessorRetryTests.MachineBuilder builder = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzleTip("NT2")
+                .nozzleTip("NT3");
+        machine = builder.machine;
+        head = builder.head;
+        n1 = builder.nozzle("N1", "NT1", "NT3").nozzle;
+        n2 = builder.nozzle("N2", "NT2", "NT3").nozzle;
+        nt1 = (ReferenceNozzleTip) machine.getNozzleTipByName("NT1");
+        nt2 = (ReferenceNozzleTip) machine.getNozzleTipByName("NT2");
+        nt3 = (ReferenceNozzleTip) machine.getNozzleTipByName("NT3");
+        n1.setNozzleTip(nt1);
+        n2.setNozzleTip(nt2);
+        for (Axis.Type type : new Axis.Type[] { Axis.Type.X, Axis.Type.Y }) {
+            ReferenceControllerAxis axis = new ReferenceControllerAxis();
+            axis.setType(type);
+            axis.setFeedratePerSecond(new Length(500, LengthUnit.Millimeters));
+            axis.setAccelerationPerSecond2(new Length(2000, LengthUnit.Millimeters));
+            axis.setJerkPerSecond3(new Length(15000, LengthUnit.Millimeters));
+            machine.addAxis(axis);
+        }
+        Board board = new Board();
+        board.setName("B1");
+        boardLocation = new BoardLocation(board);
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters));
+        planner = new TravelCostPnpJobPlanner();
+    }
+
+    private Part createPart(String id, double feederX, ReferenceNozzleTip... nozzleTips) throws Exception {
+        Package pkg = new Package(id+"-PKG");
+        for (ReferenceNozzleTip nozzleTip : nozzleTips) {
+            pkg.addCompatibleNozzleTip(nozzleTip);
+        }
+        Part part = new Part(id);
+        part.setPackage(pkg);
+        LocatedFeeder feeder = new LocatedFeeder();
+        feeder.setName(id+"-F");
+        feeder.setPart(part);
+        feeder.setLocation(new Location(LengthUnit.Millimeters, feederX, 0, 0, 0));
+        feeder.setEnabled(true);
+        machine.addFeeder(feeder);
+        return part;
+    }
+
+    private JobPlacement createJobPlacement(String id, Part part, double x) {
+        Placement placement = new Placement(id);
+        placement.setPart(part);
+        placement.setLocation(new Location(LengthUnit.Millimeters, x, 0, 0, 0));
+        return new JobPlacement(boardLocation, placement);
+    }
+
+    private static PlannedPlacement find(List<PlannedPlacement> plannedPlacements, Nozzle nozzle) {
+        for (PlannedPlacement plannedPlacement : plannedPlacements) {
+            if (plannedPlacement.nozzle == nozzle) {
+                return plannedPlacement;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testNozzleTipCompatibility() throws Exception {
+        Part partA = createPart("A", 100, nt1);
+        Part partB = createPart("B", 110, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        // Job order puts B first, it still has to go on the nozzle with the compatible tip.
+        jobPlacements.add(createJobPlacement("B1", partB, 20));
+        jobPlacements.add(createJobPlacement("A1", partA, 10));
+
+        List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
+        Assertions.assertEquals(2, plannedPlacements.size());
+        PlannedPlacement p1 = find(plannedPlacements, n1);
+        PlannedPlacement p2 = find(plannedPlacements, n2);
+        Assertions.assertEquals("A1", p1.jobPlacement.toString());
+        Assertions.assertSame(nt1, p1.nozzleTip);
+        Assertions.assertEquals("B1", p2.jobPlacement.toString());
+        Assertions.assertSame(nt2, p2.nozzleTip);
+
+        // Planning on the index gives the same assignment.
+        plannedPlacements = planner.plan(head, new JobPlacementIndex(jobPlacements));
+        Assertions.assertEquals(2, plannedPlacements.size());
+        Assertions.assertEquals("A1", find(plannedPlacements, n1).jobPlacement.toString());
+        Assertions.assertEquals("B1", find(plannedPlacements, n2).jobPlacement.toString());
+    }
+
+    @Test
+    public void testEmptyNozzle() throws Exception {
+        Part partA = createPart("A", 100, nt1);
+        Part partC = createPart("C", 100, nt3);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        jobPlacements.add(createJobPlacement("A1", partA, 10));
+        jobPlacements.add(createJobPlacement("A2", partA, 12));
+        jobPlacements.add(createJobPlacement("C1", partC, 14));
+
+        // A nozzle tip change costs more than N2 saves, so it is left empty rather than loading NT3.
+        planner.setNozzleTipChangeTime(100);
+        List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
+        Assertions.assertEquals(1, plannedPlacements.size());
+        Assertions.assertSame(n1, plannedPlacements.get(0).nozzle);
+        Assertions.assertSame(nt1, plannedPlacements.get(0).nozzleTip);
+        Assertions.assertNull(find(plannedPlacements, n2));
+
+        // A free nozzle tip change makes it worthwhile.
+        planner.setNozzleTipChangeTime(0);
+        plannedPlacements = planner.plan(head, jobPlacements);
+        Assertions.assertEquals(2, plannedPlacements.size());
+        PlannedPlacement p2 = find(plannedPlacements, n2);
+        Assertions.assertEquals("C1", p2.jobPlacement.toString());
+        Assertions.assertSame(nt3, p2.nozzleTip);
+    }
+
+    @Test
+    public void testCostOrder() throws Exception {
+        // The far feeder's part is placed near, and vice versa.
+        Part partA = createPart("A", 200, nt1);
+        Part partB = createPart("B", 50, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        jobPlacements.add(createJobPlacement("A1", partA, 60));
+        jobPlacements.add(createJobPlacement("B1", partB, 200));
+
+        List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
+        Assertions.assertEquals(2, plannedPlacements.size());
+        // Picking the near feeder first, then placing on the way back is the shortest travel.
+        Assertions.assertEquals("B1", plannedPlacements.get(0).jobPlacement.toString());
+        Assertions.assertEquals("A1", plannedPlacements.get(1).jobPlacement.toString());
+    }
+}
@@ -0,0 +1,153 @@
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Rect;
+import org.openpnp.gui.support.Wizard;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.PropertySheetHolder;
+
+public class ReferenceCameraFusedRemapTest {
+    static {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    static class TestCamera extends ReferenceCamera {
+        @Override
+        protected BufferedImage internalCapture() {
+            return null;
+        }
+
+        @Override
+        public Wizard getConfigurationWizard() {
+            return null;
+        }
+
+        @Override
+        public String getPropertySheetHolderTitle() {
+            return null;
+        }
+
+        @Override
+        public PropertySheetHolder[] getChildPropertySheetHolders() {
+            return null;
+        }
+    }
+
+    private TestCamera camera;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Configuration.initialize();
+        camera = new TestCamera();
+    }
+
+    /**
+     * A smooth image, so the interpolation order of the two ways makes little difference, with a bright
+     * frame, so pixels taken from beyond the crop would show.
+     */
+    private static Mat createImage() {
+        Mat mat = new Mat(60, 80, CvType.CV_8UC3);
+        byte[] data = new byte[mat.rows()*mat.cols()*3];
+        for (int y = 0, i = 0; y < mat.rows(); y++) {
+            for (int x = 0; x < mat.cols(); x++) {
+                boolean frame = x < 10 || y < 10 || x >= mat.cols() - 10 || y >= mat.rows() - 10;
+                data[i++] = (byte) (frame ? 255 : 100 + 60*Math.sin(x/7.0));
+                data[i++] = (byte) (frame ? 255 : 100 + 60*Math.cos(y/5.0));
+                data[i++] = (byte) (frame ? 255 : 50 + x + y);
+            }
+        }
+        mat.put(0, 0, data);
+        return mat;
+    }
+
+    private void assertSameAsOneByOne(int tolerance) {
+        Mat fused = camera.fusedRemap(createImage());
+        Mat oneByOne = camera.transformOneByOne(createImage());
+        try {
+            Assertions.assertEquals(oneByOne.size(), fused.size());
+            Mat diff = new Mat();
+            Core.absdiff(fused, oneByOne, diff);
+            // The edges may differ by interpolating with the border, or not.
+            Mat inner = diff.submat(new Rect(2, 2, diff.cols() - 4, diff.rows() - 4));
+            double max = 0;
+            for (int c = 0; c < 3; c++) {
+                Mat channel = new Mat();
+                Core.extractChannel(inner, channel, c);
+                max = Math.max(max, Core.minMaxLoc(channel).maxVal);
+                channel.release();
+            }
+            Assertions.assertTrue(max <= tolerance, "max difference "+max);
+            inner.release();
+            diff.release();
+        }
+        finally {
+            fused.release();
+            oneByOne.release();
+        }
+    }
+
+    @Test
+    public void testCropOnly() throws Exception {
+        camera.setCropWidth(60);
+        camera.setCropHeight(40);
+        Mat image = createImage();
+        Mat expected = image.submat(new Rect(10, 10, 60, 40)).clone();
+        Mat fused = camera.fusedRemap(image);
+        Assertions.assertEquals(expected.size(), fused.size());
+        Mat diff = new Mat();
+        Core.absdiff(fused, expected, diff);
+        Assertions.assertEquals(0, Core.countNonZero(diff.reshape(1)));
+        diff.release();
+        expected.release();
+        fused.release();
+    }
+
+    @Test
+    public void testCropRotateOffsetFlip() throws Exception {
+        camera.setCropWidth(60);
+        camera.setCropHeight(40);
+        camera.setRotation(90);
+        camera.setOffsetX(7);
+        camera.setOffsetY(-4);
+        camera.setFlipX(true);
+        assertSameAsOneByOne(2);
+    }
+
+    @Test
+    public void testCropScale() throws Exception {
+        camera.setCropWidth(60);
+        camera.setCropHeight(40);
+        camera.setScaleWidth(90);
+        camera.setScaleHeight(60);
+        camera.setOffsetX(-5);
+        camera.setFlipY(true);
+        assertSameAsOneByOne(2);
+    }
+
+    @Test
+    public void testCropRotateOffsetFlipUndistort() throws Exception {
+        camera.setCropWidth(60);
+        camera.setCropHeight(40);
+        camera.setRotation(90);
+        camera.setOffsetX(7);
+        camera.setOffsetY(-4);
+        camera.setFlipX(true);
+        camera.setFlipY(true);
+        Mat cameraMatrix = Mat.eye(3, 3, CvType.CV_64FC1);
+        cameraMatrix.put(0, 0, 100, 0, 30, 0, 100, 20, 0, 0, 1);
+        camera.getCalibration().setCameraMatrixMat(cameraMatrix);
+        camera.getCalibration().setDistortionCoefficientsMat(new MatOfDouble(-0.2, 0.05, 0, 0, 0));
+        camera.getCalibration().setEnabled(true);
+        cameraMatrix.release();
+        // Interpolating the undistortion map instead of the undistorted image differs a bit more.
+        assertSameAsOneByOne(8);
+    }
+}